@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.simplity.kernel.value.Value;
+import org.simplity.service.ServiceData;
+
+/**
+ * response from http cache that is already encoded into bytes. HttpAgent
+ * writes these bytes as they are, instead of encoding the payLoad.
+ *
+ * @author simplity.org
+ *
+ */
+class EncodedResponse extends ServiceData {
+	private static final String GZIP = "gzip";
+	private final byte[] bytes;
+	private final byte[] gzipped;
+
+	/**
+	 * @param userId
+	 * @param serviceName
+	 * @param bytes
+	 *            utf-8 bytes of the response
+	 * @param gzipped
+	 *            gzipped bytes, or null if the response is not gzipped
+	 */
+	EncodedResponse(Value userId, String serviceName, byte[] bytes,
+			byte[] gzipped) {
+		super(userId, serviceName);
+		this.bytes = bytes;
+		this.gzipped = gzipped;
+	}
+
+	/**
+	 * @return number of bytes in response, before gzip
+	 */
+	int getNbrBytes() {
+		return this.bytes.length;
+	}
+
+	/**
+	 * write the response to client
+	 *
+	 * @param resp
+	 *            on which no content is written yet
+	 * @param out
+	 *            output stream of resp
+	 * @param acceptEncoding
+	 *            Accept-Encoding header of request
+	 * @throws IOException
+	 */
+	void write(HttpServletResponse resp, OutputStream out,
+			String acceptEncoding) throws IOException {
+		if (this.gzipped != null) {
+			/*
+			 * what we send depends on the encoding that the client accepts
+			 */
+			resp.addHeader("Vary", "Accept-Encoding");
+		}
+		if (this.gzipped != null && acceptsGzip(acceptEncoding)) {
+			resp.setHeader("Content-Encoding", GZIP);
+			resp.setContentLength(this.gzipped.length);
+			out.write(this.gzipped);
+			return;
+		}
+		resp.setContentLength(this.bytes.length);
+		out.write(this.bytes);
+	}
+
+	/**
+	 * does the client accept gzip? gzip, or *, is to be listed with a
+	 * non-zero q-value. gzip listed explicitly takes precedence over *
+	 *
+	 * @param acceptEncoding
+	 *            Accept-Encoding header of request, for example
+	 *            "deflate, gzip;q=0.8, *;q=0"
+	 * @return true if gzip is acceptable
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		Boolean anyOne = null;
+		for (String part : acceptEncoding.split(",")) {
+			String[] params = part.split(";");
+			String coding = params[0].trim();
+			boolean isGzip = coding.equalsIgnoreCase(GZIP)
+					|| coding.equalsIgnoreCase("x-gzip");
+			if (isGzip == false && coding.equals("*") == false) {
+				continue;
+			}
+			boolean accepted = getQuality(params) > 0;
+			if (isGzip) {
+				return accepted;
+			}
+			anyOne = Boolean.valueOf(accepted);
+		}
+		return anyOne != null && anyOne.booleanValue();
+	}
+
+	/**
+	 * @param params
+	 *            a coding followed by its parameters
+	 * @return value of q parameter, 1 if it is not specified, and 0 if it is
+	 *         not a valid number
+	 */
+	private static double getQuality(String[] params) {
+		for (int i = 1; i < params.length; i++) {
+			String param = params[i].trim();
+			int idx = param.indexOf('=');
+			if (idx == -1
+					|| param.substring(0, idx).trim().equalsIgnoreCase("q") == false) {
+				continue;
+			}
+			try {
+				return Double.parseDouble(param.substring(idx + 1).trim());
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+		return 1;
+	}
+}
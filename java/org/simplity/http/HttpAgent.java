@@ -24,12 +24,12 @@ package org.simplity.http;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
@@ -68,6 +68,10 @@ public class HttpAgent {
 	 * sessions, we make this a set of tokens.
 	 */
 	private static final String GET = "GET";
+	/*
+	 * chars read at a time from request body
+	 */
+	private static final int READ_BUFFER_SIZE = 8192;
 
 	/**
 	 * message to be sent to client if there is any internal error
@@ -172,7 +176,15 @@ public class HttpAgent {
 			}
 		}
 
+		/*
+		 * service may stream its response directly, in which case headers
+		 * are to be set before it writes its first byte
+		 */
+		resp.setContentType("text/json");
+		resp.setCharacterEncoding("UTF-8");
 		long startedAt = new Date().getTime();
+		TrackedStream serviceStream = new TrackedStream(resp, startedAt);
+
 		long elapsed = 0;
 		Value userId = null;
 		ServiceData outData = null;
@@ -222,12 +234,20 @@ public class HttpAgent {
 				}
 				inData.setPayLoad(payLoad);
 				inData.setServiceName(serviceName);
-				if (httpCacheManager != null) {
+				/*
+				 * responses to job-status requests are for a specific job, and
+				 * are never cached
+				 */
+				boolean canCache = httpCacheManager != null
+						&& ServiceProtocol.SERVICE_GET_JOB
+								.equals(serviceName) == false;
+				if (canCache) {
 					outData = httpCacheManager.respond(inData, session);
 					if (outData != null) {
 						break;
 					}
 				}
+				inData.setResponseStream(serviceStream);
 				outData = ServiceAgent.getAgent().executeService(inData);
 				/*
 				 * by our convention, server may send data in outData to be set
@@ -235,7 +255,7 @@ public class HttpAgent {
 				 */
 				if (outData.hasErrors() == false) {
 					setSessionData(session, outData);
-					if (httpCacheManager != null) {
+					if (canCache && outData.isPayLoadStreamed() == false) {
 						httpCacheManager.cache(inData, outData, session);
 					}
 				}
@@ -252,11 +272,25 @@ public class HttpAgent {
 		} while (false);
 
 		elapsed = new Date().getTime() - startedAt;
-		resp.setHeader(ServiceProtocol.SERVICE_EXECUTION_TIME, elapsed + "");
-		resp.setContentType("text/json");
+		if (serviceStream.written == false) {
+			resp.setHeader(ServiceProtocol.SERVICE_EXECUTION_TIME,
+					elapsed + "");
+		}
 		String response = null;
+		EncodedResponse encoded = null;
 		FormattedMessage[] messages = null;
-		if (outData == null) {
+		if (serviceStream.written) {
+			/*
+			 * response is already with the client, may be partially
+			 */
+			if (outData == null || outData.hasErrors()
+					|| message != null) {
+				Tracer.trace(
+						"Service failed after streaming a part of its response. Client gets an incomplete response.");
+			} else {
+				Tracer.trace("Service succeeded and has streamed its response");
+			}
+		} else if (outData == null) {
 			if (message == null) {
 				message = INTERNAL_ERROR;
 			}
@@ -270,6 +304,13 @@ public class HttpAgent {
 		} else if (outData.hasErrors()) {
 			Tracer.trace("Service returned with errors");
 			response = getResponseForError(outData.getMessages());
+		} else if (outData instanceof EncodedResponse) {
+			/*
+			 * cached response, already in bytes
+			 */
+			encoded = (EncodedResponse) outData;
+			Tracer.trace("Response from cache has " + encoded.getNbrBytes()
+					+ " bytes");
 		} else {
 			/*
 			 * all OK
@@ -281,8 +322,12 @@ public class HttpAgent {
 									: (response.length()) + " chars ")
 							+ " payload");
 		}
-		ServletOutputStream out = resp.getOutputStream();
-		out.print(response);
+		OutputStream out = serviceStream.getStream();
+		if (encoded != null) {
+			encoded.write(resp, out, req.getHeader("Accept-Encoding"));
+		} else if (serviceStream.written == false) {
+			out.write(String.valueOf(response).getBytes("UTF-8"));
+		}
 		out.close();
 		String trace = Tracer.stopAccumulation();
 		if (outData != null) {
@@ -428,12 +473,15 @@ public class HttpAgent {
 	 */
 	private static String readInput(HttpServletRequest req) throws IOException {
 		BufferedReader reader = null;
-		StringBuilder sbf = new StringBuilder();
+		int len = req.getContentLength();
+		StringBuilder sbf = new StringBuilder(
+				len > 0 ? len : READ_BUFFER_SIZE);
 		try {
 			reader = req.getReader();
-			int ch;
-			while ((ch = reader.read()) > -1) {
-				sbf.append((char) ch);
+			char[] buf = new char[READ_BUFFER_SIZE];
+			int n;
+			while ((n = reader.read(buf)) > -1) {
+				sbf.append(buf, 0, n);
 			}
 			reader.close();
 			return sbf.toString();
@@ -630,4 +678,75 @@ public class HttpAgent {
 		lifo.put(trace);
 
 	}
+
+	/**
+	 * stream given to the service for writing its response. We track whether
+	 * any thing is written to it, because we can not send error response
+	 * after that. Output stream of the http response is opened only when
+	 * the first byte is written, so that the agent can still report an error
+	 * if the service does not stream its response.
+	 */
+	private static class TrackedStream extends OutputStream {
+		private final HttpServletResponse resp;
+		private final long startedAt;
+		private OutputStream out;
+		boolean written;
+
+		TrackedStream(HttpServletResponse resp, long startedAt) {
+			this.resp = resp;
+			this.startedAt = startedAt;
+		}
+
+		/**
+		 * @return output stream of the http response
+		 */
+		OutputStream getStream() throws IOException {
+			if (this.out == null) {
+				this.out = this.resp.getOutputStream();
+			}
+			return this.out;
+		}
+
+		private void startWriting() throws IOException {
+			if (this.written) {
+				return;
+			}
+			this.written = true;
+			/*
+			 * headers are lost once the response is committed. Execution time
+			 * is what it is when streaming starts.
+			 */
+			long elapsed = new Date().getTime() - this.startedAt;
+			this.resp.setHeader(ServiceProtocol.SERVICE_EXECUTION_TIME,
+					elapsed + "");
+			this.getStream();
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.startWriting();
+			this.out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.startWriting();
+			this.out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (this.out != null) {
+				this.out.flush();
+			}
+		}
+
+		/*
+		 * stream is closed by the agent, and not by the service
+		 */
+		@Override
+		public void close() throws IOException {
+			this.flush();
+		}
+	}
 }
@@ -116,6 +116,18 @@ public class Serve extends HttpServlet {
 				MessageType.ERROR, msg);
 		FormattedMessage[] messages = { message };
 		String response = HttpAgent.getResponseForError(messages);
-		resp.getWriter().write(response);
+		if (resp.isCommitted()) {
+			Tracer.trace(
+					"Response is already committed. Error is not reported to client.");
+			return;
+		}
+		try {
+			resp.getWriter().write(response);
+		} catch (IllegalStateException e) {
+			/*
+			 * output stream was opened before the error
+			 */
+			resp.getOutputStream().write(response.getBytes("UTF-8"));
+		}
 	}
 }
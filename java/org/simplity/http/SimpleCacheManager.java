@@ -19,35 +19,77 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-
 package org.simplity.http;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpSession;
 
-import org.simplity.json.JSONObject;
 import org.simplity.kernel.Tracer;
+import org.simplity.service.ResponseCache;
 import org.simplity.service.ServiceData;
-import org.simplity.service.ServiceProtocol;
 
 /**
  * this is a singleton by design. An instance is cached by HttpAgent and reused.
  *
+ * Responses are kept as utf-8 bytes, and large ones are also kept gzipped, so
+ * that a cached response is written to the client as it is. Cache is bounded
+ * by the number of bytes it holds (refer to ResponseCache). A response expires
+ * as per cacheExpirySeconds of its service.
+ *
+ * Responses that depend on the user are cached with the userId as part of
+ * their key.
+ *
  * @author simplity.org
  *
  */
 public class SimpleCacheManager implements HttpCacheManager {
 	/**
-	 * user id specific responses are saved in session in this name
+	 * default maximum bytes held in cache
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	/**
+	 * responses smaller than this are not gzipped
+	 */
+	public static final int DEFAULT_GZIP_MIN_BYTES = 1024;
+	/*
+	 * approximate bytes used by an entry in addition to its key and bytes
+	 */
+	private static final int ENTRY_OVERHEAD = 100;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/*
+	 * size of a response is the number of bytes it holds
+	 */
+	private final ResponseCache<CachedResponse> responses;
+	private final int gzipMinBytes;
+
+	private final AtomicLong nbrHits = new AtomicLong();
+	private final AtomicLong nbrMisses = new AtomicLong();
+
+	/**
+	 * cache with default size
 	 */
-	private static final String NAME_IN_SESSION = "_CACHE";
+	public SimpleCacheManager() {
+		this(DEFAULT_MAX_BYTES, DEFAULT_GZIP_MIN_BYTES);
+	}
 
 	/**
-	 * responses that are independent of userId. Cached
+	 * @param maxBytes
+	 *            maximum number of bytes to be held in cache
+	 * @param gzipMinBytes
+	 *            responses of at least this size are kept gzipped as well.
+	 *            zero to not to gzip at all
 	 */
-	private final Map<String, CachedService> allCache = new HashMap<String, CachedService>();
+	public SimpleCacheManager(long maxBytes, int gzipMinBytes) {
+		this.gzipMinBytes = gzipMinBytes;
+		this.responses = new ResponseCache<CachedResponse>(maxBytes);
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -59,26 +101,22 @@ public class SimpleCacheManager implements HttpCacheManager {
 	@Override
 	public ServiceData respond(ServiceData inData, HttpSession session) {
 		String serviceName = inData.getServiceName();
-		CachedService cs = this.allCache.get(serviceName);
-		String payLoad = null;
-		if (cs == null) {
-			@SuppressWarnings("rawtypes")
-			Map map = (Map) session.getAttribute(NAME_IN_SESSION);
-			if (map != null) {
-				cs = (CachedService) map.get(serviceName);
-			}
-		}
-		if (cs != null) {
-			payLoad = cs.getResponse(inData);
+		String[] fields = this.responses.getFields(serviceName);
+		if (fields == null) {
+			Tracer.trace("Service not available in cached responses.");
+			return null;
 		}
-		if (payLoad == null) {
+		String key = ResponseCache.getKey(inData, fields);
+		CachedResponse cached = key == null ? null : this.responses.get(key);
+		if (cached == null) {
+			this.nbrMisses.incrementAndGet();
 			Tracer.trace("Service not available in cached responses.");
 			return null;
 		}
+		this.nbrHits.incrementAndGet();
 		Tracer.trace("Responding from cache");
-		ServiceData outData = new ServiceData(inData.getUserId(), serviceName);
-		outData.setPayLoad(payLoad);
-		return outData;
+		return new EncodedResponse(inData.getUserId(), serviceName,
+				cached.bytes, cached.gzipped);
 	}
 
 	/*
@@ -92,36 +130,26 @@ public class SimpleCacheManager implements HttpCacheManager {
 	public void cache(ServiceData inData, ServiceData outData,
 			HttpSession session) {
 		String text = outData.getCacheForInput();
-		if (text == null) {
+		String payLoad = outData.getPayLoad();
+		if (text == null || payLoad == null) {
 			Tracer.trace("NOt to be cached.");
 			return;
 		}
-		boolean forUserId = false;
-		String[] fields = null;
-		if (text.length() > 0) {
-			fields = text.split(",");
-			if (fields[0].equals(ServiceProtocol.USER_ID)) {
-				forUserId = true;
-				int n = fields.length;
-				if (n > 0) {
-					n--;
-					String[] newFields = new String[n];
-					for (int i = 0; i < newFields.length; i++) {
-						newFields[i] = fields[i + 1];
-					}
-					fields = newFields;
-				}
-			}
+		String[] fields = this.responses.setFields(inData.getServiceName(),
+				text);
+		String key = ResponseCache.getKey(inData, fields);
+		if (key == null) {
+			return;
 		}
-		CachedService cs = null;
-		if (forUserId) {
-			Tracer.trace("Going to cache for specific user");
-			cs = this.getSessionCache(inData.getServiceName(), fields, session);
-		} else {
-			Tracer.trace("Going to cache in general...");
-			cs = this.getCache(inData.getServiceName(), fields);
+		byte[] bytes = payLoad.getBytes(UTF8);
+		byte[] gzipped = null;
+		if (this.gzipMinBytes > 0 && bytes.length >= this.gzipMinBytes) {
+			gzipped = gzip(bytes);
 		}
-		cs.cache(inData, outData);
+		long size = ENTRY_OVERHEAD + 2 * key.length() + bytes.length
+				+ (gzipped == null ? 0 : gzipped.length);
+		this.responses.put(key, new CachedResponse(bytes, gzipped), size,
+				outData.getCacheExpirySeconds());
 	}
 
 	/*
@@ -131,137 +159,65 @@ public class SimpleCacheManager implements HttpCacheManager {
 	 */
 	@Override
 	public void invalidate(String serviceName, HttpSession session) {
-		if (this.allCache.remove(serviceName) != null) {
-			return;
-		}
-		@SuppressWarnings("rawtypes")
-		Map map = (Map) session.getAttribute(NAME_IN_SESSION);
-		if (map != null) {
-			map.remove(serviceName);
-		}
-	}
-
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private CachedService getSessionCache(String serviceName, String[] fields,
-			HttpSession session) {
-		Map map = (Map) session.getAttribute(NAME_IN_SESSION);
-		if (map == null) {
-			/*
-			 * we have to avoid concurrent creations...
-			 */
-			map = this.createSessionMap(session);
-		}
-		CachedService cs = (CachedService) map.get(serviceName);
-		if (cs == null) {
-			cs = new CachedService(fields);
-			map.put(serviceName, cs);
-		}
-		return cs;
+		this.responses.invalidate(serviceName);
 	}
 
-	@SuppressWarnings("rawtypes")
-	private synchronized Map createSessionMap(HttpSession session) {
-		Map map = (Map) session.getAttribute(NAME_IN_SESSION);
-		if (map == null) {
-			map = new HashMap();
-			session.setAttribute(NAME_IN_SESSION, map);
-		}
-		return map;
-	}
-
-	private CachedService getCache(String serviceName, String[] fields) {
-		CachedService cs = this.allCache.get(serviceName);
-		if (cs == null) {
-			cs = new CachedService(fields);
-			this.allCache.put(serviceName, cs);
-		}
-		return cs;
-	}
-}
-
-/**
- * cache manager for a given service.
- *
- * @author simplity.org
- *
- */
-class CachedService {
-	/**
-	 * null means no need to look at input. response is same.
-	 */
-	private final String[] fieldNames;
 	/**
-	 * single response iff fieldNames == null
+	 * @return number of requests that were responded from cache
 	 */
-	private String response;
-	/**
-	 * responses indexed by input field values
-	 */
-	private Map<String, String> responses;
+	public long getNbrHits() {
+		return this.nbrHits.get();
+	}
 
 	/**
-	 * created at the first cache.
-	 *
-	 * @param fieldNames
+	 * @return number of requests for a cached service that were not found in
+	 *         cache
 	 */
-	CachedService(String[] fieldNames) {
-		this.fieldNames = fieldNames;
+	public long getNbrMisses() {
+		return this.nbrMisses.get();
 	}
 
 	/**
-	 * cache a response
-	 *
-	 * @param inData
-	 * @param outData
+	 * @return number of responses removed to make room for new ones
 	 */
-	void cache(ServiceData inData, ServiceData outData) {
-		if (this.fieldNames == null) {
-			this.response = outData.getPayLoad();
-			return;
-		}
-		this.responses.put(this.getInDataKey(inData.getPayLoad()),
-				outData.getPayLoad());
+	public long getNbrEvictions() {
+		return this.responses.getNbrEvictions();
 	}
 
 	/**
-	 * retrieve a cached response
-	 *
-	 * @param inData
-	 * @return
+	 * @return approximate number of bytes held in cache
 	 */
-	String getResponse(ServiceData inData) {
-		if (this.response != null) {
-			return this.response;
+	public long getNbrBytes() {
+		return this.responses.getSize();
+	}
+
+	private static byte[] gzip(byte[] bytes) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(
+				bytes.length / 4);
+		try {
+			OutputStream zipper = new GZIPOutputStream(out);
+			zipper.write(bytes);
+			zipper.close();
+			return out.toByteArray();
+		} catch (IOException e) {
+			Tracer.trace(e, "Unable to gzip response");
+			return null;
 		}
-		return this.responses.get(this.getInDataKey(inData.getPayLoad()));
 	}
 
 	/**
-	 * generate index key based on input field values
-	 *
-	 * @param text
-	 * @return
+	 * a cached response
 	 */
-	private String getInDataKey(String text) {
-		JSONObject json;
-		if (text == null || text.length() == 0) {
-			json = new JSONObject("{}");
-		} else {
-			json = new JSONObject(text);
-		}
-		StringBuilder sbf = new StringBuilder();
-		boolean firstOne = true;
-		for (String nam : this.fieldNames) {
-			if (firstOne) {
-				firstOne = false;
-			} else {
-				sbf.append('\0');
-			}
-			Object obj = json.get(nam);
-			if (obj != null) {
-				sbf.append(obj);
-			}
+	private static class CachedResponse {
+		final byte[] bytes;
+		/*
+		 * null if it is not gzipped
+		 */
+		final byte[] gzipped;
+
+		CachedResponse(byte[] bytes, byte[] gzipped) {
+			this.bytes = bytes;
+			this.gzipped = gzipped;
 		}
-		return sbf.toString();
 	}
 }
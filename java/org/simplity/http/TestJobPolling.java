@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.http;
+
+import java.util.concurrent.Callable;
+
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.value.Value;
+import org.simplity.service.JobManager;
+import org.simplity.service.ServiceData;
+import org.simplity.service.ServiceProtocol;
+
+/**
+ * internal class to test that responses of background jobs are not shared
+ * across their clients through the http cache. To be re-factored into a Maven
+ * structure and put into test folder
+ *
+ * @author simplity.org
+ *
+ */
+class TestJobPolling {
+	private static final String SERVICE = "test.cachedReport";
+
+	/**
+	 * two users poll for their own jobs of a service that can be cached
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int nbrIssues = 0;
+		JobManager.setUp(2, 10, 60);
+		SimpleCacheManager cacher = new SimpleCacheManager();
+		Value user1 = Value.newTextValue("user1");
+		Value user2 = Value.newTextValue("user2");
+		String token1 = JobManager.submit(user1, SERVICE, new Report(user1));
+		String token2 = JobManager.submit(user2, SERVICE, new Report(user2));
+
+		ServiceData out1 = poll(cacher, user1, token1);
+		if (out1 == null || out1.getPayLoad().indexOf("user1") == -1) {
+			Tracer.trace("user1 did not get response of its own job");
+			nbrIssues++;
+		} else if (out1.getCacheForInput() != null) {
+			Tracer.trace("job response is marked to be cached under "
+					+ ServiceProtocol.SERVICE_GET_JOB);
+			nbrIssues++;
+		}
+
+		ServiceData out2 = poll(cacher, user2, token2);
+		if (out2 instanceof EncodedResponse) {
+			Tracer.trace("user2 got a cached response instead of its own job");
+			nbrIssues++;
+		} else if (out2 == null || out2.getPayLoad().indexOf("user2") == -1) {
+			Tracer.trace("user2 did not get response of its own job");
+			nbrIssues++;
+		}
+		JobManager.setUp(-1, 0, 0);
+		if (nbrIssues == 0) {
+			Tracer.trace("Congratulations!!!");
+		} else {
+			Tracer.trace("Oooops! You have to fix " + nbrIssues
+					+ " issues.");
+		}
+	}
+
+	/**
+	 * poll the way HttpAgent does, with cache in front of the service
+	 */
+	private static ServiceData poll(SimpleCacheManager cacher, Value userId,
+			String token) {
+		ServiceData inData = new ServiceData(userId,
+				ServiceProtocol.SERVICE_GET_JOB);
+		inData.setPayLoad("{\"" + ServiceProtocol.JOB_TOKEN + "\":\"" + token
+				+ "\"}");
+		ServiceData cached = cacher.respond(inData, null);
+		if (cached != null) {
+			return cached;
+		}
+		for (int i = 0; i < 100; i++) {
+			ServiceData outData = JobManager.getStatus(token, userId);
+			if (outData == null) {
+				return null;
+			}
+			if (outData.getPayLoad().indexOf(JobManager.STATUS_DONE) == -1
+					&& outData.getPayLoad().indexOf(token) != -1) {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					return null;
+				}
+				continue;
+			}
+			cacher.cache(inData, outData, null);
+			return outData;
+		}
+		return null;
+	}
+
+	/**
+	 * a report that can be cached for any input
+	 */
+	private static class Report implements Callable<ServiceData> {
+		private final Value userId;
+
+		Report(Value userId) {
+			this.userId = userId;
+		}
+
+		@Override
+		public ServiceData call() throws Exception {
+			ServiceData outData = new ServiceData(this.userId, SERVICE);
+			outData.setPayLoad("{\"report\":\"for " + this.userId + "\"}");
+			outData.setCacheForInput("");
+			return outData;
+		}
+	}
+}
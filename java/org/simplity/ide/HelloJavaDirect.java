@@ -81,6 +81,26 @@ public class HelloJavaDirect implements ServiceInterface {
 		return true;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.simplity.service.ServiceInterface#getCacheKeyFields()
+	 */
+	@Override
+	public String[] getCacheKeyFields() {
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.simplity.service.ServiceInterface#canStreamResponse()
+	 */
+	@Override
+	public boolean canStreamResponse() {
+		return false;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -30,6 +30,7 @@ import org.simplity.http.HttpCacheManager;
 import org.simplity.json.JSONWriter;
 import org.simplity.kernel.comp.ComponentManager;
 import org.simplity.kernel.comp.ComponentType;
+import org.simplity.kernel.comp.ComponentWatcher;
 import org.simplity.kernel.comp.ValidationContext;
 import org.simplity.kernel.db.DbDriver;
 import org.simplity.kernel.db.DbVendor;
@@ -38,14 +39,17 @@ import org.simplity.kernel.file.AttachmentAssistant;
 import org.simplity.kernel.file.AttachmentManager;
 import org.simplity.kernel.file.FileBasedAssistant;
 import org.simplity.kernel.util.JsonUtil;
+import org.simplity.kernel.util.XmlSnapshot;
 import org.simplity.kernel.util.XmlUtil;
 import org.simplity.kernel.value.Value;
 import org.simplity.service.AccessController;
 import org.simplity.service.ExceptionListener;
+import org.simplity.service.JobManager;
 import org.simplity.service.ServiceAgent;
 import org.simplity.service.ServiceCacheManager;
 import org.simplity.service.ServiceData;
 import org.simplity.service.ServiceInterface;
+import org.simplity.tp.Parallel;
 
 /**
  * Configure this application
@@ -125,6 +129,24 @@ public class Application {
 	 * do we cache components as they are loaded
 	 */
 	boolean cacheComponents;
+	/**
+	 * reload cached components as and when their resources are modified. Used
+	 * only if cacheComponents is set, and the component folder is on the file
+	 * system
+	 */
+	boolean reloadChangedComponents;
+	/**
+	 * absolute path of a file in which component resources are saved, so that
+	 * the next start-up reads the ones that are not modified from this one
+	 * file. Not used if this is not set
+	 */
+	String componentSnapshotPath;
+	/**
+	 * number of threads used to load all components into cache at start-up.
+	 * Components are loaded on demand if this is not set. Used only if
+	 * cacheComponents is set
+	 */
+	int warmUpThreads;
 	/**
 	 * The database vendor we are using
 	 */
@@ -143,6 +165,50 @@ public class Application {
 	 * Data source name to be used to look-up in JNDI for dataSource
 	 */
 	String dataSourceName;
+
+	/**
+	 * When connection string is used, we pool connections ourselves. Maximum
+	 * number of connections that can be open at any time for a schema.
+	 * Defaults to 20
+	 */
+	int maxConnections;
+
+	/**
+	 * maximum number of connections kept idle in the pool. Defaults to
+	 * maxConnections
+	 */
+	int maxIdleConnections;
+
+	/**
+	 * milliseconds a service waits for a connection from the pool before
+	 * giving up. Defaults to 30000
+	 */
+	int connectionWaitMillis;
+
+	/**
+	 * an idle connection in the pool is closed after these many seconds.
+	 * Defaults to 300
+	 */
+	int idleConnectionSeconds;
+
+	/**
+	 * number of prepared statements cached for each pooled connection.
+	 * Defaults to 50. Set it to a negative number to disable caching
+	 */
+	int statementCacheSize;
+
+	/**
+	 * number of rows fetched from the rdbms in one round trip, unless a sql or
+	 * a record specifies its own. Default is left to the jdbc driver
+	 */
+	int fetchSize;
+
+	/**
+	 * borrow a db connection only when the first sql is executed. A read-only
+	 * or auto-commit connection is also returned as soon as the last action
+	 * that needs it is done, rather than at the end of the service
+	 */
+	boolean lazyDbConnections;
 	/**
 	 * The service identifier used to perform login. If this is null, we
 	 * simulate a dummy login where loginId is accepted as userId,
@@ -174,7 +240,7 @@ public class Application {
 	 * as cache manager at we tier. This class must implement HttpCacheManager
 	 * interface. You may start with the a simple one called
 	 * org.siplity.http.SimpleCacheManager that caches services based on service
-	 * definition inside http sessions.
+	 * definition in a bounded in-memory cache.
 	 */
 	String httpCacheManager;
 
@@ -182,9 +248,39 @@ public class Application {
 	 * Response to service request can be cached at two levels : at the Web tier
 	 * or at the service level. Specify fully qualified class name you want use
 	 * at the service layer. This class should implement
-	 * org.simplity.service.ServiceCacheManager
+	 * org.simplity.service.ServiceCacheManager.
+	 * org.simplity.service.DefaultCacheManager is a bounded in-memory cache
+	 * that can be used for this.
 	 */
 	String serviceCacheManager;
+	/**
+	 * milliseconds a request for a cacheable service waits for an identical
+	 * request that is being executed, so that the service is executed once for
+	 * both. Default is 30000. Negative value means that every request is
+	 * executed on its own
+	 */
+	int coalesceWaitMillis;
+	/**
+	 * number of threads that execute services marked with
+	 * executeInBackground. Default is 4. Negative value means that such
+	 * services are executed like any other service
+	 */
+	int backgroundThreads;
+	/**
+	 * number of background jobs that can wait for a thread. A request is
+	 * rejected if the queue is full. Default is 100
+	 */
+	int backgroundQueueSize;
+	/**
+	 * number of seconds for which the response of a background job is kept
+	 * for the client to collect it. Default is 600
+	 */
+	int jobExpirySeconds;
+	/**
+	 * number of threads that run actions inside parallel actions. Default is
+	 * 16
+	 */
+	int parallelThreads;
 	/**
 	 * class that decides whether a userId be served a given service
 	 */
@@ -315,6 +411,11 @@ public class Application {
 		 * Set up db driver.
 		 */
 		try {
+			DbDriver.setPoolParams(this.maxConnections, this.maxIdleConnections,
+					this.connectionWaitMillis, this.idleConnectionSeconds,
+					this.statementCacheSize);
+			DbDriver.setDefaultFetchSize(this.fetchSize);
+			DbDriver.setLazyConnections(this.lazyDbConnections);
 			DbDriver.initialSetup(this.dbVendor, this.dataSourceName,
 					this.dbDriverClassName, this.connectionString, this.logSqls,
 					this.schemaDetails);
@@ -327,12 +428,17 @@ public class Application {
 		 * setup service agent
 		 */
 		ServiceAgent.setUp(this.userIdIsNumber, this.loginServiceName,
-				this.logoutServiceName, casher, gard, listener);
+				this.logoutServiceName, casher, gard, listener,
+				this.coalesceWaitMillis);
+		JobManager.setUp(this.backgroundThreads, this.backgroundQueueSize,
+				this.jobExpirySeconds);
+		Parallel.setUp(this.parallelThreads);
 
 		/*
 		 * Some components like data-type are to be pre-loaded for the app to
 		 * work.
 		 */
+		XmlSnapshot.open(this.componentSnapshotPath);
 		try {
 			ComponentType.preLoad();
 		} catch (Exception e) {
@@ -340,7 +446,21 @@ public class Application {
 		}
 		if (this.cacheComponents) {
 			ComponentType.startCaching();
+			if (this.reloadChangedComponents) {
+				try {
+					ComponentWatcher.start();
+				} catch (Exception e) {
+					msgs.add("Error while setting up watcher for components. "
+							+ e.getMessage());
+				}
+			}
+			try {
+				ComponentType.warmUp(this.warmUpThreads);
+			} catch (Exception e) {
+				msgs.add("Error while warming up components" + e.getMessage());
+			}
 		}
+		XmlSnapshot.close();
 
 		Value uid = null;
 		if (this.autoLoginUserId != null) {
@@ -113,6 +113,18 @@ public class Messages {
 	 */
 	public static final String INVALID_ATTACHMENT_KEY = "kernel.invalidAttachmentKey";
 
+	/**
+	 * service is to be executed in background, but there are already too
+	 * many jobs waiting
+	 */
+	public static final String SERVER_BUSY = "kernel.serverBusy";
+
+	/**
+	 * client has asked for a background job that does not exist, or whose
+	 * response has expired
+	 */
+	public static final String NO_JOB = "kernel.noJob";
+
 	/**
 	 * get message text for this message after formatting based on parameters
 	 *
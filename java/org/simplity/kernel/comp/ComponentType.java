@@ -22,9 +22,20 @@
 
 package org.simplity.kernel.comp;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.simplity.kernel.ApplicationError;
 import org.simplity.kernel.Message;
@@ -164,6 +175,49 @@ public enum ComponentType {
 	 * list of built-in functions
 	 */
 	protected static final Function[] BUILT_IN_FUNCTIONS = { new Concat() };
+	/*
+	 * types that are loaded on demand, in the order in which they are warmed
+	 * up. Records are loaded before sqls, procedures and services that refer
+	 * to them. Data types are pre-loaded before all these.
+	 */
+	private static final ComponentType[] WARM_UP_ORDER = { ComponentType.REC,
+			ComponentType.SQL, ComponentType.SP, ComponentType.SERVICE };
+	private static final char KEY_SEPARATOR = ':';
+
+	/**
+	 * do we keep track of components that depend on other components? Set
+	 * when components are reloaded as they are modified.
+	 */
+	private static volatile boolean dependenciesTracked;
+
+	/**
+	 * components being loaded and got ready by this thread. Any component
+	 * asked for in the meantime is a dependency of the last one
+	 */
+	private static final ThreadLocal<List<String>> componentsBeingLoaded = new ThreadLocal<List<String>>() {
+		@Override
+		protected List<String> initialValue() {
+			return new ArrayList<String>();
+		}
+	};
+
+	/**
+	 * number of loads that this thread is running for others to wait on. A
+	 * thread that is running a load never waits for a load by another thread,
+	 * as that thread may in turn be waiting for ours.
+	 */
+	private static final ThreadLocal<int[]> loadsOwned = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	/**
+	 * key of components that depend on a component, indexed by the key of
+	 * that component. Key is type:name
+	 */
+	private static final ConcurrentMap<String, Set<String>> dependents = new ConcurrentHashMap<String, Set<String>>();
 
 	/**
 	 * root folder where components are located, relative to file-manager's
@@ -174,7 +228,7 @@ public enum ComponentType {
 	 * service has a way to generate rather than load.. One way is to have a
 	 * class associated with that
 	 */
-	protected static final Map<String, Object> serviceClasses = new HashMap<String, Object>();
+	protected static final Map<String, Object> serviceClasses = new ConcurrentHashMap<String, Object>();
 	/*
 	 * attributes of component type
 	 */
@@ -198,7 +252,26 @@ public enum ComponentType {
 	 * is this loaded on a need basis or pre-loaded?
 	 */
 	private final boolean preLoaded;
-	protected Map<String, Object> cachedOnes;
+
+	/**
+	 * cached components. null if components of this type are not to be
+	 * cached. Reads are lock-free.
+	 */
+	protected volatile Map<String, Object> cachedOnes;
+
+	/**
+	 * components that are being loaded right now. Other threads asking for the
+	 * same component wait for this load rather than loading it again.
+	 */
+	private final ConcurrentMap<String, FutureTask<Component>> loadsInProgress = new ConcurrentHashMap<String, FutureTask<Component>>();
+
+	/*
+	 * statistics
+	 */
+	private final AtomicLong nbrHits = new AtomicLong();
+	private final AtomicLong nbrMisses = new AtomicLong();
+	private final AtomicLong nbrLoads = new AtomicLong();
+	private final AtomicLong totalLoadNanos = new AtomicLong();
 
 	/**
 	 * @param idx
@@ -213,7 +286,7 @@ public enum ComponentType {
 		this.folder = folder;
 		this.preLoaded = preLoaded;
 		if (this.preLoaded) {
-			this.cachedOnes = new HashMap<String, Object>();
+			this.cachedOnes = new ConcurrentHashMap<String, Object>();
 		}
 	}
 
@@ -269,13 +342,17 @@ public enum ComponentType {
 	 *         not want an error
 	 */
 	public Component getComponentOrNull(String compName) {
+		if (dependenciesTracked) {
+			this.addDependent(compName);
+		}
 		/*
 		 * do we have it in our cache?
 		 */
-		Object object = null;
-		if (this.cachedOnes != null) {
-			object = this.cachedOnes.get(compName);
+		Map<String, Object> cache = this.cachedOnes;
+		if (cache != null) {
+			Object object = cache.get(compName);
 			if (object != null) {
+				this.nbrHits.incrementAndGet();
 				return (Component) object;
 			}
 		}
@@ -286,22 +363,303 @@ public enum ComponentType {
 		if (this.preLoaded) {
 			return null;
 		}
+		this.nbrMisses.incrementAndGet();
+		if (cache == null) {
+			/*
+			 * not caching. every request gets its own copy
+			 */
+			return this.loadAndGetReady(compName);
+		}
+
+		/*
+		 * is some one else loading it right now?
+		 */
+		FutureTask<Component> task = this.loadsInProgress.get(compName);
+		int[] owned = loadsOwned.get();
+		if (task == null) {
+			FutureTask<Component> newTask = this.newLoadTask(compName, cache);
+			task = this.loadsInProgress.putIfAbsent(compName, newTask);
+			if (task == null) {
+				/*
+				 * we own this load. It may have got into cache just before we
+				 * registered our task
+				 */
+				task = newTask;
+				try {
+					Object object = cache.get(compName);
+					if (object != null) {
+						return (Component) object;
+					}
+					owned[0]++;
+					try {
+						task.run();
+					} finally {
+						owned[0]--;
+					}
+				} finally {
+					this.loadsInProgress.remove(compName, task);
+				}
+				return this.waitForLoad(compName, task);
+			}
+		}
+		if (owned[0] > 0) {
+			/*
+			 * we are in the middle of a load, possibly of this very
+			 * component. Waiting for this load may never end. Load our own
+			 * copy instead, as we would if components were not cached
+			 */
+			Tracer.trace(this + " " + compName
+					+ " is being loaded, and is asked for while loading another component. A copy is loaded.");
+			return this.loadAndGetReady(compName);
+		}
+		return this.waitForLoad(compName, task);
+	}
 
-		object = this.generateComp(compName);
-		if (object == null) {
-			object = this.load(compName);
+	/**
+	 * create a task that loads a component, gets it ready and caches it
+	 */
+	private FutureTask<Component> newLoadTask(final String compName,
+			final Map<String, Object> cache) {
+		return new FutureTask<Component>(new Callable<Component>() {
+
+			@Override
+			public Component call() throws Exception {
+				Component comp = ComponentType.this.loadAndGetReady(compName);
+				if (comp != null) {
+					cache.put(compName, comp);
+				}
+				return comp;
+			}
+		});
+	}
+
+	/**
+	 * get the component that is loaded by the task, waiting for it if
+	 * required
+	 */
+	private Component waitForLoad(String compName, FutureTask<Component> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ApplicationError(e, "Interrupted while waiting for "
+					+ this + " " + compName + " to load");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new ApplicationError((Exception) cause,
+					"Error while loading " + this + " " + compName);
 		}
+	}
 
-		if (object == null) {
-			return null;
+	/**
+	 * generate or load the component, and get it ready
+	 *
+	 * @param compName
+	 * @return component that is ready, or null if it is not found
+	 */
+	private Component loadAndGetReady(String compName) {
+		long startedAt = System.nanoTime();
+		List<String> beingLoaded = null;
+		if (dependenciesTracked) {
+			beingLoaded = componentsBeingLoaded.get();
+			beingLoaded.add(this.getKey(compName));
 		}
+		try {
+			Object object = this.generateComp(compName);
+			if (object == null) {
+				object = this.load(compName);
+			}
 
-		Component comp = (Component) object;
-		comp.getReady();
-		if (this.cachedOnes != null) {
-			this.cachedOnes.put(compName, comp);
+			if (object == null) {
+				return null;
+			}
+
+			Component comp = (Component) object;
+			comp.getReady();
+			this.nbrLoads.incrementAndGet();
+			this.totalLoadNanos.addAndGet(System.nanoTime() - startedAt);
+			return comp;
+		} finally {
+			if (beingLoaded != null) {
+				beingLoaded.remove(beingLoaded.size() - 1);
+			}
 		}
-		return comp;
+	}
+
+	/**
+	 * reload a component whose resource is modified, and replace the cached
+	 * one with that. Cached components that depend on this component are
+	 * removed from cache so that they are loaded again when required.
+	 *
+	 * @param compName
+	 * @return true if the component is reloaded. false if it could not be
+	 *         loaded, in which case the cached one, if any, is retained
+	 */
+	public boolean reloadComponent(String compName) {
+		Map<String, Object> cache = this.cachedOnes;
+		if (this.preLoaded || cache == null) {
+			Tracer.trace(this + " " + compName
+					+ " is not reloaded as this type is "
+					+ (this.preLoaded ? "pre-loaded" : "not cached"));
+			return false;
+		}
+		Component comp = this.loadAndGetReady(compName);
+		if (comp == null) {
+			Tracer.trace(this + " " + compName
+					+ " could not be reloaded. Existing one, if any, continues to be used.");
+			return false;
+		}
+		cache.put(compName, comp);
+		invalidateDependents(this.getKey(compName), new HashSet<String>());
+		Tracer.trace(this + " " + compName + " reloaded.");
+		return true;
+	}
+
+	/**
+	 * remove a component, and all cached components that depend on it, from
+	 * cache
+	 *
+	 * @param compName
+	 */
+	public void invalidateComponent(String compName) {
+		this.removeComponent(compName);
+		invalidateDependents(this.getKey(compName), new HashSet<String>());
+	}
+
+	/**
+	 * remove cached components that depend on this component, and the ones
+	 * that depend on them..
+	 */
+	private static void invalidateDependents(String key, Set<String> done) {
+		if (done.add(key) == false) {
+			return;
+		}
+		Set<String> keys = dependents.remove(key);
+		if (keys == null) {
+			return;
+		}
+		for (String depKey : keys) {
+			int idx = depKey.indexOf(KEY_SEPARATOR);
+			ComponentType depType = ComponentType.valueOf(depKey.substring(0,
+					idx));
+			String depName = depKey.substring(idx + 1);
+			depType.removeComponent(depName);
+			Tracer.trace(depType + " " + depName
+					+ " removed from cache as it depends on " + key);
+			invalidateDependents(depKey, done);
+		}
+	}
+
+	/**
+	 * component is asked for. It is a dependency of the component being
+	 * loaded, if any
+	 */
+	private void addDependent(String compName) {
+		List<String> beingLoaded = componentsBeingLoaded.get();
+		int nbr = beingLoaded.size();
+		if (nbr == 0) {
+			return;
+		}
+		String key = this.getKey(compName);
+		String dependent = beingLoaded.get(nbr - 1);
+		if (key.equals(dependent)) {
+			return;
+		}
+		Set<String> keys = dependents.get(key);
+		if (keys == null) {
+			keys = Collections
+					.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			Set<String> existing = dependents.putIfAbsent(key, keys);
+			if (existing != null) {
+				keys = existing;
+			}
+		}
+		keys.add(dependent);
+	}
+
+	private String getKey(String compName) {
+		return this.name() + KEY_SEPARATOR + compName;
+	}
+
+	/**
+	 * keep track of components that depend on other components, so that they
+	 * can be invalidated when the component they depend on is reloaded. Must
+	 * be set before components are loaded.
+	 *
+	 * @param tracked
+	 */
+	public static void trackDependencies(boolean tracked) {
+		dependenciesTracked = tracked;
+		if (tracked == false) {
+			dependents.clear();
+		}
+	}
+
+	/**
+	 * @param resName
+	 *            resource name relative to component folder, with '/' as
+	 *            folder separator
+	 * @return type of component that is saved in this resource, or null if it
+	 *         is not a resource of a component that is saved in its own file
+	 */
+	public static ComponentType getTypeOfResource(String resName) {
+		if (resName.endsWith(EXTN) == false) {
+			return null;
+		}
+		for (ComponentType aType : ComponentType.values()) {
+			if (aType.preLoaded == false && resName.startsWith(aType.folder)) {
+				return aType;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param resName
+	 *            resource name relative to component folder, for which
+	 *            getTypeOfResource() returned this type
+	 * @return qualified name of the component saved in this resource
+	 */
+	public String getNameOfResource(String resName) {
+		return resName.substring(this.folder.length(),
+				resName.length() - EXTN.length()).replace(FOLDER_CHAR,
+						DELIMITER);
+	}
+
+	/**
+	 * @return number of requests that were served from cache
+	 */
+	public long getNbrHits() {
+		return this.nbrHits.get();
+	}
+
+	/**
+	 * @return number of requests that did not find the component in cache.
+	 *         Always zero for pre-loaded types
+	 */
+	public long getNbrMisses() {
+		return this.nbrMisses.get();
+	}
+
+	/**
+	 * @return number of components that were loaded on demand
+	 */
+	public long getNbrLoads() {
+		return this.nbrLoads.get();
+	}
+
+	/**
+	 * @return total time in milliseconds spent in loading components on
+	 *         demand, including time taken by getReady()
+	 */
+	public long getTotalLoadMillis() {
+		return this.totalLoadNanos.get() / 1000000;
 	}
 
 	/**
@@ -501,9 +859,89 @@ public enum ComponentType {
 				aType.cachedOnes.clear();
 			}
 			if (aType.preLoaded) {
+				long startedAt = System.nanoTime();
 				aType.loadAll();
+				Tracer.trace(aType + " pre-loaded in "
+						+ (System.nanoTime() - startedAt) / 1000000 + " ms");
+			}
+		}
+	}
+
+	/**
+	 * load all components that are otherwise loaded on demand, so that the
+	 * first requests after a start-up do not pay for it. Components of a type
+	 * are parsed and got ready in parallel, but types are loaded one after the
+	 * other so that records are ready before sqls and services that use them.
+	 * Must be called after preLoad() and startCaching()
+	 *
+	 * @param nbrThreads
+	 *            number of threads to be used for loading. no warm-up if this
+	 *            is not positive
+	 */
+	public static void warmUp(int nbrThreads) {
+		if (nbrThreads <= 0) {
+			return;
+		}
+		ForkJoinPool pool = new ForkJoinPool(nbrThreads);
+		try {
+			for (ComponentType aType : WARM_UP_ORDER) {
+				if (aType.cachedOnes == null) {
+					Tracer.trace(aType
+							+ " components are not cached, and hence they are not warmed up.");
+					continue;
+				}
+				aType.warmUp(pool);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * load all components of this type into cache using the pool
+	 */
+	private void warmUp(ForkJoinPool pool) {
+		long startedAt = System.nanoTime();
+		List<Callable<Component>> tasks = new ArrayList<Callable<Component>>();
+		for (final String compName : this.getStoredNames()) {
+			tasks.add(new Callable<Component>() {
+
+				@Override
+				public Component call() {
+					try {
+						return ComponentType.this.getComponentOrNull(compName);
+					} catch (Exception e) {
+						Tracer.trace(e, "Error while warming up "
+								+ ComponentType.this + " " + compName);
+						return null;
+					}
+				}
+			});
+		}
+		pool.invokeAll(tasks);
+		Tracer.trace(this.cachedOnes.size() + " " + this + " loaded out of "
+				+ tasks.size() + " resources in "
+				+ (System.nanoTime() - startedAt) / 1000000 + " ms");
+	}
+
+	/**
+	 * @return names of all components of this type that are saved in their
+	 *         own resources
+	 */
+	private List<String> getStoredNames() {
+		List<String> names = new ArrayList<String>();
+		String prefix = componentFolder + this.folder;
+		for (String resName : FileManager.getResources(prefix)) {
+			int idx = resName.indexOf(prefix);
+			if (idx == -1 || resName.endsWith(EXTN) == false) {
+				Tracer.trace("Skipping Non-resource " + resName);
+				continue;
 			}
+			String name = resName.substring(idx + prefix.length(),
+					resName.length() - EXTN.length());
+			names.add(name.replace(FOLDER_CHAR, DELIMITER));
 		}
+		return names;
 	}
 
 	/**
@@ -516,7 +954,7 @@ public enum ComponentType {
 		 */
 		for (ComponentType aType : ComponentType.values()) {
 			if (aType.preLoaded == false) {
-				aType.cachedOnes = new HashMap<String, Object>();
+				aType.cachedOnes = new ConcurrentHashMap<String, Object>();
 			}
 		}
 	}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.comp;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.file.FileManager;
+
+/**
+ * watches the component folder, and reloads cached components as their
+ * resources are modified. Reload happens on the watcher thread, and the new
+ * component replaces the cached one only after it is got ready. Cached
+ * components that depend on it are removed from cache, and are loaded again
+ * when they are required next.
+ *
+ * Components that are pre-loaded, like data types and messages, are not
+ * reloaded.
+ *
+ * @author simplity.org
+ *
+ */
+public class ComponentWatcher implements Runnable {
+	/*
+	 * editors save a file with more than one event. We wait for the events to
+	 * settle down before reloading
+	 */
+	private static final long SETTLE_MILLIS = 500;
+	private static final char FOLDER_CHAR = '/';
+
+	private static ComponentWatcher instance;
+
+	private final Path rootPath;
+	private final WatchService watchService;
+	private final Map<WatchKey, Path> folders = new HashMap<WatchKey, Path>();
+	private volatile boolean stopped;
+
+	/**
+	 * start watching component folder for changes. Components are cached, and
+	 * dependencies are tracked from now on. Must be called before components
+	 * are loaded.
+	 */
+	public static synchronized void start() {
+		if (instance != null) {
+			Tracer.trace("Component watcher is already running.");
+			return;
+		}
+		String folder = FileManager
+				.getRealPath(ComponentType.getComponentFolder());
+		if (folder == null) {
+			Tracer.trace("Component folder "
+					+ ComponentType.getComponentFolder()
+					+ " is not on a file system, and hence changes to components can not be watched.");
+			return;
+		}
+		try {
+			instance = new ComponentWatcher(Paths.get(folder));
+		} catch (IOException e) {
+			throw new ApplicationError(e, "Unable to watch component folder "
+					+ folder);
+		}
+		ComponentType.trackDependencies(true);
+		Thread thread = new Thread(instance, "simplity-component-watcher");
+		thread.setDaemon(true);
+		thread.start();
+		Tracer.trace("Watching " + folder + " for changes to components.");
+	}
+
+	/**
+	 * stop watching
+	 */
+	public static synchronized void stop() {
+		if (instance == null) {
+			return;
+		}
+		instance.stopped = true;
+		try {
+			instance.watchService.close();
+		} catch (IOException e) {
+			//
+		}
+		instance = null;
+		ComponentType.trackDependencies(false);
+	}
+
+	private ComponentWatcher(Path rootPath) throws IOException {
+		this.rootPath = rootPath;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.registerAll(rootPath);
+	}
+
+	/**
+	 * register this folder and all its sub-folders with the watch service
+	 */
+	private void registerAll(Path start) throws IOException {
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir,
+					BasicFileAttributes attrs) throws IOException {
+				WatchKey key = dir.register(ComponentWatcher.this.watchService,
+						ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+				ComponentWatcher.this.folders.put(key, dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Override
+	public void run() {
+		while (this.stopped == false) {
+			try {
+				Set<Path> changedFiles = new LinkedHashSet<Path>();
+				WatchKey key = this.watchService.take();
+				/*
+				 * collect all changes till they settle down
+				 */
+				while (key != null) {
+					this.collectChanges(key, changedFiles);
+					key = this.watchService.poll(SETTLE_MILLIS,
+							TimeUnit.MILLISECONDS);
+				}
+				/*
+				 * a file that fails to load should not stop others from
+				 * being reloaded
+				 */
+				for (Path file : changedFiles) {
+					try {
+						this.fileChanged(file);
+					} catch (Exception e) {
+						Tracer.trace(e, "Error while reloading component from "
+								+ file);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (Exception e) {
+				if (this.stopped) {
+					return;
+				}
+				Tracer.trace(e, "Error while reloading changed components");
+			}
+		}
+	}
+
+	private void collectChanges(WatchKey key, Set<Path> changedFiles)
+			throws IOException {
+		Path folder = this.folders.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW || folder == null) {
+				Tracer.trace("Too many changes in component folder. Some of them may not have been reloaded.");
+				continue;
+			}
+			Path file = folder.resolve((Path) event.context());
+			if (event.kind() == ENTRY_CREATE && Files.isDirectory(file)) {
+				this.registerAll(file);
+				continue;
+			}
+			changedFiles.add(file);
+		}
+		if (key.reset() == false) {
+			this.folders.remove(key);
+		}
+	}
+
+	/**
+	 * reload or invalidate the component saved in this file
+	 */
+	private void fileChanged(Path file) {
+		String resName = this.rootPath.relativize(file).toString()
+				.replace(file.getFileSystem().getSeparator().charAt(0),
+						FOLDER_CHAR);
+		ComponentType compType = ComponentType.getTypeOfResource(resName);
+		if (compType == null) {
+			Tracer.trace(resName
+					+ " is modified, but it is not a component that can be reloaded.");
+			return;
+		}
+		String compName = compType.getNameOfResource(resName);
+		if (Files.exists(file)) {
+			compType.reloadComponent(compName);
+		} else {
+			compType.invalidateComponent(compName);
+			Tracer.trace(compType + " " + compName
+					+ " is deleted, and is removed from cache.");
+		}
+	}
+}
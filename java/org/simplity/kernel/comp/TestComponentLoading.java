@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.comp;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.simplity.kernel.Tracer;
+import org.simplity.service.AbstractService;
+import org.simplity.service.ServiceData;
+
+/**
+ * internal class to test that a component that is asked for while it is
+ * being loaded does not wait for ever. To be re-factored into a Maven
+ * structure and put into test folder
+ *
+ * @author simplity.org
+ *
+ */
+class TestComponentLoading {
+	private static final String SELF = "test.self";
+	private static final String FIRST = "test.first";
+	private static final String SECOND = "test.second";
+	private static final long MAX_WAIT_MILLIS = 5000;
+
+	static final AtomicInteger nbrSelfReady = new AtomicInteger();
+	static final AtomicInteger nbrFirstReady = new AtomicInteger();
+	static final AtomicInteger nbrSecondReady = new AtomicInteger();
+	static final CountDownLatch bothLoading = new CountDownLatch(2);
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		ComponentType.startCaching();
+		ComponentType.serviceClasses.put(SELF, Self.class.getName());
+		ComponentType.serviceClasses.put(FIRST, First.class.getName());
+		ComponentType.serviceClasses.put(SECOND, Second.class.getName());
+		int nbrIssues = 0;
+		nbrIssues += testSameThread();
+		nbrIssues += testTwoThreads();
+		if (nbrIssues == 0) {
+			Tracer.trace("Congratulations!!!");
+		} else {
+			Tracer.trace("Oooops! You have to fix " + nbrIssues
+					+ " issues.");
+		}
+		/*
+		 * threads that are stuck should not keep us alive
+		 */
+		System.exit(0);
+	}
+
+	/**
+	 * component asks for itself while it is getting ready
+	 */
+	private static int testSameThread() {
+		Thread thread = load(SELF);
+		if (finished(thread)) {
+			return 0;
+		}
+		Tracer.trace(SELF
+				+ " waits for ever for its own load when it asks for itself.");
+		return 1;
+	}
+
+	/**
+	 * two components ask for each other while they are being loaded by two
+	 * threads
+	 */
+	private static int testTwoThreads() {
+		Thread first = load(FIRST);
+		Thread second = load(SECOND);
+		if (finished(first) && finished(second)) {
+			return 0;
+		}
+		Tracer.trace(FIRST + " and " + SECOND
+				+ " wait for each other for ever when loaded by two threads.");
+		return 1;
+	}
+
+	private static Thread load(final String compName) {
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				ComponentType.SERVICE.getComponentOrNull(compName);
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private static boolean finished(Thread thread) {
+		try {
+			thread.join(MAX_WAIT_MILLIS);
+		} catch (InterruptedException e) {
+			return false;
+		}
+		return thread.isAlive() == false;
+	}
+
+	/**
+	 * asks for itself the first time it gets ready
+	 */
+	public static class Self extends TestService {
+		@Override
+		public void getReady() {
+			if (nbrSelfReady.getAndIncrement() == 0) {
+				ComponentType.SERVICE.getComponentOrNull(SELF);
+			}
+		}
+	}
+
+	/**
+	 * asks for the second one after it has started loading
+	 */
+	public static class First extends TestService {
+		@Override
+		public void getReady() {
+			if (nbrFirstReady.getAndIncrement() == 0) {
+				waitForOther();
+				ComponentType.SERVICE.getComponentOrNull(SECOND);
+			}
+		}
+	}
+
+	/**
+	 * asks for the first one after it has started loading
+	 */
+	public static class Second extends TestService {
+		@Override
+		public void getReady() {
+			if (nbrSecondReady.getAndIncrement() == 0) {
+				waitForOther();
+				ComponentType.SERVICE.getComponentOrNull(FIRST);
+			}
+		}
+	}
+
+	static void waitForOther() {
+		bothLoading.countDown();
+		try {
+			bothLoading.await(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			//
+		}
+	}
+
+	/**
+	 * service that does nothing
+	 */
+	public abstract static class TestService extends AbstractService {
+		@Override
+		public ServiceData respond(ServiceData inputData) {
+			return inputData;
+		}
+	}
+}
@@ -0,0 +1,1034 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.data;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.dm.Field;
+import org.simplity.kernel.util.ArrayUtil;
+import org.simplity.kernel.value.BooleanValue;
+import org.simplity.kernel.value.DateValue;
+import org.simplity.kernel.value.DecimalValue;
+import org.simplity.kernel.value.IntegerValue;
+import org.simplity.kernel.value.InvalidValueException;
+import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
+
+/**
+ * a sheet that keeps its data column-wise in primitive arrays. integer and
+ * date columns are kept as long[], decimal as double[] and boolean as
+ * boolean[]. Text columns are dictionary-encoded, as most text columns in a
+ * list have a small number of distinct values. Nulls are tracked with a bit
+ * set per column.
+ *
+ * Value objects are created only when a cell is accessed with the Value based
+ * API of DataSheet. Use primitive accessors like getLong(colIdx, rowIdx) to
+ * avoid that. Note that getRow() and getAllRows() return copies, and hence
+ * changing them does not change the sheet.
+ *
+ * @author simplity.org
+ *
+ */
+public class ColumnarSheet implements DataSheet {
+
+	private static final char TAB = '\t';
+	private static final char NL = '\n';
+	private static final int INITIAL_CAPACITY = 16;
+
+	private String[] columnNames;
+	private ValueType[] columnValueTypes;
+	private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+	private Column[] columns;
+	private int nbrRows;
+	private int capacity = INITIAL_CAPACITY;
+
+	/**
+	 * create an empty sheet
+	 *
+	 * @param columnNames
+	 * @param columnValueTypes
+	 */
+	public ColumnarSheet(String[] columnNames, ValueType[] columnValueTypes) {
+		int n = columnNames.length;
+		this.columnNames = columnNames;
+		this.columnValueTypes = columnValueTypes;
+		this.columns = new Column[n];
+		for (int i = 0; i < n; i++) {
+			String columnName = columnNames[i];
+			if (this.columnIndexes.containsKey(columnName)) {
+				throw new ApplicationError(
+						"Column names can not be duplicate in a data sheet.");
+			}
+			this.columnIndexes.put(columnName, new Integer(i));
+			this.columns[i] = newColumn(columnValueTypes[i], this.capacity);
+		}
+	}
+
+	/**
+	 * @param fields
+	 *            to be used as columns for the data sheet
+	 */
+	public ColumnarSheet(Field[] fields) {
+		this(getNames(fields), getTypes(fields));
+	}
+
+	static String[] getNames(Field[] fields) {
+		String[] names = new String[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			names[i] = fields[i].getName();
+		}
+		return names;
+	}
+
+	static ValueType[] getTypes(Field[] fields) {
+		ValueType[] types = new ValueType[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			types[i] = fields[i].getValueType();
+		}
+		return types;
+	}
+
+	@Override
+	public String[][] getRawData() {
+		int nbrCols = this.columns.length;
+		String[][] rawData = new String[this.nbrRows + 1][];
+		rawData[0] = this.columnNames;
+		for (int i = 0; i < this.nbrRows; i++) {
+			String[] texts = new String[nbrCols];
+			for (int j = 0; j < nbrCols; j++) {
+				texts[j] = this.columns[j].get(i).toString();
+			}
+			rawData[i + 1] = texts;
+		}
+		return rawData;
+	}
+
+	@Override
+	public int length() {
+		return this.nbrRows;
+	}
+
+	@Override
+	public int width() {
+		return this.columnNames.length;
+	}
+
+	@Override
+	public String[] getColumnNames() {
+		return this.columnNames;
+	}
+
+	@Override
+	public ValueType[] getValueTypes() {
+		return this.columnValueTypes;
+	}
+
+	/**
+	 * returned row is a copy. Use setColumnValue() to change a value in the
+	 * sheet
+	 */
+	@Override
+	public Value[] getRow(int zeroBasedRowNumber) {
+		this.checkRow(zeroBasedRowNumber);
+		Value[] row = new Value[this.columns.length];
+		for (int j = 0; j < row.length; j++) {
+			row[j] = this.columns[j].get(zeroBasedRowNumber);
+		}
+		return row;
+	}
+
+	/**
+	 * rows are created on each call, and changing them does not change this
+	 * sheet
+	 */
+	@Override
+	public List<Value[]> getAllRows() {
+		List<Value[]> rows = new ArrayList<Value[]>(this.nbrRows);
+		for (int i = 0; i < this.nbrRows; i++) {
+			rows.add(this.getRow(i));
+		}
+		return rows;
+	}
+
+	@Override
+	public Value getColumnValue(String columnName, int zeroBasedRowNumber) {
+		Integer idx = this.columnIndexes.get(columnName);
+		if (idx == null || zeroBasedRowNumber < 0
+				|| zeroBasedRowNumber >= this.nbrRows) {
+			Tracer.trace("Request to get value for column" + columnName
+					+ " and index " + zeroBasedRowNumber
+					+ " is not valid. going to return null");
+			return null;
+		}
+		return this.columns[idx.intValue()].get(zeroBasedRowNumber);
+	}
+
+	@Override
+	public void setColumnValue(String columnName, int zeroBasedRowNumber,
+			Value value) {
+		Integer idx = this.columnIndexes.get(columnName);
+		if (idx == null || zeroBasedRowNumber < 0
+				|| zeroBasedRowNumber >= this.nbrRows) {
+			throw new ApplicationError("Request to set value  for column"
+					+ columnName + " and index " + zeroBasedRowNumber
+					+ " is not valid.");
+		}
+		this.columns[idx.intValue()].set(zeroBasedRowNumber, value);
+	}
+
+	@Override
+	public Iterator<FieldsInterface> iterator() {
+		return new DataRows(this);
+	}
+
+	@Override
+	public Value getValue(String fieldName) {
+		return this.getColumnValue(fieldName, 0);
+	}
+
+	@Override
+	public void setValue(String fieldName, Value value) {
+		this.setColumnValue(fieldName, 0, value);
+	}
+
+	@Override
+	public boolean hasValue(String fieldName) {
+		return this.getColumnValue(fieldName, 0) != null;
+	}
+
+	/**
+	 * we do not remove column values
+	 */
+	@Override
+	public Value removeValue(String fieldName) {
+		return null;
+	}
+
+	@Override
+	public long getLongValue(String fieldName) {
+		return this.getLongValue(fieldName, 0);
+	}
+
+	@Override
+	public double getDoubleValue(String fieldName) {
+		return this.getDoubleValue(fieldName, 0);
+	}
+
+	@Override
+	public boolean getBooleanValue(String fieldName) {
+		return this.getBooleanValue(fieldName, 0);
+	}
+
+	@Override
+	public void setLongValue(String fieldName, long value) {
+		this.setLongValue(fieldName, 0, value);
+	}
+
+	@Override
+	public void setDoubleValue(String fieldName, double value) {
+		this.setDoubleValue(fieldName, 0, value);
+	}
+
+	@Override
+	public void setBooleanValue(String fieldName, boolean value) {
+		this.setBooleanValue(fieldName, 0, value);
+	}
+
+	/*
+	 * primitive accessors by column name, used by the rows of this sheet as
+	 * well. Columns that do not store the primitive, and null cells, fall
+	 * back to the value based accessors
+	 */
+	long getLongValue(String columnName, int rowIdx) {
+		Column column = this.getPrimitiveColumn(columnName, rowIdx,
+				false, ValueType.INTEGER, ValueType.DECIMAL);
+		if (column == null) {
+			return Value.getLongValue(this.getColumnValue(columnName, rowIdx));
+		}
+		return column.getLong(rowIdx);
+	}
+
+	double getDoubleValue(String columnName, int rowIdx) {
+		Column column = this.getPrimitiveColumn(columnName, rowIdx,
+				false, ValueType.INTEGER, ValueType.DECIMAL);
+		if (column == null) {
+			return Value.getDoubleValue(this.getColumnValue(columnName, rowIdx));
+		}
+		return column.getDouble(rowIdx);
+	}
+
+	boolean getBooleanValue(String columnName, int rowIdx) {
+		Column column = this.getPrimitiveColumn(columnName, rowIdx,
+				false, ValueType.BOOLEAN, ValueType.BOOLEAN);
+		if (column == null) {
+			return Value
+					.getBooleanValue(this.getColumnValue(columnName, rowIdx));
+		}
+		return column.getBoolean(rowIdx);
+	}
+
+	void setLongValue(String columnName, int rowIdx, long value) {
+		Column column = this.getPrimitiveColumn(columnName, rowIdx,
+				true, ValueType.INTEGER, ValueType.DECIMAL);
+		if (column == null) {
+			this.setColumnValue(columnName, rowIdx,
+					Value.newIntegerValue(value));
+		} else {
+			column.setLong(rowIdx, value);
+		}
+	}
+
+	void setDoubleValue(String columnName, int rowIdx, double value) {
+		Column column = this.getPrimitiveColumn(columnName, rowIdx,
+				true, ValueType.INTEGER, ValueType.DECIMAL);
+		if (column == null) {
+			this.setColumnValue(columnName, rowIdx,
+					Value.newDecimalValue(value));
+		} else {
+			column.setDouble(rowIdx, value);
+		}
+	}
+
+	void setBooleanValue(String columnName, int rowIdx, boolean value) {
+		Column column = this.getPrimitiveColumn(columnName, rowIdx,
+				true, ValueType.BOOLEAN, ValueType.BOOLEAN);
+		if (column == null) {
+			this.setColumnValue(columnName, rowIdx,
+					Value.newBooleanValue(value));
+		} else {
+			column.setBoolean(rowIdx, value);
+		}
+	}
+
+	/**
+	 * column of one of the two types, that has a row at rowIdx. For reading,
+	 * the cell should be non-null as well. null if the column is not suitable
+	 */
+	private Column getPrimitiveColumn(String columnName, int rowIdx,
+			boolean forUpdate, ValueType type1, ValueType type2) {
+		Integer idx = this.columnIndexes.get(columnName);
+		if (idx == null || rowIdx < 0 || rowIdx >= this.nbrRows) {
+			return null;
+		}
+		Column column = this.columns[idx.intValue()];
+		if (column.valueType != type1 && column.valueType != type2) {
+			return null;
+		}
+		if (forUpdate == false && column.nulls.get(rowIdx)) {
+			return null;
+		}
+		return column;
+	}
+
+	@Override
+	public void addRow(Value[] row) {
+		int idx = this.addEmptyRow();
+		int n = Math.min(row.length, this.columns.length);
+		for (int j = 0; j < n; j++) {
+			this.columns[j].set(idx, row[j]);
+		}
+	}
+
+	@Override
+	public Value[] getColumnValues(String columnName) {
+		Integer n = this.columnIndexes.get(columnName);
+		if (n == null) {
+			Tracer.trace(columnName
+					+ " is not a column in the sheet and hence null values are returned for getColumnValues()");
+			return null;
+		}
+		Column column = this.columns[n.intValue()];
+		Value[] values = new Value[this.nbrRows];
+		for (int i = 0; i < this.nbrRows; i++) {
+			values[i] = column.get(i);
+		}
+		return values;
+	}
+
+	@Override
+	public void addColumn(String columnName, ValueType valueType,
+			Value[] values) {
+		if (values != null && values.length != this.nbrRows) {
+			throw new ApplicationError("column " + columnName
+					+ " is being added with " + values.length
+					+ " values but the sheet has " + this.nbrRows + " rows.");
+		}
+		Column column = newColumn(valueType, this.capacity);
+		column.setAllNull(this.nbrRows);
+		if (values != null) {
+			for (int i = 0; i < values.length; i++) {
+				column.set(i, values[i]);
+			}
+		}
+		Integer key = this.columnIndexes.get(columnName);
+		if (key != null) {
+			int idx = key.intValue();
+			this.columnValueTypes[idx] = valueType;
+			this.columns[idx] = column;
+			return;
+		}
+		int idx = this.columnNames.length;
+		this.columnIndexes.put(columnName, new Integer(idx));
+		this.columnNames = ArrayUtil.extend(this.columnNames, columnName);
+		this.columnValueTypes = ArrayUtil.extend(this.columnValueTypes,
+				valueType);
+		Column[] newColumns = new Column[idx + 1];
+		System.arraycopy(this.columns, 0, newColumns, 0, idx);
+		newColumns[idx] = column;
+		this.columns = newColumns;
+	}
+
+	@Override
+	public void addColumn(String columnName, Value value) {
+		int n = this.nbrRows;
+		Value[] values = new Value[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = value;
+		}
+		this.addColumn(columnName, value.getValueType(), values);
+	}
+
+	@Override
+	public Set<Entry<String, Value>> getAllFields() {
+		return this.getAllFields(0);
+	}
+
+	@Override
+	public Set<Entry<String, Value>> getAllFields(int rowIdx) {
+		if (rowIdx >= this.nbrRows) {
+			throw new ApplicationError(
+					"A request is received to fetch a non-existing row in a data sheet");
+		}
+		Map<String, Value> fields = new HashMap<String, Value>(
+				this.columnNames.length);
+		int i = 0;
+		for (String fieldName : this.columnNames) {
+			fields.put(fieldName, this.columns[i++].get(rowIdx));
+		}
+		return fields.entrySet();
+	}
+
+	@Override
+	public void trace() {
+		Tracer.trace("(Columnar Sheet) has " + this.nbrRows + " rows and "
+				+ this.width() + " columns.");
+		StringBuilder sbf = new StringBuilder("Header ");
+		for (String nam : this.columnNames) {
+			sbf.append(TAB).append(nam);
+		}
+		sbf.append(NL);
+		for (int i = 0; i < this.nbrRows; i++) {
+			sbf.append(NL).append("Row ").append(i + 1).append(" :");
+			for (Column column : this.columns) {
+				sbf.append(TAB).append(column.get(i));
+			}
+		}
+		Tracer.trace(sbf.toString());
+	}
+
+	@Override
+	public int appendRows(DataSheet sheet) {
+		if (sheet == null) {
+			return 0;
+		}
+		int n = sheet.length();
+		if (n == 0) {
+			return 0;
+		}
+		ValueType[] fromTypes = sheet.getValueTypes();
+		ValueType[] toTypes = this.columnValueTypes;
+		int nbrCols = fromTypes.length;
+		if (nbrCols != toTypes.length) {
+			throw new ApplicationError(
+					"AppendRows is not possible because from sheet has "
+							+ nbrCols + " columns while to sheet has "
+							+ toTypes.length + " columns");
+		}
+		int idx = 0;
+		for (ValueType toType : toTypes) {
+			if (toType.equals(fromTypes[idx]) == false) {
+				throw new ApplicationError(
+						"AppendRows is not possible because from and to sheets have "
+								+ nbrCols + " columns each, but column "
+								+ (++idx) + " are of different type.");
+			}
+			idx++;
+		}
+		for (int i = 0; i < n; i++) {
+			this.addRow(sheet.getRow(i));
+		}
+		return n;
+	}
+
+	@Override
+	public int getColIdx(String columnName) {
+		Integer idx = this.columnIndexes.get(columnName);
+		if (idx == null) {
+			Tracer.trace("We did not find column " + columnName
+					+ " in this columnar sheet");
+			return -1;
+		}
+		return idx.intValue();
+	}
+
+	/**
+	 * add a row with all its columns as null. Use primitive setters to set
+	 * values
+	 *
+	 * @return index of the added row
+	 */
+	public int addEmptyRow() {
+		int idx = this.nbrRows;
+		if (idx == this.capacity) {
+			this.capacity = this.capacity * 2;
+			for (Column column : this.columns) {
+				column.grow(this.capacity);
+			}
+		}
+		for (Column column : this.columns) {
+			column.nulls.set(idx);
+		}
+		this.nbrRows++;
+		return idx;
+	}
+
+	/**
+	 * @param colIdx
+	 * @param rowIdx
+	 * @return value of this cell. Unknown value if it is null
+	 */
+	public Value getValue(int colIdx, int rowIdx) {
+		return this.columns[colIdx].get(rowIdx);
+	}
+
+	/**
+	 * @param colIdx
+	 * @param rowIdx
+	 * @param value
+	 *            null or unknown value sets the cell to null
+	 */
+	public void setValue(int colIdx, int rowIdx, Value value) {
+		this.columns[colIdx].set(rowIdx, value);
+	}
+
+	/**
+	 * @param colIdx
+	 * @param rowIdx
+	 * @return true if this cell has no value
+	 */
+	@Override
+	public boolean isNull(int colIdx, int rowIdx) {
+		return this.columns[colIdx].nulls.get(rowIdx);
+	}
+
+	/**
+	 * @param colIdx
+	 *            an integral, decimal or date column. millis for date
+	 * @param rowIdx
+	 * @return value of this cell. 0 if it is null
+	 */
+	@Override
+	public long getLong(int colIdx, int rowIdx) {
+		Column column = this.columns[colIdx];
+		if (column.nulls.get(rowIdx)) {
+			return 0;
+		}
+		return column.getLong(rowIdx);
+	}
+
+	/**
+	 * @param colIdx
+	 *            an integral or decimal column
+	 * @param rowIdx
+	 * @return value of this cell. 0 if it is null
+	 */
+	@Override
+	public double getDouble(int colIdx, int rowIdx) {
+		Column column = this.columns[colIdx];
+		if (column.nulls.get(rowIdx)) {
+			return 0;
+		}
+		return column.getDouble(rowIdx);
+	}
+
+	/**
+	 * @param colIdx
+	 *            a boolean column
+	 * @param rowIdx
+	 * @return value of this cell. false if it is null
+	 */
+	@Override
+	public boolean getBoolean(int colIdx, int rowIdx) {
+		Column column = this.columns[colIdx];
+		if (column.nulls.get(rowIdx)) {
+			return false;
+		}
+		return column.getBoolean(rowIdx);
+	}
+
+	/**
+	 * @param colIdx
+	 *            any column
+	 * @param rowIdx
+	 * @return text value of this cell. null if it is null
+	 */
+	public String getText(int colIdx, int rowIdx) {
+		Column column = this.columns[colIdx];
+		if (column.nulls.get(rowIdx)) {
+			return null;
+		}
+		return column.getText(rowIdx);
+	}
+
+	/**
+	 * @param colIdx
+	 * @param rowIdx
+	 */
+	public void setNull(int colIdx, int rowIdx) {
+		this.columns[colIdx].nulls.set(rowIdx);
+	}
+
+	/**
+	 * @param colIdx
+	 *            an integral, decimal or date column. millis for date
+	 * @param rowIdx
+	 * @param value
+	 */
+	@Override
+	public void setLong(int colIdx, int rowIdx, long value) {
+		this.columns[colIdx].setLong(rowIdx, value);
+	}
+
+	/**
+	 * @param colIdx
+	 *            an integral or decimal column
+	 * @param rowIdx
+	 * @param value
+	 */
+	@Override
+	public void setDouble(int colIdx, int rowIdx, double value) {
+		this.columns[colIdx].setDouble(rowIdx, value);
+	}
+
+	/**
+	 * @param colIdx
+	 *            a boolean column
+	 * @param rowIdx
+	 * @param value
+	 */
+	@Override
+	public void setBoolean(int colIdx, int rowIdx, boolean value) {
+		this.columns[colIdx].setBoolean(rowIdx, value);
+	}
+
+	/**
+	 * @param colIdx
+	 *            a text column
+	 * @param rowIdx
+	 * @param value
+	 *            null sets the cell to null
+	 */
+	public void setText(int colIdx, int rowIdx, String value) {
+		if (value == null) {
+			this.columns[colIdx].nulls.set(rowIdx);
+			return;
+		}
+		this.columns[colIdx].setText(rowIdx, value);
+	}
+
+	private void checkRow(int rowIdx) {
+		if (rowIdx < 0 || rowIdx >= this.nbrRows) {
+			throw new ApplicationError("Row " + rowIdx
+					+ " is not valid for a columnar sheet with " + this.nbrRows
+					+ " rows.");
+		}
+	}
+
+	private static Column newColumn(ValueType valueType, int capacity) {
+		switch (valueType) {
+		case INTEGER:
+		case DATE:
+			return new LongColumn(valueType, capacity);
+		case DECIMAL:
+			return new DoubleColumn(capacity);
+		case BOOLEAN:
+			return new BooleanColumn(capacity);
+		case TEXT:
+			return new TextColumn(capacity);
+		default:
+			return new ValueColumn(valueType, capacity);
+		}
+	}
+
+	/**
+	 * storage for a column. Primitive accessors do not check for null. Caller
+	 * is to check that with nulls
+	 */
+	private static abstract class Column {
+		final ValueType valueType;
+		final BitSet nulls = new BitSet();
+
+		Column(ValueType valueType) {
+			this.valueType = valueType;
+		}
+
+		/**
+		 * @param rowIdx
+		 * @return value, or unknown value if it is null
+		 */
+		Value get(int rowIdx) {
+			if (this.nulls.get(rowIdx)) {
+				return Value.newUnknownValue(this.valueType);
+			}
+			return this.getNonNull(rowIdx);
+		}
+
+		/**
+		 * @param rowIdx
+		 * @param value
+		 *            null or unknown value sets the cell to null
+		 */
+		void set(int rowIdx, Value value) {
+			if (Value.isNull(value)) {
+				this.nulls.set(rowIdx);
+				return;
+			}
+			try {
+				this.setNonNull(rowIdx, value);
+			} catch (InvalidValueException e) {
+				/*
+				 * let us try its text value before giving up
+				 */
+				Value val = Value.parseValue(value.toText(), this.valueType);
+				if (val == null) {
+					throw new ApplicationError(
+							value + " is not a valid value for a column of type "
+									+ this.valueType);
+				}
+				try {
+					this.setNonNull(rowIdx, val);
+				} catch (InvalidValueException e1) {
+					throw new ApplicationError(e1, value
+							+ " is not a valid value for a column of type "
+							+ this.valueType);
+				}
+			}
+		}
+
+		void setAllNull(int nbrRows) {
+			this.nulls.set(0, nbrRows);
+		}
+
+		abstract Value getNonNull(int rowIdx);
+
+		abstract void setNonNull(int rowIdx, Value value)
+				throws InvalidValueException;
+
+		abstract void grow(int capacity);
+
+		String getText(int rowIdx) {
+			return this.getNonNull(rowIdx).toText();
+		}
+
+		long getLong(int rowIdx) {
+			throw this.notApplicable("getLong()");
+		}
+
+		double getDouble(int rowIdx) {
+			throw this.notApplicable("getDouble()");
+		}
+
+		boolean getBoolean(int rowIdx) {
+			throw this.notApplicable("getBoolean()");
+		}
+
+		void setLong(int rowIdx, long value) {
+			throw this.notApplicable("setLong()");
+		}
+
+		void setDouble(int rowIdx, double value) {
+			throw this.notApplicable("setDouble()");
+		}
+
+		void setBoolean(int rowIdx, boolean value) {
+			throw this.notApplicable("setBoolean()");
+		}
+
+		void setText(int rowIdx, String value) {
+			throw this.notApplicable("setText()");
+		}
+
+		ApplicationError notApplicable(String method) {
+			return new ApplicationError(method
+					+ " is not valid for a column of type " + this.valueType);
+		}
+	}
+
+	/**
+	 * integer or date
+	 */
+	private static class LongColumn extends Column {
+		private long[] values;
+
+		LongColumn(ValueType valueType, int capacity) {
+			super(valueType);
+			this.values = new long[capacity];
+		}
+
+		@Override
+		Value getNonNull(int rowIdx) {
+			if (this.valueType == ValueType.DATE) {
+				return Value.newDateValue(this.values[rowIdx]);
+			}
+			return Value.newIntegerValue(this.values[rowIdx]);
+		}
+
+		@Override
+		void setNonNull(int rowIdx, Value value) throws InvalidValueException {
+			if (this.valueType == ValueType.DATE) {
+				if (value instanceof DateValue) {
+					this.setLong(rowIdx, ((DateValue) value).getDate());
+				} else {
+					this.setLong(rowIdx, value.toDate().getTime());
+				}
+			} else if (value instanceof IntegerValue) {
+				this.setLong(rowIdx, ((IntegerValue) value).getLong());
+			} else {
+				this.setLong(rowIdx, value.toInteger());
+			}
+		}
+
+		@Override
+		void grow(int capacity) {
+			long[] arr = new long[capacity];
+			System.arraycopy(this.values, 0, arr, 0, this.values.length);
+			this.values = arr;
+		}
+
+		@Override
+		long getLong(int rowIdx) {
+			return this.values[rowIdx];
+		}
+
+		@Override
+		double getDouble(int rowIdx) {
+			return this.values[rowIdx];
+		}
+
+		@Override
+		void setLong(int rowIdx, long value) {
+			this.values[rowIdx] = value;
+			this.nulls.clear(rowIdx);
+		}
+
+		@Override
+		void setDouble(int rowIdx, double value) {
+			this.setLong(rowIdx, Math.round(value));
+		}
+	}
+
+	/**
+	 * decimal
+	 */
+	private static class DoubleColumn extends Column {
+		private double[] values;
+
+		DoubleColumn(int capacity) {
+			super(ValueType.DECIMAL);
+			this.values = new double[capacity];
+		}
+
+		@Override
+		Value getNonNull(int rowIdx) {
+			return Value.newDecimalValue(this.values[rowIdx]);
+		}
+
+		@Override
+		void setNonNull(int rowIdx, Value value) throws InvalidValueException {
+			if (value instanceof DecimalValue) {
+				this.setDouble(rowIdx, ((DecimalValue) value).getDouble());
+			} else {
+				this.setDouble(rowIdx, value.toDecimal());
+			}
+		}
+
+		@Override
+		void grow(int capacity) {
+			double[] arr = new double[capacity];
+			System.arraycopy(this.values, 0, arr, 0, this.values.length);
+			this.values = arr;
+		}
+
+		@Override
+		long getLong(int rowIdx) {
+			return Math.round(this.values[rowIdx]);
+		}
+
+		@Override
+		double getDouble(int rowIdx) {
+			return this.values[rowIdx];
+		}
+
+		@Override
+		void setLong(int rowIdx, long value) {
+			this.setDouble(rowIdx, value);
+		}
+
+		@Override
+		void setDouble(int rowIdx, double value) {
+			this.values[rowIdx] = value;
+			this.nulls.clear(rowIdx);
+		}
+	}
+
+	/**
+	 * boolean
+	 */
+	private static class BooleanColumn extends Column {
+		private boolean[] values;
+
+		BooleanColumn(int capacity) {
+			super(ValueType.BOOLEAN);
+			this.values = new boolean[capacity];
+		}
+
+		@Override
+		Value getNonNull(int rowIdx) {
+			return this.values[rowIdx] ? Value.VALUE_TRUE : Value.VALUE_FALSE;
+		}
+
+		@Override
+		void setNonNull(int rowIdx, Value value) throws InvalidValueException {
+			if (value instanceof BooleanValue) {
+				this.setBoolean(rowIdx, ((BooleanValue) value).getBoolean());
+			} else {
+				this.setBoolean(rowIdx, value.toBoolean());
+			}
+		}
+
+		@Override
+		void grow(int capacity) {
+			boolean[] arr = new boolean[capacity];
+			System.arraycopy(this.values, 0, arr, 0, this.values.length);
+			this.values = arr;
+		}
+
+		@Override
+		boolean getBoolean(int rowIdx) {
+			return this.values[rowIdx];
+		}
+
+		@Override
+		void setBoolean(int rowIdx, boolean value) {
+			this.values[rowIdx] = value;
+			this.nulls.clear(rowIdx);
+		}
+	}
+
+	/**
+	 * text, with each distinct text stored once, and rows referring to it by
+	 * its code
+	 */
+	private static class TextColumn extends Column {
+		private int[] codes;
+		private final List<String> texts = new ArrayList<String>();
+		private final Map<String, Integer> textCodes = new HashMap<String, Integer>();
+
+		TextColumn(int capacity) {
+			super(ValueType.TEXT);
+			this.codes = new int[capacity];
+		}
+
+		@Override
+		Value getNonNull(int rowIdx) {
+			return Value.newTextValue(this.texts.get(this.codes[rowIdx]));
+		}
+
+		@Override
+		void setNonNull(int rowIdx, Value value) {
+			this.setText(rowIdx, value.toText());
+		}
+
+		@Override
+		void grow(int capacity) {
+			int[] arr = new int[capacity];
+			System.arraycopy(this.codes, 0, arr, 0, this.codes.length);
+			this.codes = arr;
+		}
+
+		@Override
+		String getText(int rowIdx) {
+			return this.texts.get(this.codes[rowIdx]);
+		}
+
+		@Override
+		void setText(int rowIdx, String value) {
+			Integer code = this.textCodes.get(value);
+			if (code == null) {
+				code = new Integer(this.texts.size());
+				this.texts.add(value);
+				this.textCodes.put(value, code);
+			}
+			this.codes[rowIdx] = code.intValue();
+			this.nulls.clear(rowIdx);
+		}
+	}
+
+	/**
+	 * value types that are not worth a primitive representation
+	 */
+	private static class ValueColumn extends Column {
+		private Value[] values;
+
+		ValueColumn(ValueType valueType, int capacity) {
+			super(valueType);
+			this.values = new Value[capacity];
+		}
+
+		@Override
+		Value getNonNull(int rowIdx) {
+			return this.values[rowIdx];
+		}
+
+		@Override
+		void setNonNull(int rowIdx, Value value) {
+			this.values[rowIdx] = value;
+			this.nulls.clear(rowIdx);
+		}
+
+		@Override
+		void grow(int capacity) {
+			Value[] arr = new Value[capacity];
+			System.arraycopy(this.values, 0, arr, 0, this.values.length);
+			this.values = arr;
+		}
+	}
+}
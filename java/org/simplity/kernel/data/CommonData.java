@@ -28,10 +28,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import org.simplity.kernel.ApplicationError;
-import org.simplity.kernel.value.BooleanValue;
 import org.simplity.kernel.value.DateValue;
-import org.simplity.kernel.value.DecimalValue;
-import org.simplity.kernel.value.IntegerValue;
 import org.simplity.kernel.value.Value;
 import org.simplity.kernel.value.ValueType;
 
@@ -52,6 +49,21 @@ public class CommonData implements CommonDataInterface {
 	 */
 	protected final Map<String, Value> allFields = new HashMap<String, Value>();
 
+	/**
+	 * values of fields that have a slot, indexed by their slots. These fields
+	 * are not kept in allFields. Created when the first such field is set.
+	 *
+	 * @see FieldRef
+	 */
+	protected Value[] slotValues;
+
+	/**
+	 * slots that were created after this data was created are not used, and
+	 * those fields are kept in allFields. Otherwise a field that was set
+	 * before its slot was created would be lost.
+	 */
+	private int nbrSlots = FieldRef.getNbrSlots();
+
 	/**
 	 * data sheets. a given data sheet may be either a SingleRowSheet or
 	 * DataSheet
@@ -80,7 +92,7 @@ public class CommonData implements CommonDataInterface {
 		 * it is from a data sheet
 		 */
 		if (nameParts.sheet == null) {
-			return this.allFields.get(fieldName);
+			return this.getFieldValue(fieldName);
 		}
 		if (nameParts.rowIdx == CommonData.NOT_APPLICABLE) {
 			return nameParts.sheet.getValue(nameParts.fieldName);
@@ -97,11 +109,7 @@ public class CommonData implements CommonDataInterface {
 		NameParts nameParts = new NameParts(fieldName);
 
 		if (nameParts.sheet == null) {
-			if (value == null) {
-				this.allFields.remove(fieldName);
-			} else {
-				this.allFields.put(fieldName, value);
-			}
+			this.setFieldValue(fieldName, value);
 			return;
 		}
 
@@ -112,9 +120,9 @@ public class CommonData implements CommonDataInterface {
 		}
 
 		if (value == null) {
-			nameParts.sheet.removeValue(fieldName);
+			nameParts.sheet.removeValue(nameParts.fieldName);
 		} else {
-			nameParts.sheet.setValue(fieldName, value);
+			nameParts.sheet.setValue(nameParts.fieldName, value);
 		}
 	}
 
@@ -128,11 +136,11 @@ public class CommonData implements CommonDataInterface {
 		 * it is from a data sheet
 		 */
 		if (nameParts.sheet == null) {
-			return this.allFields.remove(fieldName);
+			return this.removeFieldValue(fieldName);
 		}
 
 		if (nameParts.rowIdx == CommonData.NOT_APPLICABLE) {
-			return nameParts.sheet.removeValue(fieldName);
+			return nameParts.sheet.removeValue(nameParts.fieldName);
 		}
 
 		Value value = nameParts.sheet.getColumnValue(nameParts.fieldName,
@@ -152,16 +160,157 @@ public class CommonData implements CommonDataInterface {
 		 * it is from a data sheet
 		 */
 		if (nameParts.sheet == null) {
-			return this.allFields.containsKey(fieldName);
+			return this.getFieldValue(fieldName) != null;
 		}
 
 		if (nameParts.rowIdx == CommonData.NOT_APPLICABLE) {
-			return nameParts.sheet.hasValue(fieldName);
+			return nameParts.sheet.hasValue(nameParts.fieldName);
 		}
 		return nameParts.sheet.getColumnValue(nameParts.fieldName,
 				nameParts.rowIdx) != null;
 	}
 
+	@Override
+	public final Value getValue(FieldRef fieldRef) {
+		int slot = fieldRef.getSlot();
+		if (slot != -1) {
+			if (slot >= this.nbrSlots) {
+				return this.allFields.get(fieldRef.getName());
+			}
+			Value[] values = this.slotValues;
+			if (values == null) {
+				return null;
+			}
+			return values[slot];
+		}
+		String sheetName = fieldRef.getSheetName();
+		DataSheet sheet = this.getSheetForField(sheetName, fieldRef.getName());
+		int rowIdx = this.getCurrentRow(sheetName, sheet);
+		if (rowIdx == CommonData.NOT_APPLICABLE) {
+			return sheet.getValue(fieldRef.getFieldName());
+		}
+		return sheet.getColumnValue(fieldRef.getFieldName(), rowIdx);
+	}
+
+	@Override
+	public final void setValue(FieldRef fieldRef, Value value) {
+		int slot = fieldRef.getSlot();
+		if (slot != -1) {
+			if (slot >= this.nbrSlots) {
+				this.setFieldValue(fieldRef.getName(), value);
+			} else {
+				this.setSlotValue(slot, value);
+			}
+			return;
+		}
+		String sheetName = fieldRef.getSheetName();
+		DataSheet sheet = this.getSheetForField(sheetName, fieldRef.getName());
+		int rowIdx = this.getCurrentRow(sheetName, sheet);
+		if (rowIdx != CommonData.NOT_APPLICABLE) {
+			sheet.setColumnValue(fieldRef.getFieldName(), rowIdx, value);
+		} else if (value == null) {
+			sheet.removeValue(fieldRef.getFieldName());
+		} else {
+			sheet.setValue(fieldRef.getFieldName(), value);
+		}
+	}
+
+	private Value getFieldValue(String fieldName) {
+		int slot = this.getSlot(fieldName);
+		if (slot == -1) {
+			return this.allFields.get(fieldName);
+		}
+		Value[] values = this.slotValues;
+		if (values == null) {
+			return null;
+		}
+		return values[slot];
+	}
+
+	/**
+	 * set a field that is not qualified with a sheet name, in its slot if it
+	 * has one
+	 *
+	 * @param fieldName
+	 * @param value
+	 *            null to remove the field
+	 */
+	protected void setFieldValue(String fieldName, Value value) {
+		int slot = this.getSlot(fieldName);
+		if (slot != -1) {
+			this.setSlotValue(slot, value);
+		} else if (value == null) {
+			this.allFields.remove(fieldName);
+		} else {
+			this.allFields.put(fieldName, value);
+		}
+	}
+
+	private Value removeFieldValue(String fieldName) {
+		int slot = this.getSlot(fieldName);
+		if (slot == -1) {
+			return this.allFields.remove(fieldName);
+		}
+		Value[] values = this.slotValues;
+		if (values == null) {
+			return null;
+		}
+		Value value = values[slot];
+		values[slot] = null;
+		return value;
+	}
+
+	/**
+	 * @return slot of this field, -1 if it is not to be kept in a slot
+	 */
+	private int getSlot(String fieldName) {
+		int slot = FieldRef.getSlot(fieldName);
+		if (slot >= this.nbrSlots) {
+			return -1;
+		}
+		return slot;
+	}
+
+	private void setSlotValue(int slot, Value value) {
+		Value[] values = this.slotValues;
+		if (values == null) {
+			if (value == null) {
+				return;
+			}
+			values = this.slotValues = new Value[this.nbrSlots];
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * @return sheet that is required for a qualified field name
+	 */
+	DataSheet getSheetForField(String sheetName, String fullName) {
+		DataSheet sheet = this.getDataSheet(sheetName);
+		if (sheet == null) {
+			throw new ApplicationError("Data sheet " + sheetName
+					+ " is not available in context for a put/get/remove operation for field "
+					+ fullName);
+		}
+		return sheet;
+	}
+
+	/**
+	 * @return current row of this sheet. NOT_APPLICABLE if the sheet has no
+	 *         concept of rows
+	 */
+	int getCurrentRow(String sheetName, DataSheet sheet) {
+		if (sheet instanceof MultiRowsSheet || sheet instanceof ColumnarSheet
+				|| sheet instanceof SpillSheet) {
+			SheetIterator iter = this.getIterator(sheetName);
+			if (iter == null) {
+				return 0;
+			}
+			return iter.getIdx();
+		}
+		return CommonData.NOT_APPLICABLE;
+	}
+
 	@Override
 	public final DataSheet getDataSheet(String sheetName) {
 		return this.allSheets.get(sheetName);
@@ -192,7 +341,9 @@ public class CommonData implements CommonDataInterface {
 		}
 		int nbrRows = sheet.length();
 		SheetIterator iter;
-		if (nbrRows > 0 && sheet instanceof MultiRowsSheet) {
+		if (nbrRows > 0 && (sheet instanceof MultiRowsSheet
+				|| sheet instanceof ColumnarSheet
+				|| sheet instanceof SpillSheet)) {
 			iter = new SheetIterator(sheetName, nbrRows);
 			this.iteratedSheets.put(sheetName, iter);
 		} else {
@@ -237,6 +388,17 @@ public class CommonData implements CommonDataInterface {
 			this.sheetName = sheetName;
 		}
 
+		/**
+		 * iterator positioned at the current row of another iterator.
+		 *
+		 * @param other
+		 */
+		SheetIterator(SheetIterator other) {
+			this.lastIdx = other.lastIdx;
+			this.currentIdx = other.currentIdx;
+			this.sheetName = null;
+		}
+
 		/**
 		 * get current index. default is zero
 		 *
@@ -298,28 +460,86 @@ public class CommonData implements CommonDataInterface {
 
 			this.fieldName = fullName.substring(idx + 1);
 			String sheetName = fullName.substring(0, idx).trim();
-			this.sheet = CommonData.this.getDataSheet(sheetName);
-			if (this.sheet == null) {
-				throw new ApplicationError(
-						"Data sheet "
-								+ sheetName
-								+ " is not available in context for a put/get/remove operation for field "
-								+ fullName);
+			this.sheet = CommonData.this.getSheetForField(sheetName, fullName);
+			this.rowIdx = CommonData.this.getCurrentRow(sheetName, this.sheet);
+		}
+	}
+
+	/**
+	 * fields with slots are included in this set. In that case, the set is a
+	 * copy, and changing it does not change this data
+	 */
+	@Override
+	public Set<Entry<String, Value>> getAllFields() {
+		Value[] values = this.slotValues;
+		if (values == null) {
+			return this.allFields.entrySet();
+		}
+		Map<String, Value> fields = new HashMap<String, Value>(this.allFields);
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				fields.put(FieldRef.getSlotName(i), values[i]);
 			}
-			if (this.sheet instanceof MultiRowsSheet) {
-				SheetIterator iter = CommonData.this.getIterator(sheetName);
-				if (iter == null) {
-					this.rowIdx = 0;
-				} else {
-					this.rowIdx = iter.getIdx();
+		}
+		return fields.entrySet();
+	}
+
+	/**
+	 * @return number of fields, including the ones kept in slots
+	 */
+	protected int getNbrFields() {
+		int n = this.allFields.size();
+		Value[] values = this.slotValues;
+		if (values != null) {
+			for (Value value : values) {
+				if (value != null) {
+					n++;
 				}
 			}
 		}
+		return n;
 	}
 
-	@Override
-	public Set<Entry<String, Value>> getAllFields() {
-		return this.allFields.entrySet();
+	/**
+	 * @return set of all objects that you can iterate over
+	 */
+	public Set<Entry<String, Object>> getAllObjects() {
+		return this.allObjects.entrySet();
+	}
+
+	/**
+	 * copy all fields, sheets and objects from another data. Sheets that are
+	 * being iterated in the other data are positioned at their current rows in
+	 * this data as well. Note that sheets and objects are shared and not
+	 * cloned.
+	 *
+	 * @param other
+	 */
+	public void copyAllFrom(CommonData other) {
+		this.allFields.putAll(other.allFields);
+		this.nbrSlots = other.nbrSlots;
+		if (other.slotValues != null) {
+			this.slotValues = other.slotValues.clone();
+		}
+		this.allSheets.putAll(other.allSheets);
+		this.allObjects.putAll(other.allObjects);
+		for (Map.Entry<String, SheetIterator> entry : other.iteratedSheets
+				.entrySet()) {
+			this.iteratedSheets.put(entry.getKey(),
+					new SheetIterator(entry.getValue()));
+		}
+	}
+
+	/**
+	 * release sheets that keep their rows in temp files. To be called once
+	 * this data is no longer required.
+	 */
+	public void releaseSpillSheets() {
+		for (DataSheet sheet : this.allSheets.values()) {
+			if (sheet instanceof SpillSheet) {
+				((SpillSheet) sheet).release();
+			}
+		}
 	}
 
 	/**
@@ -377,18 +597,7 @@ public class CommonData implements CommonDataInterface {
 	 */
 	@Override
 	public long getLongValue(String fieldName) {
-		Value val = this.getValue(fieldName);
-		if (Value.isNull(val)) {
-			return 0;
-		}
-		ValueType vt = val.getValueType();
-		if (vt == ValueType.INTEGER) {
-			return ((IntegerValue) val).getLong();
-		}
-		if (vt == ValueType.DECIMAL) {
-			return ((DecimalValue) val).getLong();
-		}
-		return 0;
+		return Value.getLongValue(this.getValue(fieldName));
 	}
 
 	/*
@@ -420,14 +629,7 @@ public class CommonData implements CommonDataInterface {
 	 */
 	@Override
 	public boolean getBooleanValue(String fieldName) {
-		Value val = this.getValue(fieldName);
-		if (Value.isNull(val)) {
-			return false;
-		}
-		if (val.getValueType() == ValueType.BOOLEAN) {
-			return ((BooleanValue) val).getBoolean();
-		}
-		return false;
+		return Value.getBooleanValue(this.getValue(fieldName));
 	}
 
 	/*
@@ -439,18 +641,7 @@ public class CommonData implements CommonDataInterface {
 	 */
 	@Override
 	public double getDoubleValue(String fieldName) {
-		Value val = this.getValue(fieldName);
-		if (Value.isNull(val)) {
-			return 0;
-		}
-		ValueType vt = val.getValueType();
-		if (vt == ValueType.DECIMAL) {
-			return ((DecimalValue) val).getDouble();
-		}
-		if (vt == ValueType.INTEGER) {
-			return ((IntegerValue) val).getDouble();
-		}
-		return 0;
+		return Value.getDoubleValue(this.getValue(fieldName));
 	}
 
 	/*
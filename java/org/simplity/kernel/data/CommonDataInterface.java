@@ -23,6 +23,8 @@ package org.simplity.kernel.data;
 
 import java.util.Date;
 
+import org.simplity.kernel.value.Value;
+
 /**
  * Default generic data structure that can be used as memory organization for
  * implementing any logic. for example implementing a service. created for
@@ -112,16 +114,6 @@ public interface CommonDataInterface extends FieldsInterface {
 	 */
 	public String getTextValue(String fieldName);
 
-	/**
-	 * value associated with this field/key
-	 *
-	 * @param fieldName
-	 *            name of the field
-	 * @return long value if the value is indeed numeric. 0 if no value, or if
-	 *         it is non-numeric
-	 */
-	public long getLongValue(String fieldName);
-
 	/**
 	 * value associated with this field/key
 	 *
@@ -132,26 +124,6 @@ public interface CommonDataInterface extends FieldsInterface {
 	 */
 	public Date getDateValue(String fieldName);
 
-	/**
-	 * value associated with this field/key
-	 *
-	 * @param fieldName
-	 *            name of the field
-	 * @return boolean value of the field if found. false if no such field, or
-	 *         if the field value is not boolean
-	 */
-	public boolean getBooleanValue(String fieldName);
-
-	/**
-	 * value associated with this field/key
-	 *
-	 * @param fieldName
-	 *            name of the field
-	 * @return double value if the field has a numeric value. 0 if no such
-	 *         field, or value is non-numeric
-	 */
-	public double getDoubleValue(String fieldName);
-
 	/**
 	 *
 	 * @param fieldName
@@ -166,30 +138,23 @@ public interface CommonDataInterface extends FieldsInterface {
 	 *            name of the field
 	 * @param value
 	 */
-	public void setLongValue(String fieldName, long value);
-
-	/**
-	 *
-	 * @param fieldName
-	 *            name of the field
-	 * @param value
-	 */
-	public void setDoubleValue(String fieldName, double value);
+	public void setDateValue(String fieldName, Date value);
 
 	/**
+	 * get value of a field whose name is parsed before hand
 	 *
-	 * @param fieldName
-	 *            name of the field
-	 * @param value
+	 * @param fieldRef
+	 * @return value or null if field does not exist
 	 */
-	public void setDateValue(String fieldName, Date value);
+	public Value getValue(FieldRef fieldRef);
 
 	/**
+	 * set value of a field whose name is parsed before hand
 	 *
-	 * @param fieldName
-	 *            name of the field
+	 * @param fieldRef
 	 * @param value
+	 *            null to remove the field
 	 */
-	public void setBooleanValue(String fieldName, boolean value);
+	public void setValue(FieldRef fieldRef, Value value);
 
 }
@@ -73,4 +73,61 @@ public class DataRow implements FieldsInterface {
 	public Set<Entry<String, Value>> getAllFields() {
 		return this.dataSheet.getAllFields(this.myIdx);
 	}
+
+	@Override
+	public long getLongValue(String fieldName) {
+		if (this.dataSheet instanceof ColumnarSheet) {
+			return ((ColumnarSheet) this.dataSheet).getLongValue(fieldName,
+					this.myIdx);
+		}
+		return Value.getLongValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public double getDoubleValue(String fieldName) {
+		if (this.dataSheet instanceof ColumnarSheet) {
+			return ((ColumnarSheet) this.dataSheet).getDoubleValue(fieldName,
+					this.myIdx);
+		}
+		return Value.getDoubleValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public boolean getBooleanValue(String fieldName) {
+		if (this.dataSheet instanceof ColumnarSheet) {
+			return ((ColumnarSheet) this.dataSheet).getBooleanValue(fieldName,
+					this.myIdx);
+		}
+		return Value.getBooleanValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public void setLongValue(String fieldName, long value) {
+		if (this.dataSheet instanceof ColumnarSheet) {
+			((ColumnarSheet) this.dataSheet).setLongValue(fieldName,
+					this.myIdx, value);
+		} else {
+			this.setValue(fieldName, Value.newIntegerValue(value));
+		}
+	}
+
+	@Override
+	public void setDoubleValue(String fieldName, double value) {
+		if (this.dataSheet instanceof ColumnarSheet) {
+			((ColumnarSheet) this.dataSheet).setDoubleValue(fieldName,
+					this.myIdx, value);
+		} else {
+			this.setValue(fieldName, Value.newDecimalValue(value));
+		}
+	}
+
+	@Override
+	public void setBooleanValue(String fieldName, boolean value) {
+		if (this.dataSheet instanceof ColumnarSheet) {
+			((ColumnarSheet) this.dataSheet).setBooleanValue(fieldName,
+					this.myIdx, value);
+		} else {
+			this.setValue(fieldName, Value.newBooleanValue(value));
+		}
+	}
 }
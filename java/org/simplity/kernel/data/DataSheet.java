@@ -181,4 +181,72 @@ public interface DataSheet extends FieldsInterface, Iterable<FieldsInterface> {
 	 * @return list of all rows in this sheet
 	 */
 	List<Value[]> getAllRows();
+
+	/*
+	 * indexed primitive accessors. Sheets that keep primitives in their
+	 * storage avoid creating a Value object per cell, while others convert
+	 * from/to the Value in that cell.
+	 */
+	/**
+	 * @param colIdx
+	 *            0 based column index
+	 * @param rowIdx
+	 *            0 based row index
+	 * @return true if this cell has no value
+	 */
+	public boolean isNull(int colIdx, int rowIdx);
+
+	/**
+	 * @param colIdx
+	 *            an integral, decimal or date column. millis for date
+	 * @param rowIdx
+	 *            0 based row index
+	 * @return value of this cell. 0 if it is null
+	 */
+	public long getLong(int colIdx, int rowIdx);
+
+	/**
+	 * @param colIdx
+	 *            an integral or decimal column
+	 * @param rowIdx
+	 *            0 based row index
+	 * @return value of this cell. 0 if it is null
+	 */
+	public double getDouble(int colIdx, int rowIdx);
+
+	/**
+	 * @param colIdx
+	 *            a boolean column
+	 * @param rowIdx
+	 *            0 based row index
+	 * @return value of this cell. false if it is null
+	 */
+	public boolean getBoolean(int colIdx, int rowIdx);
+
+	/**
+	 * @param colIdx
+	 *            an integral or decimal column
+	 * @param rowIdx
+	 *            0 based row index
+	 * @param value
+	 */
+	public void setLong(int colIdx, int rowIdx, long value);
+
+	/**
+	 * @param colIdx
+	 *            an integral or decimal column
+	 * @param rowIdx
+	 *            0 based row index
+	 * @param value
+	 */
+	public void setDouble(int colIdx, int rowIdx, double value);
+
+	/**
+	 * @param colIdx
+	 *            a boolean column
+	 * @param rowIdx
+	 *            0 based row index
+	 * @param value
+	 */
+	public void setBoolean(int colIdx, int rowIdx, boolean value);
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.simplity.kernel.value.Value;
+
+/**
+ * a field name that is parsed once, typically when a component gets ready, so
+ * that its value can be accessed without parsing the name every time.
+ *
+ * A simple name is given a slot. CommonData keeps values of such fields in an
+ * array indexed by their slots, rather than in its map of fields. A qualified
+ * name, like sheetName.fieldName, is split into its parts.
+ *
+ * Name based access continues to work for all fields, as CommonData looks up
+ * the slot of a simple name before going to its map.
+ *
+ * @author simplity.org
+ *
+ */
+public class FieldRef {
+	private static final Map<String, Integer> slots = new ConcurrentHashMap<String, Integer>();
+	/*
+	 * name of each slot. replaced, and never changed, as slots are added
+	 */
+	private static volatile String[] slotNames = new String[0];
+
+	private final String name;
+	private final String sheetName;
+	private final String fieldName;
+	private final int slot;
+
+	/**
+	 * parse a field name
+	 *
+	 * @param name
+	 *            field name, optionally qualified with sheet name as in
+	 *            sheetName.fieldName
+	 */
+	public FieldRef(String name) {
+		this.name = name;
+		int idx = name.indexOf('.');
+		if (idx == -1) {
+			this.sheetName = null;
+			this.fieldName = name;
+			this.slot = getOrCreateSlot(name);
+		} else {
+			this.sheetName = name.substring(0, idx).trim();
+			this.fieldName = name.substring(idx + 1);
+			this.slot = -1;
+		}
+	}
+
+	/**
+	 * @param names
+	 *            field names
+	 * @return array of references in the same order as names. null if names
+	 *         is null.
+	 */
+	public static FieldRef[] compile(String[] names) {
+		if (names == null) {
+			return null;
+		}
+		FieldRef[] refs = new FieldRef[names.length];
+		for (int i = 0; i < names.length; i++) {
+			refs[i] = new FieldRef(names[i]);
+		}
+		return refs;
+	}
+
+	/**
+	 * @param fields
+	 * @return value of this field, or null if it has no value
+	 */
+	public Value getValue(FieldsInterface fields) {
+		if (fields instanceof CommonDataInterface) {
+			return ((CommonDataInterface) fields).getValue(this);
+		}
+		return fields.getValue(this.name);
+	}
+
+	/**
+	 * @param fields
+	 * @param value
+	 *            null to remove the field
+	 */
+	public void setValue(FieldsInterface fields, Value value) {
+		if (fields instanceof CommonDataInterface) {
+			((CommonDataInterface) fields).setValue(this, value);
+		} else if (value == null) {
+			fields.removeValue(this.name);
+		} else {
+			fields.setValue(this.name, value);
+		}
+	}
+
+	/**
+	 * @return name as it was given
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return sheet name, or null if this is a simple name
+	 */
+	public String getSheetName() {
+		return this.sheetName;
+	}
+
+	/**
+	 * @return field name without the sheet name
+	 */
+	public String getFieldName() {
+		return this.fieldName;
+	}
+
+	/**
+	 * @return slot of this field, -1 if this is a qualified name
+	 */
+	public int getSlot() {
+		return this.slot;
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+
+	/**
+	 * @param name
+	 *            simple field name
+	 * @return slot of this name, -1 if no slot is created for this name
+	 */
+	public static int getSlot(String name) {
+		Integer slot = slots.get(name);
+		if (slot == null) {
+			return -1;
+		}
+		return slot.intValue();
+	}
+
+	/**
+	 * @param slot
+	 * @return name of the field for this slot
+	 */
+	public static String getSlotName(int slot) {
+		return slotNames[slot];
+	}
+
+	/**
+	 * @return number of slots created so far
+	 */
+	public static int getNbrSlots() {
+		return slotNames.length;
+	}
+
+	private static synchronized int getOrCreateSlot(String name) {
+		Integer slot = slots.get(name);
+		if (slot != null) {
+			return slot.intValue();
+		}
+		String[] names = slotNames;
+		int n = names.length;
+		String[] newNames = new String[n + 1];
+		System.arraycopy(names, 0, newNames, 0, n);
+		newNames[n] = name;
+		/*
+		 * name is to be available before the slot is visible
+		 */
+		slotNames = newNames;
+		slots.put(name, new Integer(n));
+		return n;
+	}
+}
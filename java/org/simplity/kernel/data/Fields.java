@@ -67,4 +67,34 @@ public class Fields implements FieldsInterface {
 	public Set<Entry<String, Value>> getAllFields() {
 		return this.fieldValues.entrySet();
 	}
+
+	@Override
+	public long getLongValue(String fieldName) {
+		return Value.getLongValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public double getDoubleValue(String fieldName) {
+		return Value.getDoubleValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public boolean getBooleanValue(String fieldName) {
+		return Value.getBooleanValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public void setLongValue(String fieldName, long value) {
+		this.setValue(fieldName, Value.newIntegerValue(value));
+	}
+
+	@Override
+	public void setDoubleValue(String fieldName, double value) {
+		this.setValue(fieldName, Value.newDecimalValue(value));
+	}
+
+	@Override
+	public void setBooleanValue(String fieldName, boolean value) {
+		this.setValue(fieldName, Value.newBooleanValue(value));
+	}
 }
@@ -75,4 +75,63 @@ public interface FieldsInterface {
 	 *         for current row
 	 */
 	public Set<Map.Entry<String, Value>> getAllFields();
+
+	/*
+	 * primitive accessors avoid creating Value objects where the underlying
+	 * storage keeps primitives
+	 */
+
+	/**
+	 * value associated with this field/key
+	 *
+	 * @param fieldName
+	 *            name of the field
+	 * @return long value if the value is indeed numeric. 0 if no value, or if
+	 *         it is non-numeric
+	 */
+	public long getLongValue(String fieldName);
+
+	/**
+	 * value associated with this field/key
+	 *
+	 * @param fieldName
+	 *            name of the field
+	 * @return double value if the field has a numeric value. 0 if no such
+	 *         field, or value is non-numeric
+	 */
+	public double getDoubleValue(String fieldName);
+
+	/**
+	 * value associated with this field/key
+	 *
+	 * @param fieldName
+	 *            name of the field
+	 * @return boolean value of the field if found. false if no such field, or
+	 *         if the field value is not boolean
+	 */
+	public boolean getBooleanValue(String fieldName);
+
+	/**
+	 *
+	 * @param fieldName
+	 *            name of the field
+	 * @param value
+	 */
+	public void setLongValue(String fieldName, long value);
+
+	/**
+	 *
+	 * @param fieldName
+	 *            name of the field
+	 * @param value
+	 */
+	public void setDoubleValue(String fieldName, double value);
+
+	/**
+	 *
+	 * @param fieldName
+	 *            name of the field
+	 * @param value
+	 */
+	public void setBooleanValue(String fieldName, boolean value);
 }
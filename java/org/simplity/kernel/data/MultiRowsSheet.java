@@ -570,4 +570,86 @@ public class MultiRowsSheet implements DataSheet {
 				+ " in this multi-row sheet");
 		return -1;
 	}
+
+	@Override
+	public long getLongValue(String fieldName) {
+		return Value.getLongValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public double getDoubleValue(String fieldName) {
+		return Value.getDoubleValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public boolean getBooleanValue(String fieldName) {
+		return Value.getBooleanValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public void setLongValue(String fieldName, long value) {
+		this.setValue(fieldName, Value.newIntegerValue(value));
+	}
+
+	@Override
+	public void setDoubleValue(String fieldName, double value) {
+		this.setValue(fieldName, Value.newDecimalValue(value));
+	}
+
+	@Override
+	public void setBooleanValue(String fieldName, boolean value) {
+		this.setValue(fieldName, Value.newBooleanValue(value));
+	}
+
+	@Override
+	public boolean isNull(int colIdx, int rowIdx) {
+		return Value.isNull(this.getCell(colIdx, rowIdx));
+	}
+
+	@Override
+	public long getLong(int colIdx, int rowIdx) {
+		return Value.getLongValue(this.getCell(colIdx, rowIdx));
+	}
+
+	@Override
+	public double getDouble(int colIdx, int rowIdx) {
+		return Value.getDoubleValue(this.getCell(colIdx, rowIdx));
+	}
+
+	@Override
+	public boolean getBoolean(int colIdx, int rowIdx) {
+		return Value.getBooleanValue(this.getCell(colIdx, rowIdx));
+	}
+
+	@Override
+	public void setLong(int colIdx, int rowIdx, long value) {
+		if (this.columnValueTypes[colIdx] == ValueType.DECIMAL) {
+			this.setCell(colIdx, rowIdx, Value.newDecimalValue(value));
+		} else {
+			this.setCell(colIdx, rowIdx, Value.newIntegerValue(value));
+		}
+	}
+
+	@Override
+	public void setDouble(int colIdx, int rowIdx, double value) {
+		if (this.columnValueTypes[colIdx] == ValueType.INTEGER) {
+			this.setCell(colIdx, rowIdx,
+					Value.newIntegerValue(Math.round(value)));
+		} else {
+			this.setCell(colIdx, rowIdx, Value.newDecimalValue(value));
+		}
+	}
+
+	@Override
+	public void setBoolean(int colIdx, int rowIdx, boolean value) {
+		this.setCell(colIdx, rowIdx, Value.newBooleanValue(value));
+	}
+
+	private Value getCell(int colIdx, int rowIdx) {
+		return this.data.get(rowIdx)[colIdx];
+	}
+
+	private void setCell(int colIdx, int rowIdx, Value value) {
+		this.data.get(rowIdx)[colIdx] = value;
+	}
 }
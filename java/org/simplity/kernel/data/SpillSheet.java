@@ -0,0 +1,1028 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.dm.Field;
+import org.simplity.kernel.file.FileManager;
+import org.simplity.kernel.util.ArrayUtil;
+import org.simplity.kernel.value.BooleanValue;
+import org.simplity.kernel.value.DateValue;
+import org.simplity.kernel.value.DecimalValue;
+import org.simplity.kernel.value.IntegerValue;
+import org.simplity.kernel.value.TimestampValue;
+import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
+
+/**
+ * a sheet meant for a very large number of rows. Rows are kept in a compact
+ * binary form in pages that are allocated outside the java heap. Once these
+ * pages take more than the memory limit, they are written to a temp file, and
+ * are read back, one page at a time, when the rows are accessed. Heap use is
+ * a small object per page, and does not grow with the size of rows.
+ *
+ * Rows are best accessed in their order, like in a loop or with iterator().
+ * Value objects are created for the row being accessed. getRow() returns a
+ * copy, and hence changing it does not change the sheet. A changed row that
+ * does not fit in its existing bytes (typically a longer text) is written
+ * again after the last row, and only its new position is kept on the heap.
+ *
+ * Call release() once the sheet is not required, so that its temp file is
+ * deleted. Service does this for sheets in its context at the end. Methods
+ * are synchronized, as a parallel loop reads rows from its threads.
+ *
+ * @author simplity.org
+ *
+ */
+public class SpillSheet implements DataSheet {
+	/**
+	 * default bytes of rows kept in memory before they are spilled to disk
+	 */
+	public static final int DEFAULT_MEMORY_LIMIT = 8 * 1024 * 1024;
+
+	private static final int PAGE_SIZE = 64 * 1024;
+	private static final int MAX_ROWS_TO_TRACE = 100;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte NULL_CELL = 0;
+	private static final byte NON_NULL_CELL = 1;
+	private static final char TAB = '\t';
+	private static final char NL = '\n';
+	/*
+	 * every row starts with its length. This bit of the length is set for a
+	 * row that is written again after the last row, so that it is not counted
+	 * as a row in its page
+	 */
+	private static final int RELOCATED = 0x40000000;
+	private static final int LENGTH_MASK = RELOCATED - 1;
+
+	private String[] columnNames;
+	private ValueType[] columnValueTypes;
+	private Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+	private int memoryLimit;
+
+	/*
+	 * pages in the order of rows. pages up to nbrPagesSpilled are on disk.
+	 */
+	private List<Page> pages = new ArrayList<Page>();
+	private int nbrPagesSpilled;
+	private int nbrRows;
+	private int bytesInMemory;
+
+	/*
+	 * temp file, once we start spilling
+	 */
+	private File spillFile;
+	private RandomAccessFile spillAccess;
+	private FileChannel channel;
+	private long fileSize;
+
+	/*
+	 * rows that were changed, but could not be re-written in their place.
+	 * Value is the index of the page in its upper half, and the position of
+	 * the row in that page in its lower half
+	 */
+	private Map<Integer, Long> movedRows = new HashMap<Integer, Long>();
+
+	/*
+	 * work area to encode a row
+	 */
+	private ByteBuffer rowBuffer = ByteBuffer.allocate(256);
+
+	/*
+	 * spilled page that is read back
+	 */
+	private ByteBuffer readBuffer;
+	private Page loadedPage;
+
+	/*
+	 * last row that was located, so that the next row is located without
+	 * scanning the page from its beginning
+	 */
+	private Page cursorPage;
+	private int cursorRow;
+	private int cursorPos;
+
+	/*
+	 * last row that was decoded
+	 */
+	private int cachedIdx = -1;
+	private Value[] cachedRow;
+
+	/**
+	 * create an empty sheet with default memory limit
+	 *
+	 * @param columnNames
+	 * @param columnValueTypes
+	 */
+	public SpillSheet(String[] columnNames, ValueType[] columnValueTypes) {
+		this(columnNames, columnValueTypes, DEFAULT_MEMORY_LIMIT);
+	}
+
+	/**
+	 * create an empty sheet
+	 *
+	 * @param columnNames
+	 * @param columnValueTypes
+	 * @param memoryLimit
+	 *            bytes of rows to be kept in memory. Rows beyond this are
+	 *            spilled to a temp file.
+	 */
+	public SpillSheet(String[] columnNames, ValueType[] columnValueTypes,
+			int memoryLimit) {
+		this.columnNames = columnNames;
+		this.columnValueTypes = columnValueTypes;
+		this.memoryLimit = memoryLimit;
+		for (int i = 0; i < columnNames.length; i++) {
+			String columnName = columnNames[i];
+			if (this.columnIndexes.containsKey(columnName)) {
+				throw new ApplicationError(
+						"Column names can not be duplicate in a data sheet.");
+			}
+			this.columnIndexes.put(columnName, new Integer(i));
+		}
+	}
+
+	/**
+	 * @param fields
+	 *            to be used as columns for the data sheet
+	 * @param memoryLimit
+	 *            bytes of rows to be kept in memory. Rows beyond this are
+	 *            spilled to a temp file.
+	 */
+	public SpillSheet(Field[] fields, int memoryLimit) {
+		this(ColumnarSheet.getNames(fields), ColumnarSheet.getTypes(fields),
+				memoryLimit);
+	}
+
+	@Override
+	public synchronized String[][] getRawData() {
+		int nbrCols = this.columnNames.length;
+		String[][] rawData = new String[this.nbrRows + 1][];
+		rawData[0] = this.columnNames;
+		for (int i = 0; i < this.nbrRows; i++) {
+			Value[] row = this.readRow(i);
+			String[] texts = new String[nbrCols];
+			for (int j = 0; j < nbrCols; j++) {
+				texts[j] = row[j].toString();
+			}
+			rawData[i + 1] = texts;
+		}
+		return rawData;
+	}
+
+	@Override
+	public synchronized int length() {
+		return this.nbrRows;
+	}
+
+	@Override
+	public int width() {
+		return this.columnNames.length;
+	}
+
+	@Override
+	public String[] getColumnNames() {
+		return this.columnNames;
+	}
+
+	@Override
+	public ValueType[] getValueTypes() {
+		return this.columnValueTypes;
+	}
+
+	/**
+	 * returned row is a copy. Use setColumnValue() or setRow() to change the
+	 * sheet
+	 */
+	@Override
+	public synchronized Value[] getRow(int zeroBasedRowNumber) {
+		this.checkRow(zeroBasedRowNumber);
+		return this.readRow(zeroBasedRowNumber).clone();
+	}
+
+	/**
+	 * all rows are brought into the heap. Use with caution.
+	 */
+	@Override
+	public synchronized List<Value[]> getAllRows() {
+		List<Value[]> rows = new ArrayList<Value[]>(this.nbrRows);
+		for (int i = 0; i < this.nbrRows; i++) {
+			rows.add(this.readRow(i).clone());
+		}
+		return rows;
+	}
+
+	@Override
+	public synchronized Value getColumnValue(String columnName,
+			int zeroBasedRowNumber) {
+		Integer idx = this.columnIndexes.get(columnName);
+		if (idx == null || zeroBasedRowNumber < 0
+				|| zeroBasedRowNumber >= this.nbrRows) {
+			Tracer.trace("Request to get value for column" + columnName
+					+ " and index " + zeroBasedRowNumber
+					+ " is not valid. going to return null");
+			return null;
+		}
+		return this.readRow(zeroBasedRowNumber)[idx.intValue()];
+	}
+
+	@Override
+	public synchronized void setColumnValue(String columnName,
+			int zeroBasedRowNumber, Value value) {
+		Integer idx = this.columnIndexes.get(columnName);
+		if (idx == null || zeroBasedRowNumber < 0
+				|| zeroBasedRowNumber >= this.nbrRows) {
+			throw new ApplicationError("Request to set value  for column"
+					+ columnName + " and index " + zeroBasedRowNumber
+					+ " is not valid.");
+		}
+		Value[] row = this.readRow(zeroBasedRowNumber).clone();
+		row[idx.intValue()] = value;
+		this.replaceRow(zeroBasedRowNumber, row);
+	}
+
+	/**
+	 * replace all values of a row
+	 *
+	 * @param zeroBasedRowNumber
+	 * @param row
+	 *            values in the order of columns
+	 */
+	public synchronized void setRow(int zeroBasedRowNumber, Value[] row) {
+		this.checkRow(zeroBasedRowNumber);
+		this.replaceRow(zeroBasedRowNumber, row);
+	}
+
+	@Override
+	public Iterator<FieldsInterface> iterator() {
+		return new DataRows(this);
+	}
+
+	@Override
+	public Value getValue(String fieldName) {
+		return this.getColumnValue(fieldName, 0);
+	}
+
+	@Override
+	public void setValue(String fieldName, Value value) {
+		this.setColumnValue(fieldName, 0, value);
+	}
+
+	@Override
+	public boolean hasValue(String fieldName) {
+		return this.getColumnValue(fieldName, 0) != null;
+	}
+
+	/**
+	 * we do not remove column values
+	 */
+	@Override
+	public Value removeValue(String fieldName) {
+		return null;
+	}
+
+	@Override
+	public synchronized void addRow(Value[] row) {
+		this.encodeRow(row);
+		this.appendEncodedRow();
+		this.nbrRows++;
+	}
+
+	/**
+	 * append the row that is encoded in rowBuffer to the last page
+	 *
+	 * @return position of the row in the last page
+	 */
+	private int appendEncodedRow() {
+		int len = this.rowBuffer.remaining();
+		int nbrPages = this.pages.size();
+		Page page = nbrPages == 0 ? null : this.pages.get(nbrPages - 1);
+		if (page == null || page.buffer == null
+				|| page.buffer.capacity() - page.used < len) {
+			page = this.newPage(len);
+		}
+		int pos = page.used;
+		ByteBuffer buf = page.buffer.duplicate();
+		buf.position(pos);
+		buf.put(this.rowBuffer);
+		page.used += len;
+		return pos;
+	}
+
+	@Override
+	public synchronized Value[] getColumnValues(String columnName) {
+		Integer n = this.columnIndexes.get(columnName);
+		if (n == null) {
+			Tracer.trace(columnName
+					+ " is not a column in the sheet and hence null values are returned for getColumnValues()");
+			return null;
+		}
+		int idx = n.intValue();
+		Value[] values = new Value[this.nbrRows];
+		for (int i = 0; i < this.nbrRows; i++) {
+			values[i] = this.readRow(i)[idx];
+		}
+		return values;
+	}
+
+	/**
+	 * a new column means re-writing all the rows. Use with caution.
+	 */
+	@Override
+	public synchronized void addColumn(String columnName, ValueType valueType,
+			Value[] values) {
+		if (values != null && values.length != this.nbrRows) {
+			throw new ApplicationError("column " + columnName
+					+ " is being added with " + values.length
+					+ " values but the sheet has " + this.nbrRows + " rows.");
+		}
+		this.addColumn(columnName, valueType, values, null);
+	}
+
+	@Override
+	public synchronized void addColumn(String columnName, Value value) {
+		this.addColumn(columnName, value.getValueType(), null, value);
+	}
+
+	private void addColumn(String columnName, ValueType valueType,
+			Value[] values, Value value) {
+		Integer key = this.columnIndexes.get(columnName);
+		if (key != null
+				&& this.columnValueTypes[key.intValue()] == valueType) {
+			int idx = key.intValue();
+			for (int i = 0; i < this.nbrRows; i++) {
+				Value[] row = this.readRow(i).clone();
+				row[idx] = values == null ? value : values[i];
+				this.replaceRow(i, row);
+			}
+			return;
+		}
+		/*
+		 * rows are to be re-written in a new sheet with the new column
+		 */
+		String[] names = this.columnNames;
+		ValueType[] types = this.columnValueTypes;
+		int idx;
+		if (key == null) {
+			idx = names.length;
+			names = ArrayUtil.extend(names, columnName);
+			types = ArrayUtil.extend(types, valueType);
+		} else {
+			idx = key.intValue();
+			types = types.clone();
+			types[idx] = valueType;
+		}
+		SpillSheet newSheet = new SpillSheet(names, types, this.memoryLimit);
+		for (int i = 0; i < this.nbrRows; i++) {
+			Value[] row = this.readRow(i);
+			Value[] newRow = new Value[names.length];
+			System.arraycopy(row, 0, newRow, 0, row.length);
+			newRow[idx] = values == null ? value : values[i];
+			newSheet.addRow(newRow);
+		}
+		this.release();
+		this.takeOver(newSheet);
+	}
+
+	@Override
+	public Set<Entry<String, Value>> getAllFields() {
+		return this.getAllFields(0);
+	}
+
+	@Override
+	public synchronized Set<Entry<String, Value>> getAllFields(int rowIdx) {
+		if (rowIdx >= this.nbrRows) {
+			throw new ApplicationError(
+					"A request is received to fetch a non-existing row in a data sheet");
+		}
+		Value[] row = this.readRow(rowIdx);
+		Map<String, Value> fields = new HashMap<String, Value>(
+				this.columnNames.length);
+		int i = 0;
+		for (String fieldName : this.columnNames) {
+			fields.put(fieldName, row[i++]);
+		}
+		return fields.entrySet();
+	}
+
+	/**
+	 * only the first few rows are traced, as this sheet is meant for large
+	 * data
+	 */
+	@Override
+	public synchronized void trace() {
+		Tracer.trace("(Spill Sheet) has " + this.nbrRows + " rows and "
+				+ this.width() + " columns. " + this.nbrPagesSpilled
+				+ " out of " + this.pages.size()
+				+ " pages are spilled to disk.");
+		StringBuilder sbf = new StringBuilder("Header ");
+		for (String nam : this.columnNames) {
+			sbf.append(TAB).append(nam);
+		}
+		sbf.append(NL);
+		int n = Math.min(this.nbrRows, MAX_ROWS_TO_TRACE);
+		for (int i = 0; i < n; i++) {
+			sbf.append(NL).append("Row ").append(i + 1).append(" :");
+			for (Value value : this.readRow(i)) {
+				sbf.append(TAB).append(value);
+			}
+		}
+		Tracer.trace(sbf.toString());
+	}
+
+	@Override
+	public synchronized int appendRows(DataSheet sheet) {
+		if (sheet == null) {
+			return 0;
+		}
+		int n = sheet.length();
+		if (n == 0) {
+			return 0;
+		}
+		ValueType[] fromTypes = sheet.getValueTypes();
+		ValueType[] toTypes = this.columnValueTypes;
+		int nbrCols = fromTypes.length;
+		if (nbrCols != toTypes.length) {
+			throw new ApplicationError(
+					"AppendRows is not possible because from sheet has "
+							+ nbrCols + " columns while to sheet has "
+							+ toTypes.length + " columns");
+		}
+		int idx = 0;
+		for (ValueType toType : toTypes) {
+			if (toType.equals(fromTypes[idx]) == false) {
+				throw new ApplicationError(
+						"AppendRows is not possible because from and to sheets have "
+								+ nbrCols + " columns each, but column "
+								+ (++idx) + " are of different type.");
+			}
+			idx++;
+		}
+		for (int i = 0; i < n; i++) {
+			this.addRow(sheet.getRow(i));
+		}
+		return n;
+	}
+
+	@Override
+	public int getColIdx(String columnName) {
+		Integer idx = this.columnIndexes.get(columnName);
+		if (idx == null) {
+			Tracer.trace("We did not find column " + columnName
+					+ " in this spill sheet");
+			return -1;
+		}
+		return idx.intValue();
+	}
+
+	/**
+	 * delete the temp file, if any, and drop all rows. Sheet is empty after
+	 * this call.
+	 */
+	public synchronized void release() {
+		if (this.spillAccess != null) {
+			try {
+				this.spillAccess.close();
+			} catch (Exception ignore) {
+				//
+			}
+			FileManager.deleteTempFile(this.spillFile.getName());
+		}
+		this.spillFile = null;
+		this.spillAccess = null;
+		this.channel = null;
+		this.fileSize = 0;
+		this.pages = new ArrayList<Page>();
+		this.nbrPagesSpilled = 0;
+		this.nbrRows = 0;
+		this.bytesInMemory = 0;
+		this.movedRows = new HashMap<Integer, Long>();
+		this.readBuffer = null;
+		this.loadedPage = null;
+		this.cursorPage = null;
+		this.cachedIdx = -1;
+		this.cachedRow = null;
+	}
+
+	/**
+	 * @return number of bytes of rows that are written to the temp file
+	 */
+	public synchronized long getSpilledBytes() {
+		return this.fileSize;
+	}
+
+	private void takeOver(SpillSheet other) {
+		this.columnNames = other.columnNames;
+		this.columnValueTypes = other.columnValueTypes;
+		this.columnIndexes = other.columnIndexes;
+		this.pages = other.pages;
+		this.nbrPagesSpilled = other.nbrPagesSpilled;
+		this.nbrRows = other.nbrRows;
+		this.bytesInMemory = other.bytesInMemory;
+		this.spillFile = other.spillFile;
+		this.spillAccess = other.spillAccess;
+		this.channel = other.channel;
+		this.fileSize = other.fileSize;
+		this.movedRows = other.movedRows;
+	}
+
+	private void checkRow(int rowIdx) {
+		if (rowIdx < 0 || rowIdx >= this.nbrRows) {
+			throw new ApplicationError("Row " + rowIdx
+					+ " is not valid for a spill sheet with " + this.nbrRows
+					+ " rows.");
+		}
+	}
+
+	/**
+	 * @param rowIdx
+	 * @return decoded row. This is the cached instance, and should not be
+	 *         given to the caller.
+	 */
+	private Value[] readRow(int rowIdx) {
+		if (rowIdx == this.cachedIdx) {
+			return this.cachedRow;
+		}
+		Long moved = null;
+		if (this.movedRows.isEmpty() == false) {
+			moved = this.movedRows.get(new Integer(rowIdx));
+		}
+		Value[] row;
+		if (moved == null) {
+			Page page = this.findPage(rowIdx);
+			ByteBuffer buf = this.getPageBuffer(page);
+			row = this.decodeRow(buf, this.locate(page, buf, rowIdx));
+		} else {
+			long loc = moved.longValue();
+			ByteBuffer buf = this.getPageBuffer(
+					this.pages.get((int) (loc >>> 32)));
+			row = this.decodeRow(buf, (int) loc);
+		}
+		this.cachedIdx = rowIdx;
+		this.cachedRow = row;
+		return row;
+	}
+
+	/**
+	 * write a changed row in its place if it has the same number of bytes.
+	 * Append it after the last row otherwise, and keep its new position
+	 */
+	private void replaceRow(int rowIdx, Value[] row) {
+		this.cachedIdx = -1;
+		this.cachedRow = null;
+		Integer key = new Integer(rowIdx);
+		this.encodeRow(row);
+		Long moved = null;
+		if (this.movedRows.isEmpty() == false) {
+			moved = this.movedRows.get(key);
+		}
+		Page page;
+		ByteBuffer buf;
+		int pos;
+		if (moved == null) {
+			page = this.findPage(rowIdx);
+			buf = this.getPageBuffer(page);
+			pos = this.locate(page, buf, rowIdx);
+		} else {
+			long loc = moved.longValue();
+			page = this.pages.get((int) (loc >>> 32));
+			buf = this.getPageBuffer(page);
+			pos = (int) loc;
+		}
+		int header = buf.getInt(pos);
+		int len = this.rowBuffer.remaining();
+		if ((header & LENGTH_MASK) + 4 != len) {
+			/*
+			 * bytes at the old position are left as they are
+			 */
+			this.rowBuffer.putInt(0, (len - 4) | RELOCATED);
+			pos = this.appendEncodedRow();
+			long pageIdx = this.pages.size() - 1;
+			this.movedRows.put(key, new Long((pageIdx << 32) | pos));
+			return;
+		}
+		this.rowBuffer.putInt(0, header);
+		if (page.buffer != null) {
+			buf = page.buffer.duplicate();
+			buf.position(pos);
+			buf.put(this.rowBuffer);
+			return;
+		}
+		this.writeFully(this.rowBuffer, page.fileOffset + pos);
+		this.loadedPage = null;
+	}
+
+	private Page findPage(int rowIdx) {
+		int low = 0;
+		int high = this.pages.size() - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (this.pages.get(mid).firstRow <= rowIdx) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return this.pages.get(low);
+	}
+
+	/**
+	 * @return position of the row in the buffer
+	 */
+	private int locate(Page page, ByteBuffer buf, int rowIdx) {
+		int row = page.firstRow;
+		int pos = 0;
+		if (this.cursorPage == page && this.cursorRow <= rowIdx) {
+			row = this.cursorRow;
+			pos = this.cursorPos;
+		}
+		while (true) {
+			int header = buf.getInt(pos);
+			if ((header & RELOCATED) == 0) {
+				if (row == rowIdx) {
+					break;
+				}
+				row++;
+			}
+			pos += 4 + (header & LENGTH_MASK);
+		}
+		this.cursorPage = page;
+		this.cursorRow = row;
+		this.cursorPos = pos;
+		return pos;
+	}
+
+	/**
+	 * @return buffer with the rows of this page, starting at 0
+	 */
+	private ByteBuffer getPageBuffer(Page page) {
+		if (page.buffer != null) {
+			return page.buffer;
+		}
+		if (this.loadedPage == page) {
+			return this.readBuffer;
+		}
+		if (this.readBuffer == null || this.readBuffer.capacity() < page.used) {
+			this.readBuffer = ByteBuffer
+					.allocateDirect(Math.max(PAGE_SIZE, page.used));
+		}
+		ByteBuffer buf = this.readBuffer;
+		buf.clear();
+		buf.limit(page.used);
+		try {
+			while (buf.hasRemaining()) {
+				if (this.channel.read(buf,
+						page.fileOffset + buf.position()) == -1) {
+					throw new ApplicationError("Temp file " + this.spillFile
+							+ " of a spill sheet is shorter than expected.");
+				}
+			}
+		} catch (IOException e) {
+			throw new ApplicationError(e,
+					"Error while reading rows back from temp file "
+							+ this.spillFile);
+		}
+		this.loadedPage = page;
+		return buf;
+	}
+
+	private Page newPage(int len) {
+		int capacity = Math.max(PAGE_SIZE, len);
+		if (this.bytesInMemory > 0
+				&& this.bytesInMemory + capacity > this.memoryLimit) {
+			this.spill();
+		}
+		Page page = new Page(this.nbrRows,
+				ByteBuffer.allocateDirect(capacity));
+		this.bytesInMemory += capacity;
+		this.pages.add(page);
+		return page;
+	}
+
+	/**
+	 * write all pages in memory to the temp file
+	 */
+	private void spill() {
+		if (this.channel == null) {
+			this.spillFile = FileManager.createTempFile();
+			try {
+				this.spillAccess = new RandomAccessFile(this.spillFile, "rw");
+			} catch (IOException e) {
+				throw new ApplicationError(e,
+						"Unable to open temp file " + this.spillFile
+								+ " to spill rows of a data sheet");
+			}
+			this.channel = this.spillAccess.getChannel();
+			Tracer.trace("Rows of a data sheet crossed " + this.memoryLimit
+					+ " bytes and are spilled to temp file "
+					+ this.spillFile.getName());
+		}
+		int nbrPages = this.pages.size();
+		for (int i = this.nbrPagesSpilled; i < nbrPages; i++) {
+			Page page = this.pages.get(i);
+			ByteBuffer buf = page.buffer.duplicate();
+			buf.clear();
+			buf.limit(page.used);
+			page.fileOffset = this.fileSize;
+			this.writeFully(buf, this.fileSize);
+			this.fileSize += page.used;
+			this.bytesInMemory -= page.buffer.capacity();
+			page.buffer = null;
+		}
+		this.nbrPagesSpilled = nbrPages;
+	}
+
+	private void writeFully(ByteBuffer buf, long offset) {
+		try {
+			long pos = offset;
+			while (buf.hasRemaining()) {
+				pos += this.channel.write(buf, pos);
+			}
+		} catch (IOException e) {
+			throw new ApplicationError(e,
+					"Error while writing rows to temp file " + this.spillFile);
+		}
+	}
+
+	/**
+	 * encode a row into rowBuffer, and flip it ready to be read. Each row is
+	 * its length followed by its cells. A cell is a null/non-null flag
+	 * followed by its value in the non-null case.
+	 */
+	private void encodeRow(Value[] row) {
+		ByteBuffer buf = this.rowBuffer;
+		buf.clear();
+		buf.putInt(0);
+		int n = this.columnValueTypes.length;
+		for (int j = 0; j < n; j++) {
+			Value value = j < row.length ? row[j] : null;
+			if (Value.isNull(value)) {
+				buf = this.ensure(1);
+				buf.put(NULL_CELL);
+				continue;
+			}
+			ValueType valueType = this.columnValueTypes[j];
+			value = conform(value, valueType);
+			switch (valueType) {
+			case INTEGER:
+				buf = this.ensure(9);
+				buf.put(NON_NULL_CELL);
+				buf.putLong(((IntegerValue) value).getLong());
+				break;
+			case DATE:
+				buf = this.ensure(9);
+				buf.put(NON_NULL_CELL);
+				buf.putLong(((DateValue) value).getDate());
+				break;
+			case TIMESTAMP:
+				buf = this.ensure(9);
+				buf.put(NON_NULL_CELL);
+				buf.putLong(((TimestampValue) value).getInteger());
+				break;
+			case DECIMAL:
+				buf = this.ensure(9);
+				buf.put(NON_NULL_CELL);
+				buf.putDouble(((DecimalValue) value).getDouble());
+				break;
+			case BOOLEAN:
+				buf = this.ensure(2);
+				buf.put(NON_NULL_CELL);
+				buf.put(((BooleanValue) value).getBoolean() ? (byte) 1
+						: (byte) 0);
+				break;
+			default:
+				byte[] bytes = value.toText().getBytes(UTF8);
+				buf = this.ensure(5 + bytes.length);
+				buf.put(NON_NULL_CELL);
+				buf.putInt(bytes.length);
+				buf.put(bytes);
+				break;
+			}
+		}
+		buf.putInt(0, buf.position() - 4);
+		buf.flip();
+	}
+
+	private ByteBuffer ensure(int nbrBytes) {
+		ByteBuffer buf = this.rowBuffer;
+		if (buf.remaining() >= nbrBytes) {
+			return buf;
+		}
+		ByteBuffer newBuf = ByteBuffer.allocate(
+				Math.max(buf.capacity() * 2, buf.position() + nbrBytes));
+		buf.flip();
+		newBuf.put(buf);
+		this.rowBuffer = newBuf;
+		return newBuf;
+	}
+
+	private Value[] decodeRow(ByteBuffer buf, int rowPos) {
+		int n = this.columnValueTypes.length;
+		Value[] row = new Value[n];
+		int pos = rowPos + 4;
+		for (int j = 0; j < n; j++) {
+			ValueType valueType = this.columnValueTypes[j];
+			if (buf.get(pos++) == NULL_CELL) {
+				row[j] = Value.newUnknownValue(valueType);
+				continue;
+			}
+			switch (valueType) {
+			case INTEGER:
+				row[j] = Value.newIntegerValue(buf.getLong(pos));
+				pos += 8;
+				break;
+			case DATE:
+				row[j] = Value.newDateValue(buf.getLong(pos));
+				pos += 8;
+				break;
+			case TIMESTAMP:
+				row[j] = Value.newTimestampValue(buf.getLong(pos));
+				pos += 8;
+				break;
+			case DECIMAL:
+				row[j] = Value.newDecimalValue(buf.getDouble(pos));
+				pos += 8;
+				break;
+			case BOOLEAN:
+				row[j] = buf.get(pos++) == 0 ? Value.VALUE_FALSE
+						: Value.VALUE_TRUE;
+				break;
+			default:
+				int len = buf.getInt(pos);
+				pos += 4;
+				byte[] bytes = new byte[len];
+				ByteBuffer dup = buf.duplicate();
+				dup.limit(pos + len);
+				dup.position(pos);
+				dup.get(bytes);
+				pos += len;
+				row[j] = toValue(new String(bytes, UTF8), valueType);
+				break;
+			}
+		}
+		return row;
+	}
+
+	private static Value toValue(String text, ValueType valueType) {
+		switch (valueType) {
+		case TEXT:
+			return Value.newTextValue(text);
+		case CLOB:
+			return Value.newClobValue(text);
+		case BLOB:
+			return Value.newBlobValue(text);
+		default:
+			return Value.parseValue(text, valueType);
+		}
+	}
+
+	/**
+	 * @return value of the given type, converted if required
+	 */
+	private static Value conform(Value value, ValueType valueType) {
+		if (value.getValueType() == valueType) {
+			return value;
+		}
+		Value val = Value.parseValue(value.toText(), valueType);
+		if (val == null) {
+			throw new ApplicationError(value
+					+ " is not a valid value for a column of type " + valueType);
+		}
+		return val;
+	}
+
+	/**
+	 * a block of rows. buffer is null once it is spilled to disk
+	 */
+	private static class Page {
+		final int firstRow;
+		int used;
+		ByteBuffer buffer;
+		long fileOffset;
+
+		Page(int firstRow, ByteBuffer buffer) {
+			this.firstRow = firstRow;
+			this.buffer = buffer;
+		}
+	}
+
+	@Override
+	public long getLongValue(String fieldName) {
+		return Value.getLongValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public double getDoubleValue(String fieldName) {
+		return Value.getDoubleValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public boolean getBooleanValue(String fieldName) {
+		return Value.getBooleanValue(this.getValue(fieldName));
+	}
+
+	@Override
+	public void setLongValue(String fieldName, long value) {
+		this.setValue(fieldName, Value.newIntegerValue(value));
+	}
+
+	@Override
+	public void setDoubleValue(String fieldName, double value) {
+		this.setValue(fieldName, Value.newDecimalValue(value));
+	}
+
+	@Override
+	public void setBooleanValue(String fieldName, boolean value) {
+		this.setValue(fieldName, Value.newBooleanValue(value));
+	}
+
+	@Override
+	public synchronized boolean isNull(int colIdx, int rowIdx) {
+		return Value.isNull(this.getCell(colIdx, rowIdx));
+	}
+
+	@Override
+	public synchronized long getLong(int colIdx, int rowIdx) {
+		return Value.getLongValue(this.getCell(colIdx, rowIdx));
+	}
+
+	@Override
+	public synchronized double getDouble(int colIdx, int rowIdx) {
+		return Value.getDoubleValue(this.getCell(colIdx, rowIdx));
+	}
+
+	@Override
+	public synchronized boolean getBoolean(int colIdx, int rowIdx) {
+		return Value.getBooleanValue(this.getCell(colIdx, rowIdx));
+	}
+
+	@Override
+	public synchronized void setLong(int colIdx, int rowIdx, long value) {
+		if (this.columnValueTypes[colIdx] == ValueType.DECIMAL) {
+			this.setCell(colIdx, rowIdx, Value.newDecimalValue(value));
+		} else {
+			this.setCell(colIdx, rowIdx, Value.newIntegerValue(value));
+		}
+	}
+
+	@Override
+	public synchronized void setDouble(int colIdx, int rowIdx, double value) {
+		if (this.columnValueTypes[colIdx] == ValueType.INTEGER) {
+			this.setCell(colIdx, rowIdx,
+					Value.newIntegerValue(Math.round(value)));
+		} else {
+			this.setCell(colIdx, rowIdx, Value.newDecimalValue(value));
+		}
+	}
+
+	@Override
+	public synchronized void setBoolean(int colIdx, int rowIdx, boolean value) {
+		this.setCell(colIdx, rowIdx, Value.newBooleanValue(value));
+	}
+
+	private Value getCell(int colIdx, int rowIdx) {
+		this.checkRow(rowIdx);
+		return this.readRow(rowIdx)[colIdx];
+	}
+
+	private void setCell(int colIdx, int rowIdx, Value value) {
+		this.checkRow(rowIdx);
+		Value[] row = this.readRow(rowIdx).clone();
+		row[colIdx] = value;
+		this.replaceRow(rowIdx, row);
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.data;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
+
+/**
+ * internal class to test spill sheet during development. To be re-factored
+ * into a Maven structure and put into test folder
+ *
+ * @author simplity.org
+ *
+ */
+class TestSpillSheet {
+	private static final String[] NAMES = { "id", "name" };
+	private static final ValueType[] TYPES = { ValueType.INTEGER,
+			ValueType.TEXT };
+	private static final int NBR_ROWS = 20000;
+	/*
+	 * small enough for the rows to be spilled to disk
+	 */
+	private static final int MEMORY_LIMIT = 64 * 1024;
+	private static final String LONG_TEXT;
+
+	static {
+		char[] chars = new char[200];
+		Arrays.fill(chars, 'x');
+		LONG_TEXT = new String(chars);
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int nbrIssues = 0;
+		nbrIssues += testGrownRows();
+		nbrIssues += testRelease();
+		if (nbrIssues == 0) {
+			Tracer.trace("Congratulations!!!");
+		} else {
+			Tracer.trace("Oooops! You have to fix " + nbrIssues
+					+ " issues.");
+		}
+	}
+
+	/**
+	 * rows that grow beyond their bytes are read back with their new values,
+	 * in their place, and are not counted twice
+	 */
+	private static int testGrownRows() {
+		SpillSheet sheet = newSheet();
+		int nbrIssues = 0;
+		if (sheet.getSpilledBytes() == 0) {
+			Tracer.trace("Rows are not spilled to disk.");
+			nbrIssues++;
+		}
+		for (int i = 0; i < NBR_ROWS; i += 3) {
+			Value[] row = sheet.getRow(i);
+			row[1] = Value.newTextValue(LONG_TEXT + i);
+			sheet.setRow(i, row);
+		}
+		/*
+		 * grow some of them again
+		 */
+		for (int i = 0; i < NBR_ROWS; i += 9) {
+			Value[] row = sheet.getRow(i);
+			row[1] = Value.newTextValue(getName(i, true));
+			sheet.setRow(i, row);
+		}
+		if (sheet.length() != NBR_ROWS) {
+			Tracer.trace("Sheet has " + sheet.length() + " rows instead of "
+					+ NBR_ROWS);
+			nbrIssues++;
+		}
+		for (int i = NBR_ROWS - 1; i >= 0; i--) {
+			nbrIssues += checkRow(i, sheet.getRow(i));
+		}
+		int i = 0;
+		Iterator<FieldsInterface> iter = sheet.iterator();
+		while (iter.hasNext()) {
+			FieldsInterface row = iter.next();
+			Value[] values = { row.getValue(NAMES[0]), row.getValue(NAMES[1]) };
+			nbrIssues += checkRow(i, values);
+			i++;
+		}
+		if (i != NBR_ROWS) {
+			Tracer.trace("Iterator returned " + i + " rows instead of "
+					+ NBR_ROWS);
+			nbrIssues++;
+		}
+		sheet.release();
+		return nbrIssues;
+	}
+
+	/**
+	 * temp file is deleted on release
+	 */
+	private static int testRelease() {
+		File folder = new File(System.getProperty("java.io.tmpdir"));
+		Set<String> before = new HashSet<String>(Arrays.asList(folder.list()));
+		SpillSheet sheet = newSheet();
+		sheet.release();
+		int nbrIssues = 0;
+		for (String name : folder.list()) {
+			if (before.contains(name) == false) {
+				Tracer.trace("Temp file " + name + " is left behind.");
+				nbrIssues++;
+			}
+		}
+		if (sheet.length() != 0 || sheet.getSpilledBytes() != 0) {
+			Tracer.trace("Sheet is not empty after release.");
+			nbrIssues++;
+		}
+		return nbrIssues;
+	}
+
+	private static SpillSheet newSheet() {
+		SpillSheet sheet = new SpillSheet(NAMES, TYPES, MEMORY_LIMIT);
+		for (int i = 0; i < NBR_ROWS; i++) {
+			Value[] row = { Value.newIntegerValue(i),
+					Value.newTextValue(getName(i, false)) };
+			sheet.addRow(row);
+		}
+		return sheet;
+	}
+
+	private static String getName(int i, boolean grown) {
+		if (grown == false) {
+			return "n" + i;
+		}
+		if (i % 9 == 0) {
+			return LONG_TEXT + i + i;
+		}
+		return LONG_TEXT + i;
+	}
+
+	private static int checkRow(int i, Value[] row) {
+		String expected = getName(i, i % 3 == 0);
+		if (row[0].toText().equals("" + i)
+				&& row[1].toText().equals(expected)) {
+			return 0;
+		}
+		Tracer.trace("Row " + i + " is read back as " + row[0] + ", "
+				+ row[1]);
+		return 1;
+	}
+}
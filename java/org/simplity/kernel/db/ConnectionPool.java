@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.simplity.kernel.Tracer;
+
+/**
+ * A simple, bounded pool of jdbc connections for a connection string. Used by
+ * DbDriver when the application is configured with connectionString rather
+ * than a dataSource. (A dataSource is expected to be pooled by the container)
+ *
+ * Connections are validated when they are borrowed, idle connections are
+ * closed after the idle time-out, and a borrower waits at most the
+ * configured time when all connections are in use. Each connection keeps a
+ * cache of its prepared statements.
+ *
+ * @author simplity.org
+ *
+ */
+public class ConnectionPool {
+	/**
+	 * default maximum number of connections that can be open at any time
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 20;
+	/**
+	 * default milliseconds a borrower waits for a connection
+	 */
+	public static final long DEFAULT_MAX_WAIT_MILLIS = 30000;
+	/**
+	 * default seconds after which an idle connection is closed
+	 */
+	public static final int DEFAULT_IDLE_SECONDS = 300;
+
+	/*
+	 * seconds we allow for a connection to respond to validation
+	 */
+	private static final int VALIDATION_SECONDS = 2;
+
+	private final String schema;
+	private final String conString;
+	private final int maxConnections;
+	private final int maxIdle;
+	private final long maxWaitMillis;
+	private final long idleMillis;
+	private final int statementCacheSize;
+
+	/*
+	 * idle connections, most recently used first.
+	 */
+	private final LinkedList<IdleConnection> idleOnes = new LinkedList<IdleConnection>();
+	/*
+	 * connections that are lent out. Identity map because we want the very
+	 * same object back, and not one that "equals" to it.
+	 */
+	private final Map<Connection, StatementCache> borrowedOnes = new IdentityHashMap<Connection, StatementCache>();
+
+	/*
+	 * number of physical connections open, including the ones that are lent
+	 * out and the ones that are being opened
+	 */
+	private int nbrOpen;
+
+	/*
+	 * statistics. all of them are guarded by this
+	 */
+	private long nbrBorrowed;
+	private long nbrCreated;
+	private long nbrDiscarded;
+	private long nbrTimeouts;
+	private long totalWaitNanos;
+	private long maxWaitNanos;
+
+	/*
+	 * statement cache statistics across all connections
+	 */
+	private final AtomicLong statementHits = new AtomicLong();
+	private final AtomicLong statementMisses = new AtomicLong();
+	private final AtomicLong statementEvictions = new AtomicLong();
+
+	/**
+	 * create a pool for a connection string
+	 *
+	 * @param schema
+	 *            null for default schema. Used for tracing only.
+	 * @param conString
+	 *            jdbc connection string, including credentials
+	 * @param maxConnections
+	 *            maximum connections that can be open. 0 or less implies
+	 *            default
+	 * @param maxIdle
+	 *            maximum connections that are kept idle in the pool. 0 or less
+	 *            implies same as maxConnections
+	 * @param maxWaitMillis
+	 *            milliseconds a borrower waits for a connection before giving
+	 *            up. 0 or less implies default
+	 * @param idleSeconds
+	 *            an idle connection is closed after these many seconds. 0 or
+	 *            less implies default
+	 * @param statementCacheSize
+	 *            number of prepared statements cached per connection. 0 implies
+	 *            default, and negative implies no caching
+	 */
+	ConnectionPool(String schema, String conString, int maxConnections,
+			int maxIdle, long maxWaitMillis, int idleSeconds,
+			int statementCacheSize) {
+		this.schema = schema;
+		this.conString = conString;
+		this.maxConnections = maxConnections > 0 ? maxConnections
+				: DEFAULT_MAX_CONNECTIONS;
+		int idle = maxIdle > 0 ? maxIdle : this.maxConnections;
+		this.maxIdle = idle > this.maxConnections ? this.maxConnections : idle;
+		this.maxWaitMillis = maxWaitMillis > 0 ? maxWaitMillis
+				: DEFAULT_MAX_WAIT_MILLIS;
+		this.idleMillis = (idleSeconds > 0 ? idleSeconds : DEFAULT_IDLE_SECONDS)
+				* 1000L;
+		this.statementCacheSize = statementCacheSize == 0
+				? StatementCache.DEFAULT_CAPACITY : statementCacheSize;
+		Tracer.trace("Connection pool created for "
+				+ (schema == null ? "default schema" : ("schema " + schema))
+				+ " with maxConnections=" + this.maxConnections + ", maxIdle="
+				+ this.maxIdle + ", maxWaitMillis=" + this.maxWaitMillis
+				+ ", statementCacheSize=" + this.statementCacheSize);
+	}
+
+	/**
+	 * borrow a connection from the pool. Caller MUST return it with
+	 * giveBack()
+	 *
+	 * @return a connection that is validated
+	 * @throws SQLException
+	 *             in case of error while opening a new connection, or if no
+	 *             connection could be made available within the max wait time
+	 */
+	Connection borrow() throws SQLException {
+		long startedAt = System.nanoTime();
+		long deadline = startedAt + this.maxWaitMillis * 1000000L;
+		while (true) {
+			IdleConnection candidate = null;
+			List<Connection> toClose = new ArrayList<Connection>();
+			synchronized (this) {
+				this.evictIdle(toClose);
+				while (candidate == null) {
+					candidate = this.idleOnes.pollFirst();
+					if (candidate != null) {
+						break;
+					}
+					if (this.nbrOpen < this.maxConnections) {
+						/*
+						 * reserve a slot, and open it outside the lock
+						 */
+						this.nbrOpen++;
+						break;
+					}
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						this.nbrTimeouts++;
+						closeAll(toClose);
+						throw new SQLException(
+								"No connection available in the pool for "
+										+ this.getPoolName() + " after waiting "
+										+ this.maxWaitMillis + "ms. "
+										+ this.borrowedOnes.size()
+										+ " connections are in use.");
+					}
+					try {
+						this.wait(remaining / 1000000L + 1);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SQLException(
+								"Interrupted while waiting for a connection from the pool for "
+										+ this.getPoolName());
+					}
+				}
+			}
+			closeAll(toClose);
+
+			Connection con = null;
+			StatementCache cache = null;
+			if (candidate == null) {
+				try {
+					con = DriverManager.getConnection(this.conString);
+				} catch (SQLException e) {
+					this.discarded(null);
+					throw e;
+				}
+				synchronized (this) {
+					this.nbrCreated++;
+				}
+				if (this.statementCacheSize > 0) {
+					cache = new StatementCache(this.statementCacheSize,
+							this.statementHits, this.statementMisses,
+							this.statementEvictions);
+				}
+			} else if (isValid(candidate.connection)) {
+				con = candidate.connection;
+				cache = candidate.cache;
+			} else {
+				Tracer.trace("A pooled connection for " + this.getPoolName()
+						+ " failed validation and is discarded.");
+				this.discarded(candidate.connection);
+				continue;
+			}
+
+			long waited = System.nanoTime() - startedAt;
+			synchronized (this) {
+				this.borrowedOnes.put(con, cache);
+				this.nbrBorrowed++;
+				this.totalWaitNanos += waited;
+				if (waited > this.maxWaitNanos) {
+					this.maxWaitNanos = waited;
+				}
+			}
+			return con;
+		}
+	}
+
+	/**
+	 * return a connection that was borrowed from this pool.
+	 *
+	 * @param con
+	 *            connection that was borrowed from this pool
+	 * @param reusable
+	 *            false if the caller suspects that this connection is not
+	 *            healthy, and should be closed rather than being re-used
+	 */
+	void giveBack(Connection con, boolean reusable) {
+		boolean keep = reusable && resetState(con);
+		Connection toClose = null;
+		synchronized (this) {
+			if (this.borrowedOnes.containsKey(con) == false) {
+				Tracer.trace(
+						"A connection not borrowed from this pool is being returned. It is closed, but not pooled.");
+				toClose = con;
+				keep = false;
+			} else if (keep && this.idleOnes.size() < this.maxIdle) {
+				this.idleOnes.addFirst(
+						new IdleConnection(con, this.borrowedOnes.remove(con)));
+			} else {
+				this.borrowedOnes.remove(con);
+				toClose = con;
+				this.nbrOpen--;
+				this.nbrDiscarded++;
+			}
+			this.notifyAll();
+		}
+		if (toClose != null) {
+			closeIt(toClose);
+		}
+	}
+
+	/**
+	 * @param con
+	 * @return true if this connection is currently lent out by this pool
+	 */
+	synchronized boolean owns(Connection con) {
+		return this.borrowedOnes.containsKey(con);
+	}
+
+	/**
+	 * @param con
+	 *            connection that is borrowed from this pool
+	 * @return statement cache for this connection, or null if statements are
+	 *         not cached
+	 */
+	synchronized StatementCache getStatementCache(Connection con) {
+		return this.borrowedOnes.get(con);
+	}
+
+	/**
+	 * close all idle connections. Borrowed connections are closed as and when
+	 * they are returned, because the pool stops keeping idle ones.
+	 */
+	void close() {
+		List<Connection> toClose = new ArrayList<Connection>();
+		synchronized (this) {
+			for (IdleConnection ic : this.idleOnes) {
+				toClose.add(ic.connection);
+			}
+			this.nbrOpen -= this.idleOnes.size();
+			this.nbrDiscarded += this.idleOnes.size();
+			this.idleOnes.clear();
+		}
+		closeAll(toClose);
+	}
+
+	/**
+	 * @return number of times a connection was lent out so far
+	 */
+	public synchronized long getNbrBorrowed() {
+		return this.nbrBorrowed;
+	}
+
+	/**
+	 * @return number of connections that are currently lent out
+	 */
+	public synchronized int getNbrActive() {
+		return this.borrowedOnes.size();
+	}
+
+	/**
+	 * @return number of connections that are idle in the pool
+	 */
+	public synchronized int getNbrIdle() {
+		return this.idleOnes.size();
+	}
+
+	/**
+	 * @return number of physical connections opened so far
+	 */
+	public synchronized long getNbrCreated() {
+		return this.nbrCreated;
+	}
+
+	/**
+	 * @return number of physical connections closed so far
+	 */
+	public synchronized long getNbrDiscarded() {
+		return this.nbrDiscarded;
+	}
+
+	/**
+	 * @return number of times a borrower gave up after waiting for max wait
+	 *         time
+	 */
+	public synchronized long getNbrTimeouts() {
+		return this.nbrTimeouts;
+	}
+
+	/**
+	 * @return total time, in milliseconds, borrowers spent in getting a
+	 *         connection. This includes time spent in opening and validating
+	 *         connections.
+	 */
+	public synchronized long getTotalWaitMillis() {
+		return this.totalWaitNanos / 1000000L;
+	}
+
+	/**
+	 * @return the longest time, in milliseconds, that a borrower had to wait
+	 */
+	public synchronized long getMaxWaitMillis() {
+		return this.maxWaitNanos / 1000000L;
+	}
+
+	/**
+	 * @return number of times a cached prepared statement was re-used
+	 */
+	public long getNbrStatementHits() {
+		return this.statementHits.get();
+	}
+
+	/**
+	 * @return number of times a statement had to be prepared
+	 */
+	public long getNbrStatementMisses() {
+		return this.statementMisses.get();
+	}
+
+	/**
+	 * @return number of statements evicted from the caches to make room for
+	 *         new ones
+	 */
+	public long getNbrStatementEvictions() {
+		return this.statementEvictions.get();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Connection pool for " + this.getPoolName() + " : borrowed="
+				+ this.nbrBorrowed + ", active=" + this.borrowedOnes.size()
+				+ ", idle=" + this.idleOnes.size() + ", created="
+				+ this.nbrCreated + ", discarded=" + this.nbrDiscarded
+				+ ", timeouts=" + this.nbrTimeouts + ", totalWaitMillis="
+				+ (this.totalWaitNanos / 1000000L) + ", maxWaitMillis="
+				+ (this.maxWaitNanos / 1000000L) + ", statementHits="
+				+ this.statementHits.get() + ", statementMisses="
+				+ this.statementMisses.get();
+	}
+
+	private String getPoolName() {
+		if (this.schema == null) {
+			return "default schema";
+		}
+		return "schema " + this.schema;
+	}
+
+	/**
+	 * a slot that was reserved, or a connection that was idle, turned out to be
+	 * unusable.
+	 *
+	 * @param con
+	 *            to be closed, null if it was never opened
+	 */
+	private void discarded(Connection con) {
+		synchronized (this) {
+			this.nbrOpen--;
+			if (con != null) {
+				this.nbrDiscarded++;
+			}
+			this.notifyAll();
+		}
+		if (con != null) {
+			closeIt(con);
+		}
+	}
+
+	/**
+	 * remove connections that are idle for long. Caller must hold lock on this
+	 *
+	 * @param toClose
+	 *            list to which removed connections are added for the caller to
+	 *            close them outside the lock
+	 */
+	private void evictIdle(List<Connection> toClose) {
+		if (this.idleOnes.isEmpty()) {
+			return;
+		}
+		long oldest = System.currentTimeMillis() - this.idleMillis;
+		/*
+		 * most recently used ones are in the front. Hence we check from the
+		 * end
+		 */
+		while (this.idleOnes.isEmpty() == false
+				&& this.idleOnes.getLast().idleSince < oldest) {
+			toClose.add(this.idleOnes.removeLast().connection);
+			this.nbrOpen--;
+			this.nbrDiscarded++;
+		}
+	}
+
+	/**
+	 * restore a connection to its default state before it is put back into
+	 * the pool. DbDriver sets read-only/auto-commit based on the access type.
+	 *
+	 * @param con
+	 * @return true if all ok, false if the connection is not good to be
+	 *         re-used
+	 */
+	private static boolean resetState(Connection con) {
+		try {
+			if (con.isClosed()) {
+				return false;
+			}
+			if (con.getAutoCommit() == false) {
+				/*
+				 * any work that is not committed by now is not meant to be
+				 */
+				con.rollback();
+				con.setAutoCommit(true);
+			}
+			if (con.isReadOnly()) {
+				con.setReadOnly(false);
+			}
+			con.clearWarnings();
+			return true;
+		} catch (Exception e) {
+			Tracer.trace("Connection could not be reset to be returned to pool. "
+					+ e.getMessage());
+			return false;
+		}
+	}
+
+	private static boolean isValid(Connection con) {
+		try {
+			return con.isValid(VALIDATION_SECONDS);
+		} catch (AbstractMethodError e) {
+			/*
+			 * pre-jdbc4 driver
+			 */
+			try {
+				return con.isClosed() == false;
+			} catch (Exception e1) {
+				return false;
+			}
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static void closeAll(List<Connection> cons) {
+		for (Connection con : cons) {
+			closeIt(con);
+		}
+		cons.clear();
+	}
+
+	private static void closeIt(Connection con) {
+		try {
+			con.close();
+		} catch (Exception e) {
+			//
+		}
+	}
+
+	/**
+	 * connection that is idle in the pool
+	 */
+	private static class IdleConnection {
+		final Connection connection;
+		final StatementCache cache;
+		final long idleSince;
+
+		IdleConnection(Connection connection, StatementCache cache) {
+			this.connection = connection;
+			this.cache = cache;
+			this.idleSince = System.currentTimeMillis();
+		}
+	}
+}
@@ -33,15 +33,21 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Struct;
+import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.naming.InitialContext;
 import javax.sql.DataSource;
 
 import org.simplity.kernel.ApplicationError;
 import org.simplity.kernel.Tracer;
+import org.simplity.kernel.data.ColumnarSheet;
 import org.simplity.kernel.data.DataSheet;
 import org.simplity.kernel.data.DynamicSheet;
 import org.simplity.kernel.data.FieldsInterface;
@@ -197,12 +203,22 @@ public class DbDriver {
 			SQL_TYPES.put(new Integer(i), ValueType.BOOLEAN);
 		}
 	}
-	// private static int numberOfKeysToGenerateAtATime = 100;
 
 	/**
 	 * are we to trace all sqls? Used during development/debugging
 	 */
 	private static boolean traceSqls;
+
+	/**
+	 * rows fetched in one round trip unless specified for the sql. 0 means
+	 * whatever the jdbc driver decides
+	 */
+	private static int defaultFetchSize;
+
+	/**
+	 * used for streaming when no fetch size is specified
+	 */
+	private static final int STREAMING_FETCH_SIZE = 1000;
 	/**
 	 * We use either DataSource, or connection string to connect to the data
 	 * base. DataSource is preferred
@@ -220,6 +236,24 @@ public class DbDriver {
 	private static Map<String, DataSource> otherDataSources = null;
 	private static Map<String, String> otherConStrings = null;
 
+	/*
+	 * connections are pooled when we use connection string. One pool per
+	 * schema
+	 */
+	private static ConnectionPool defaultPool = null;
+	private static Map<String, ConnectionPool> otherPools = null;
+	private static int poolMaxConnections;
+	private static int poolMaxIdle;
+	private static long poolMaxWaitMillis;
+	private static int poolIdleSeconds;
+	private static int poolStatementCacheSize;
+
+	/*
+	 * connection is borrowed when the first sql is executed rather than before
+	 * the call back starts
+	 */
+	private static boolean lazyConnections;
+
 	/*
 	 * RDBMS brand dependent settings. set based on db vendor
 	 */
@@ -237,6 +271,23 @@ public class DbDriver {
 	 */
 	private DbAccessType accessType;
 
+	/**
+	 * prepared statements are cached if the connection is from our pool.
+	 * null otherwise
+	 */
+	private StatementCache statementCache;
+
+	/**
+	 * schema for which connection is to be borrowed lazily
+	 */
+	private final String schema;
+
+	/**
+	 * is the connection borrowed only when it is required, and may be returned
+	 * before the call back completes?
+	 */
+	private final boolean lazy;
+
 	/**
 	 * set up to be called before any db operation can be done
 	 *
@@ -317,6 +368,7 @@ public class DbDriver {
 		if (schemaDetails != null) {
 			Tracer.trace("Checking connection string for additional schemas");
 			otherConStrings = new HashMap<String, String>();
+			otherPools = new HashMap<String, ConnectionPool>();
 			for (SchemaDetail sd : schemaDetails) {
 				if (sd.schemaName == null || sd.connectionString == null) {
 					throw new ApplicationError(
@@ -332,6 +384,80 @@ public class DbDriver {
 		}
 	}
 
+	/**
+	 * set parameters for the connection pools that are used when the
+	 * application uses connection string rather than a dataSource. To be called
+	 * before initialSetup()
+	 *
+	 * @param maxConnections
+	 *            maximum connections open per schema. 0 means default
+	 * @param maxIdle
+	 *            maximum connections kept idle in the pool. 0 means same as
+	 *            maxConnections
+	 * @param maxWaitMillis
+	 *            milliseconds a service waits for a connection before giving
+	 *            up. 0 means default
+	 * @param idleSeconds
+	 *            idle connections are closed after these many seconds. 0 means
+	 *            default
+	 * @param statementCacheSize
+	 *            number of prepared statements cached per pooled connection. 0
+	 *            means default, and negative means statements are not cached
+	 */
+	public static synchronized void setPoolParams(int maxConnections,
+			int maxIdle, long maxWaitMillis, int idleSeconds,
+			int statementCacheSize) {
+		poolMaxConnections = maxConnections;
+		poolMaxIdle = maxIdle;
+		poolMaxWaitMillis = maxWaitMillis;
+		poolIdleSeconds = idleSeconds;
+		poolStatementCacheSize = statementCacheSize;
+	}
+
+	/**
+	 * set the number of rows to be fetched in one round trip, unless a sql
+	 * specifies its own. 0 leaves it to the jdbc driver.
+	 *
+	 * @param fetchSize
+	 */
+	public static void setDefaultFetchSize(int fetchSize) {
+		defaultFetchSize = fetchSize;
+	}
+
+	/**
+	 * should a connection be borrowed only when the first sql is executed,
+	 * rather than before the call back starts? A read-only or auto-commit
+	 * connection may also be returned before the call back completes with
+	 * releaseConnection()
+	 *
+	 * @param lazy
+	 */
+	public static void setLazyConnections(boolean lazy) {
+		lazyConnections = lazy;
+	}
+
+	/**
+	 * get the connection pool used for a schema. Useful for monitoring
+	 *
+	 * @param schema
+	 *            null for default schema
+	 * @return pool used for the schema, or null if the application uses
+	 *         dataSource, or the schema is not defined
+	 */
+	public static ConnectionPool getConnectionPool(String schema) {
+		if (schema == null) {
+			return defaultPool;
+		}
+		String sch = schema.toUpperCase();
+		if (sch.equals(defaultSchema)) {
+			return defaultPool;
+		}
+		if (otherPools == null) {
+			return null;
+		}
+		return otherPools.get(sch);
+	}
+
 	/**
 	 */
 	private static void setDataSource(String schema, String dataSourceName) {
@@ -406,14 +532,19 @@ public class DbDriver {
 		Exception err = null;
 		try {
 			con = DriverManager.getConnection(conString);
+			ConnectionPool pool = new ConnectionPool(schema, conString,
+					poolMaxConnections, poolMaxIdle, poolMaxWaitMillis,
+					poolIdleSeconds, poolStatementCacheSize);
 			if (schema == null) {
 				defaultSchema = extractDefaultSchema(con);
 				connectionString = conString;
+				defaultPool = pool;
 				Tracer.trace("Database connection for " + dbVendor
 						+ " established successfully using a valid connection string. Default schema is "
 						+ defaultSchema);
 			} else {
 				otherConStrings.put(schema.toUpperCase(), conString);
+				otherPools.put(schema.toUpperCase(), pool);
 				Tracer.trace(
 						"Additional connection string validated for schema "
 								+ schema);
@@ -481,11 +612,12 @@ public class DbDriver {
 	 */
 	public static void workWithDriver(DbClientInterface callBackObject,
 			DbAccessType accType, String schema) {
+		boolean lazy = lazyConnections && accType != DbAccessType.NONE;
 		Connection con = null;
-		if (accType != DbAccessType.NONE) {
+		if (accType != DbAccessType.NONE && lazy == false) {
 			con = getConnection(accType, schema);
 		}
-		DbDriver driver = new DbDriver(con, accType);
+		DbDriver driver = new DbDriver(con, accType, schema, lazy);
 		boolean allOk = false;
 		Exception exception = null;
 		try {
@@ -495,8 +627,11 @@ public class DbDriver {
 					"Callback object threw an exception while working with the driver");
 			exception = e;
 		}
-		if (con != null) {
-			closeConnection(con, accType, allOk);
+		/*
+		 * with lazy connection, driver may have borrowed/returned connection
+		 */
+		if (driver.connection != null) {
+			closeConnection(driver.connection, accType, allOk);
 		}
 		if (exception != null) {
 			String msg = "Error while executing a service. "
@@ -544,10 +679,19 @@ public class DbDriver {
 			}
 		} catch (Exception e) {
 			if (con != null) {
-				try {
-					con.close();
-				} catch (Exception e1) {
-					//
+				/*
+				 * a pooled connection is to be given back, and not just
+				 * closed, so that the pool does not count it as open
+				 */
+				ConnectionPool pool = getOwnerPool(con);
+				if (pool != null) {
+					pool.giveBack(con, false);
+				} else {
+					try {
+						con.close();
+					} catch (Exception e1) {
+						//
+					}
 				}
 				con = null;
 			}
@@ -611,31 +755,106 @@ public class DbDriver {
 					"Database should be initialized properly before any operation can be done.");
 		}
 		/*
-		 * old-fashioned application :-(
+		 * old-fashioned application :-( we pool them ourselves
 		 */
 		if (sch == null) {
-			return DriverManager.getConnection(connectionString);
+			return defaultPool.borrow();
 		}
 		/*
 		 * service uses a non-default schema
 		 */
-		String conString = otherConStrings.get(sch);
-		if (conString == null) {
+		ConnectionPool pool = otherPools == null ? null : otherPools.get(sch);
+		if (pool == null) {
 			throw new ApplicationError(
 					"No connection string configured for schema " + sch);
 		}
-		return DriverManager.getConnection(conString);
+		return pool.borrow();
+	}
+
+	/**
+	 * @param con
+	 * @return pool from which this connection is borrowed, null if it is not
+	 *         a pooled connection
+	 */
+	private static ConnectionPool getOwnerPool(Connection con) {
+		if (defaultPool == null) {
+			return null;
+		}
+		if (defaultPool.owns(con)) {
+			return defaultPool;
+		}
+		if (otherPools != null) {
+			for (ConnectionPool pool : otherPools.values()) {
+				if (pool.owns(con)) {
+					return pool;
+				}
+			}
+		}
+		return null;
 	}
 
 	/**
 	 * private constructor to ensure that we control its instantiation
 	 *
 	 * @param con
+	 *            null if access type is none, or if it is to be borrowed lazily
 	 * @param dbAccessType
+	 * @param schema
+	 *            schema for which connection is to be borrowed lazily
+	 * @param lazy
+	 *            true if connection is to be borrowed when the first sql is
+	 *            executed
 	 */
-	private DbDriver(Connection con, DbAccessType dbAccessType) {
-		this.connection = con;
+	private DbDriver(Connection con, DbAccessType dbAccessType, String schema,
+			boolean lazy) {
 		this.accessType = dbAccessType;
+		this.schema = schema;
+		this.lazy = lazy;
+		this.attach(con);
+	}
+
+	/**
+	 * use this connection, along with its statement cache if it is pooled
+	 *
+	 * @param con
+	 *            null to detach the current connection
+	 */
+	private void attach(Connection con) {
+		this.connection = con;
+		this.statementCache = null;
+		if (con != null) {
+			ConnectionPool pool = getOwnerPool(con);
+			if (pool != null) {
+				this.statementCache = pool.getStatementCache(con);
+			}
+		}
+	}
+
+	/**
+	 * borrow a connection if we are lazy and we do not have one yet
+	 */
+	private void borrowIfRequired() {
+		if (this.lazy && this.connection == null) {
+			Tracer.trace("Borrowing a " + this.accessType
+					+ " connection on its first use");
+			this.attach(getConnection(this.accessType, this.schema));
+		}
+	}
+
+	/**
+	 * return the connection to the pool if it is no more required. Relevant
+	 * only if the connection was borrowed lazily, and it is not managing a
+	 * transaction. A connection is borrowed again if any sql is executed after
+	 * this call.
+	 */
+	public void releaseConnection() {
+		if (this.lazy == false || this.connection == null
+				|| this.accessType == DbAccessType.READ_WRITE) {
+			return;
+		}
+		Connection con = this.connection;
+		this.attach(null);
+		closeConnection(con, this.accessType, true);
 	}
 
 	/**
@@ -654,6 +873,29 @@ public class DbDriver {
 	 */
 	public int extractFromSql(String sql, Value[] values, DataSheet outSheet,
 			boolean oneRowOnly) {
+		return this.extractFromSql(sql, values, outSheet, oneRowOnly, 0);
+	}
+
+	/**
+	 * extract output from sql into data sheet
+	 *
+	 * @param sql
+	 *            must be a single prepared sql, with no semicolon at the end.
+	 * @param values
+	 *            to be put into the prepared sql
+	 * @param outSheet
+	 *            data sheet that has the expected columns defined in it.
+	 * @param oneRowOnly
+	 *            true if (at most) one row is to be extracted. false to extract
+	 *            all rows
+	 * @param fetchSize
+	 *            number of rows to be fetched in one round trip. 0 means the
+	 *            default for the application
+	 * @return number of rows extracted
+	 */
+	public int extractFromSql(String sql, Value[] values, DataSheet outSheet,
+			boolean oneRowOnly, int fetchSize) {
+		this.borrowIfRequired();
 		if (traceSqls) {
 			this.traceSql(sql, values);
 			if (this.connection == null) {
@@ -663,16 +905,19 @@ public class DbDriver {
 		PreparedStatement stmt = null;
 		int result = 0;
 		try {
-			stmt = this.connection.prepareStatement(sql);
+			stmt = this.prepare(sql, null);
 			this.setParams(stmt, values);
 			if (oneRowOnly) {
 				return this.extractOne(stmt, outSheet);
 			}
+			setFetchSize(stmt, fetchSize);
 			result = this.extractAll(stmt, outSheet);
 		} catch (SQLException e) {
+			this.discardStatement(stmt);
+			stmt = null;
 			throw new ApplicationError(e, "Sql Error while extracting data ");
 		} finally {
-			this.closeStatment(stmt);
+			this.releaseStatement(stmt);
 		}
 		return result;
 	}
@@ -685,6 +930,7 @@ public class DbDriver {
 	 * @return true if there is at least one row
 	 */
 	public boolean hasResult(String sql, Value[] values) {
+		this.borrowIfRequired();
 		if (traceSqls) {
 			this.traceSql(sql, values);
 			if (this.connection == null) {
@@ -694,7 +940,7 @@ public class DbDriver {
 		PreparedStatement stmt = null;
 		boolean result = false;
 		try {
-			stmt = this.connection.prepareStatement(sql);
+			stmt = this.prepare(sql, null);
 			this.setParams(stmt, values);
 			ResultSet rs = stmt.executeQuery();
 			if (rs.next()) {
@@ -702,9 +948,11 @@ public class DbDriver {
 			}
 			rs.close();
 		} catch (SQLException e) {
+			this.discardStatement(stmt);
+			stmt = null;
 			throw new ApplicationError(e, "Sql Error while extracting data ");
 		} finally {
-			this.closeStatment(stmt);
+			this.releaseStatement(stmt);
 		}
 		return result;
 	}
@@ -723,6 +971,27 @@ public class DbDriver {
 	 */
 	public int extractFromSql(String sql, Value[][] values,
 			DataSheet outSheet) {
+		return this.extractFromSql(sql, values, outSheet, 0);
+	}
+
+	/**
+	 * extract output from sql with different sets of input values into data
+	 * sheet
+	 *
+	 * @param sql
+	 *            must be a single prepared sql, with no semicolon at the end.
+	 * @param values
+	 *            to be put into the prepared sql, one row per batch
+	 * @param outSheet
+	 *            data sheet that has the expected columns defined in it.
+	 * @param fetchSize
+	 *            number of rows to be fetched in one round trip. 0 means the
+	 *            default for the application
+	 * @return number of rows extracted
+	 */
+	public int extractFromSql(String sql, Value[][] values,
+			DataSheet outSheet, int fetchSize) {
+		this.borrowIfRequired();
 		if (traceSqls) {
 			this.traceBatchSql(sql, values);
 			if (this.connection == null) {
@@ -732,19 +1001,102 @@ public class DbDriver {
 		PreparedStatement stmt = null;
 		int total = 0;
 		try {
-			stmt = this.connection.prepareStatement(sql);
+			stmt = this.prepare(sql, null);
+			setFetchSize(stmt, fetchSize);
 			for (Value[] vals : values) {
 				this.setParams(stmt, vals);
 				total += this.extractAll(stmt, outSheet);
 			}
 		} catch (SQLException e) {
+			this.discardStatement(stmt);
+			stmt = null;
 			throw new ApplicationError(e, "Sql Error while extracting data ");
 		} finally {
-			this.closeStatment(stmt);
+			this.releaseStatement(stmt);
 		}
 		return total;
 	}
 
+	/**
+	 * extract rows for a set of key values with as few sqls as possible. Key
+	 * values are sent in chunks as IN (?,?....) list. To keep the number of
+	 * distinct sqls small (they are cached as prepared statements) a chunk is
+	 * padded up to the next power of 2 by repeating its last key.
+	 *
+	 * @param sqlPrefix
+	 *            sql up to the key column, like "SELECT a,b FROM t WHERE
+	 *            keyColumn". We append " IN (?,?....)" to this.
+	 * @param sqlSuffix
+	 *            any text that follows the in-list. Can be null
+	 * @param keys
+	 *            key values. null values and duplicates are ignored
+	 * @param outSheet
+	 *            data sheet that has the expected columns defined in it. Rows
+	 *            are added to it once for each distinct key that is found, in
+	 *            no specific order.
+	 * @return number of rows extracted
+	 */
+	public int extractForKeys(String sqlPrefix, String sqlSuffix, Value[] keys,
+			DataSheet outSheet) {
+		List<Value> distinctKeys = new ArrayList<Value>(keys.length);
+		Set<String> keysSeen = new HashSet<String>();
+		for (Value key : keys) {
+			if (Value.isNull(key) == false && keysSeen.add(key.toText())) {
+				distinctKeys.add(key);
+			}
+		}
+		int nbrKeys = distinctKeys.size();
+		int maxChunk = dbVendor == null ? DbVendor.H2.getMaxInListSize()
+				: dbVendor.getMaxInListSize();
+		int total = 0;
+		int start = 0;
+		while (start < nbrKeys) {
+			int nbr = nbrKeys - start;
+			if (nbr > maxChunk) {
+				nbr = maxChunk;
+			}
+			int size = getInListSize(nbr, maxChunk);
+			Value[] values = new Value[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = distinctKeys.get(start + (i < nbr ? i : nbr - 1));
+			}
+			String sql = getInListSql(sqlPrefix, sqlSuffix, size);
+			total += this.extractFromSql(sql, values, outSheet, false);
+			start += nbr;
+		}
+		return total;
+	}
+
+	/**
+	 * number of entries to be used in an in-list for a given number of keys.
+	 * We use powers of 2 so that only a few sqls are ever prepared.
+	 */
+	private static int getInListSize(int nbrKeys, int maxSize) {
+		int size = 1;
+		while (size < nbrKeys) {
+			size = size << 1;
+		}
+		if (size > maxSize) {
+			return maxSize;
+		}
+		return size;
+	}
+
+	private static String getInListSql(String sqlPrefix, String sqlSuffix,
+			int nbrParams) {
+		StringBuilder sbf = new StringBuilder(
+				sqlPrefix.length() + nbrParams * 2 + 10);
+		sbf.append(sqlPrefix).append(" IN (?");
+		for (int i = 1; i < nbrParams; i++) {
+			sbf.append(",?");
+		}
+		sbf.append(')');
+		if (sqlSuffix != null) {
+			sbf.append(sqlSuffix);
+		}
+		return sbf.toString();
+	}
+
 	/**
 	 * extract output from sql that the caller has o idea about the output
 	 * columns
@@ -760,6 +1112,7 @@ public class DbDriver {
 	 */
 	public DataSheet extractFromDynamicSql(String sql, Value[] values,
 			boolean oneRowOnly) {
+		this.borrowIfRequired();
 		if (traceSqls) {
 			this.traceSql(sql, values);
 			if (this.connection == null) {
@@ -769,16 +1122,18 @@ public class DbDriver {
 		PreparedStatement stmt = null;
 		DataSheet result = null;
 		try {
-			stmt = this.connection.prepareStatement(sql);
+			stmt = this.prepare(sql, null);
 			this.setParams(stmt, values);
 			if (oneRowOnly) {
 				return this.extractMetaOne(stmt);
 			}
 			result = this.extractMetaAll(stmt);
 		} catch (SQLException e) {
+			this.discardStatement(stmt);
+			stmt = null;
 			throw new ApplicationError(e, "Sql Error while extracting data ");
 		} finally {
-			this.closeStatment(stmt);
+			this.releaseStatement(stmt);
 		}
 		return result;
 	}
@@ -799,6 +1154,7 @@ public class DbDriver {
 	public int executeSql(String sql, Value[] values,
 			boolean treatSqlErrorAsNoAction) {
 		PreparedStatement stmt = null;
+		this.borrowIfRequired();
 		if (traceSqls) {
 			this.traceSql(sql, values);
 			if (this.connection == null) {
@@ -808,10 +1164,12 @@ public class DbDriver {
 		this.checkWritable();
 		int result = 0;
 		try {
-			stmt = this.connection.prepareStatement(sql);
+			stmt = this.prepare(sql, null);
 			this.setParams(stmt, values);
 			result = stmt.executeUpdate();
 		} catch (SQLException e) {
+			this.discardStatement(stmt);
+			stmt = null;
 			if (treatSqlErrorAsNoAction) {
 				Tracer.trace("SQLException code:" + e.getErrorCode()
 				+ " message :" + e.getMessage()
@@ -820,7 +1178,7 @@ public class DbDriver {
 				throw new ApplicationError(e, "Sql Error while executing sql ");
 			}
 		} finally {
-			this.closeStatment(stmt);
+			this.releaseStatement(stmt);
 		}
 		if (result < 0) {
 			Tracer.trace(
@@ -854,6 +1212,7 @@ public class DbDriver {
 			long[] generatedKeys, String[] keyNames,
 			boolean treatSqlErrorAsNoAction) {
 		PreparedStatement stmt = null;
+		this.borrowIfRequired();
 		if (traceSqls) {
 			this.traceSql(sql, values);
 			if (this.connection == null) {
@@ -863,13 +1222,15 @@ public class DbDriver {
 		this.checkWritable();
 		int result = 0;
 		try {
-			stmt = this.connection.prepareStatement(sql, keyNames);
+			stmt = this.prepare(sql, keyNames);
 			this.setParams(stmt, values);
 			result = stmt.executeUpdate();
 			if (result > 0) {
 				this.getGeneratedKeys(stmt, generatedKeys);
 			}
 		} catch (SQLException e) {
+			this.discardStatement(stmt);
+			stmt = null;
 			if (treatSqlErrorAsNoAction) {
 				Tracer.trace("SQLException code:" + e.getErrorCode()
 				+ " message :" + e.getMessage()
@@ -878,7 +1239,7 @@ public class DbDriver {
 				throw new ApplicationError(e, "Sql Error while executing sql ");
 			}
 		} finally {
-			this.closeStatment(stmt);
+			this.releaseStatement(stmt);
 		}
 		if (result < 0) {
 			Tracer.trace(
@@ -923,15 +1284,102 @@ public class DbDriver {
 	 */
 	public int workWithRows(String sql, Value[] values, ValueType[] outputTypes,
 			RowIterator iterator) {
+		this.borrowIfRequired();
+		if (traceSqls) {
+			this.traceSql(sql, values);
+			if (this.connection == null) {
+				return 0;
+			}
+		}
 		PreparedStatement stmt = null;
 		try {
-			stmt = this.connection.prepareStatement(sql);
+			stmt = this.prepare(sql, null);
 			this.setParams(stmt, values);
 			return this.iterate(stmt, outputTypes, iterator);
 		} catch (SQLException e) {
+			this.discardStatement(stmt);
+			stmt = null;
 			throw new ApplicationError(e, "Sql Error executing service ");
+		} finally {
+			this.releaseStatement(stmt);
+		}
+	}
+
+	/**
+	 * stream rows of the sql to the iterator. Unlike workWithRows(), we ask the
+	 * jdbc driver not to buffer the whole result, but to fetch rows as they
+	 * are consumed. Use this for exports and other large outputs. The iterator
+	 * MUST NOT use this driver for any other sql, as some vendors (MySql) do
+	 * not allow that till the result set is closed.
+	 *
+	 * @param sql
+	 * @param values
+	 *            for the sql
+	 * @param outputTypes
+	 *            value types of output parameters. null if you want us to
+	 *            discover it
+	 * @param iterator
+	 *            to be called back with workWithARow(row) method. iteration
+	 *            stops if this method returns false;
+	 * @param fetchSize
+	 *            number of rows to be fetched in one round trip. 0 means the
+	 *            default for the application
+	 * @return number of rows iterated
+	 */
+	public int streamRows(String sql, Value[] values, ValueType[] outputTypes,
+			RowIterator iterator, int fetchSize) {
+		this.borrowIfRequired();
+		if (traceSqls) {
+			this.traceSql(sql, values);
+			if (this.connection == null) {
+				return 0;
+			}
+		}
+		int nbrRows = fetchSize;
+		if (nbrRows <= 0) {
+			nbrRows = defaultFetchSize > 0 ? defaultFetchSize
+					: STREAMING_FETCH_SIZE;
+		}
+		DbVendor vendor = dbVendor == null ? DbVendor.H2 : dbVendor;
+		nbrRows = vendor.getStreamingFetchSize(nbrRows);
+		/*
+		 * some drivers use a cursor only within a transaction
+		 */
+		boolean resetAutoCommit = false;
+		PreparedStatement stmt = null;
+		try {
+			if (vendor.streamsOnlyInTransaction()
+					&& this.connection.getAutoCommit()) {
+				this.connection.setAutoCommit(false);
+				resetAutoCommit = true;
+			}
+			/*
+			 * we do not use a cached statement, as fetch size and cursor are
+			 * specific to this use
+			 */
+			stmt = this.connection.prepareStatement(sql,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(nbrRows);
+			this.setParams(stmt, values);
+			int result = this.iterate(stmt, outputTypes, iterator);
+			Tracer.trace(result + " rows streamed.");
+			return result;
+		} catch (SQLException e) {
+			throw new ApplicationError(e, "Sql Error while streaming rows ");
 		} finally {
 			this.closeStatment(stmt);
+			if (resetAutoCommit) {
+				try {
+					/*
+					 * we only read. commit just ends the transaction
+					 */
+					this.connection.commit();
+					this.connection.setAutoCommit(true);
+				} catch (SQLException e) {
+					Tracer.trace(e,
+							"Unable to reset auto commit after streaming rows");
+				}
+			}
 		}
 	}
 
@@ -950,6 +1398,7 @@ public class DbDriver {
 	 */
 	public int[] executeBatch(String sql, Value[][] values,
 			boolean treatSqlErrorAsNoAction) {
+		this.borrowIfRequired();
 		if (traceSqls) {
 			this.traceBatchSql(sql, values);
 			if (this.connection == null) {
@@ -960,13 +1409,15 @@ public class DbDriver {
 		PreparedStatement stmt = null;
 		int[] result = new int[0];
 		try {
-			stmt = this.connection.prepareStatement(sql);
+			stmt = this.prepare(sql, null);
 			for (Value[] row : values) {
 				this.setParams(stmt, row);
 				stmt.addBatch();
 			}
 			result = stmt.executeBatch();
 		} catch (SQLException e) {
+			this.discardStatement(stmt);
+			stmt = null;
 			if (treatSqlErrorAsNoAction) {
 				Tracer.trace("SQLException code:" + e.getErrorCode()
 				+ " message :" + e.getMessage()
@@ -976,7 +1427,7 @@ public class DbDriver {
 						"Sql Error while executing batch ");
 			}
 		} finally {
-			this.closeStatment(stmt);
+			this.releaseStatement(stmt);
 		}
 		int rows = 0;
 		for (int j : result) {
@@ -996,6 +1447,66 @@ public class DbDriver {
 		return result;
 	}
 
+	/**
+	 * execute an insert statement with different sets of values, and get the
+	 * keys generated by the rdbms. Use this only if the vendor
+	 * supportsBatchGeneratedKeys()
+	 *
+	 * @param sql
+	 *            insert sql
+	 * @param values
+	 *            each row should have the same number of values, in the right
+	 *            order for the sql
+	 * @param generatedKeys
+	 *            array in which generated keys are returned, one per row. An
+	 *            element is left as 0 if the driver did not return a key for
+	 *            that row
+	 * @param keyNames
+	 *            names of columns that have generated keys. This is typically
+	 *            just one, primary key
+	 * @param treatSqlErrorAsNoAction
+	 *            if true, sql error is treated as if rows affected is zero.
+	 * @return affected rows for each set of values
+	 */
+	public int[] executeBatchAndGetKeys(String sql, Value[][] values,
+			long[] generatedKeys, String[] keyNames,
+			boolean treatSqlErrorAsNoAction) {
+		this.borrowIfRequired();
+		if (traceSqls) {
+			this.traceBatchSql(sql, values);
+			if (this.connection == null) {
+				return new int[0];
+			}
+		}
+		this.checkWritable();
+		PreparedStatement stmt = null;
+		int[] result = new int[0];
+		try {
+			stmt = this.prepare(sql, keyNames);
+			for (Value[] row : values) {
+				this.setParams(stmt, row);
+				stmt.addBatch();
+			}
+			result = stmt.executeBatch();
+			this.getGeneratedKeys(stmt, generatedKeys);
+		} catch (SQLException e) {
+			this.discardStatement(stmt);
+			stmt = null;
+			if (treatSqlErrorAsNoAction) {
+				Tracer.trace("SQLException code:" + e.getErrorCode()
+				+ " message :" + e.getMessage()
+				+ " is treated as zero rows affected.");
+			} else {
+				throw new ApplicationError(e,
+						"Sql Error while executing batch ");
+			}
+		} finally {
+			this.releaseStatement(stmt);
+		}
+		Tracer.trace(result.length + " rows inserted with a batch.");
+		return result;
+	}
+
 	/**
 	 * extract output from stored procedure into data sheet
 	 *
@@ -1012,6 +1523,7 @@ public class DbDriver {
 	public int executeSp(String sql, FieldsInterface inputFields,
 			FieldsInterface outputFields, ProcedureParameter[] params,
 			DataSheet[] outputSheets, ServiceContext ctx) {
+		this.borrowIfRequired();
 		if (traceSqls) {
 			this.traceSql(sql, null);
 			if (this.connection == null) {
@@ -1111,6 +1623,7 @@ public class DbDriver {
 	 */
 	static void closeConnection(Connection con, DbAccessType accType,
 			boolean allOk) {
+		boolean healthy = true;
 		try {
 			Tracer.trace("Going to close a connection of type " + accType
 					+ " with allOK = " + allOk);
@@ -1124,11 +1637,17 @@ public class DbDriver {
 		} catch (SQLException e) {
 			// throw new ApplicationError(e,
 			Tracer.trace(e, "Sql Error while closing database connection. ");
+			healthy = false;
 		} finally {
-			try {
-				con.close();
-			} catch (Exception e) {
-				//
+			ConnectionPool pool = getOwnerPool(con);
+			if (pool != null) {
+				pool.giveBack(con, healthy);
+			} else {
+				try {
+					con.close();
+				} catch (Exception e) {
+					//
+				}
 			}
 		}
 	}
@@ -1167,9 +1686,17 @@ public class DbDriver {
 		ValueType[] outputTypes = outSheet.getValueTypes();
 		ResultSet rs = stmt.executeQuery();
 		int result = 0;
-		while (rs.next()) {
-			outSheet.addRow(getParams(rs, outputTypes));
-			result++;
+		if (outSheet instanceof ColumnarSheet) {
+			ColumnarSheet sheet = (ColumnarSheet) outSheet;
+			while (rs.next()) {
+				extractToColumns(rs, outputTypes, sheet);
+				result++;
+			}
+		} else {
+			while (rs.next()) {
+				outSheet.addRow(getParams(rs, outputTypes));
+				result++;
+			}
 		}
 		rs.close();
 		Tracer.trace(result + " rows extracted.");
@@ -1189,7 +1716,12 @@ public class DbDriver {
 		ResultSet rs = stmt.executeQuery();
 		int result = 0;
 		if (rs.next()) {
-			outSheet.addRow(getParams(rs, outSheet.getValueTypes()));
+			if (outSheet instanceof ColumnarSheet) {
+				extractToColumns(rs, outSheet.getValueTypes(),
+						(ColumnarSheet) outSheet);
+			} else {
+				outSheet.addRow(getParams(rs, outSheet.getValueTypes()));
+			}
 
 			result = 1;
 		}
@@ -1198,6 +1730,48 @@ public class DbDriver {
 		return result;
 	}
 
+	/**
+	 * extract current row of result set into a new row of a columnar sheet,
+	 * without creating value objects for primitive columns
+	 *
+	 * @param rs
+	 * @param types
+	 * @param sheet
+	 * @throws SQLException
+	 */
+	private static void extractToColumns(ResultSet rs, ValueType[] types,
+			ColumnarSheet sheet) throws SQLException {
+		int row = sheet.addEmptyRow();
+		for (int i = 0; i < types.length; i++) {
+			int posn = i + 1;
+			switch (types[i]) {
+			case INTEGER:
+				long lng = rs.getLong(posn);
+				if (rs.wasNull() == false) {
+					sheet.setLong(i, row, lng);
+				}
+				break;
+			case DECIMAL:
+				double dbl = rs.getDouble(posn);
+				if (rs.wasNull() == false) {
+					sheet.setDouble(i, row, dbl);
+				}
+				break;
+			case TEXT:
+				sheet.setText(i, row, rs.getString(posn));
+				break;
+			case DATE:
+				Timestamp stamp = rs.getTimestamp(posn);
+				if (stamp != null) {
+					sheet.setLong(i, row, stamp.getTime());
+				}
+				break;
+			default:
+				sheet.setValue(i, row, types[i].extractFromRs(rs, posn));
+			}
+		}
+	}
+
 	/**
 	 * @param stmt
 	 * @return
@@ -1250,8 +1824,10 @@ public class DbDriver {
 				: outputTypes;
 		int nbr = 0;
 		while (rs.next()) {
-			iterator.workWithARow(getParams(rs, types));
 			nbr++;
+			if (iterator.workWithARow(getParams(rs, types)) == false) {
+				break;
+			}
 		}
 		rs.close();
 		return nbr;
@@ -1338,6 +1914,82 @@ public class DbDriver {
 		return values;
 	}
 
+	/**
+	 * get a prepared statement, from cache if possible. Statement obtained
+	 * this way MUST be released with releaseStatement() and not closed. Fetch
+	 * size of the statement is set to the default every time, as a cached
+	 * statement would otherwise carry the fetch size of its previous use.
+	 *
+	 * @param sql
+	 * @param keyNames
+	 *            names of columns with generated keys for an insert sql. null
+	 *            otherwise
+	 * @return prepared statement
+	 * @throws SQLException
+	 */
+	private PreparedStatement prepare(String sql, String[] keyNames)
+			throws SQLException {
+		PreparedStatement stmt;
+		if (this.statementCache != null) {
+			stmt = this.statementCache.prepare(this.connection, sql, keyNames);
+		} else if (keyNames == null) {
+			stmt = this.connection.prepareStatement(sql);
+		} else {
+			stmt = this.connection.prepareStatement(sql, keyNames);
+		}
+		setFetchSize(stmt, 0);
+		return stmt;
+	}
+
+	/**
+	 * set fetch size to a statement
+	 *
+	 * @param stmt
+	 * @param fetchSize
+	 *            0 means default for the application
+	 * @throws SQLException
+	 */
+	private static void setFetchSize(PreparedStatement stmt, int fetchSize)
+			throws SQLException {
+		int n = fetchSize > 0 ? fetchSize : defaultFetchSize;
+		stmt.setFetchSize(n);
+	}
+
+	/**
+	 * statement obtained with prepare() is no more required
+	 *
+	 * @param stmt
+	 *            can be null
+	 */
+	private void releaseStatement(PreparedStatement stmt) {
+		if (stmt == null) {
+			return;
+		}
+		if (this.statementCache != null) {
+			this.statementCache.release(stmt, true);
+		} else {
+			this.closeStatment(stmt);
+		}
+	}
+
+	/**
+	 * statement obtained with prepare() ran into an error, and should not be
+	 * re-used
+	 *
+	 * @param stmt
+	 *            can be null
+	 */
+	private void discardStatement(PreparedStatement stmt) {
+		if (stmt == null) {
+			return;
+		}
+		if (this.statementCache != null) {
+			this.statementCache.release(stmt, false);
+		} else {
+			this.closeStatment(stmt);
+		}
+	}
+
 	/**
 	 * @param statement
 	 */
@@ -1850,6 +2502,16 @@ public class DbDriver {
 	 * @return connection object that MUST be closed by you at any cost!!
 	 */
 	public static Connection getConnection() {
+		if (dataSource == null && connectionString != null) {
+			/*
+			 * caller is going to close it, and not return it to our pool.
+			 */
+			try {
+				return DriverManager.getConnection(connectionString);
+			} catch (SQLException e) {
+				throw new ApplicationError(e, "Unable to connect to DataBase");
+			}
+		}
 		return getConnection(null, null);
 	}
 }
\ No newline at end of file
@@ -34,28 +34,103 @@ public enum DbVendor {
 	 * oracle
 	 */
 	ORACLE("select sys_context('userenv','current_schema') x from dual",
-			"ALTER SESSION SET CURRENT_SCHEMA = ")
+			"ALTER SESSION SET CURRENT_SCHEMA = ") {
+		@Override
+		public String getNextValueSql(String sequenceName) {
+			return "SELECT " + sequenceName + ".NEXTVAL FROM DUAL";
+		}
+	}
 
 	/**
 	 * Microsoft Sql Server
 	 */
 	, MSSQL("CURRENT_TIMESTAMP", "select schema_name()", "use ", '%', '_', '[',
-			']')
+			']') {
+		/*
+		 * sql server allows at most 2100 parameters in a statement
+		 */
+		@Override
+		public int getMaxInListSize() {
+			return 2000;
+		}
+	}
 
 	/**
 	 * postgres sql
 	 */
-	, POSTGRE("select current_schema()", "SET schema ")
+	, POSTGRE("select current_schema()", "SET schema ") {
+		@Override
+		public int getMaxInListSize() {
+			return 5000;
+		}
+
+		@Override
+		public boolean supportsBatchGeneratedKeys() {
+			return true;
+		}
+
+		@Override
+		public String getNextValueSql(String sequenceName) {
+			return "SELECT NEXTVAL('" + sequenceName + "')";
+		}
+
+		/*
+		 * postgres driver ignores fetch size in auto-commit mode, and reads
+		 * the whole result into memory
+		 */
+		@Override
+		public boolean streamsOnlyInTransaction() {
+			return true;
+		}
+	}
 
 	/**
 	 * my sql
 	 */
-	, MYSQL
+	, MYSQL {
+		@Override
+		public int getMaxInListSize() {
+			return 5000;
+		}
+
+		@Override
+		public boolean supportsBatchGeneratedKeys() {
+			return true;
+		}
+
+		/*
+		 * my sql has no sequences
+		 */
+		@Override
+		public String getNextValueSql(String sequenceName) {
+			return null;
+		}
+
+		/*
+		 * my sql driver streams rows one by one only with this special value.
+		 * Any other fetch size reads the whole result into memory
+		 */
+		@Override
+		public int getStreamingFetchSize(int fetchSize) {
+			return Integer.MIN_VALUE;
+		}
+	}
 
 	/**
 	 * H2 data base
 	 */
-	, H2("SELECT SCHEMA()","SET schema ") ;
+	, H2("SELECT SCHEMA()","SET schema ") {
+		@Override
+		public boolean supportsBatchGeneratedKeys() {
+			return true;
+		}
+	};
+
+	/*
+	 * oracle does not allow more than 1000 entries in an in-list, and that is
+	 * a good default for others as well
+	 */
+	private static final int DEFAULT_MAX_IN_LIST = 1000;
 
 	/*
 	 * fields default to standard
@@ -130,4 +205,54 @@ public enum DbVendor {
 	public String getSetSchemaSql(String schema) {
 		return this.setSchema + schema;
 	}
+
+	/**
+	 *
+	 * @return maximum number of values we put in an IN (?,?...) list of a
+	 *         single sql
+	 */
+	public int getMaxInListSize() {
+		return DEFAULT_MAX_IN_LIST;
+	}
+
+	/**
+	 *
+	 * @return true if the jdbc driver returns generated keys for all the rows
+	 *         inserted with a batch. false if keys are to be generated one row
+	 *         at a time
+	 */
+	public boolean supportsBatchGeneratedKeys() {
+		return false;
+	}
+
+	/**
+	 *
+	 * @param sequenceName
+	 *            name of the sequence
+	 * @return sql that selects the next value of the sequence. null if this
+	 *         vendor does not support sequences
+	 */
+	public String getNextValueSql(String sequenceName) {
+		return "SELECT NEXT VALUE FOR " + sequenceName;
+	}
+
+	/**
+	 *
+	 * @param fetchSize
+	 *            number of rows to be fetched in a round trip
+	 * @return fetch size to be set to a statement for streaming rows rather
+	 *         than reading the whole result into memory
+	 */
+	public int getStreamingFetchSize(int fetchSize) {
+		return fetchSize;
+	}
+
+	/**
+	 *
+	 * @return true if the driver fetches rows in chunks only within a
+	 *         transaction (auto-commit off)
+	 */
+	public boolean streamsOnlyInTransaction() {
+		return false;
+	}
 }
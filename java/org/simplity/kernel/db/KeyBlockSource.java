@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.db;
+
+/**
+ * Source from which blocks of keys are reserved for a generated primary key.
+ * Keys are then handed out by a KeyGenerator from memory, so that rows can be
+ * inserted with their keys already assigned, and hence inserted in batches.
+ *
+ * An implementation must never hand out the same key twice, even across
+ * application instances that share the data base. Keys are shared by all
+ * threads once they are reserved, and hence a reservation must not be undone
+ * if the transaction of the caller is rolled back. A source that reserves
+ * keys without a transaction, like drawing from a sequence, should use the
+ * driver of the caller rather than borrowing another connection. Specify the fully qualified class name as
+ * keyBlockSource of a record to use your own source. We provide
+ * SequenceKeySource and TableKeySource.
+ *
+ * @author simplity.org
+ *
+ */
+public interface KeyBlockSource {
+	/**
+	 * reserve a block of keys
+	 *
+	 * @param keyName
+	 *            name of the key, like a sequence name or table name, that
+	 *            identifies the series of keys
+	 * @param nbrKeys
+	 *            number of keys to be reserved.
+	 * @param driver
+	 *            driver that the caller is working with
+	 * @return first key of the block. keys from this one to (this + nbrKeys -
+	 *         1) are reserved for the caller
+	 */
+	public long reserveKeys(String keyName, int nbrKeys, DbDriver driver);
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.db;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.Tracer;
+
+/**
+ * Hands out generated keys from blocks that are reserved from a
+ * KeyBlockSource. We go to the data base once for a block of keys rather than
+ * once for every row, and since the keys are known before the rows are
+ * inserted, rows can be inserted with a jdbc batch.
+ *
+ * Keys that are handed out but not used (rolled back, or application
+ * re-started) are lost. Keys are unique, but there may be gaps.
+ *
+ * There is one instance per key name, and it is shared across threads. A
+ * block is reserved without holding the lock on the keys, and with the driver
+ * of the caller, so that a source like a sequence does not need a pooled
+ * connection besides the one that the caller may already hold.
+ *
+ * @author simplity.org
+ *
+ */
+public class KeyGenerator {
+	private static final Map<String, KeyGenerator> generators = new HashMap<String, KeyGenerator>();
+
+	/**
+	 * get the generator for a key
+	 *
+	 * @param keyName
+	 *            name that identifies the series of keys, like sequence name
+	 * @param blockSize
+	 *            number of keys to be reserved at a time
+	 * @param source
+	 *            from which keys are reserved
+	 * @return generator that is shared by all users of this key name
+	 */
+	public static KeyGenerator getGenerator(String keyName, int blockSize,
+			KeyBlockSource source) {
+		if (blockSize <= 0) {
+			throw new ApplicationError("Key block size for " + keyName
+					+ " is " + blockSize + ". It should be positive.");
+		}
+		synchronized (generators) {
+			KeyGenerator gen = generators.get(keyName);
+			if (gen == null) {
+				gen = new KeyGenerator(keyName, blockSize, source);
+				generators.put(keyName, gen);
+			} else if (gen.blockSize != blockSize
+					|| gen.source.getClass() != source.getClass()) {
+				Tracer.trace("Key " + keyName
+						+ " is already being generated with a block size of "
+						+ gen.blockSize + " from "
+						+ gen.source.getClass().getName()
+						+ ". That generator is used.");
+			}
+			return gen;
+		}
+	}
+
+	private final String keyName;
+	private final int blockSize;
+	private final KeyBlockSource source;
+
+	/*
+	 * keys from nextKey to lastKey are available in the current block.
+	 */
+	private long nextKey = 1;
+	private long lastKey = 0;
+
+	/*
+	 * held while a block is being reserved, so that only one thread goes to
+	 * the data base when the current block is exhausted
+	 */
+	private final Object reservationLock = new Object();
+
+	private KeyGenerator(String keyName, int blockSize,
+			KeyBlockSource source) {
+		this.keyName = keyName;
+		this.blockSize = blockSize;
+		this.source = source;
+	}
+
+	/**
+	 * @param driver
+	 *            driver the caller is working with. used if a block is to be
+	 *            reserved
+	 * @return next available key
+	 */
+	public long nextKey(DbDriver driver) {
+		while (true) {
+			synchronized (this) {
+				if (this.nextKey <= this.lastKey) {
+					long key = this.nextKey;
+					this.nextKey++;
+					return key;
+				}
+			}
+			this.reserveBlock(driver);
+		}
+	}
+
+	/**
+	 * get keys for a number of rows.
+	 *
+	 * @param nbrKeys
+	 * @param driver
+	 *            driver the caller is working with. used if a block is to be
+	 *            reserved
+	 * @return array of keys. keys are unique, but need not be contiguous
+	 */
+	public long[] nextKeys(int nbrKeys, DbDriver driver) {
+		long[] keys = new long[nbrKeys];
+		int i = 0;
+		while (true) {
+			synchronized (this) {
+				while (i < nbrKeys && this.nextKey <= this.lastKey) {
+					keys[i] = this.nextKey;
+					this.nextKey++;
+					i++;
+				}
+			}
+			if (i == nbrKeys) {
+				return keys;
+			}
+			this.reserveBlock(driver);
+		}
+	}
+
+	/**
+	 * @return name of the key generated by this
+	 */
+	public String getKeyName() {
+		return this.keyName;
+	}
+
+	/**
+	 * reserve next block, unless another thread has done that while we were
+	 * waiting. Other threads that need keys wait till we get this block, but
+	 * that happens once in blockSize keys
+	 */
+	private void reserveBlock(DbDriver driver) {
+		synchronized (this.reservationLock) {
+			synchronized (this) {
+				if (this.nextKey <= this.lastKey) {
+					return;
+				}
+			}
+			long firstKey = this.source.reserveKeys(this.keyName,
+					this.blockSize, driver);
+			Tracer.trace("Keys " + firstKey + " to "
+					+ (firstKey + this.blockSize - 1) + " reserved for "
+					+ this.keyName);
+			synchronized (this) {
+				this.nextKey = firstKey;
+				this.lastKey = firstKey + this.blockSize - 1;
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.db;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.data.DataSheet;
+import org.simplity.kernel.data.MultiRowsSheet;
+import org.simplity.kernel.value.IntegerValue;
+import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
+
+/**
+ * reserves keys from a data base sequence. The sequence MUST be defined to
+ * increment by the block size of the record, like
+ *
+ * <pre>
+ * CREATE SEQUENCE CUSTOMER_SEQ INCREMENT BY 100
+ * </pre>
+ *
+ * so that each value drawn from the sequence reserves the next block of keys.
+ * We check this the first time a block is reserved for a sequence, by drawing
+ * two values, as blocks would overlap otherwise.
+ *
+ * Drawing from a sequence is not undone by a roll back, and hence values are
+ * drawn with the driver of the caller.
+ *
+ * @author simplity.org
+ *
+ */
+public class SequenceKeySource implements KeyBlockSource {
+	private static final String[] NAMES = { "nextKey" };
+	private static final ValueType[] TYPES = { ValueType.INTEGER };
+
+	/*
+	 * sequences whose increment is checked
+	 */
+	private final Set<String> checkedKeys = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	@Override
+	public long reserveKeys(String keyName, int nbrKeys, DbDriver driver) {
+		DbVendor vendor = DbDriver.getDbVendor();
+		String sql = vendor == null ? null : vendor.getNextValueSql(keyName);
+		if (sql == null) {
+			throw new ApplicationError("Data base vendor " + vendor
+					+ " does not support sequences. Use a key table to reserve keys for "
+					+ keyName);
+		}
+		long firstKey = nextValue(driver, sql, keyName);
+		if (this.checkedKeys.contains(keyName)) {
+			return firstKey;
+		}
+		long nextKey = nextValue(driver, sql, keyName);
+		checkIncrement(keyName, nextKey - firstKey, nbrKeys);
+		this.checkedKeys.add(keyName);
+		return nextKey;
+	}
+
+	/**
+	 * blocks overlap if the sequence increments by less than the block size.
+	 * A value drawn by another instance in between the two values may make
+	 * the increment look larger, but never smaller, than what it is.
+	 *
+	 * @param keyName
+	 * @param increment
+	 *            difference between two consecutive values drawn from the
+	 *            sequence
+	 * @param nbrKeys
+	 *            block size
+	 */
+	static void checkIncrement(String keyName, long increment, int nbrKeys) {
+		if (increment < nbrKeys) {
+			throw new ApplicationError("Sequence " + keyName
+					+ " increments by " + increment
+					+ " but keys are reserved from it in blocks of " + nbrKeys
+					+ ". Blocks would overlap and keys would be duplicated. "
+					+ "Alter the sequence to increment by " + nbrKeys);
+		}
+	}
+
+	private static long nextValue(DbDriver driver, String sql, String keyName) {
+		DataSheet sheet = new MultiRowsSheet(NAMES, TYPES);
+		driver.extractFromSql(sql, null, sheet, true);
+		if (sheet.length() == 0) {
+			throw new ApplicationError(
+					"No value received from sequence " + keyName);
+		}
+		Value value = sheet.getRow(0)[0];
+		return ((IntegerValue) value).getLong();
+	}
+}
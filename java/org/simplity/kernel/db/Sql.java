@@ -85,12 +85,35 @@ public class Sql implements Component {
 	 * If you already have a record that has the right fields for this sql..
 	 */
 	String outputRecordName;
+
+	/**
+	 * relevant if this sql is used for extracting data for several rows of
+	 * input. If this sql has a single parameter, like ...WHERE key = ?, we can
+	 * use an in-list like WHERE key IN (?,?,....) to extract data for all rows
+	 * with a few sqls. Note that rows are then extracted once for each distinct
+	 * value, and not necessarily in the order of input rows.
+	 */
+	boolean extractBatchWithInList;
+
+	/**
+	 * number of rows to be fetched from the rdbms in one round trip. Defaults
+	 * to the fetchSize set for the application. Set a larger value if this sql
+	 * is expected to return a large number of rows.
+	 */
+	int fetchSize;
 	/**
 	 * we need names and types repeatedly. Better cache them
 	 */
 	private String[] outputNames;
 	private ValueType[] outputTypes;
 
+	/**
+	 * set if extractBatchWithInList is true. sql is split around "= ?" so that
+	 * DbDriver can put an in-list in between
+	 */
+	private String inListPrefix;
+	private String inListSuffix;
+
 	/**
 	 *
 	 * @return unqualified name
@@ -128,8 +151,18 @@ public class Sql implements Component {
 			return this.extract(inSheet, driver);
 		}
 		DataSheet outSheet = this.createOutputSheet();
+		if (this.inListPrefix != null) {
+			Value[] keys = new Value[nbrRows];
+			int i = 0;
+			for (FieldsInterface row : inSheet) {
+				keys[i++] = this.getInputValues(row)[0];
+			}
+			driver.extractForKeys(this.inListPrefix, this.inListSuffix, keys,
+					outSheet);
+			return outSheet;
+		}
 		driver.extractFromSql(this.preparedStatement,
-				this.getInputRows(inSheet), outSheet);
+				this.getInputRows(inSheet), outSheet, this.fetchSize);
 		return outSheet;
 	}
 
@@ -148,10 +181,33 @@ public class Sql implements Component {
 		Value[] values = this.getInputValues(dataRow);
 		boolean singles = this.sqlType == SqlType.SINGLE_SELECT;
 		driver.extractFromSql(this.preparedStatement, values, outSheet,
-				singles);
+				singles, this.fetchSize);
 		return outSheet;
 	}
 
+	/**
+	 * stream rows from this sql to the iterator rather than collecting them in
+	 * a data sheet. Meant for large outputs, like exports.
+	 *
+	 * @param dataRow
+	 *            input values
+	 * @param driver
+	 * @param iterator
+	 *            called back with each row. Should not use the driver for any
+	 *            other sql while it is called back
+	 * @return number of rows iterated
+	 */
+	public int streamRows(FieldsInterface dataRow, DbDriver driver,
+			RowIterator iterator) {
+		if (this.sqlType == SqlType.UPDATE) {
+			throw new ApplicationError("Sql " + this.getQualifiedName()
+					+ " is meant for update, but it is called for data extraction");
+		}
+		Value[] values = this.getInputValues(dataRow);
+		return driver.streamRows(this.preparedStatement, values,
+				this.outputTypes, iterator, this.fetchSize);
+	}
+
 	/**
 	 *
 	 * @param dataRow
@@ -262,8 +318,9 @@ public class Sql implements Component {
 	private Value[][] getInputRows(DataSheet inSheet) {
 		int nbrRows = inSheet.length();
 		Value[][] values = new Value[nbrRows][];
+		int i = 0;
 		for (FieldsInterface row : inSheet) {
-			values[nbrRows++] = this.getInputValues(row);
+			values[i++] = this.getInputValues(row);
 		}
 		return values;
 	}
@@ -305,6 +362,30 @@ public class Sql implements Component {
 			throw new ApplicationError("Sql " + this.getQualifiedName()
 					+ " is designed to extract data, but no outputParameters or outputRecord defined.");
 		}
+		if (this.extractBatchWithInList) {
+			this.splitForInList();
+		}
+	}
+
+	/**
+	 * split the prepared statement around its only "= ?" so that an in-list
+	 * can be used instead
+	 */
+	private void splitForInList() {
+		String sql = this.preparedStatement;
+		int idx = sql.indexOf('?');
+		if (this.sqlType == SqlType.UPDATE || idx == -1
+				|| sql.indexOf('?', idx + 1) != -1) {
+			throw new ApplicationError("Sql " + this.getQualifiedName()
+					+ " sets extractBatchWithInList=true. It should be a select sql with exactly one parameter.");
+		}
+		String prefix = sql.substring(0, idx).trim();
+		if (prefix.endsWith("=") == false) {
+			throw new ApplicationError("Sql " + this.getQualifiedName()
+					+ " sets extractBatchWithInList=true. Its only parameter should be used as \"column = ?\"");
+		}
+		this.inListPrefix = prefix.substring(0, prefix.length() - 1);
+		this.inListSuffix = sql.substring(idx + 1);
 	}
 
 	@Override
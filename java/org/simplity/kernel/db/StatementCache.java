@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Least-recently-used cache of prepared statements for a pooled connection.
+ * Sqls in our components are fixed text, and hence the same statement is
+ * prepared again and again on the same connection. We keep them open as long
+ * as the connection is open.
+ *
+ * A connection is used by one thread at a time, and hence this class is not
+ * thread-safe. Statistics are accumulated into counters supplied by the
+ * pool.
+ *
+ * @author simplity.org
+ *
+ */
+class StatementCache {
+	/**
+	 * default number of statements cached per connection
+	 */
+	static final int DEFAULT_CAPACITY = 50;
+
+	/*
+	 * generated-key column names are appended to sql text for the key
+	 */
+	private static final char KEY_SEPARATOR = '\0';
+
+	private final Map<String, CachedStatement> statements;
+	/*
+	 * statements that are currently being used by the driver
+	 */
+	private final Map<PreparedStatement, CachedStatement> inUse = new IdentityHashMap<PreparedStatement, CachedStatement>();
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final AtomicLong evictions;
+
+	/**
+	 * @param capacity
+	 *            max number of statements to be cached
+	 * @param hits
+	 *            counter to which cache hits are added
+	 * @param misses
+	 *            counter to which cache misses are added
+	 * @param evictions
+	 *            counter to which evicted statements are added
+	 */
+	@SuppressWarnings("serial")
+	StatementCache(final int capacity, AtomicLong hits, AtomicLong misses,
+			final AtomicLong evictions) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f,
+				true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, CachedStatement> eldest) {
+				if (this.size() <= capacity) {
+					return false;
+				}
+				CachedStatement cs = eldest.getValue();
+				evictions.incrementAndGet();
+				if (cs.inUse) {
+					/*
+					 * will be closed when it is released
+					 */
+					cs.evicted = true;
+				} else {
+					closeIt(cs.statement);
+				}
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * get a prepared statement for this sql. Caller MUST call release() after
+	 * using it, and MUST NOT close it.
+	 *
+	 * @param con
+	 *            connection to which this cache belongs to
+	 * @param sql
+	 * @param keyNames
+	 *            null if this is not an insert with generated keys
+	 * @return prepared statement, ready to be used
+	 * @throws SQLException
+	 */
+	PreparedStatement prepare(Connection con, String sql, String[] keyNames)
+			throws SQLException {
+		String key = sql;
+		if (keyNames != null) {
+			StringBuilder sbf = new StringBuilder(sql);
+			for (String keyName : keyNames) {
+				sbf.append(KEY_SEPARATOR).append(keyName);
+			}
+			key = sbf.toString();
+		}
+		CachedStatement cs = this.statements.get(key);
+		if (cs != null && cs.inUse == false) {
+			this.hits.incrementAndGet();
+			cs.inUse = true;
+			this.inUse.put(cs.statement, cs);
+			return cs.statement;
+		}
+		this.misses.incrementAndGet();
+		PreparedStatement stmt = keyNames == null ? con.prepareStatement(sql)
+				: con.prepareStatement(sql, keyNames);
+		if (cs == null) {
+			cs = new CachedStatement(key, stmt);
+			cs.inUse = true;
+			this.statements.put(key, cs);
+			this.inUse.put(stmt, cs);
+		}
+		/*
+		 * if the cached one is in use (nested use of the same sql) we lend
+		 * an un-cached statement that is closed on release
+		 */
+		return stmt;
+	}
+
+	/**
+	 * return a statement that was obtained with prepare()
+	 *
+	 * @param stmt
+	 * @param reusable
+	 *            false if the statement ran into an error, and should not be
+	 *            used again
+	 */
+	void release(PreparedStatement stmt, boolean reusable) {
+		CachedStatement cs = this.inUse.remove(stmt);
+		if (cs == null) {
+			closeIt(stmt);
+			return;
+		}
+		cs.inUse = false;
+		if (cs.evicted) {
+			closeIt(stmt);
+			return;
+		}
+		if (reusable) {
+			try {
+				stmt.clearParameters();
+				return;
+			} catch (Exception e) {
+				//
+			}
+		}
+		this.statements.remove(cs.key);
+		closeIt(stmt);
+	}
+
+	/**
+	 * @return number of statements in the cache
+	 */
+	int size() {
+		return this.statements.size();
+	}
+
+	static void closeIt(PreparedStatement stmt) {
+		try {
+			stmt.close();
+		} catch (Exception e) {
+			//
+		}
+	}
+
+	private static class CachedStatement {
+		final String key;
+		final PreparedStatement statement;
+		boolean inUse;
+		boolean evicted;
+
+		CachedStatement(String key, PreparedStatement statement) {
+			this.key = key;
+			this.statement = statement;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.db;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.data.DataSheet;
+import org.simplity.kernel.data.MultiRowsSheet;
+import org.simplity.kernel.value.IntegerValue;
+import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
+
+/**
+ * reserves keys from a key table that has one row per key name. This works
+ * with every data base, including the ones that have no sequences. The table
+ * is to be created as
+ *
+ * <pre>
+ * CREATE TABLE SIMPLITY_KEYS (KEY_NAME VARCHAR(100) PRIMARY KEY, NEXT_KEY BIGINT NOT NULL)
+ * </pre>
+ *
+ * A row is inserted for a key name the first time a key is reserved for it.
+ * If the table already has rows, insert a row with NEXT_KEY beyond the
+ * largest existing key before using this.
+ *
+ * Keys are reserved in a transaction of their own, so that they are not
+ * handed out again if the transaction of the caller is rolled back. This
+ * needs a connection besides the one that the caller holds, and hence the
+ * pool should have at least one connection more than the number of threads
+ * that insert rows at the same time. Use a sequence otherwise.
+ *
+ * @author simplity.org
+ *
+ */
+public class TableKeySource implements KeyBlockSource {
+	/**
+	 * table in which next keys are maintained
+	 */
+	public static final String TABLE_NAME = "SIMPLITY_KEYS";
+
+	private static final String UPDATE = "UPDATE " + TABLE_NAME
+			+ " SET NEXT_KEY = NEXT_KEY + ? WHERE KEY_NAME = ?";
+	private static final String SELECT = "SELECT NEXT_KEY FROM " + TABLE_NAME
+			+ " WHERE KEY_NAME = ?";
+	private static final String INSERT = "INSERT INTO " + TABLE_NAME
+			+ " (KEY_NAME, NEXT_KEY) VALUES (?, ?)";
+	private static final String[] NAMES = { "nextKey" };
+	private static final ValueType[] TYPES = { ValueType.INTEGER };
+
+	/*
+	 * two instances may try to insert the first row for a key at the same
+	 * time. One of them fails, and tries again with an update
+	 */
+	private static final int MAX_TRIALS = 2;
+
+	@Override
+	public long reserveKeys(final String keyName, final int nbrKeys,
+			DbDriver callersDriver) {
+		final long[] firstKey = new long[1];
+		for (int i = 0; i < MAX_TRIALS; i++) {
+			DbDriver.workWithDriver(new DbClientInterface() {
+
+				@Override
+				public boolean workWithDriver(DbDriver driver) {
+					firstKey[0] = reserve(driver, keyName, nbrKeys);
+					return firstKey[0] > 0;
+				}
+			}, DbAccessType.READ_WRITE);
+			if (firstKey[0] > 0) {
+				return firstKey[0];
+			}
+			Tracer.trace("Unable to add a row for " + keyName + " to "
+					+ TABLE_NAME + ". Will try again.");
+		}
+		throw new ApplicationError(
+				"Unable to reserve keys for " + keyName + " from " + TABLE_NAME);
+	}
+
+	/**
+	 * reserve keys within the transaction of the driver
+	 *
+	 * @return first key, or 0 if the row for this key could not be inserted
+	 */
+	private static long reserve(DbDriver driver, String keyName, int nbrKeys) {
+		Value name = Value.newTextValue(keyName);
+		Value[] values = { Value.newIntegerValue(nbrKeys), name };
+		if (driver.executeSql(UPDATE, values, false) > 0) {
+			/*
+			 * row is locked by our update till we commit.
+			 */
+			DataSheet sheet = new MultiRowsSheet(NAMES, TYPES);
+			Value[] keys = { name };
+			driver.extractFromSql(SELECT, keys, sheet, true);
+			long nextKey = ((IntegerValue) sheet.getRow(0)[0]).getLong();
+			return nextKey - nbrKeys;
+		}
+		/*
+		 * first block for this key. keys start with 1
+		 */
+		Value[] row = { name, Value.newIntegerValue(nbrKeys + 1) };
+		if (driver.executeSql(INSERT, row, true) > 0) {
+			return 1;
+		}
+		return 0;
+	}
+}
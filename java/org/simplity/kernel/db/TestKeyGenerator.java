@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.db;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.Tracer;
+
+/**
+ * internal class to test key generator during development. To be re-factored
+ * into a Maven structure and put into test folder
+ *
+ * @author simplity.org
+ *
+ */
+class TestKeyGenerator {
+	private static final int BLOCK_SIZE = 10;
+	private static final int NBR_THREADS = 8;
+	private static final int KEYS_PER_THREAD = 1000;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int nbrIssues = 0;
+		nbrIssues += testCallersDriver();
+		nbrIssues += testUniqueKeys();
+		nbrIssues += testIncrement();
+		if (nbrIssues == 0) {
+			Tracer.trace("Congratulations!!!");
+		} else {
+			Tracer.trace("Oooops! You have to fix " + nbrIssues
+					+ " issues.");
+		}
+	}
+
+	/**
+	 * block is to be reserved with the driver of the caller, and not with
+	 * another connection
+	 */
+	private static int testCallersDriver() {
+		final CountingSource source = new CountingSource();
+		final KeyGenerator gen = KeyGenerator.getGenerator("test.driver",
+				BLOCK_SIZE, source);
+		final boolean[] ok = new boolean[1];
+		DbDriver.workWithDriver(new DbClientInterface() {
+
+			@Override
+			public boolean workWithDriver(DbDriver driver) {
+				gen.nextKeys(BLOCK_SIZE * 2 + 1, driver);
+				ok[0] = source.lastDriver == driver;
+				return true;
+			}
+		}, DbAccessType.NONE);
+		if (ok[0]) {
+			return 0;
+		}
+		Tracer.trace("Keys are not reserved with the driver of the caller");
+		return 1;
+	}
+
+	/**
+	 * threads that draw keys at the same time never get the same key
+	 */
+	private static int testUniqueKeys() {
+		final KeyGenerator gen = KeyGenerator.getGenerator("test.unique",
+				BLOCK_SIZE, new CountingSource());
+		final long[][] keys = new long[NBR_THREADS][];
+		Thread[] threads = new Thread[NBR_THREADS];
+		for (int i = 0; i < threads.length; i++) {
+			final int idx = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					long[] mine = new long[KEYS_PER_THREAD];
+					for (int j = 0; j < mine.length; j += 3) {
+						mine[j] = gen.nextKey(null);
+						if (j + 2 < mine.length) {
+							long[] two = gen.nextKeys(2, null);
+							mine[j + 1] = two[0];
+							mine[j + 2] = two[1];
+						}
+					}
+					keys[idx] = mine;
+				}
+			};
+			threads[i].start();
+		}
+		Set<Long> allKeys = new HashSet<Long>();
+		int nbrIssues = 0;
+		for (int i = 0; i < threads.length; i++) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				return 1;
+			}
+			for (long key : keys[i]) {
+				if (allKeys.add(new Long(key)) == false) {
+					Tracer.trace("Key " + key + " is handed out twice");
+					nbrIssues++;
+				}
+			}
+		}
+		return nbrIssues;
+	}
+
+	/**
+	 * sequence that increments by less than the block size is rejected
+	 */
+	private static int testIncrement() {
+		int nbrIssues = 0;
+		try {
+			SequenceKeySource.checkIncrement("test.seq", 1, BLOCK_SIZE);
+			Tracer.trace("Sequence that increments by 1 is accepted for "
+					+ "blocks of " + BLOCK_SIZE);
+			nbrIssues++;
+		} catch (ApplicationError e) {
+			//
+		}
+		long[] goodOnes = { BLOCK_SIZE, BLOCK_SIZE * 3 };
+		for (long increment : goodOnes) {
+			try {
+				SequenceKeySource.checkIncrement("test.seq", increment,
+						BLOCK_SIZE);
+			} catch (ApplicationError e) {
+				Tracer.trace("Sequence that increments by " + increment
+						+ " is rejected for blocks of " + BLOCK_SIZE);
+				nbrIssues++;
+			}
+		}
+		return nbrIssues;
+	}
+
+	/**
+	 * reserves blocks from a counter in memory
+	 */
+	private static class CountingSource implements KeyBlockSource {
+		private final AtomicLong nextKey = new AtomicLong(1);
+		volatile DbDriver lastDriver;
+
+		@Override
+		public long reserveKeys(String keyName, int nbrKeys, DbDriver driver) {
+			this.lastDriver = driver;
+			return this.nextKey.getAndAdd(nbrKeys);
+		}
+	}
+}
@@ -679,7 +679,7 @@ public class Field {
 				|| this.fieldType == FieldType.MODIFIED_TIME_STAMP;
 		this.doNotInsert = this.fieldType == FieldType.CREATED_TIME_STAMP
 				|| this.fieldType == FieldType.MODIFIED_TIME_STAMP
-				|| (this.fieldType == FieldType.PRIMARY_KEY && parentRecord.keyToBeGenerated);
+				|| (this.fieldType == FieldType.PRIMARY_KEY && parentRecord.keyToBeGeneratedByRdbms());
 
 		// this.doNotShow = this.doNotInsert || this.fieldType ==
 		// FieldType.CREATED_BY_USER
@@ -27,8 +27,10 @@ import java.io.OutputStream;
 import java.sql.Array;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Struct;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -49,12 +51,20 @@ import org.simplity.kernel.comp.Component;
 import org.simplity.kernel.comp.ComponentManager;
 import org.simplity.kernel.comp.ComponentType;
 import org.simplity.kernel.comp.ValidationContext;
+import org.simplity.kernel.data.ColumnarSheet;
 import org.simplity.kernel.data.DataPurpose;
 import org.simplity.kernel.data.DataSheet;
 import org.simplity.kernel.data.FieldsInterface;
 import org.simplity.kernel.data.MultiRowsSheet;
 import org.simplity.kernel.data.SingleRowSheet;
+import org.simplity.kernel.data.SpillSheet;
 import org.simplity.kernel.db.DbDriver;
+import org.simplity.kernel.db.DbVendor;
+import org.simplity.kernel.db.KeyBlockSource;
+import org.simplity.kernel.db.KeyGenerator;
+import org.simplity.kernel.db.RowIterator;
+import org.simplity.kernel.db.SequenceKeySource;
+import org.simplity.kernel.db.TableKeySource;
 import org.simplity.kernel.dt.DataType;
 import org.simplity.kernel.dt.DataTypeSuggester;
 import org.simplity.kernel.util.JsonUtil;
@@ -145,6 +155,29 @@ public class Record implements Component {
 	 * written.
 	 */
 	String sequenceName;
+
+	/**
+	 * number of keys to be reserved at a time when keyToBeGenerated is true.
+	 * Keys are then assigned by us before insert, so that rows are inserted in
+	 * a batch. Leave it as zero to let the rdbms generate the key for each row
+	 * (auto-increment or sequence)
+	 */
+	int keyBlockSize;
+
+	/**
+	 * relevant if keyBlockSize is positive. Fully qualified class name that
+	 * implements org.simplity.kernel.db.KeyBlockSource. Default is to use the
+	 * sequence if sequenceName is specified, and the key table
+	 * (TableKeySource) otherwise.
+	 */
+	String keyBlockSource;
+
+	/**
+	 * number of rows to be fetched from the rdbms in one round trip when rows
+	 * are filtered or listed. Defaults to the fetchSize set for the
+	 * application.
+	 */
+	int fetchSize;
 	/**
 	 * if this table is expected to have large number of rows, we would like to
 	 * protect against a select with no where conditions. Of course one can
@@ -153,6 +186,20 @@ public class Record implements Component {
 	 */
 	boolean okToSelectAll;
 
+	/**
+	 * rows are kept column-wise in primitive arrays rather than as value
+	 * objects. Saves memory and garbage for large lists with numeric/date or
+	 * repeating text columns
+	 */
+	boolean useColumnarSheet;
+
+	/**
+	 * if positive, rows are kept in a compact binary form outside the heap, and
+	 * rows beyond these many KB are spilled to a temp file. Meant for batch
+	 * services that deal with a very large number of rows
+	 */
+	int spillSheetAfterKb;
+
 	/**
 	 * child records that are to be read whenever a row from this record is
 	 * read.
@@ -278,6 +325,18 @@ public class Record implements Component {
 	 */
 	private String readSql;
 
+	/**
+	 * sql for reading rows for a set of primary keys, up to the key column.
+	 * DbDriver appends the IN (?,?...) list
+	 */
+	private String readManySqlPrefix;
+
+	/**
+	 * sql to select just the primary key for a set of keys, up to the key
+	 * column. Used to check which rows exist
+	 */
+	private String keysSqlPrefix;
+
 	/**
 	 * select f1,f2,..... WHERE used in filtering
 	 */
@@ -312,6 +371,11 @@ public class Record implements Component {
 	 */
 	private String sequence;
 
+	/**
+	 * non-null if keys are reserved in blocks and assigned by us before insert
+	 */
+	private KeyGenerator keyGenerator;
+
 	/**
 	 * This record is a dataObject if any of its field is non-primitive (array
 	 * or child-record
@@ -454,6 +518,12 @@ public class Record implements Component {
 		if (forSingleRow) {
 			return new SingleRowSheet(sheetFeilds);
 		}
+		if (this.spillSheetAfterKb > 0) {
+			return new SpillSheet(sheetFeilds, this.spillSheetAfterKb * 1024);
+		}
+		if (this.useColumnarSheet) {
+			return new ColumnarSheet(sheetFeilds);
+		}
 		return new MultiRowsSheet(sheetFeilds);
 	}
 
@@ -485,6 +555,13 @@ public class Record implements Component {
 		if (forSingleRow) {
 			return new SingleRowSheet(colNames, types);
 		}
+		if (this.spillSheetAfterKb > 0) {
+			return new SpillSheet(colNames, types,
+					this.spillSheetAfterKb * 1024);
+		}
+		if (this.useColumnarSheet) {
+			return new ColumnarSheet(colNames, types);
+		}
 		return new MultiRowsSheet(colNames, types);
 	}
 
@@ -522,14 +599,52 @@ public class Record implements Component {
 			return driver.extractFromSql(this.readSql, values, outSheet,
 					singleRow);
 		}
-		Value[][] values = new Value[nbrRows][];
+		/*
+		 * read all of them in as few sqls as possible, and then arrange them
+		 * in the order of keys in the input sheet
+		 */
+		String keyName = this.primaryKeyField.getName();
+		Value[] keys = new Value[nbrRows];
 		for (int i = 0; i < nbrRows; i++) {
-			Value value = inSheet.getColumnValue(this.primaryKeyField.getName(),
-					i);
-			Value[] vals = { value };
-			values[i] = vals;
+			keys[i] = inSheet.getColumnValue(keyName, i);
+		}
+		DataSheet rows = new MultiRowsSheet(outSheet.getColumnNames(),
+				outSheet.getValueTypes());
+		driver.extractForKeys(this.readManySqlPrefix, null, keys, rows);
+		int keyIdx = rows.getColIdx(keyName);
+		if (keyIdx < 0) {
+			Tracer.trace("Output sheet has no column for primary key "
+					+ keyName + ". Rows are copied in the order they are read.");
+			return outSheet.appendRows(rows);
+		}
+		int nbrFound = rows.length();
+		Map<String, Value[]> foundRows = new HashMap<String, Value[]>();
+		for (int i = 0; i < nbrFound; i++) {
+			Value[] row = rows.getRow(i);
+			foundRows.put(row[keyIdx].toText(), row);
+		}
+		/*
+		 * we used to read one row per key. Retain that behavior.
+		 */
+		Set<String> keysDone = new HashSet<String>();
+		int result = 0;
+		for (Value key : keys) {
+			if (Value.isNull(key)) {
+				continue;
+			}
+			String text = key.toText();
+			Value[] row = foundRows.get(text);
+			if (row == null) {
+				continue;
+			}
+			if (keysDone.add(text)) {
+				outSheet.addRow(row);
+			} else {
+				outSheet.addRow(row.clone());
+			}
+			result++;
 		}
-		return driver.extractFromSql(this.readSql, values, outSheet);
+		return result;
 	}
 
 	/**
@@ -615,11 +730,54 @@ public class Record implements Component {
 	public DataSheet filter(Record inputRecord, FieldsInterface inData,
 			DbDriver driver, Value userId) {
 		DataSheet result = this.createSheet(false, false);
+		List<Value> filterValues = new ArrayList<Value>();
+		String sql = this.getFilterSql(inputRecord, inData, filterValues);
+		Value[] values = filterValues.toArray(new Value[0]);
+		driver.extractFromSql(sql, values, result, false, this.fetchSize);
+		return result;
+	}
+
+	/**
+	 * filter rows as per filtering criterion, and stream them to the iterator
+	 * rather than collecting them in a data sheet. Meant for large outputs,
+	 * like exports. Rows are in the order of fields in this record.
+	 *
+	 * @param inputRecord
+	 *            record that has fields for filter criterion
+	 * @param inData
+	 *            as per filtering conventions
+	 * @param driver
+	 * @param iterator
+	 *            called back with each row. Should not use the driver for any
+	 *            other sql while it is called back
+	 * @return number of rows iterated
+	 */
+	public int filterRows(Record inputRecord, FieldsInterface inData,
+			DbDriver driver, RowIterator iterator) {
+		List<Value> filterValues = new ArrayList<Value>();
+		String sql = this.getFilterSql(inputRecord, inData, filterValues);
+		Value[] values = filterValues.toArray(new Value[0]);
+		ValueType[] types = this.createSheet(false, false).getValueTypes();
+		return driver.streamRows(sql, values, types, iterator, this.fetchSize);
+	}
+
+	/**
+	 * create sql for filtering rows
+	 *
+	 * @param inputRecord
+	 *            record that has fields for filter criterion
+	 * @param inData
+	 *            as per filtering conventions
+	 * @param filterValues
+	 *            to which values for the parameters in the sql are added
+	 * @return sql with where clause and sort order
+	 */
+	private String getFilterSql(Record inputRecord, FieldsInterface inData,
+			List<Value> filterValues) {
 		/*
 		 * we have to create where clause with ? and corresponding values[]
 		 */
 		StringBuilder sql = new StringBuilder(this.filterSql);
-		List<Value> filterValues = new ArrayList<Value>();
 		boolean firstTime = true;
 		for (Field field : inputRecord.fields) {
 			String fieldName = field.name;
@@ -690,7 +848,6 @@ public class Record implements Component {
 				filterValues.add(otherValue);
 			}
 		}
-		Value[] values;
 		if (firstTime) {
 			/*
 			 * no conditions..
@@ -700,9 +857,6 @@ public class Record implements Component {
 						+ " is likely to contain large number of records, and hence we do not allow select-all operation");
 			}
 			sql.append(" 1 = 1 ");
-			values = new Value[0];
-		} else {
-			values = filterValues.toArray(new Value[0]);
 		}
 		/*
 		 * is there sort order?
@@ -711,8 +865,7 @@ public class Record implements Component {
 		if (sorts != null) {
 			sql.append(" ORDER BY ").append(sorts.toString());
 		}
-		driver.extractFromSql(sql.toString(), values, result, false);
-		return result;
+		return sql.toString();
 	}
 
 	/**
@@ -781,8 +934,12 @@ public class Record implements Component {
 			if (this.createdUserField != null) {
 				row.setValue(this.createdUserField.name, userId);
 			}
+			if (this.keyGenerator != null) {
+				row.setValue(this.primaryKeyField.name, Value
+						.newIntegerValue(this.keyGenerator.nextKey(driver)));
+			}
 			values = this.getInsertValues(row, userId);
-			if (this.keyToBeGenerated) {
+			if (this.keyToBeGeneratedByRdbms()) {
 				long[] generatedKeys = new long[1];
 				String[] generatedColumns = { this.primaryKeyField.columnName };
 				driver.insertAndGetKeys(this.insertSql, values, generatedKeys,
@@ -812,27 +969,79 @@ public class Record implements Component {
 	 * "save" is a special convenient command. If key is specified, it is
 	 * assumed to be modify, else add. Save
 	 *
+	 * Rows are saved in batches: existence of rows is checked with one sql,
+	 * and then consecutive rows with the same action are saved with one batch.
+	 * Rows are thus saved in the order in which they appear in the sheet.
+	 *
+	 * If sql errors are to be treated as no result, rows are saved one by one
+	 * instead, as a batch that fails does not tell us which of its rows
+	 * failed.
+	 *
 	 * @param inSheet
 	 *            data to be saved.
 	 * @param driver
 	 * @param userId
 	 * @param treatSqlErrorAsNoResult
-	 * @return number of rows saved. -1 in case of batch, and the driver is
-	 *         unable to count the saved rows
+	 * @return action that is taken for each row
 	 */
 	public SaveActionType[] saveMany(DataSheet inSheet, DbDriver driver,
 			Value userId, boolean treatSqlErrorAsNoResult) {
 		if (this.readOnly) {
 			this.notWritable();
 		}
-		SaveActionType[] result = new SaveActionType[inSheet.length()];
+		if (this.primaryKeyField == null) {
+			this.noPrimaryKey();
+		}
+		int nbrRows = inSheet.length();
+		FieldsInterface[] rows = new FieldsInterface[nbrRows];
 		int rowIdx = 0;
 		for (FieldsInterface row : inSheet) {
-			result[rowIdx] = this.saveOne(row, driver, userId,
-					treatSqlErrorAsNoResult);
+			/*
+			 * modified user field, even if sent by client, must be over-ridden
+			 */
+			if (this.modifiedUserField != null) {
+				row.setValue(this.modifiedUserField.name, userId);
+			}
+			rows[rowIdx] = row;
 			rowIdx++;
 		}
-		return result;
+		if (treatSqlErrorAsNoResult) {
+			SaveActionType[] actions = new SaveActionType[nbrRows];
+			for (int i = 0; i < nbrRows; i++) {
+				actions[i] = this.saveOne(rows[i], driver, userId, true);
+			}
+			return actions;
+		}
+		SaveActionType[] actions = this.getSaveActions(rows, driver);
+		int from = 0;
+		while (from < nbrRows) {
+			int to = getEndOfRun(actions, from);
+			FieldsInterface[] run = Arrays.copyOfRange(rows, from, to);
+			if (actions[from] == SaveActionType.DELETE) {
+				this.batchDelete(run, driver);
+			} else if (actions[from] == SaveActionType.ADD) {
+				this.batchInsert(run, driver, userId);
+			} else {
+				this.batchUpdate(run, driver, userId);
+			}
+			from = to;
+		}
+		return actions;
+	}
+
+	/**
+	 * @param actions
+	 * @param from
+	 *            first row of a run
+	 * @return index of the row after the last row of the run of rows that have
+	 *         the same action as the first one
+	 */
+	static int getEndOfRun(SaveActionType[] actions, int from) {
+		int to = from + 1;
+		while (to < actions.length && actions[to] == actions[from]) {
+			to++;
+		}
+		return to;
 	}
 
 	/**
@@ -866,12 +1075,219 @@ public class Record implements Component {
 		 * for security/safety, we copy parent key into data
 		 */
 		inSheet.addColumn(this.parentKeyField.name, parentKey);
-		for (FieldsInterface row : inSheet) {
-			this.saveOne(row, driver, userId, false);
-		}
+		this.saveMany(inSheet, driver, userId, false);
 		return inSheet.length();
 	}
 
+	/**
+	 * determine the action for each row. Existence of rows with action "save"
+	 * is checked with one sql for all of them.
+	 *
+	 * @param rows
+	 * @param driver
+	 * @return save action for each row. SAVE is resolved into ADD or MODIFY
+	 */
+	private SaveActionType[] getSaveActions(FieldsInterface[] rows,
+			DbDriver driver) {
+		int nbrRows = rows.length;
+		SaveActionType[] actions = new SaveActionType[nbrRows];
+		String keyName = this.primaryKeyField.name;
+		List<Value> keysToCheck = new ArrayList<Value>();
+		for (int i = 0; i < nbrRows; i++) {
+			FieldsInterface row = rows[i];
+			SaveActionType saveAction = SaveActionType.SAVE;
+			Value action = row
+					.getValue(ServiceProtocol.TABLE_ACTION_FIELD_NAME);
+			if (action != null) {
+				/*
+				 * since this field is extracted by us earlier, we DO KNOW that
+				 * it is valid
+				 */
+				saveAction = SaveActionType.parse(action.toString());
+			}
+			if (saveAction == SaveActionType.SAVE) {
+				Value keyValue = row.getValue(keyName);
+				if (Value.isNull(keyValue)) {
+					saveAction = SaveActionType.ADD;
+				} else if (this.keyToBeGenerated) {
+					saveAction = SaveActionType.MODIFY;
+				} else {
+					keysToCheck.add(keyValue);
+				}
+			}
+			actions[i] = saveAction;
+		}
+		if (keysToCheck.size() == 0) {
+			return actions;
+		}
+
+		String[] names = { keyName };
+		ValueType[] types = { this.primaryKeyField.getValueType() };
+		DataSheet existing = new MultiRowsSheet(names, types);
+		driver.extractForKeys(this.keysSqlPrefix, null,
+				keysToCheck.toArray(new Value[0]), existing);
+		Set<String> keysFound = new HashSet<String>();
+		int nbrFound = existing.length();
+		for (int i = 0; i < nbrFound; i++) {
+			keysFound.add(existing.getRow(i)[0].toText());
+		}
+		resolveSaveActions(rows, actions, keyName, keysFound);
+		return actions;
+	}
+
+	/**
+	 * resolve SAVE into ADD or MODIFY, taking into account the rows before it
+	 * that add or delete a row with the same key
+	 *
+	 * @param rows
+	 * @param actions
+	 *            action for each row. SAVE is replaced with ADD or MODIFY
+	 * @param keyName
+	 * @param keysFound
+	 *            keys of rows that exist in the data base
+	 */
+	static void resolveSaveActions(FieldsInterface[] rows,
+			SaveActionType[] actions, String keyName, Set<String> keysFound) {
+		for (int i = 0; i < rows.length; i++) {
+			Value keyValue = rows[i].getValue(keyName);
+			if (Value.isNull(keyValue)) {
+				continue;
+			}
+			String key = keyValue.toText();
+			if (actions[i] == SaveActionType.DELETE) {
+				keysFound.remove(key);
+			} else if (actions[i] == SaveActionType.ADD) {
+				keysFound.add(key);
+			} else if (actions[i] == SaveActionType.SAVE) {
+				if (keysFound.contains(key)) {
+					actions[i] = SaveActionType.MODIFY;
+				} else {
+					actions[i] = SaveActionType.ADD;
+					/*
+					 * if the same key appears again, it is to modify the row
+					 * we are adding now.
+					 */
+					keysFound.add(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * delete rows with one batch
+	 */
+	private void batchDelete(FieldsInterface[] rows, DbDriver driver) {
+		Value[][] values = new Value[rows.length][];
+		for (int i = 0; i < rows.length; i++) {
+			values[i] = this.getDeleteValues(rows[i]);
+		}
+		this.executeWorker(driver, this.deleteSql, values, false);
+	}
+
+	/**
+	 * insert rows with one batch. Generated keys are set back to the rows.
+	 */
+	private void batchInsert(FieldsInterface[] rows, DbDriver driver,
+			Value userId) {
+		int nbrRows = rows.length;
+		long[] newKeys = null;
+		if (this.keyGenerator != null) {
+			newKeys = this.keyGenerator.nextKeys(nbrRows, driver);
+		}
+		Value[][] values = new Value[nbrRows][];
+		for (int i = 0; i < nbrRows; i++) {
+			FieldsInterface row = rows[i];
+			if (this.createdUserField != null) {
+				row.setValue(this.createdUserField.name, userId);
+			}
+			if (newKeys != null) {
+				row.setValue(this.primaryKeyField.name,
+						Value.newIntegerValue(newKeys[i]));
+			}
+			values[i] = this.getInsertValues(row, userId);
+		}
+		if (this.keyToBeGeneratedByRdbms() == false) {
+			this.executeWorker(driver, this.insertSql, values, false);
+			return;
+		}
+		String keyName = this.primaryKeyField.name;
+		String[] generatedColumns = { this.primaryKeyField.columnName };
+		long[] generatedKeys = new long[nbrRows];
+		DbVendor vendor = DbDriver.getDbVendor();
+		if (nbrRows > 1 && vendor != null
+				&& vendor.supportsBatchGeneratedKeys()) {
+			driver.executeBatchAndGetKeys(this.insertSql, values,
+					generatedKeys, generatedColumns, false);
+		} else {
+			/*
+			 * we need the keys back for each row, and the driver can not do
+			 * that for a batch
+			 */
+			long[] key = new long[1];
+			for (int i = 0; i < nbrRows; i++) {
+				key[0] = 0;
+				driver.insertAndGetKeys(this.insertSql, values[i], key,
+						generatedColumns, false);
+				generatedKeys[i] = key[0];
+			}
+		}
+		for (int i = 0; i < nbrRows; i++) {
+			long key = generatedKeys[i];
+			if (key == 0) {
+				Tracer.trace("Generated key not received for row " + i
+						+ " inserted into " + this.tableName);
+			} else {
+				rows[i].setValue(keyName, Value.newIntegerValue(key));
+			}
+		}
+	}
+
+	/**
+	 * update rows with one batch. We insist that every row is updated, as a
+	 * row not updated implies that some one else has changed it in the
+	 * meantime.
+	 */
+	private void batchUpdate(FieldsInterface[] rows, DbDriver driver,
+			Value userId) {
+		int nbrRows = rows.length;
+		Value[][] values = new Value[nbrRows][];
+		for (int i = 0; i < nbrRows; i++) {
+			values[i] = this.getUpdateValues(rows[i], userId);
+		}
+		int[] counts;
+		if (nbrRows == 1) {
+			counts = new int[1];
+			counts[0] = driver.executeSql(this.updateSql, values[0], false);
+		} else {
+			counts = driver.executeBatch(this.updateSql, values, false);
+		}
+		/*
+		 * a count missing for a row means that the batch itself failed
+		 */
+		if (counts.length < nbrRows) {
+			throw new ApplicationError("Batch update of " + nbrRows
+					+ " rows of record " + this.getQualifiedName()
+					+ " failed. Only " + counts.length
+					+ " update counts are reported.");
+		}
+		/*
+		 * optimistic locking : each row must have been updated. Some drivers
+		 * do not report count per row (SUCCESS_NO_INFO) and we can not check
+		 * in that case.
+		 */
+		for (int i = 0; i < nbrRows; i++) {
+			if (counts[i] == Statement.EXECUTE_FAILED) {
+				throw new ApplicationError("Batch update of " + nbrRows
+						+ " rows of record " + this.getQualifiedName()
+						+ " failed for row " + (i + 1));
+			}
+			if (counts[i] == 0) {
+				throw new ApplicationError(
+						"Data was changed by some one else while you were editing it. Please cancel this operation and redo it with latest data.");
+			}
+		}
+	}
+
 	/**
 	 * @param inSheet
 	 * @param userId
@@ -1008,6 +1424,10 @@ public class Record implements Component {
 			return this.insert((FieldsInterface) inSheet, driver, userId,
 					treatSqlErrorAsNoResult);
 		}
+		if (this.keyGenerator != null) {
+			this.addKeyColumn(inSheet,
+					this.keyGenerator.nextKeys(nbrRows, driver));
+		}
 		Value[][] allValues = new Value[nbrRows][];
 		/*
 		 * we mostly expect one row, but we do not want to write separate
@@ -1018,7 +1438,7 @@ public class Record implements Component {
 			allValues[rowIdx] = this.getInsertValues(row, userId);
 			rowIdx++;
 		}
-		if (this.keyToBeGenerated == false) {
+		if (this.keyToBeGeneratedByRdbms() == false) {
 			return this.executeWorker(driver, this.insertSql, allValues,
 					treatSqlErrorAsNoResult);
 		}
@@ -1047,9 +1467,13 @@ public class Record implements Component {
 		if (this.readOnly) {
 			this.notWritable();
 		}
+		if (this.keyGenerator != null) {
+			inData.setValue(this.primaryKeyField.name,
+					Value.newIntegerValue(this.keyGenerator.nextKey(driver)));
+		}
 		Value[][] allValues = new Value[1][];
 		allValues[0] = this.getInsertValues(inData, userId);
-		if (this.keyToBeGenerated == false) {
+		if (this.keyToBeGeneratedByRdbms() == false) {
 			return this.executeWorker(driver, this.insertSql, allValues,
 					treatSqlErrorAsNoResult);
 		}
@@ -1101,13 +1525,17 @@ public class Record implements Component {
 		 */
 		inSheet.addColumn(this.parentKeyField.name, parentKey);
 		int nbrRows = inSheet.length();
+		if (this.keyGenerator != null) {
+			this.addKeyColumn(inSheet,
+					this.keyGenerator.nextKeys(nbrRows, driver));
+		}
 		Value[][] allValues = new Value[nbrRows][];
 		int rowIdx = 0;
 		for (FieldsInterface row : inSheet) {
 			allValues[rowIdx] = this.getInsertValues(row, userId);
 			rowIdx++;
 		}
-		if (this.keyToBeGenerated == false) {
+		if (this.keyToBeGeneratedByRdbms() == false) {
 			return this.executeWorker(driver, this.insertSql, allValues, false);
 		}
 		long[] keys = new long[nbrRows];
@@ -1506,7 +1934,8 @@ public class Record implements Component {
 			}
 			sbf.append(')');
 		}
-		driver.extractFromSql(sbf.toString(), values, result, false);
+		driver.extractFromSql(sbf.toString(), values, result, false,
+				this.fetchSize);
 		String sn = sheetName;
 		if (sn == null) {
 			sn = this.getDefaultSheetName();
@@ -1551,7 +1980,8 @@ public class Record implements Component {
 		Value[] values = { parentKey };
 		StringBuilder sbf = new StringBuilder(this.filterSql);
 		sbf.append(this.parentKeyField.columnName).append("=?");
-		driver.extractFromSql(sbf.toString(), values, result, false);
+		driver.extractFromSql(sbf.toString(), values, result, false,
+				this.fetchSize);
 		return result;
 	}
 
@@ -1751,7 +2181,9 @@ public class Record implements Component {
 		}
 
 		if (this.keyToBeGenerated) {
-			if (DbDriver.generatorNameRequired()) {
+			if (this.keyBlockSize > 0) {
+				this.keyGenerator = this.createKeyGenerator();
+			} else if (DbDriver.generatorNameRequired()) {
 				if (this.sequenceName == null) {
 					this.sequence = this.tableName + DEFAULT_SEQ_SUFFIX;
 					Tracer.trace("sequence not specified for table "
@@ -1849,6 +2281,41 @@ public class Record implements Component {
 
 	}
 
+	/**
+	 * key generator for this record, as keys are to be reserved in blocks
+	 *
+	 * @return key generator
+	 */
+	private KeyGenerator createKeyGenerator() {
+		KeyBlockSource source = null;
+		String keyName = this.tableName;
+		if (this.keyBlockSource != null) {
+			try {
+				source = (KeyBlockSource) Class.forName(this.keyBlockSource)
+						.newInstance();
+			} catch (Exception e) {
+				throw new ApplicationError(e,
+						"Unable to use " + this.keyBlockSource
+								+ " as key block source for record "
+								+ this.getQualifiedName());
+			}
+		} else if (this.sequenceName != null) {
+			source = new SequenceKeySource();
+			keyName = this.sequenceName;
+		} else {
+			source = new TableKeySource();
+		}
+		return KeyGenerator.getGenerator(keyName, this.keyBlockSize, source);
+	}
+
+	/**
+	 * @return true if key is generated by the rdbms while inserting a row.
+	 *         false if key is not generated, or we assign it before insert
+	 */
+	boolean keyToBeGeneratedByRdbms() {
+		return this.keyToBeGenerated && this.keyGenerator == null;
+	}
+
 	/**
 	 * set sql strings. We are setting four fields at the end. For clarity, you
 	 * should trace one string at a time and understand what we are trying to
@@ -1892,8 +2359,8 @@ public class Record implements Component {
 			/*
 			 * if primary key is managed by rdbms, we do not bother about it?
 			 */
-			if (fieldType == FieldType.PRIMARY_KEY && this.keyToBeGenerated
-					&& this.sequence == null) {
+			if (fieldType == FieldType.PRIMARY_KEY
+					&& this.keyToBeGeneratedByRdbms() && this.sequence == null) {
 				continue;
 			}
 			if (firstInsertField) {
@@ -1910,7 +2377,7 @@ public class Record implements Component {
 					|| field.fieldType == FieldType.CREATED_TIME_STAMP) {
 				vals.append(timeStamp);
 			} else if (fieldType == FieldType.PRIMARY_KEY
-					&& this.keyToBeGenerated) {
+					&& this.keyToBeGeneratedByRdbms()) {
 				vals.append(this.sequence);
 			} else {
 				vals.append(Record.PARAM);
@@ -1960,8 +2427,12 @@ public class Record implements Component {
 		select.append(" FROM ").append(this.tableName).append(" WHERE ");
 		this.filterSql = select.toString();
 		if (this.primaryKeyField != null) {
-			this.readSql = this.filterSql + this.primaryKeyField.columnName
-					+ EQUAL + PARAM;
+			this.readManySqlPrefix = this.filterSql
+					+ this.primaryKeyField.columnName;
+			this.readSql = this.readManySqlPrefix + EQUAL + PARAM;
+			String keyColumn = this.primaryKeyField.columnName;
+			this.keysSqlPrefix = "SELECT " + keyColumn + " FROM "
+					+ this.tableName + " WHERE " + keyColumn;
 		}
 	}
 
@@ -2046,7 +2517,8 @@ public class Record implements Component {
 		} else {
 			sheet = new MultiRowsSheet(DOUBLE_HEADER, this.valueListTypes);
 		}
-		driver.extractFromSql(this.listSql, values, sheet, false);
+		driver.extractFromSql(this.listSql, values, sheet, false,
+				this.fetchSize);
 		return sheet;
 	}
 
@@ -2070,7 +2542,8 @@ public class Record implements Component {
 		values[0] = Value.newTextValue(text);
 		DataSheet sheet = this.createSheet(this.suggestionOutputNames, false,
 				false);
-		driver.extractFromSql(this.suggestSql, values, sheet, false);
+		driver.extractFromSql(this.suggestSql, values, sheet, false,
+				this.fetchSize);
 		return sheet;
 	}
 
@@ -2558,6 +3031,16 @@ public class Record implements Component {
 					}
 				}
 			}
+			if (this.keyBlockSize > 0 && this.keyToBeGenerated == false) {
+				ctx.addError(
+						"keyBlockSize is specified, but keyToBeGenerated is not set to true.");
+				count++;
+			}
+			if (this.keyBlockSource != null && this.keyBlockSize <= 0) {
+				ctx.addError(
+						"keyBlockSource is specified, but keyBlockSize is not positive.");
+				count++;
+			}
 
 			/*
 			 * we can manage concurrency, but only if a time-stamp field is
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.dm;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.data.Fields;
+import org.simplity.kernel.data.FieldsInterface;
+import org.simplity.kernel.value.Value;
+
+/**
+ * internal class to test how save-many orders and batches its rows during
+ * development. To be re-factored into a Maven structure and put into test
+ * folder
+ *
+ * @author simplity.org
+ *
+ */
+class TestSaveMany {
+	private static final String KEY = "id";
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int nbrIssues = 0;
+		nbrIssues += testResolve();
+		nbrIssues += testRuns();
+		if (nbrIssues == 0) {
+			Tracer.trace("Congratulations!!!");
+		} else {
+			Tracer.trace("Oooops! You have to fix " + nbrIssues
+					+ " issues.");
+		}
+	}
+
+	/**
+	 * a SAVE is resolved with the rows before it that delete or add the same
+	 * key
+	 */
+	private static int testResolve() {
+		String[] keys = { "k1", "k1", "k2", "k2", "k3", "k3", null };
+		SaveActionType[] actions = { SaveActionType.DELETE,
+				SaveActionType.SAVE, SaveActionType.SAVE, SaveActionType.SAVE,
+				SaveActionType.ADD, SaveActionType.SAVE, SaveActionType.ADD };
+		SaveActionType[] expected = { SaveActionType.DELETE,
+				SaveActionType.ADD, SaveActionType.ADD, SaveActionType.MODIFY,
+				SaveActionType.ADD, SaveActionType.MODIFY, SaveActionType.ADD };
+		FieldsInterface[] rows = new FieldsInterface[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			rows[i] = new Fields();
+			if (keys[i] != null) {
+				rows[i].setValue(KEY, Value.newTextValue(keys[i]));
+			}
+		}
+		Set<String> keysFound = new HashSet<String>();
+		keysFound.add("k1");
+		Record.resolveSaveActions(rows, actions, KEY, keysFound);
+		int nbrIssues = 0;
+		for (int i = 0; i < actions.length; i++) {
+			if (actions[i] != expected[i]) {
+				Tracer.trace("Row " + i + " is resolved to " + actions[i]
+						+ " while we expected " + expected[i]);
+				nbrIssues++;
+			}
+		}
+		return nbrIssues;
+	}
+
+	/**
+	 * rows are batched in runs of the same action, in the order of the rows
+	 */
+	private static int testRuns() {
+		SaveActionType[] actions = { SaveActionType.DELETE,
+				SaveActionType.ADD, SaveActionType.ADD, SaveActionType.MODIFY,
+				SaveActionType.DELETE, SaveActionType.DELETE };
+		int[] expected = { 0, 1, 3, 4 };
+		int nbrIssues = 0;
+		int from = 0;
+		int runIdx = 0;
+		while (from < actions.length) {
+			if (runIdx >= expected.length || expected[runIdx] != from) {
+				Tracer.trace("Unexpected run starting at row " + from);
+				nbrIssues++;
+			}
+			from = Record.getEndOfRun(actions, from);
+			runIdx++;
+		}
+		if (runIdx != expected.length) {
+			Tracer.trace(runIdx + " runs found while we expected "
+					+ expected.length);
+			nbrIssues++;
+		}
+		return nbrIssues;
+	}
+}
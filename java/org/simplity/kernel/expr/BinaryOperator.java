@@ -510,7 +510,7 @@ public enum BinaryOperator {
 		protected Value doOperate(Value leftValue, Value rightValue)
 				throws InvalidValueException {
 			return Value.newBooleanValue(leftValue.toBoolean()
-					&& rightValue.toBoolean());
+					|| rightValue.toBoolean());
 		}
 
 		@Override
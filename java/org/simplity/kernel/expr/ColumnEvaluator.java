@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.expr;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.data.DataSheet;
+import org.simplity.kernel.data.FieldRef;
+import org.simplity.kernel.data.FieldsInterface;
+import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
+
+/**
+ * evaluates a compiled expression for all rows of a data sheet. Fields
+ * qualified with the sheet name, like sheetName.columnName, refer to the
+ * columns of the sheet, while other fields are taken from the data source.
+ * This is the same convention that is followed by the service context while
+ * iterating on a sheet. Large sheets are split into chunks of rows that are
+ * evaluated in parallel.
+ *
+ * @author simplity.org
+ *
+ */
+class ColumnEvaluator {
+	/**
+	 * sheets with at least these many rows are evaluated in parallel
+	 */
+	static final int PARALLEL_THRESHOLD = 10000;
+	/**
+	 * chunks per thread when evaluating in parallel
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static ForkJoinPool pool;
+
+	final DataSheet sheet;
+	final FieldsInterface data;
+	private final String[] columnNames;
+	private final ValueType[] valueTypes;
+	/*
+	 * column index by qualified name sheetName.columnName
+	 */
+	private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+
+	ColumnEvaluator(DataSheet sheet, String sheetName, FieldsInterface data) {
+		this.sheet = sheet;
+		this.data = data;
+		this.columnNames = sheet.getColumnNames();
+		this.valueTypes = sheet.getValueTypes();
+		for (int i = 0; i < this.columnNames.length; i++) {
+			this.columnIndexes.put(sheetName + '.' + this.columnNames[i],
+					new Integer(i));
+		}
+	}
+
+	/**
+	 * evaluate the expression for all rows
+	 *
+	 * @param expression
+	 * @return values, one per row
+	 * @throws InvalidOperationException
+	 */
+	ColumnValues evaluate(final CompiledExpression expression)
+			throws InvalidOperationException {
+		int nbrRows = this.sheet.length();
+		if (nbrRows < PARALLEL_THRESHOLD) {
+			return expression.evaluateColumn(this, 0, nbrRows);
+		}
+		ForkJoinPool fjp = getPool();
+		int nbrChunks = fjp.getParallelism() * CHUNKS_PER_THREAD;
+		int chunkSize = (nbrRows + nbrChunks - 1) / nbrChunks;
+		List<Callable<ColumnValues>> chunks = new ArrayList<Callable<ColumnValues>>();
+		for (int from = 0; from < nbrRows; from += chunkSize) {
+			final int start = from;
+			final int end = Math.min(from + chunkSize, nbrRows);
+			chunks.add(new Callable<ColumnValues>() {
+
+				@Override
+				public ColumnValues call() throws Exception {
+					return expression.evaluateColumn(ColumnEvaluator.this,
+							start, end);
+				}
+			});
+		}
+		Tracer.trace("Expression is evaluated for " + nbrRows + " rows in "
+				+ chunks.size() + " chunks.");
+		List<ColumnValues> parts = new ArrayList<ColumnValues>(chunks.size());
+		for (Future<ColumnValues> future : fjp.invokeAll(chunks)) {
+			try {
+				parts.add(future.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ApplicationError(
+						"Evaluation of expression for a sheet is interrupted.");
+			} catch (ExecutionException e) {
+				/*
+				 * fork-join pool may wrap the exception thrown by the task
+				 */
+				Throwable cause = e.getCause();
+				for (Throwable t = cause; t != null; t = t.getCause()) {
+					if (t instanceof InvalidOperationException) {
+						throw (InvalidOperationException) t;
+					}
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new ApplicationError(e,
+						"Error while evaluating expression for a sheet.");
+			}
+		}
+		return ColumnValues.concat(parts, nbrRows);
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool();
+		}
+		return pool;
+	}
+
+	/**
+	 * @param fieldRef
+	 * @return index of the column this field refers to, -1 if it does not
+	 *         refer to a column of the sheet
+	 */
+	int getColIdx(FieldRef fieldRef) {
+		Integer idx = this.columnIndexes.get(fieldRef.getName());
+		if (idx == null) {
+			return -1;
+		}
+		return idx.intValue();
+	}
+
+	/**
+	 * get values of a column for a range of rows. Integral, decimal and
+	 * boolean columns are read as primitives, unless a cell in the range is
+	 * null, in which case values are read as they are, so that null cells
+	 * behave the same way as they do when the expression is evaluated row by
+	 * row.
+	 *
+	 * @param colIdx
+	 * @param from
+	 *            first row, inclusive
+	 * @param to
+	 *            last row, exclusive
+	 * @return values
+	 */
+	ColumnValues getColumn(int colIdx, int from, int to) {
+		int n = to - from;
+		ValueType valueType = this.valueTypes[colIdx];
+		if (valueType == ValueType.INTEGER) {
+			long[] longs = new long[n];
+			for (int i = 0; i < n; i++) {
+				if (this.sheet.isNull(colIdx, from + i)) {
+					return this.getValues(colIdx, from, to);
+				}
+				longs[i] = this.sheet.getLong(colIdx, from + i);
+			}
+			return ColumnValues.ofLongs(longs, null);
+		}
+		if (valueType == ValueType.DECIMAL) {
+			double[] doubles = new double[n];
+			for (int i = 0; i < n; i++) {
+				if (this.sheet.isNull(colIdx, from + i)) {
+					return this.getValues(colIdx, from, to);
+				}
+				doubles[i] = this.sheet.getDouble(colIdx, from + i);
+			}
+			return ColumnValues.ofDoubles(doubles, null);
+		}
+		if (valueType == ValueType.BOOLEAN) {
+			boolean[] booleans = new boolean[n];
+			for (int i = 0; i < n; i++) {
+				if (this.sheet.isNull(colIdx, from + i)) {
+					return this.getValues(colIdx, from, to);
+				}
+				booleans[i] = this.sheet.getBoolean(colIdx, from + i);
+			}
+			return ColumnValues.ofBooleans(booleans, null);
+		}
+		return this.getValues(colIdx, from, to);
+	}
+
+	private ColumnValues getValues(int colIdx, int from, int to) {
+		Value[] values = new Value[to - from];
+		String columnName = this.columnNames[colIdx];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = this.sheet.getColumnValue(columnName, from + i);
+		}
+		return ColumnValues.ofValues(values);
+	}
+
+	/**
+	 * @return data source for evaluating an expression for one row at a time
+	 */
+	RowData newRowData() {
+		return new RowData();
+	}
+
+	/**
+	 * data source that has the columns of the current row, besides the fields
+	 * of the underlying data source. Used for parts of an expression that are
+	 * evaluated row by row.
+	 */
+	class RowData implements FieldsInterface {
+		int rowIdx;
+
+		@Override
+		public Value getValue(String fieldName) {
+			Integer idx = ColumnEvaluator.this.columnIndexes.get(fieldName);
+			if (idx == null) {
+				return ColumnEvaluator.this.data.getValue(fieldName);
+			}
+			return ColumnEvaluator.this.sheet.getColumnValue(
+					ColumnEvaluator.this.columnNames[idx.intValue()],
+					this.rowIdx);
+		}
+
+		@Override
+		public void setValue(String fieldName, Value value) {
+			ColumnEvaluator.this.data.setValue(fieldName, value);
+		}
+
+		@Override
+		public boolean hasValue(String fieldName) {
+			return this.getValue(fieldName) != null;
+		}
+
+		@Override
+		public Value removeValue(String fieldName) {
+			return ColumnEvaluator.this.data.removeValue(fieldName);
+		}
+
+		@Override
+		public Set<Entry<String, Value>> getAllFields() {
+			return ColumnEvaluator.this.data.getAllFields();
+		}
+
+		@Override
+		public long getLongValue(String fieldName) {
+			return Value.getLongValue(this.getValue(fieldName));
+		}
+
+		@Override
+		public double getDoubleValue(String fieldName) {
+			return Value.getDoubleValue(this.getValue(fieldName));
+		}
+
+		@Override
+		public boolean getBooleanValue(String fieldName) {
+			return Value.getBooleanValue(this.getValue(fieldName));
+		}
+
+		@Override
+		public void setLongValue(String fieldName, long value) {
+			this.setValue(fieldName, Value.newIntegerValue(value));
+		}
+
+		@Override
+		public void setDoubleValue(String fieldName, double value) {
+			this.setValue(fieldName, Value.newDecimalValue(value));
+		}
+
+		@Override
+		public void setBooleanValue(String fieldName, boolean value) {
+			this.setValue(fieldName, Value.newBooleanValue(value));
+		}
+	}
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.expr;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.data.ColumnarSheet;
+import org.simplity.kernel.data.DataSheet;
+import org.simplity.kernel.value.IntegerValue;
+import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
+
+/**
+ * values of a column, as evaluated by an expression for all rows of a data
+ * sheet in one go. Integral, decimal and boolean columns are kept as arrays of
+ * primitives, with a parallel array that marks the null cells. Columns of
+ * other types are kept as an array of values.
+ *
+ * @author simplity.org
+ *
+ */
+public class ColumnValues {
+	/*
+	 * how the values are kept
+	 */
+	static final int CONSTANT = 0;
+	static final int LONGS = 1;
+	static final int DOUBLES = 2;
+	static final int BOOLEANS = 3;
+	static final int VALUES = 4;
+
+	final int kind;
+	final int nbrRows;
+	/*
+	 * exactly one of these is set, based on kind
+	 */
+	Value constant;
+	long[] longs;
+	double[] doubles;
+	boolean[] booleans;
+	Value[] values;
+	/*
+	 * null cells for primitive kinds. null if there are no null cells
+	 */
+	boolean[] nulls;
+
+	private ColumnValues(int kind, int nbrRows) {
+		this.kind = kind;
+		this.nbrRows = nbrRows;
+	}
+
+	/**
+	 * @param longs
+	 *            integral values
+	 * @param nulls
+	 *            true for cells that are null. null if there are no nulls
+	 * @return column with these values
+	 */
+	public static ColumnValues ofLongs(long[] longs, boolean[] nulls) {
+		ColumnValues column = new ColumnValues(LONGS, longs.length);
+		column.longs = longs;
+		column.nulls = nulls;
+		return column;
+	}
+
+	/**
+	 * @param doubles
+	 *            decimal values
+	 * @param nulls
+	 *            true for cells that are null. null if there are no nulls
+	 * @return column with these values
+	 */
+	public static ColumnValues ofDoubles(double[] doubles, boolean[] nulls) {
+		ColumnValues column = new ColumnValues(DOUBLES, doubles.length);
+		column.doubles = doubles;
+		column.nulls = nulls;
+		return column;
+	}
+
+	/**
+	 * @param booleans
+	 *            boolean values
+	 * @param nulls
+	 *            true for cells that are null. null if there are no nulls
+	 * @return column with these values
+	 */
+	public static ColumnValues ofBooleans(boolean[] booleans, boolean[] nulls) {
+		ColumnValues column = new ColumnValues(BOOLEANS, booleans.length);
+		column.booleans = booleans;
+		column.nulls = nulls;
+		return column;
+	}
+
+	/**
+	 * @param values
+	 *            values, with null for null cells
+	 * @return column with these values
+	 */
+	public static ColumnValues ofValues(Value[] values) {
+		ColumnValues column = new ColumnValues(VALUES, values.length);
+		column.values = values;
+		return column;
+	}
+
+	/**
+	 * @param value
+	 *            non-null value that is the same for all rows
+	 * @param nbrRows
+	 * @return column with this value in all rows
+	 */
+	static ColumnValues ofConstant(Value value, int nbrRows) {
+		ColumnValues column = new ColumnValues(CONSTANT, nbrRows);
+		column.constant = value;
+		return column;
+	}
+
+	/**
+	 * @return number of rows
+	 */
+	public int length() {
+		return this.nbrRows;
+	}
+
+	/**
+	 * @return value type of this column. TEXT if it has no known values
+	 */
+	public ValueType getValueType() {
+		switch (this.kind) {
+		case LONGS:
+			return ValueType.INTEGER;
+		case DOUBLES:
+			return ValueType.DECIMAL;
+		case BOOLEANS:
+			return ValueType.BOOLEAN;
+		case CONSTANT:
+			return this.constant.getValueType();
+		default:
+			for (Value value : this.values) {
+				if (Value.isNull(value) == false) {
+					return value.getValueType();
+				}
+			}
+			return ValueType.TEXT;
+		}
+	}
+
+	/**
+	 * @param rowIdx
+	 * @return true if this cell has no value
+	 */
+	public boolean isNull(int rowIdx) {
+		switch (this.kind) {
+		case CONSTANT:
+			return this.constant.isUnknown();
+		case VALUES:
+			return Value.isNull(this.values[rowIdx]);
+		default:
+			return this.nulls != null && this.nulls[rowIdx];
+		}
+	}
+
+	/**
+	 * @param rowIdx
+	 * @return value of this cell, never null. Unknown value for a null cell
+	 */
+	public Value getValue(int rowIdx) {
+		switch (this.kind) {
+		case CONSTANT:
+			return this.constant;
+		case VALUES:
+			Value value = this.values[rowIdx];
+			if (value == null) {
+				return Value.newUnknownValue(ValueType.TEXT);
+			}
+			return value;
+		default:
+			if (this.nulls != null && this.nulls[rowIdx]) {
+				return Value.newUnknownValue(this.getValueType());
+			}
+			if (this.kind == LONGS) {
+				return Value.newIntegerValue(this.longs[rowIdx]);
+			}
+			if (this.kind == DOUBLES) {
+				return Value.newDecimalValue(this.doubles[rowIdx]);
+			}
+			return Value.newBooleanValue(this.booleans[rowIdx]);
+		}
+	}
+
+	/**
+	 * @return values of all cells. Unknown value for null cells
+	 */
+	public Value[] toValues() {
+		Value[] result = new Value[this.nbrRows];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = this.getValue(i);
+		}
+		return result;
+	}
+
+	/**
+	 * @return integral values, with 0 for null cells. null if this is not an
+	 *         integral column
+	 */
+	public long[] getLongs() {
+		if (this.kind == LONGS) {
+			return this.longs;
+		}
+		if (this.kind == CONSTANT && this.isIntegral()) {
+			return this.toLongs();
+		}
+		return null;
+	}
+
+	/**
+	 * @return decimal values, with 0 for null cells. null if this is not a
+	 *         decimal column
+	 */
+	public double[] getDoubles() {
+		if (this.kind == DOUBLES) {
+			return this.doubles;
+		}
+		if (this.kind == CONSTANT && this.isNumeric()
+				&& this.constant.getValueType() == ValueType.DECIMAL) {
+			return this.toDoubles();
+		}
+		return null;
+	}
+
+	/**
+	 * @return boolean values, with false for null cells. null if this is not
+	 *         a boolean column
+	 */
+	public boolean[] getBooleans() {
+		if (this.kind == BOOLEANS) {
+			return this.booleans;
+		}
+		if (this.kind == CONSTANT
+				&& this.constant.getValueType() == ValueType.BOOLEAN
+				&& this.constant.isUnknown() == false) {
+			boolean[] result = new boolean[this.nbrRows];
+			Arrays.fill(result, Value.getBooleanValue(this.constant));
+			return result;
+		}
+		return null;
+	}
+
+	/**
+	 * add these values as a column to the sheet. Primitives are set directly
+	 * into a columnar sheet, without creating a value object for each cell.
+	 *
+	 * @param sheet
+	 *            sheet with as many rows as this column
+	 * @param columnName
+	 *            name of the column. existing column is replaced
+	 */
+	public void addToSheet(DataSheet sheet, String columnName) {
+		if (sheet.length() != this.nbrRows) {
+			throw new ApplicationError("Column " + columnName + " has "
+					+ this.nbrRows + " values but the sheet has "
+					+ sheet.length() + " rows.");
+		}
+		ValueType valueType = this.getValueType();
+		boolean primitive = this.kind == LONGS || this.kind == DOUBLES
+				|| this.kind == BOOLEANS;
+		if (primitive == false || sheet instanceof ColumnarSheet == false) {
+			sheet.addColumn(columnName, valueType, this.toValues());
+			return;
+		}
+		sheet.addColumn(columnName, valueType, null);
+		int colIdx = sheet.getColIdx(columnName);
+		for (int i = 0; i < this.nbrRows; i++) {
+			if (this.nulls != null && this.nulls[i]) {
+				continue;
+			}
+			if (this.kind == LONGS) {
+				sheet.setLong(colIdx, i, this.longs[i]);
+			} else if (this.kind == DOUBLES) {
+				sheet.setDouble(colIdx, i, this.doubles[i]);
+			} else {
+				sheet.setBoolean(colIdx, i, this.booleans[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return true if all cells are known integral values
+	 */
+	boolean isIntegral() {
+		if (this.kind == CONSTANT) {
+			return this.constant instanceof IntegerValue
+					&& this.constant.isUnknown() == false;
+		}
+		return this.kind == LONGS && this.nulls == null;
+	}
+
+	/**
+	 * @return true if all cells are known integral or decimal values
+	 */
+	boolean isNumeric() {
+		if (this.kind == CONSTANT) {
+			return CompiledExpression.isNumber(this.constant);
+		}
+		return (this.kind == LONGS || this.kind == DOUBLES)
+				&& this.nulls == null;
+	}
+
+	/**
+	 * @return values of a numeric column as long
+	 */
+	long[] toLongs() {
+		if (this.kind == LONGS) {
+			return this.longs;
+		}
+		long[] result = new long[this.nbrRows];
+		if (this.kind == CONSTANT) {
+			Arrays.fill(result, Value.getLongValue(this.constant));
+		} else {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = Math.round(this.doubles[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return values of a numeric column as double
+	 */
+	double[] toDoubles() {
+		if (this.kind == DOUBLES) {
+			return this.doubles;
+		}
+		double[] result = new double[this.nbrRows];
+		if (this.kind == CONSTANT) {
+			Arrays.fill(result, Value.getDoubleValue(this.constant));
+		} else {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = this.longs[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param rowIdx
+	 * @return boolean value of this cell
+	 * @throws InvalidOperationException
+	 *             if the cell is null, or is not boolean
+	 */
+	boolean getBoolean(int rowIdx) throws InvalidOperationException {
+		if (this.kind != BOOLEANS) {
+			return CompiledExpression.toBoolean(this.getValue(rowIdx));
+		}
+		if (this.nulls != null && this.nulls[rowIdx]) {
+			throw new InvalidOperationException(
+					"A boolean value is expected but we got null");
+		}
+		return this.booleans[rowIdx];
+	}
+
+	/**
+	 * put together columns evaluated for consecutive chunks of rows
+	 *
+	 * @param parts
+	 * @param nbrRows
+	 *            total number of rows in all parts
+	 * @return column with all the rows
+	 */
+	static ColumnValues concat(List<ColumnValues> parts, int nbrRows) {
+		int kind = parts.get(0).kind;
+		for (ColumnValues part : parts) {
+			if (part.kind != kind) {
+				kind = VALUES;
+				break;
+			}
+		}
+		if (kind == CONSTANT) {
+			kind = VALUES;
+		}
+		boolean[] nulls = null;
+		if (kind != VALUES) {
+			for (ColumnValues part : parts) {
+				if (part.nulls != null) {
+					nulls = new boolean[nbrRows];
+					break;
+				}
+			}
+		}
+		Object result;
+		switch (kind) {
+		case LONGS:
+			result = new long[nbrRows];
+			break;
+		case DOUBLES:
+			result = new double[nbrRows];
+			break;
+		case BOOLEANS:
+			result = new boolean[nbrRows];
+			break;
+		default:
+			result = new Value[nbrRows];
+		}
+		int offset = 0;
+		for (ColumnValues part : parts) {
+			int n = part.nbrRows;
+			switch (kind) {
+			case LONGS:
+				System.arraycopy(part.longs, 0, result, offset, n);
+				break;
+			case DOUBLES:
+				System.arraycopy(part.doubles, 0, result, offset, n);
+				break;
+			case BOOLEANS:
+				System.arraycopy(part.booleans, 0, result, offset, n);
+				break;
+			default:
+				Value[] values = (Value[]) result;
+				for (int i = 0; i < n; i++) {
+					values[offset + i] = part.getValue(i);
+				}
+			}
+			if (nulls != null && part.nulls != null) {
+				System.arraycopy(part.nulls, 0, nulls, offset, n);
+			}
+			offset += n;
+		}
+		switch (kind) {
+		case LONGS:
+			return ofLongs((long[]) result, nulls);
+		case DOUBLES:
+			return ofDoubles((double[]) result, nulls);
+		case BOOLEANS:
+			return ofBooleans((boolean[]) result, nulls);
+		default:
+			return ofValues((Value[]) result);
+		}
+	}
+}
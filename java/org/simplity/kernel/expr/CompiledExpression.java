@@ -0,0 +1,868 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.expr;
+
+import org.simplity.kernel.comp.ComponentManager;
+import org.simplity.kernel.data.FieldRef;
+import org.simplity.kernel.data.FieldsInterface;
+import org.simplity.kernel.value.BooleanValue;
+import org.simplity.kernel.value.DecimalValue;
+import org.simplity.kernel.value.IntegerValue;
+import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
+
+/**
+ * an expression compiled into a tree of nodes. Each node is specialised for
+ * what it does, so that evaluation does not have to interpret calculation
+ * steps, allocate a work area or look-up fields by name. Constant parts of
+ * the expression are evaluated once at the time of compilation.
+ *
+ * <p>
+ * Results are the same as that of the interpreter in Expression, except that
+ * &amp; and | evaluate their right operand only when the left one does not
+ * decide the result. An error in such a right operand, like a non-boolean
+ * value, fails the interpreter, but not the compiled expression. Nodes are
+ * immutable, and hence a compiled expression is thread-safe.
+ *
+ * <p>
+ * Evaluating a node for a column of rows gives the same values, and fails
+ * for the same rows, as evaluating it row by row. Nodes work on primitive
+ * arrays only when all cells are known values, and leave the rest to their
+ * row-by-row evaluation.
+ *
+ * @author simplity.org
+ *
+ */
+abstract class CompiledExpression {
+
+	/**
+	 * evaluate this node
+	 *
+	 * @param data
+	 * @return value, never null
+	 * @throws InvalidOperationException
+	 */
+	abstract Value evaluate(FieldsInterface data)
+			throws InvalidOperationException;
+
+	/**
+	 * evaluate this node as a condition
+	 *
+	 * @param data
+	 * @return boolean value
+	 * @throws InvalidOperationException
+	 *             if this node does not evaluate to a boolean
+	 */
+	boolean evaluateBoolean(FieldsInterface data)
+			throws InvalidOperationException {
+		return toBoolean(this.evaluate(data));
+	}
+
+	/**
+	 * evaluate this node for a range of rows of a sheet. This default
+	 * implementation evaluates the node row by row, while nodes that can work
+	 * on whole columns override it.
+	 *
+	 * @param source
+	 *            sheet and data source
+	 * @param from
+	 *            first row, inclusive
+	 * @param to
+	 *            last row, exclusive
+	 * @return values, one per row in the range
+	 * @throws InvalidOperationException
+	 */
+	ColumnValues evaluateColumn(ColumnEvaluator source, int from, int to)
+			throws InvalidOperationException {
+		ColumnEvaluator.RowData row = source.newRowData();
+		Value[] values = new Value[to - from];
+		for (int i = 0; i < values.length; i++) {
+			row.rowIdx = from + i;
+			values[i] = this.evaluate(row);
+		}
+		return ColumnValues.ofValues(values);
+	}
+
+	/**
+	 * @return value if this node is a constant, null otherwise
+	 */
+	Value getConstant() {
+		return null;
+	}
+
+	/**
+	 * compile a parsed expression
+	 *
+	 * @param expression
+	 * @return root node of the compiled expression
+	 */
+	static CompiledExpression compile(Expression expression) {
+		if (expression.operands == null) {
+			return new Constant(Value.newUnknownValue(ValueType.TEXT));
+		}
+		return reduce(expression)[0];
+	}
+
+	/**
+	 * take the calculation steps of an expression on its operand nodes. We
+	 * simulate the interpreter, except that each step combines two nodes into
+	 * one instead of two values into one.
+	 *
+	 * @return nodes after all the steps. first element is the resultant node.
+	 */
+	private static CompiledExpression[] reduce(Expression expression) {
+		Operand[] operands = expression.operands;
+		CompiledExpression[] nodes = new CompiledExpression[operands.length];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = compileOperand(operands[i]);
+		}
+		if (nodes.length == 1) {
+			return nodes;
+		}
+		int actualSteps = expression.calculationSteps.length
+				- expression.nbrCommas;
+		for (int i = 0; i < actualSteps; i++) {
+			Step step = expression.calculationSteps[i];
+			nodes[step.left] = combine(step.bop, nodes[step.left],
+					nodes[step.right]);
+		}
+		return nodes;
+	}
+
+	/**
+	 * compile an expression that is the argument list of a function
+	 *
+	 * @return one node per argument
+	 */
+	private static CompiledExpression[] compileArguments(Expression expression) {
+		if (expression.operands == null) {
+			return new CompiledExpression[0];
+		}
+		CompiledExpression[] nodes = reduce(expression);
+		int nbrArgs = expression.nbrCommas + 1;
+		CompiledExpression[] args = new CompiledExpression[nbrArgs];
+		args[0] = nodes[0];
+		/*
+		 * comma steps are at the end, and each one gives us the index of the
+		 * next argument as its right
+		 */
+		int stepIdx = expression.calculationSteps.length - expression.nbrCommas;
+		for (int i = 1; i < nbrArgs; i++) {
+			args[i] = nodes[expression.calculationSteps[stepIdx].right];
+			stepIdx++;
+		}
+		return args;
+	}
+
+	private static CompiledExpression compileOperand(Operand operand) {
+		CompiledExpression node;
+		switch (operand.operandType) {
+		case Operand.CONSTANT:
+			return new Constant(operand.value);
+		case Operand.FIELD:
+			if (operand.uop == UnaryOperator.IsKnown) {
+				return new KnownField(operand.fieldRef, true);
+			}
+			if (operand.uop == UnaryOperator.IsUnknown) {
+				return new KnownField(operand.fieldRef, false);
+			}
+			node = new FieldNode(operand.fieldRef);
+			break;
+		case Operand.EXPRESSION:
+			node = compile(operand.expression);
+			break;
+		default:
+			CompiledExpression[] args = null;
+			if (operand.expression != null) {
+				args = compileArguments(operand.expression);
+			}
+			node = new FunctionNode(operand.value.toString(), args);
+			break;
+		}
+		if (operand.uop == null) {
+			return node;
+		}
+		return fold(new UnaryNode(operand.uop, node), node, null);
+	}
+
+	private static CompiledExpression combine(BinaryOperator bop,
+			CompiledExpression left, CompiledExpression right) {
+		CompiledExpression node;
+		switch (bop) {
+		case And:
+			node = new AndNode(left, right);
+			break;
+		case Or:
+			node = new OrNode(left, right);
+			break;
+		case Plus:
+		case Minus:
+		case Multiply:
+		case Divide:
+		case Modulo:
+			node = new ArithmeticNode(bop, left, right);
+			break;
+		case Less:
+		case LessOrEqual:
+		case Greater:
+		case GreaterOrEqual:
+		case Equal:
+		case NotEqual:
+			node = new CompareNode(bop, left, right);
+			break;
+		default:
+			node = new BinaryNode(bop, left, right);
+			break;
+		}
+		return fold(node, left, right);
+	}
+
+	/**
+	 * replace the node with a constant if all its operands are constants.
+	 * Operations that fail, including run-time errors like division by zero,
+	 * are left as they are, so that the error surfaces when the expression is
+	 * evaluated, as it would have without compilation
+	 */
+	private static CompiledExpression fold(CompiledExpression node,
+			CompiledExpression left, CompiledExpression right) {
+		if (left.getConstant() == null) {
+			return node;
+		}
+		if (right != null && right.getConstant() == null) {
+			return node;
+		}
+		try {
+			return new Constant(node.evaluate(null));
+		} catch (Exception e) {
+			return node;
+		}
+	}
+
+	static boolean toBoolean(Value value) throws InvalidOperationException {
+		if (value instanceof BooleanValue) {
+			return ((BooleanValue) value).getBoolean();
+		}
+		throw new InvalidOperationException(
+				"A boolean value is expected but we got "
+						+ value.getValueType() + "(" + value + ")");
+	}
+
+	/**
+	 * @return true if the value is a known integral value
+	 */
+	static boolean isInteger(Value value) {
+		return value instanceof IntegerValue && value.isUnknown() == false;
+	}
+
+	/**
+	 * @return true if the value is a known integral or decimal value
+	 */
+	static boolean isNumber(Value value) {
+		return (value instanceof IntegerValue || value instanceof DecimalValue)
+				&& value.isUnknown() == false;
+	}
+
+	/**
+	 * evaluate the right operand of &amp; or | for a column. Row by row, the
+	 * right operand is not evaluated for rows decided by the left one, and
+	 * hence an error in the column need not be an error for the operation.
+	 *
+	 * @return values, or null if the right operand fails for any of the rows
+	 */
+	static ColumnValues evaluateRight(CompiledExpression right,
+			ColumnEvaluator source, int from, int to) {
+		try {
+			return right.evaluateColumn(source, from, to);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if the column has boolean values with no nulls
+	 */
+	static boolean isPlainBooleans(ColumnValues column) {
+		return column.kind == ColumnValues.BOOLEANS && column.nulls == null;
+	}
+
+	/**
+	 * constant, or a part of the expression that is folded into a constant
+	 */
+	private static class Constant extends CompiledExpression {
+		private final Value value;
+
+		Constant(Value value) {
+			this.value = value;
+		}
+
+		@Override
+		Value evaluate(FieldsInterface data) {
+			return this.value;
+		}
+
+		@Override
+		ColumnValues evaluateColumn(ColumnEvaluator source, int from, int to) {
+			return ColumnValues.ofConstant(this.value, to - from);
+		}
+
+		@Override
+		Value getConstant() {
+			return this.value;
+		}
+	}
+
+	/**
+	 * value of a field. Unknown value if the field is not found
+	 */
+	private static class FieldNode extends CompiledExpression {
+		private final FieldRef fieldRef;
+
+		FieldNode(FieldRef fieldRef) {
+			this.fieldRef = fieldRef;
+		}
+
+		@Override
+		Value evaluate(FieldsInterface data) {
+			Value value = this.fieldRef.getValue(data);
+			if (value == null) {
+				return Value.newUnknownValue(ValueType.TEXT);
+			}
+			return value;
+		}
+
+		@Override
+		ColumnValues evaluateColumn(ColumnEvaluator source, int from, int to) {
+			int colIdx = source.getColIdx(this.fieldRef);
+			if (colIdx == -1) {
+				return ColumnValues.ofConstant(this.evaluate(source.data), to
+						- from);
+			}
+			return source.getColumn(colIdx, from, to);
+		}
+	}
+
+	/**
+	 * ?field or ~field
+	 */
+	private static class KnownField extends CompiledExpression {
+		private final FieldRef fieldRef;
+		private final boolean known;
+
+		KnownField(FieldRef fieldRef, boolean known) {
+			this.fieldRef = fieldRef;
+			this.known = known;
+		}
+
+		@Override
+		Value evaluate(FieldsInterface data) {
+			return Value.newBooleanValue(this.evaluateBoolean(data));
+		}
+
+		@Override
+		boolean evaluateBoolean(FieldsInterface data) {
+			return (this.fieldRef.getValue(data) != null) == this.known;
+		}
+
+		@Override
+		ColumnValues evaluateColumn(ColumnEvaluator source, int from, int to) {
+			int colIdx = source.getColIdx(this.fieldRef);
+			if (colIdx == -1) {
+				return ColumnValues.ofConstant(this.evaluate(source.data), to
+						- from);
+			}
+			/*
+			 * a null cell of a sheet may still be an unknown value, and
+			 * hence we check the way we do for a row
+			 */
+			ColumnEvaluator.RowData row = source.newRowData();
+			boolean[] booleans = new boolean[to - from];
+			for (int i = 0; i < booleans.length; i++) {
+				row.rowIdx = from + i;
+				booleans[i] = this.evaluateBoolean(row);
+			}
+			return ColumnValues.ofBooleans(booleans, null);
+		}
+	}
+
+	/**
+	 * function with its arguments
+	 */
+	private static class FunctionNode extends CompiledExpression {
+		private final String functionName;
+		private final CompiledExpression[] args;
+
+		FunctionNode(String functionName, CompiledExpression[] args) {
+			this.functionName = functionName;
+			this.args = args;
+		}
+
+		@Override
+		Value evaluate(FieldsInterface data) throws InvalidOperationException {
+			Value[] values = null;
+			if (this.args != null) {
+				values = new Value[this.args.length];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = this.args[i].evaluate(data);
+				}
+			}
+			return ComponentManager.evaluate(this.functionName, values, data);
+		}
+	}
+
+	/**
+	 * - or ! on an operand
+	 */
+	private static class UnaryNode extends CompiledExpression {
+		private final UnaryOperator uop;
+		private final CompiledExpression operand;
+
+		UnaryNode(UnaryOperator uop, CompiledExpression operand) {
+			this.uop = uop;
+			this.operand = operand;
+		}
+
+		@Override
+		Value evaluate(FieldsInterface data) throws InvalidOperationException {
+			return this.operate(this.operand.evaluate(data));
+		}
+
+		@Override
+		ColumnValues evaluateColumn(ColumnEvaluator source, int from, int to)
+				throws InvalidOperationException {
+			ColumnValues column = this.operand.evaluateColumn(source, from, to);
+			int n = to - from;
+			/*
+			 * null cells are operated upon as values
+			 */
+			if (column.nulls == null) {
+				if (this.uop == UnaryOperator.Not) {
+					if (column.kind == ColumnValues.BOOLEANS) {
+						boolean[] booleans = new boolean[n];
+						for (int i = 0; i < n; i++) {
+							booleans[i] = !column.booleans[i];
+						}
+						return ColumnValues.ofBooleans(booleans, null);
+					}
+				} else if (column.kind == ColumnValues.LONGS) {
+					long[] longs = new long[n];
+					for (int i = 0; i < n; i++) {
+						longs[i] = -column.longs[i];
+					}
+					return ColumnValues.ofLongs(longs, null);
+				} else if (column.kind == ColumnValues.DOUBLES) {
+					double[] doubles = new double[n];
+					for (int i = 0; i < n; i++) {
+						doubles[i] = -column.doubles[i];
+					}
+					return ColumnValues.ofDoubles(doubles, null);
+				}
+			}
+			Value[] values = new Value[n];
+			for (int i = 0; i < n; i++) {
+				values[i] = this.operate(column.getValue(i));
+			}
+			return ColumnValues.ofValues(values);
+		}
+
+		private Value operate(Value value) throws InvalidOperationException {
+			if (value.isUnknown()) {
+				return value;
+			}
+			if (this.uop == UnaryOperator.Not) {
+				if (value instanceof BooleanValue) {
+					return Value.newBooleanValue(!((BooleanValue) value)
+							.getBoolean());
+				}
+			} else {
+				if (value instanceof IntegerValue) {
+					return Value.newIntegerValue(-((IntegerValue) value)
+							.getLong());
+				}
+				if (value instanceof DecimalValue) {
+					return Value.newDecimalValue(-((DecimalValue) value)
+							.getDouble());
+				}
+			}
+			throw new InvalidOperationException(this.uop,
+					value.getValueType());
+		}
+	}
+
+	/**
+	 * logical and. right operand is evaluated only if left is true
+	 */
+	private static class AndNode extends CompiledExpression {
+		private final CompiledExpression left;
+		private final CompiledExpression right;
+
+		AndNode(CompiledExpression left, CompiledExpression right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		Value evaluate(FieldsInterface data) throws InvalidOperationException {
+			return Value.newBooleanValue(this.evaluateBoolean(data));
+		}
+
+		@Override
+		boolean evaluateBoolean(FieldsInterface data)
+				throws InvalidOperationException {
+			return this.left.evaluateBoolean(data)
+					&& this.right.evaluateBoolean(data);
+		}
+
+		@Override
+		ColumnValues evaluateColumn(ColumnEvaluator source, int from, int to)
+				throws InvalidOperationException {
+			ColumnValues l = this.left.evaluateColumn(source, from, to);
+			ColumnValues r = evaluateRight(this.right, source, from, to);
+			if (r == null) {
+				return super.evaluateColumn(source, from, to);
+			}
+			boolean[] booleans = new boolean[to - from];
+			if (isPlainBooleans(l) && isPlainBooleans(r)) {
+				for (int i = 0; i < booleans.length; i++) {
+					booleans[i] = l.booleans[i] & r.booleans[i];
+				}
+			} else {
+				for (int i = 0; i < booleans.length; i++) {
+					booleans[i] = l.getBoolean(i) && r.getBoolean(i);
+				}
+			}
+			return ColumnValues.ofBooleans(booleans, null);
+		}
+	}
+
+	/**
+	 * logical or. right operand is evaluated only if left is false
+	 */
+	private static class OrNode extends CompiledExpression {
+		private final CompiledExpression left;
+		private final CompiledExpression right;
+
+		OrNode(CompiledExpression left, CompiledExpression right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		Value evaluate(FieldsInterface data) throws InvalidOperationException {
+			return Value.newBooleanValue(this.evaluateBoolean(data));
+		}
+
+		@Override
+		boolean evaluateBoolean(FieldsInterface data)
+				throws InvalidOperationException {
+			return this.left.evaluateBoolean(data)
+					|| this.right.evaluateBoolean(data);
+		}
+
+		@Override
+		ColumnValues evaluateColumn(ColumnEvaluator source, int from, int to)
+				throws InvalidOperationException {
+			ColumnValues l = this.left.evaluateColumn(source, from, to);
+			ColumnValues r = evaluateRight(this.right, source, from, to);
+			if (r == null) {
+				return super.evaluateColumn(source, from, to);
+			}
+			boolean[] booleans = new boolean[to - from];
+			if (isPlainBooleans(l) && isPlainBooleans(r)) {
+				for (int i = 0; i < booleans.length; i++) {
+					booleans[i] = l.booleans[i] | r.booleans[i];
+				}
+			} else {
+				for (int i = 0; i < booleans.length; i++) {
+					booleans[i] = l.getBoolean(i) || r.getBoolean(i);
+				}
+			}
+			return ColumnValues.ofBooleans(booleans, null);
+		}
+	}
+
+	/**
+	 * any other binary operation, carried out by the operator itself
+	 */
+	private static class BinaryNode extends CompiledExpression {
+		final BinaryOperator bop;
+		final CompiledExpression left;
+		final CompiledExpression right;
+
+		BinaryNode(BinaryOperator bop, CompiledExpression left,
+				CompiledExpression right) {
+			this.bop = bop;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		Value evaluate(FieldsInterface data) throws InvalidOperationException {
+			return this.operate(this.left.evaluate(data),
+					this.right.evaluate(data));
+		}
+
+		/**
+		 * carry out the operation on the values of the operands
+		 */
+		Value operate(Value leftValue, Value rightValue)
+				throws InvalidOperationException {
+			return this.bop.operate(leftValue, rightValue);
+		}
+
+		@Override
+		ColumnValues evaluateColumn(ColumnEvaluator source, int from, int to)
+				throws InvalidOperationException {
+			return this.operateEach(
+					this.left.evaluateColumn(source, from, to),
+					this.right.evaluateColumn(source, from, to));
+		}
+
+		/**
+		 * carry out the operation cell by cell with the operator
+		 */
+		ColumnValues operateEach(ColumnValues l, ColumnValues r)
+				throws InvalidOperationException {
+			Value[] values = new Value[l.nbrRows];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = this.operate(l.getValue(i), r.getValue(i));
+			}
+			return ColumnValues.ofValues(values);
+		}
+	}
+
+	/**
+	 * + - * / and %. Integral and decimal operands are operated upon directly
+	 * with primitives. Others, like date arithmetic and text concatenation,
+	 * are left to the operator.
+	 */
+	private static class ArithmeticNode extends BinaryNode {
+
+		ArithmeticNode(BinaryOperator bop, CompiledExpression left,
+				CompiledExpression right) {
+			super(bop, left, right);
+		}
+
+		@Override
+		Value operate(Value leftValue, Value rightValue)
+				throws InvalidOperationException {
+			if (isInteger(leftValue) && isInteger(rightValue)) {
+				long l = ((IntegerValue) leftValue).getLong();
+				long r = ((IntegerValue) rightValue).getLong();
+				switch (this.bop) {
+				case Plus:
+					return Value.newIntegerValue(l + r);
+				case Minus:
+					return Value.newIntegerValue(l - r);
+				case Multiply:
+					return Value.newIntegerValue(l * r);
+				case Divide:
+					return Value.newIntegerValue(l / r);
+				default:
+					return Value.newIntegerValue(l % r);
+				}
+			}
+			if (this.bop != BinaryOperator.Modulo && isNumber(leftValue)
+					&& isNumber(rightValue)) {
+				double l = Value.getDoubleValue(leftValue);
+				double r = Value.getDoubleValue(rightValue);
+				switch (this.bop) {
+				case Plus:
+					return Value.newDecimalValue(l + r);
+				case Minus:
+					return Value.newDecimalValue(l - r);
+				case Multiply:
+					return Value.newDecimalValue(l * r);
+				default:
+					return Value.newDecimalValue(l / r);
+				}
+			}
+			return this.bop.operate(leftValue, rightValue);
+		}
+
+		@Override
+		ColumnValues evaluateColumn(ColumnEvaluator source, int from, int to)
+				throws InvalidOperationException {
+			ColumnValues l = this.left.evaluateColumn(source, from, to);
+			ColumnValues r = this.right.evaluateColumn(source, from, to);
+			int n = to - from;
+			if (l.isIntegral() && r.isIntegral()) {
+				long[] a = l.toLongs();
+				long[] b = r.toLongs();
+				long[] result = new long[n];
+				switch (this.bop) {
+				case Plus:
+					for (int i = 0; i < n; i++) {
+						result[i] = a[i] + b[i];
+					}
+					break;
+				case Minus:
+					for (int i = 0; i < n; i++) {
+						result[i] = a[i] - b[i];
+					}
+					break;
+				case Multiply:
+					for (int i = 0; i < n; i++) {
+						result[i] = a[i] * b[i];
+					}
+					break;
+				case Divide:
+					for (int i = 0; i < n; i++) {
+						result[i] = a[i] / b[i];
+					}
+					break;
+				default:
+					for (int i = 0; i < n; i++) {
+						result[i] = a[i] % b[i];
+					}
+				}
+				return ColumnValues.ofLongs(result, null);
+			}
+			if (this.bop != BinaryOperator.Modulo && l.isNumeric()
+					&& r.isNumeric()) {
+				double[] a = l.toDoubles();
+				double[] b = r.toDoubles();
+				double[] result = new double[n];
+				switch (this.bop) {
+				case Plus:
+					for (int i = 0; i < n; i++) {
+						result[i] = a[i] + b[i];
+					}
+					break;
+				case Minus:
+					for (int i = 0; i < n; i++) {
+						result[i] = a[i] - b[i];
+					}
+					break;
+				case Multiply:
+					for (int i = 0; i < n; i++) {
+						result[i] = a[i] * b[i];
+					}
+					break;
+				default:
+					for (int i = 0; i < n; i++) {
+						result[i] = a[i] / b[i];
+					}
+				}
+				return ColumnValues.ofDoubles(result, null);
+			}
+			return this.operateEach(l, r);
+		}
+	}
+
+	/**
+	 * comparison. Integral operands are compared directly with primitives,
+	 * without creating a boolean value when used as a condition.
+	 */
+	private static class CompareNode extends BinaryNode {
+
+		CompareNode(BinaryOperator bop, CompiledExpression left,
+				CompiledExpression right) {
+			super(bop, left, right);
+		}
+
+		@Override
+		Value operate(Value leftValue, Value rightValue)
+				throws InvalidOperationException {
+			if (isInteger(leftValue) && isInteger(rightValue)) {
+				return Value.newBooleanValue(this.compare(
+						((IntegerValue) leftValue).getLong(),
+						((IntegerValue) rightValue).getLong()));
+			}
+			return this.bop.operate(leftValue, rightValue);
+		}
+
+		@Override
+		boolean evaluateBoolean(FieldsInterface data)
+				throws InvalidOperationException {
+			Value leftValue = this.left.evaluate(data);
+			Value rightValue = this.right.evaluate(data);
+			if (isInteger(leftValue) && isInteger(rightValue)) {
+				return this.compare(((IntegerValue) leftValue).getLong(),
+						((IntegerValue) rightValue).getLong());
+			}
+			return toBoolean(this.bop.operate(leftValue, rightValue));
+		}
+
+		@Override
+		ColumnValues evaluateColumn(ColumnEvaluator source, int from, int to)
+				throws InvalidOperationException {
+			ColumnValues l = this.left.evaluateColumn(source, from, to);
+			ColumnValues r = this.right.evaluateColumn(source, from, to);
+			int n = to - from;
+			if (l.isIntegral() && r.isIntegral()) {
+				long[] a = l.toLongs();
+				long[] b = r.toLongs();
+				boolean[] result = new boolean[n];
+				for (int i = 0; i < n; i++) {
+					result[i] = this.compare(a[i], b[i]);
+				}
+				return ColumnValues.ofBooleans(result, null);
+			}
+			/*
+			 * equality of decimals is left to the operator, as it is not an
+			 * exact comparison
+			 */
+			if (this.bop != BinaryOperator.Equal
+					&& this.bop != BinaryOperator.NotEqual && l.isNumeric()
+					&& r.isNumeric()) {
+				double[] a = l.toDoubles();
+				double[] b = r.toDoubles();
+				boolean[] result = new boolean[n];
+				for (int i = 0; i < n; i++) {
+					result[i] = this.compare(a[i], b[i]);
+				}
+				return ColumnValues.ofBooleans(result, null);
+			}
+			return this.operateEach(l, r);
+		}
+
+		private boolean compare(double l, double r) {
+			switch (this.bop) {
+			case Less:
+				return l < r;
+			case LessOrEqual:
+				return l <= r;
+			case Greater:
+				return l > r;
+			default:
+				return l >= r;
+			}
+		}
+
+		private boolean compare(long l, long r) {
+			switch (this.bop) {
+			case Less:
+				return l < r;
+			case LessOrEqual:
+				return l <= r;
+			case Greater:
+				return l > r;
+			case GreaterOrEqual:
+				return l >= r;
+			case Equal:
+				return l == r;
+			default:
+				return l != r;
+			}
+		}
+	}
+}
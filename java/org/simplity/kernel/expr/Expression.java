@@ -27,7 +27,9 @@ import java.util.Date;
 import java.util.List;
 
 import org.simplity.kernel.Tracer;
+import org.simplity.kernel.data.DataSheet;
 import org.simplity.kernel.data.DynamicSheet;
+import org.simplity.kernel.data.FieldRef;
 import org.simplity.kernel.data.FieldsInterface;
 import org.simplity.kernel.util.DateUtil;
 import org.simplity.kernel.value.InvalidValueException;
@@ -135,6 +137,12 @@ public class Expression {
 	 */
 	int nbrCommas = 0;
 
+	/**
+	 * set when this expression is compiled. evaluated using this instead of
+	 * interpreting the steps
+	 */
+	private CompiledExpression compiledExpression;
+
 	/**
 	 * this is an immutable instance that is thread-safe. Hence expression is
 	 * set at the time of construction, and an exception is thrown in case of
@@ -184,6 +192,18 @@ public class Expression {
 		worker.setupShop();
 	}
 
+	/**
+	 * compile this expression for faster evaluation. To be called once, before
+	 * the expression is used, typically from getReady() of the component that
+	 * owns it. Expression is evaluated by interpreting its steps if it is not
+	 * compiled.
+	 */
+	public void compile() {
+		if (this.compiledExpression == null) {
+			this.compiledExpression = CompiledExpression.compile(this);
+		}
+	}
+
 	/**
 	 * evaluate this expression against a data source
 	 *
@@ -193,6 +213,9 @@ public class Expression {
 	 */
 	public Value evaluate(FieldsInterface data)
 			throws InvalidOperationException {
+		if (this.compiledExpression != null) {
+			return this.compiledExpression.evaluate(data);
+		}
 		/*
 		 * this is just a safety. As per our current design, this should not
 		 * happen
@@ -211,6 +234,50 @@ public class Expression {
 		return values[0];
 	}
 
+	/**
+	 * evaluate this expression as a condition
+	 *
+	 * @param data
+	 * @return true if this expression evaluates to true
+	 * @throws InvalidOperationException
+	 *             if the expression does not evaluate to a boolean value
+	 */
+	public boolean evaluateCondition(FieldsInterface data)
+			throws InvalidOperationException {
+		if (this.compiledExpression != null) {
+			return this.compiledExpression.evaluateBoolean(data);
+		}
+		return CompiledExpression.toBoolean(this.evaluate(data));
+	}
+
+	/**
+	 * evaluate this expression for all rows of a sheet in one go, working on
+	 * whole columns rather than row by row. Fields qualified with the sheet
+	 * name, as in sheetName.columnName, refer to the column of the sheet,
+	 * while other fields are taken from data. Large sheets are evaluated in
+	 * parallel.
+	 * <p>
+	 * Values, and errors, are the same as those of evaluating the expression
+	 * row by row, with the columns of the current row as fields.
+	 *
+	 * @param sheet
+	 *            sheet whose columns are used in this expression
+	 * @param sheetName
+	 *            name with which columns are qualified in this expression
+	 * @param data
+	 *            source of other fields used in this expression
+	 * @return values of this expression, one for each row of the sheet
+	 * @throws InvalidOperationException
+	 */
+	public ColumnValues evaluateColumn(DataSheet sheet, String sheetName,
+			FieldsInterface data) throws InvalidOperationException {
+		CompiledExpression compiled = this.compiledExpression;
+		if (compiled == null) {
+			compiled = CompiledExpression.compile(this);
+		}
+		return new ColumnEvaluator(sheet, sheetName, data).evaluate(compiled);
+	}
+
 	/**
 	 * internally used to get arguments list for a function
 	 *
@@ -563,6 +630,11 @@ public class Expression {
 			if (this.operandList.size() > 0) {
 				Expression.this.operands = this.operandList
 						.toArray(new Operand[0]);
+				for (Operand operand : Expression.this.operands) {
+					if (operand.operandType == Operand.FIELD) {
+						operand.fieldRef = new FieldRef(operand.value.toString());
+					}
+				}
 			}
 			/*
 			 * no steps if there is only one operand
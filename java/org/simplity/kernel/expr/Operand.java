@@ -24,6 +24,7 @@ package org.simplity.kernel.expr;
 
 import org.simplity.kernel.ApplicationError;
 import org.simplity.kernel.comp.ComponentManager;
+import org.simplity.kernel.data.FieldRef;
 import org.simplity.kernel.data.FieldsInterface;
 import org.simplity.kernel.value.InvalidValueException;
 import org.simplity.kernel.value.Value;
@@ -58,6 +59,10 @@ class Operand {
 	 * in case this is an expression
 	 */
 	Expression expression;
+	/**
+	 * field name parsed for repeated access, in case this is a field
+	 */
+	FieldRef fieldRef;
 
 	/**
 	 * algorithm assumes that the operand is valid. Works because the operand is
@@ -77,9 +82,8 @@ class Operand {
 			if (this.operandType == Operand.EXPRESSION) {
 				valueToReturn = this.expression.evaluate(data);
 			} else {
-				String fname = this.value.toString();
 				if (this.operandType == Operand.FIELD) {
-					valueToReturn = data.getValue(fname);
+					valueToReturn = this.fieldRef.getValue(data);
 					if (this.uop == UnaryOperator.IsKnown) {
 						return Value.newBooleanValue(valueToReturn != null);
 					}
@@ -94,8 +98,8 @@ class Operand {
 					if (this.expression != null) {
 						args = this.expression.getValueList(data);
 					}
-					valueToReturn = ComponentManager.evaluate(fname, args,
-							data);
+					valueToReturn = ComponentManager
+							.evaluate(this.value.toString(), args, data);
 				}
 			}
 			if (this.uop == null || valueToReturn.isUnknown()) {
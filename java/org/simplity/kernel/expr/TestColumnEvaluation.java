@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.expr;
+
+import java.util.Random;
+
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.data.ColumnarSheet;
+import org.simplity.kernel.data.DataSheet;
+import org.simplity.kernel.data.DynamicSheet;
+import org.simplity.kernel.data.MultiRowsSheet;
+import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
+
+/**
+ * internal class to test that evaluating an expression for a column gives the
+ * same results, and the same errors, as evaluating it row by row. To be
+ * re-factored into a Maven structure and put into test folder
+ *
+ * @author simplity.org
+ *
+ */
+class TestColumnEvaluation {
+	private static final String SHEET = "s";
+	private static final String[] COLUMNS = { "i", "j", "d", "b", "t" };
+	private static final ValueType[] TYPES = { ValueType.INTEGER,
+			ValueType.INTEGER, ValueType.DECIMAL, ValueType.BOOLEAN,
+			ValueType.TEXT };
+	private static final String[] FIELDS = { "s.i", "s.j", "s.d", "s.b",
+			"s.t", "x", "y" };
+	private static final String[] CONSTANTS = { "0", "2", "-3", "1.5", "'a'" };
+	private static final String[] OPERATORS = { "+", "-", "*", "/", "%", "<",
+			"<=", ">", ">=", "=", "!=", "&", "|" };
+	private static final int NBR_EXPRESSIONS = 5000;
+	private static final int NBR_ROWS = 40;
+	/*
+	 * large sheet is evaluated in parallel chunks
+	 */
+	private static final int NBR_LARGE_EXPRESSIONS = 100;
+
+	/**
+	 * random expressions on sheets with null cells
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(1);
+		DataSheet[] sheets = { new ColumnarSheet(COLUMNS, TYPES),
+				new MultiRowsSheet(COLUMNS, TYPES) };
+		for (int i = 0; i < NBR_ROWS; i++) {
+			Value[] row = newRow(random);
+			for (DataSheet sheet : sheets) {
+				sheet.addRow(row);
+			}
+		}
+		DataSheet data = new DynamicSheet();
+		data.setValue("x", Value.newIntegerValue(3));
+		int nbrIssues = 0;
+		for (int i = 0; i < NBR_EXPRESSIONS; i++) {
+			String text = newExpression(random, 3);
+			for (DataSheet sheet : sheets) {
+				if (compare(text, sheet, data) == false) {
+					nbrIssues++;
+				}
+			}
+		}
+		DataSheet large = new ColumnarSheet(COLUMNS, TYPES);
+		for (int i = 0; i < ColumnEvaluator.PARALLEL_THRESHOLD; i++) {
+			large.addRow(newRow(random));
+		}
+		for (int i = 0; i < NBR_LARGE_EXPRESSIONS; i++) {
+			if (compare(newExpression(random, 3), large, data) == false) {
+				nbrIssues++;
+			}
+		}
+		if (nbrIssues == 0) {
+			Tracer.trace("Congratulations!!!");
+		} else {
+			Tracer.trace("Oooops! You have to fix " + nbrIssues
+					+ " issues.");
+		}
+	}
+
+	/**
+	 * @return true if column and row evaluations agree
+	 */
+	private static boolean compare(String text, DataSheet sheet,
+			DataSheet data) {
+		Expression expr;
+		try {
+			expr = new Expression(text);
+		} catch (InvalidExpressionException e) {
+			return true;
+		}
+		expr.compile();
+		int nbrRows = sheet.length();
+		Value[] rowValues = new Value[nbrRows];
+		String rowError = null;
+		for (int i = 0; i < nbrRows && rowError == null; i++) {
+			try {
+				rowValues[i] = expr.evaluate(getRow(sheet, i, data));
+			} catch (Exception e) {
+				rowError = e.toString();
+			}
+		}
+		ColumnValues column = null;
+		String columnError = null;
+		try {
+			column = expr.evaluateColumn(sheet, SHEET, data);
+		} catch (Exception e) {
+			columnError = e.toString();
+		}
+		if (rowError != null || columnError != null) {
+			if (rowError != null && columnError != null) {
+				return true;
+			}
+			Tracer.trace("expression : " + text + " row by row failed with "
+					+ rowError + " but for column with " + columnError);
+			return false;
+		}
+		for (int i = 0; i < nbrRows; i++) {
+			Value r = rowValues[i];
+			Value c = column.getValue(i);
+			if (r.isUnknown() == c.isUnknown()
+					&& r.getValueType() == c.getValueType()
+					&& r.toString().equals(c.toString())) {
+				continue;
+			}
+			Tracer.trace("expression : " + text + " row " + i + " gives "
+					+ r.getValueType() + "(" + r + ") but column gives "
+					+ c.getValueType() + "(" + c + ")");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * fields for a row, the way service context has them while iterating
+	 */
+	private static DataSheet getRow(DataSheet sheet, int rowIdx,
+			DataSheet data) {
+		DataSheet row = new DynamicSheet();
+		row.setValue("x", data.getValue("x"));
+		for (String col : COLUMNS) {
+			Value value = sheet.getColumnValue(col, rowIdx);
+			if (value != null) {
+				row.setValue(SHEET + '.' + col, value);
+			}
+		}
+		return row;
+	}
+
+	private static Value[] newRow(Random random) {
+		Value[] row = new Value[COLUMNS.length];
+		for (int i = 0; i < row.length; i++) {
+			int n = random.nextInt(10);
+			if (n == 0) {
+				row[i] = Value.newUnknownValue(TYPES[i]);
+				continue;
+			}
+			switch (TYPES[i]) {
+			case INTEGER:
+				row[i] = Value.newIntegerValue(n - 3);
+				break;
+			case DECIMAL:
+				row[i] = Value.newDecimalValue((n - 3) / 2.0);
+				break;
+			case BOOLEAN:
+				row[i] = Value.newBooleanValue(n % 2 == 0);
+				break;
+			default:
+				row[i] = Value.newTextValue("" + (char) ('a' + n));
+			}
+		}
+		return row;
+	}
+
+	private static String newExpression(Random random, int depth) {
+		int n = random.nextInt(depth == 0 ? 3 : 6);
+		switch (n) {
+		case 0:
+			return FIELDS[random.nextInt(FIELDS.length)];
+		case 1:
+			return CONSTANTS[random.nextInt(CONSTANTS.length)];
+		case 2:
+			return (random.nextBoolean() ? "?" : "~")
+					+ FIELDS[random.nextInt(FIELDS.length)];
+		case 3:
+			return (random.nextBoolean() ? "-" : "!") + "("
+					+ newExpression(random, depth - 1) + ")";
+		default:
+			return "(" + newExpression(random, depth - 1) + " "
+					+ OPERATORS[random.nextInt(OPERATORS.length)] + " "
+					+ newExpression(random, depth - 1) + ")";
+		}
+	}
+}
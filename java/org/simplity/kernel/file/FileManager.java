@@ -32,6 +32,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -178,6 +179,52 @@ public class FileManager {
 
 	}
 
+	/**
+	 * get the path of a resource folder on the file system
+	 *
+	 * @param folderName
+	 *            folder name relative to application root
+	 * @return absolute path, or null if the resource is not available on the
+	 *         file system, like when the application is deployed as a war
+	 */
+	public static String getRealPath(String folderName) {
+		if (myContext == null) {
+			return folderName;
+		}
+		return myContext.getRealPath(FOLDER_CHAR + folderName);
+	}
+
+	/**
+	 * get the time at which a resource was last modified.
+	 *
+	 * @param fileName
+	 *            file name relative to application root
+	 * @return time in milliseconds, or 0 if the resource does not exist or its
+	 *         time is not known
+	 */
+	public static long getResourceTimestamp(String fileName) {
+		if (myContext == null) {
+			return new File(fileName).lastModified();
+		}
+		try {
+			/*
+			 * resources are typically in an exploded folder, and checking the
+			 * file is cheaper than opening a connection to its url
+			 */
+			String path = myContext.getRealPath(FOLDER_CHAR + fileName);
+			if (path != null) {
+				return new File(path).lastModified();
+			}
+			URL url = myContext.getResource(FOLDER_CHAR + fileName);
+			if (url == null) {
+				return 0;
+			}
+			return url.openConnection().getLastModified();
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+
 	/**
 	 * get input stream for a resource. Typically used by XML util to create a
 	 * document
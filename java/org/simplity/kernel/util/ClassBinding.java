@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.simplity.kernel.MapDetails;
+
+/**
+ * binding details of a class that is loaded from xml. Fields of a class are
+ * looked-up, made accessible and turned into method handles once, and the
+ * binding is re-used for every instance that is loaded thereafter.
+ *
+ * @author simplity.org
+ *
+ */
+class ClassBinding {
+	private static final Map<Class<?>, ClassBinding> bindings = new ConcurrentHashMap<Class<?>, ClassBinding>();
+	private static final Map<String, Class<?>> classes = new ConcurrentHashMap<String, Class<?>>();
+
+	/**
+	 * bindable fields of this class, indexed by name
+	 */
+	private final Map<String, FieldBinding> fields;
+
+	/**
+	 * get binding for a class
+	 *
+	 * @param type
+	 * @return binding, created if required
+	 */
+	static ClassBinding getBinding(Class<?> type) {
+		ClassBinding binding = bindings.get(type);
+		if (binding == null) {
+			/*
+			 * two threads may create it at the same time. Both are identical,
+			 * and hence we do not mind
+			 */
+			binding = new ClassBinding(type);
+			bindings.put(type, binding);
+		}
+		return binding;
+	}
+
+	/**
+	 * get a class for its name, looked-up only once.
+	 *
+	 * @param className
+	 *            fully qualified class name
+	 * @return class
+	 * @throws ClassNotFoundException
+	 */
+	static Class<?> getClass(String className) throws ClassNotFoundException {
+		Class<?> cls = classes.get(className);
+		if (cls == null) {
+			cls = Class.forName(className);
+			classes.put(className, cls);
+		}
+		return cls;
+	}
+
+	/**
+	 * fields as per our convention : default or protected access, including
+	 * the inherited ones
+	 */
+	private ClassBinding(Class<?> type) {
+		Map<String, FieldBinding> map = new HashMap<String, FieldBinding>();
+		Class<?> cls = type;
+		while (cls.equals(Object.class) == false) {
+			for (Field field : cls.getDeclaredFields()) {
+				int mod = field.getModifiers();
+				if (mod == 0 || Modifier.isProtected(mod)) {
+					/*
+					 * as in ReflectUtil.getAllFields(), a field in the super
+					 * class replaces the one with the same name in sub-class
+					 */
+					map.put(field.getName(), new FieldBinding(field));
+				}
+			}
+			cls = cls.getSuperclass();
+		}
+		this.fields = map;
+	}
+
+	/**
+	 * @param fieldName
+	 * @return field binding, or null if there is no such field to be bound
+	 */
+	FieldBinding getField(String fieldName) {
+		return this.fields.get(fieldName);
+	}
+
+	/**
+	 * binding details of a field
+	 */
+	static class FieldBinding {
+		final Field field;
+		final Class<?> type;
+		/*
+		 * method handles are null if the field can not be accessed that way,
+		 * like a final field
+		 */
+		private final MethodHandle setter;
+		private final MethodHandle getter;
+		/**
+		 * package name from annotation, or null
+		 */
+		final String packageName;
+		/**
+		 * name of the field on which members of the map are indexed on
+		 */
+		final String mapKey;
+
+		FieldBinding(Field field) {
+			this.field = field;
+			this.type = field.getType();
+			field.setAccessible(true);
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodHandle setHandle = null;
+			MethodHandle getHandle = null;
+			if (Modifier.isStatic(field.getModifiers()) == false) {
+				try {
+					getHandle = lookup.unreflectGetter(field);
+					setHandle = lookup.unreflectSetter(field);
+				} catch (IllegalAccessException e) {
+					//
+				}
+			}
+			this.setter = setHandle;
+			this.getter = getHandle;
+			String pkg = null;
+			String key = null;
+			MapDetails ante = field.getAnnotation(MapDetails.class);
+			if (ante != null) {
+				pkg = ante.packgaeName();
+				if (pkg.isEmpty()) {
+					pkg = null;
+				}
+				key = ante.indexFieldName();
+				if (key.isEmpty()) {
+					key = null;
+				}
+			}
+			this.packageName = pkg;
+			this.mapKey = key;
+		}
+
+		/**
+		 * parse text as per the type of the field, and set it
+		 *
+		 * @param object
+		 * @param text
+		 * @throws XmlParseException
+		 */
+		void setText(Object object, String text) throws XmlParseException {
+			Object value = TextUtil.parse(text, this.type);
+			try {
+				this.set(object, value);
+			} catch (Throwable e) {
+				throw new XmlParseException("A value of |" + text
+						+ "| could not be parsed and set to field "
+						+ this.field.getName());
+			}
+		}
+
+		/**
+		 * @param object
+		 * @param value
+		 * @throws Throwable
+		 */
+		void set(Object object, Object value) throws Throwable {
+			if (this.setter == null) {
+				this.field.set(object, value);
+			} else {
+				this.setter.invoke(object, value);
+			}
+		}
+
+		/**
+		 * @param object
+		 * @return current value of the field
+		 * @throws Throwable
+		 */
+		Object get(Object object) throws Throwable {
+			if (this.getter == null) {
+				return this.field.get(object);
+			}
+			return this.getter.invoke(object);
+		}
+	}
+}
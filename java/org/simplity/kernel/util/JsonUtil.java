@@ -31,7 +31,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.simplity.json.JSONArray;
+import org.simplity.json.JSONException;
 import org.simplity.json.JSONObject;
+import org.simplity.json.JSONTokener;
 import org.simplity.json.JSONWriter;
 import org.simplity.json.Jsonable;
 import org.simplity.kernel.ApplicationError;
@@ -40,6 +42,7 @@ import org.simplity.kernel.FormattedMessage;
 import org.simplity.kernel.Messages;
 import org.simplity.kernel.Tracer;
 import org.simplity.kernel.comp.ComponentManager;
+import org.simplity.kernel.data.ColumnarSheet;
 import org.simplity.kernel.data.DataSheet;
 import org.simplity.kernel.data.FieldsInterface;
 import org.simplity.kernel.data.HierarchicalSheet;
@@ -249,23 +252,35 @@ public class JsonUtil {
 		}
 		writer.array();
 		String[] names = ds.getColumnNames();
+		ColumnarSheet columnar = null;
+		if (ds instanceof ColumnarSheet) {
+			columnar = (ColumnarSheet) ds;
+		}
 		for (int i = 0; i < nbrRows; i++) {
 			writer.object();
-			/*
-			 * note that getRow() returns values in the same order as in
-			 * getColumnNames()
-			 */
-			Value[] row = ds.getRow(i);
-			int j = 0;
-			for (String colName : names) {
-				Value value = row[j];
+			Value[] row = null;
+			if (columnar != null) {
+				writeColumnarRow(writer, columnar, names, i);
+				if (childSheets != null) {
+					row = ds.getRow(i);
+				}
+			} else {
 				/*
-				 * no need to write null attributes
+				 * note that getRow() returns values in the same order as in
+				 * getColumnNames()
 				 */
-				if (value != null) {
-					writer.key(colName).value(value.toObject());
+				row = ds.getRow(i);
+				int j = 0;
+				for (String colName : names) {
+					Value value = row[j];
+					/*
+					 * no need to write null attributes
+					 */
+					if (value != null) {
+						writer.key(colName).value(value.toObject());
+					}
+					j++;
 				}
-				j++;
 			}
 
 			if (childSheets != null) {
@@ -280,6 +295,43 @@ public class JsonUtil {
 		writer.endArray();
 	}
 
+	/**
+	 * write a row of columnar sheet with primitive values, without creating
+	 * value objects
+	 *
+	 * @param writer
+	 * @param sheet
+	 * @param names
+	 * @param rowIdx
+	 */
+	private static void writeColumnarRow(JSONWriter writer,
+			ColumnarSheet sheet, String[] names, int rowIdx) {
+		ValueType[] types = sheet.getValueTypes();
+		for (int j = 0; j < names.length; j++) {
+			writer.key(names[j]);
+			if (sheet.isNull(j, rowIdx)) {
+				writer.value(null);
+				continue;
+			}
+			switch (types[j]) {
+			case INTEGER:
+				writer.value(sheet.getLong(j, rowIdx));
+				break;
+			case DECIMAL:
+				writer.value(sheet.getDouble(j, rowIdx));
+				break;
+			case BOOLEAN:
+				writer.value(sheet.getBoolean(j, rowIdx));
+				break;
+			case TEXT:
+				writer.value(sheet.getText(j, rowIdx));
+				break;
+			default:
+				writer.value(sheet.getValue(j, rowIdx).toObject());
+			}
+		}
+	}
+
 	/**
 	 * create a data sheet for attributes in this object
 	 *
@@ -734,6 +786,89 @@ public class JsonUtil {
 		json.append('"');
 	}
 
+	/**
+	 * pick values of some of the top level attributes of a json object
+	 * without parsing the whole text. Values of other attributes are skipped
+	 * without creating any object for them. Used to build keys from input
+	 * payload.
+	 *
+	 * @param json
+	 *            text of a json object
+	 * @param fields
+	 *            names of attributes to be picked
+	 * @param values
+	 *            array of the same size as fields, to which values are set.
+	 *            Value is left as it is if the attribute is not found.
+	 * @throws JSONException
+	 *             if the text is not a valid json object
+	 */
+	public static void pickValues(String json, String[] fields,
+			Object[] values) throws JSONException {
+		JSONTokener tokener = new JSONTokener(json);
+		if (tokener.nextClean() != '{') {
+			throw tokener.syntaxError("A JSONObject text must begin with '{'");
+		}
+		if (tokener.nextClean() == '}') {
+			return;
+		}
+		tokener.back();
+		while (true) {
+			String key = tokener.nextValue().toString();
+			if (tokener.nextClean() != ':') {
+				throw tokener.syntaxError("Expected a ':' after a key");
+			}
+			int idx = -1;
+			for (int i = 0; i < fields.length; i++) {
+				if (fields[i].equals(key)) {
+					idx = i;
+					break;
+				}
+			}
+			if (idx == -1) {
+				skipValue(tokener);
+			} else {
+				values[idx] = tokener.nextValue();
+			}
+			char c = tokener.nextClean();
+			if (c == '}') {
+				return;
+			}
+			if (c != ',') {
+				throw tokener.syntaxError("Expected a ',' or '}'");
+			}
+		}
+	}
+
+	/**
+	 * skip a value, without creating objects for it
+	 */
+	private static void skipValue(JSONTokener tokener) {
+		char c = tokener.nextClean();
+		if (c == '"' || c == '\'') {
+			tokener.nextString(c);
+			return;
+		}
+		if (c != '{' && c != '[') {
+			tokener.back();
+			tokener.nextValue();
+			return;
+		}
+		int depth = 1;
+		while (depth > 0) {
+			c = tokener.next();
+			if (c == 0) {
+				throw tokener.syntaxError("Unterminated object or array");
+			}
+			if (c == '"' || c == '\'') {
+				tokener.nextString(c);
+			} else if (c == '{' || c == '[') {
+				depth++;
+			} else if (c == '}' || c == ']') {
+				depth--;
+			}
+		}
+	}
+
 	/**
 	 * convert a JSON array to array of primitive objects.
 	 *
@@ -48,6 +48,7 @@ import java.util.Date;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.simplity.kernel.data.FieldRef;
 import org.simplity.kernel.data.FieldsInterface;
 import org.simplity.kernel.expr.Expression;
 import org.simplity.kernel.expr.InvalidExpressionException;
@@ -496,4 +497,44 @@ public class TextUtil {
 		}
 		return sbf.toString();
 	}
+
+	/**
+	 * parse field names in the parts that were returned by parseToParts(), so
+	 * that they need not be parsed on every substitution
+	 *
+	 * @param textParts
+	 *            that was returned by a call to parseToParts
+	 * @return references to fields in the order in which they appear in parts
+	 */
+	public static FieldRef[] getFieldRefs(String[] textParts) {
+		FieldRef[] refs = new FieldRef[textParts.length / 2];
+		for (int i = 0; i < refs.length; i++) {
+			refs[i] = new FieldRef(textParts[2 * i + 1]);
+		}
+		return refs;
+	}
+
+	/**
+	 * return a text value that is formed by substituting fields in the parts
+	 * with their values from the collection
+	 *
+	 * @param textParts
+	 *            that was returned by a call to parseToParts
+	 * @param fieldRefs
+	 *            that was returned by a call to getFieldRefs for these parts
+	 * @param fieldValues
+	 * @return resultant text
+	 */
+	public static String substituteFields(String[] textParts,
+			FieldRef[] fieldRefs, FieldsInterface fieldValues) {
+		StringBuilder sbf = new StringBuilder(textParts[0]);
+		for (int i = 0; i < fieldRefs.length; i++) {
+			Value value = fieldRefs[i].getValue(fieldValues);
+			if (Value.isNull(value) == false) {
+				sbf.append(value.toString());
+			}
+			sbf.append(textParts[2 * i + 2]);
+		}
+		return sbf.toString();
+	}
 }
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.file.FileManager;
+
+/**
+ * Snapshot of component resources. On first boot, every component resource
+ * that is read is recorded, and the snapshot is saved to a single file. On
+ * the next boot, the snapshot file is read into memory in one go, and a
+ * resource that has not been modified after it was recorded is served from
+ * there instead of being located and read again. A resource that is modified,
+ * or is not in the snapshot, is read as usual, and the snapshot is saved
+ * again.
+ *
+ * <p>
+ * Resources are kept as they are, so that they are bound with the same
+ * stream binder whether they come from the snapshot or not. Components are
+ * not serializable and get runtime state in getReady(), and hence the bound
+ * components themselves are not part of the snapshot. What we save is
+ * locating and reading each resource, not parsing it.
+ *
+ * <p>
+ * Snapshot is in memory only while components are loaded at start-up. It is
+ * saved and released by close(), and resources are read as usual after that.
+ *
+ * @author simplity.org
+ *
+ */
+public class XmlSnapshot {
+	private static final int MAGIC = 0x53494D50;
+	private static final int VERSION = 2;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * file to which snapshot is saved. null if snapshot is not used
+	 */
+	private static volatile File snapshotFile;
+
+	/**
+	 * entries in the snapshot file, indexed by resource name
+	 */
+	private static volatile Map<String, Entry> snapshotEntries = new HashMap<String, Entry>();
+
+	/**
+	 * entries to be saved into the next snapshot, indexed by resource name
+	 */
+	private static final Map<String, Entry> entriesToSave = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * has any resource been read after the snapshot was opened?
+	 */
+	private static volatile boolean modified;
+
+	/**
+	 * start using a snapshot file. Entries are read from the file if it
+	 * exists. Must be called before any component is loaded.
+	 *
+	 * @param fileName
+	 *            absolute path of the snapshot file. null to stop using
+	 *            snapshot
+	 */
+	public static synchronized void open(String fileName) {
+		snapshotEntries = new HashMap<String, Entry>();
+		entriesToSave.clear();
+		modified = false;
+		if (fileName == null) {
+			snapshotFile = null;
+			return;
+		}
+		snapshotFile = new File(fileName);
+		if (snapshotFile.exists() == false) {
+			Tracer.trace("Component snapshot " + fileName
+					+ " does not exist. It will be created after components are loaded.");
+			return;
+		}
+		RandomAccessFile raf = null;
+		try {
+			/*
+			 * file is read into heap, and is not kept open, so that it can be
+			 * replaced when the snapshot is saved
+			 */
+			raf = new RandomAccessFile(snapshotFile, "r");
+			byte[] data = new byte[(int) raf.length()];
+			raf.readFully(data);
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				Tracer.trace("Component snapshot " + fileName
+						+ " is not in the expected format. It is ignored.");
+				return;
+			}
+			int nbr = buffer.getInt();
+			Map<String, Entry> entries = new HashMap<String, Entry>(nbr * 2);
+			String[] names = new String[nbr];
+			long[] timestamps = new long[nbr];
+			int[] lengths = new int[nbr];
+			for (int i = 0; i < nbr; i++) {
+				names[i] = readString(buffer);
+				timestamps[i] = buffer.getLong();
+				lengths[i] = buffer.getInt();
+			}
+			int offset = buffer.position();
+			for (int i = 0; i < nbr; i++) {
+				if (offset + lengths[i] > data.length) {
+					Tracer.trace("Component snapshot " + fileName
+							+ " is truncated. It is ignored.");
+					return;
+				}
+				entries.put(names[i], new Entry(timestamps[i], data, offset,
+						lengths[i]));
+				offset += lengths[i];
+			}
+			snapshotEntries = entries;
+			Tracer.trace(nbr + " resources found in component snapshot "
+					+ fileName);
+		} catch (Exception e) {
+			Tracer.trace(e, "Component snapshot " + fileName
+					+ " could not be read. It is ignored.");
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (Exception e) {
+					//
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if resources are to be read from/recorded into snapshot
+	 */
+	public static boolean isOpen() {
+		return snapshotFile != null;
+	}
+
+	/**
+	 * get a component resource, from the snapshot if it is available there
+	 * and is not modified after it was recorded. Resource that is read is
+	 * recorded in the snapshot.
+	 *
+	 * @param resName
+	 *            resource name as used by FileManager
+	 * @return stream for the contents of the resource. null if it is not found
+	 * @throws Exception
+	 *             in case of any issue while reading the resource
+	 */
+	public static InputStream getResourceStream(String resName)
+			throws Exception {
+		if (snapshotFile == null) {
+			return FileManager.getResourceStream(resName);
+		}
+		long timestamp = FileManager.getResourceTimestamp(resName);
+		Entry entry = snapshotEntries.get(resName);
+		if (entry != null && timestamp != 0 && timestamp == entry.timestamp) {
+			entriesToSave.put(resName, entry);
+			return entry.getStream();
+		}
+		InputStream stream = FileManager.getResourceStream(resName);
+		if (stream == null) {
+			return null;
+		}
+		byte[] bytes;
+		try {
+			bytes = readAll(stream);
+		} finally {
+			try {
+				stream.close();
+			} catch (Exception e) {
+				//
+			}
+		}
+		entry = new Entry(timestamp, bytes, 0, bytes.length);
+		if (timestamp != 0) {
+			entriesToSave.put(resName, entry);
+			modified = true;
+		}
+		return entry.getStream();
+	}
+
+	/**
+	 * save the snapshot to its file, if any resource was read after it was
+	 * opened, and release it. To be called after components are loaded at
+	 * start-up. Resources are read as usual after this.
+	 */
+	public static synchronized void close() {
+		if (snapshotFile == null) {
+			return;
+		}
+		if (modified) {
+			save();
+		}
+		snapshotFile = null;
+		snapshotEntries = new HashMap<String, Entry>();
+		entriesToSave.clear();
+		modified = false;
+	}
+
+	private static void save() {
+		File tempFile = new File(snapshotFile.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tempFile)));
+			Map<String, Entry> entries = new HashMap<String, Entry>(
+					entriesToSave);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(entries.size());
+			for (Map.Entry<String, Entry> me : entries.entrySet()) {
+				Entry entry = me.getValue();
+				writeString(out, me.getKey());
+				out.writeLong(entry.timestamp);
+				out.writeInt(entry.length);
+			}
+			for (Entry entry : entries.values()) {
+				out.write(entry.data, entry.offset, entry.length);
+			}
+			out.close();
+			out = null;
+			/*
+			 * rename does not replace an existing file on some platforms
+			 */
+			if (tempFile.renameTo(snapshotFile) == false) {
+				snapshotFile.delete();
+				if (tempFile.renameTo(snapshotFile) == false) {
+					Tracer.trace("Unable to replace component snapshot "
+							+ snapshotFile.getPath() + " with "
+							+ tempFile.getPath());
+					return;
+				}
+			}
+			Tracer.trace(entries.size()
+					+ " resources saved to component snapshot "
+					+ snapshotFile.getPath());
+		} catch (Exception e) {
+			Tracer.trace(e, "Unable to save component snapshot "
+					+ snapshotFile.getPath());
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (Exception e) {
+					//
+				}
+			}
+		}
+	}
+
+	private static byte[] readAll(InputStream stream) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[READ_BUFFER_SIZE];
+		int n;
+		while ((n = stream.read(buf)) != -1) {
+			out.write(buf, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeString(DataOutputStream out, String text)
+			throws Exception {
+		byte[] bytes = text.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int len = buffer.getInt();
+		byte[] bytes = new byte[len];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * a resource in the snapshot
+	 */
+	private static class Entry {
+		final long timestamp;
+		/*
+		 * contents are a slice of this array
+		 */
+		final byte[] data;
+		final int offset;
+		final int length;
+
+		Entry(long timestamp, byte[] data, int offset, int length) {
+			this.timestamp = timestamp;
+			this.data = data;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		InputStream getStream() {
+			return new ByteArrayInputStream(this.data, this.offset,
+					this.length);
+		}
+	}
+}
@@ -0,0 +1,577 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.kernel.util;
+
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.util.ClassBinding.FieldBinding;
+
+/**
+ * binds xml to objects as it is read with StAX, without building a DOM. It
+ * follows the same conventions as XmlUtil.elementToObject(), and uses
+ * ClassBinding so that classes and fields are looked-up only once.
+ *
+ * @author simplity.org
+ *
+ */
+class XmlStreamBinder {
+	private static final String DEFAULT_MAP_KEY = "name";
+	private static final String CLASS_NAME = "_class";
+	private static final String COMP_LIST = "_compList";
+	private static final String COMPONENTS = "components";
+	private static final String NAME_ATTRIBUTE = "name";
+	private static final String ENTRY = "entry";
+	private static final String CLASS_NAME_ATTRIBUTE = "className";
+
+	/*
+	 * factory is not guaranteed to be thread-safe
+	 */
+	private static final ThreadLocal<XMLInputFactory> factories = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE,
+					Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			return factory;
+		}
+	};
+
+	/**
+	 * bind root element of the xml to the object
+	 *
+	 * @param stream
+	 * @param object
+	 * @throws XmlParseException
+	 */
+	static void bindObject(InputStream stream, Object object)
+			throws XmlParseException {
+		XMLStreamReader reader = null;
+		try {
+			reader = factories.get().createXMLStreamReader(stream);
+			toRootElement(reader);
+			bindElement(reader, object);
+		} catch (XMLStreamException e) {
+			throw parseException(e);
+		} finally {
+			close(reader);
+		}
+	}
+
+	/**
+	 * load components or name-className entries from the components element
+	 *
+	 * @param stream
+	 * @param objects
+	 * @param packageName
+	 *            ending with a '.'. null if entries are to be loaded
+	 * @throws XmlParseException
+	 */
+	static void bindCollection(InputStream stream, Map<String, Object> objects,
+			String packageName) throws XmlParseException {
+		XMLStreamReader reader = null;
+		try {
+			reader = factories.get().createXMLStreamReader(stream);
+			toRootElement(reader);
+			int event = reader.next();
+			while (event != XMLStreamConstants.END_ELEMENT) {
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					if (reader.getLocalName().equals(COMPONENTS)) {
+						reader.next();
+						if (packageName == null) {
+							loadEntries(reader, objects);
+						} else {
+							loadObjects(reader, objects, packageName);
+						}
+						return;
+					}
+					skipElement(reader);
+				}
+				event = reader.next();
+			}
+			Tracer.trace("XML has no components in it.");
+		} catch (XMLStreamException e) {
+			throw parseException(e);
+		} finally {
+			close(reader);
+		}
+	}
+
+	private static void loadObjects(XMLStreamReader reader,
+			Map<String, Object> objects, String packageName)
+					throws XMLStreamException, XmlParseException {
+		int event = reader.getEventType();
+		while (event != XMLStreamConstants.END_ELEMENT) {
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String className = TextUtil
+						.nameToClassName(reader.getLocalName());
+				String compName = getAttribute(reader, NAME_ATTRIBUTE);
+				Object object = null;
+				if (objects.containsKey(compName)) {
+					Tracer.trace(compName + " is a duplicate " + className
+							+ ". Component definition skipped.");
+				} else {
+					try {
+						object = ClassBinding.getClass(packageName + className)
+								.newInstance();
+					} catch (ClassNotFoundException e) {
+						Tracer.trace(className
+								+ " is not a valid class in package "
+								+ packageName
+								+ ". element ignored while loading components");
+					} catch (Exception e) {
+						Tracer.trace(className + " in package " + packageName
+								+ "Could not be instantiated: "
+								+ e.getMessage());
+					}
+				}
+				if (object == null) {
+					skipElement(reader);
+				} else {
+					bindElement(reader, object);
+					objects.put(compName, object);
+				}
+			}
+			event = reader.next();
+		}
+	}
+
+	private static void loadEntries(XMLStreamReader reader,
+			Map<String, Object> objects) throws XMLStreamException {
+		int event = reader.getEventType();
+		while (event != XMLStreamConstants.END_ELEMENT) {
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String nodeName = reader.getLocalName();
+				if (nodeName.equals(ENTRY)) {
+					String compName = getAttribute(reader, NAME_ATTRIBUTE);
+					String className = getAttribute(reader,
+							CLASS_NAME_ATTRIBUTE);
+					if (compName == null || className == null) {
+						Tracer.trace("We expect attributes " + NAME_ATTRIBUTE
+								+ " and " + CLASS_NAME_ATTRIBUTE
+								+ " as attributes of element " + ENTRY
+								+ ". Element ignored");
+					} else if (objects.containsKey(compName)) {
+						Tracer.trace(compName
+								+ " is a duplicate entry. class name definition ignored.");
+					} else {
+						objects.put(compName, className);
+					}
+				} else {
+					Tracer.trace("Expecting an element named " + ENTRY
+							+ " but found " + nodeName + ". Element ignored.");
+				}
+				skipElement(reader);
+			}
+			event = reader.next();
+		}
+	}
+
+	/**
+	 * bind attributes and child elements of the current element to the object
+	 *
+	 * @param reader
+	 *            positioned at start of the element. It is positioned at the
+	 *            end of this element on return
+	 */
+	private static void bindElement(XMLStreamReader reader, Object object)
+			throws XMLStreamException, XmlParseException {
+		ClassBinding binding = ClassBinding.getBinding(object.getClass());
+		Attributes atts = new Attributes(reader);
+		atts.bind(object, binding);
+		reader.next();
+		bindChildren(reader, object, binding);
+	}
+
+	/**
+	 * bind child elements to fields of the object
+	 *
+	 * @param reader
+	 *            positioned at the content of the parent element. It is
+	 *            positioned at the end of the parent element on return
+	 */
+	private static void bindChildren(XMLStreamReader reader, Object object,
+			ClassBinding binding) throws XMLStreamException, XmlParseException {
+		int event = reader.getEventType();
+		while (event != XMLStreamConstants.END_ELEMENT) {
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String fieldName = reader.getLocalName();
+				FieldBinding field = binding.getField(fieldName);
+				if (field == null) {
+					Tracer.trace("xml element " + fieldName
+							+ " is ignored because there is no target field with that name");
+					skipElement(reader);
+				} else {
+					bindField(reader, object, field);
+				}
+			}
+			event = reader.next();
+		}
+	}
+
+	/**
+	 * element at which the reader is positioned is for this field
+	 */
+	private static void bindField(XMLStreamReader reader, Object object,
+			FieldBinding field) throws XMLStreamException, XmlParseException {
+		Attributes atts = new Attributes(reader);
+		boolean hasContent = false;
+		StringBuilder text = null;
+		int event = reader.next();
+		while (event != XMLStreamConstants.START_ELEMENT
+				&& event != XMLStreamConstants.END_ELEMENT) {
+			if (event == XMLStreamConstants.CHARACTERS
+					|| event == XMLStreamConstants.CDATA
+					|| event == XMLStreamConstants.SPACE) {
+				hasContent = true;
+				if (atts.names.length == 0) {
+					if (text == null) {
+						text = new StringBuilder();
+					}
+					text.append(reader.getText());
+				}
+			}
+			event = reader.next();
+		}
+		if (text != null && event == XMLStreamConstants.END_ELEMENT) {
+			/*
+			 * element had a primitive value
+			 */
+			field.setText(object, text.toString());
+			return;
+		}
+		try {
+			setObject(reader, object, field, atts, hasContent);
+		} catch (XMLStreamException e) {
+			throw e;
+		} catch (XmlParseException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new XmlParseException("Error while binding xml to object : "
+					+ e.getMessage());
+		}
+	}
+
+	/**
+	 * element represents an object to be set to the field
+	 *
+	 * @param reader
+	 *            positioned at the first child element, or at the end of this
+	 *            element
+	 * @param atts
+	 *            attributes of this element
+	 * @param hasContent
+	 *            whether this element had any text content
+	 */
+	@SuppressWarnings("unchecked")
+	private static void setObject(XMLStreamReader reader, Object object,
+			FieldBinding field, Attributes atts, boolean hasContent)
+					throws Throwable {
+		Class<?> fieldType = field.type;
+		if (fieldType.isArray()) {
+			Class<?> componentType = fieldType.getComponentType();
+			List<Object> objects = readList(reader, field, componentType);
+			int nbr = objects.size();
+			if (nbr == 0) {
+				return;
+			}
+			Object array = Array.newInstance(componentType, nbr);
+			for (int i = 0; i < nbr; i++) {
+				Array.set(array, i, objects.get(i));
+			}
+			field.set(object, array);
+			return;
+		}
+
+		/*
+		 * if the field is already initialized, it is Map or Concrete class
+		 * object
+		 */
+		Object fieldObject = field.get(object);
+		if (fieldObject != null) {
+			if (fieldObject instanceof Map) {
+				if (field.field.getName().equals(COMP_LIST)) {
+					fillCompList(reader, (Map<String, String>) fieldObject);
+					return;
+				}
+				/*
+				 * element with no content has its attributes as entries
+				 */
+				if (hasContent == false
+						&& reader.getEventType() == XMLStreamConstants.END_ELEMENT) {
+					atts.copyTo((Map<String, String>) fieldObject);
+					return;
+				}
+				String mapKey = field.mapKey == null ? DEFAULT_MAP_KEY
+						: field.mapKey;
+				List<Object> objects = readList(reader, field,
+						object.getClass());
+				XmlUtil.fillMap((Map<String, Object>) fieldObject, objects,
+						mapKey);
+				return;
+			}
+			ClassBinding binding = ClassBinding
+					.getBinding(fieldObject.getClass());
+			atts.bind(fieldObject, binding);
+			bindChildren(reader, fieldObject, binding);
+			return;
+		}
+
+		if (fieldType.isInterface()
+				|| Modifier.isAbstract(fieldType.getModifiers())) {
+			/*
+			 * It is super class/interface. As per our syntax, this element
+			 * would be wrapper for the concrete class-element
+			 */
+			int event = reader.getEventType();
+			while (event != XMLStreamConstants.END_ELEMENT) {
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					if (fieldObject == null) {
+						fieldObject = readSubclass(reader, field, fieldType);
+					} else {
+						skipElement(reader);
+					}
+				}
+				event = reader.next();
+			}
+			if (fieldObject != null) {
+				field.set(object, fieldObject);
+			} else {
+				Tracer.trace("No instance provided for field "
+						+ field.field.getName());
+			}
+			return;
+		}
+		/*
+		 * we have an object as the child
+		 */
+		fieldObject = fieldType.newInstance();
+		ClassBinding binding = ClassBinding.getBinding(fieldType);
+		atts.bind(fieldObject, binding);
+		bindChildren(reader, fieldObject, binding);
+		field.set(object, fieldObject);
+	}
+
+	/**
+	 * read child elements as objects
+	 *
+	 * @param reader
+	 *            positioned at the content of the parent element
+	 * @param referenceType
+	 *            class, super-class or parent class of the expected object.
+	 *            Used to get the package name.
+	 */
+	private static List<Object> readList(XMLStreamReader reader,
+			FieldBinding field, Class<?> referenceType)
+					throws XMLStreamException, XmlParseException {
+		List<Object> objects = new ArrayList<Object>();
+		int event = reader.getEventType();
+		while (event != XMLStreamConstants.END_ELEMENT) {
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				objects.add(readSubclass(reader, field, referenceType));
+			}
+			event = reader.next();
+		}
+		return objects;
+	}
+
+	/**
+	 * element with concrete class name as its tag. This class is expected to
+	 * be in the same package as referenceType, unless the field is annotated
+	 * with the package name. A special attribute name "_class", if present
+	 * would be the class name
+	 */
+	private static Object readSubclass(XMLStreamReader reader,
+			FieldBinding field, Class<?> referenceType)
+					throws XMLStreamException, XmlParseException {
+		String elementName = reader.getLocalName();
+		Object object = null;
+		try {
+			String className = getAttribute(reader, CLASS_NAME);
+			if (className == null || className.length() == 0) {
+				String packageName = field.packageName;
+				if (packageName == null) {
+					packageName = referenceType.getPackage().getName();
+				}
+				className = packageName + '.'
+						+ elementName.substring(0, 1).toUpperCase()
+						+ elementName.substring(1);
+			}
+			object = ClassBinding.getClass(className).newInstance();
+		} catch (Exception e) {
+			throw new XmlParseException("error while parsing " + elementName
+					+ " element as a wrapped-element\n " + e.getMessage());
+		}
+		bindElement(reader, object);
+		return object;
+	}
+
+	/**
+	 * special map of string string. Each child element has name and one more
+	 * attribute as the value
+	 */
+	private static void fillCompList(XMLStreamReader reader,
+			Map<String, String> map) throws XMLStreamException {
+		String valueName = null;
+		int event = reader.getEventType();
+		while (event != XMLStreamConstants.END_ELEMENT) {
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				if (valueName == null) {
+					if (reader.getAttributeCount() != 2) {
+						throw new ApplicationError("Special element "
+								+ COMP_LIST
+								+ " should have child nodes with just two attributes, name and value");
+					}
+					String attrName = reader.getAttributeLocalName(0);
+					if (attrName.equals(DEFAULT_MAP_KEY)) {
+						valueName = reader.getAttributeLocalName(1);
+					} else {
+						if (reader.getAttributeLocalName(1)
+								.equals(DEFAULT_MAP_KEY) == false) {
+							throw new ApplicationError("Special element "
+									+ COMP_LIST
+									+ " should have child nodes with just two attributes, name and value");
+						}
+						valueName = attrName;
+					}
+				}
+				String key = getAttribute(reader, DEFAULT_MAP_KEY);
+				String value = getAttribute(reader, valueName);
+				if (key == null || value == null) {
+					throw new ApplicationError(
+							"key or value missing for a value map");
+				}
+				map.put(key, value);
+				skipElement(reader);
+			}
+			event = reader.next();
+		}
+	}
+
+	/**
+	 * @return attribute value of current element, or null if it is not found
+	 */
+	private static String getAttribute(XMLStreamReader reader, String name) {
+		int nbr = reader.getAttributeCount();
+		for (int i = 0; i < nbr; i++) {
+			if (reader.getAttributeLocalName(i).equals(name)) {
+				return reader.getAttributeValue(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * skip the element at which reader is positioned, along with its children
+	 */
+	private static void skipElement(XMLStreamReader reader)
+			throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	private static void toRootElement(XMLStreamReader reader)
+			throws XMLStreamException {
+		while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+			reader.next();
+		}
+	}
+
+	private static XmlParseException parseException(XMLStreamException e) {
+		Location loc = e.getLocation();
+		String msg = "Error while parsing xml text. " + e.getMessage();
+		if (loc != null) {
+			msg += "\n At line " + loc.getLineNumber() + " and column "
+					+ loc.getColumnNumber();
+		}
+		return new XmlParseException(msg);
+	}
+
+	private static void close(XMLStreamReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (Exception e) {
+				//
+			}
+		}
+	}
+
+	/**
+	 * attributes of an element. StAX reader moves past the element before we
+	 * know how to bind its attributes.
+	 */
+	private static class Attributes {
+		final String[] names;
+		final String[] values;
+
+		Attributes(XMLStreamReader reader) {
+			int nbr = reader.getAttributeCount();
+			this.names = new String[nbr];
+			this.values = new String[nbr];
+			for (int i = 0; i < nbr; i++) {
+				this.names[i] = reader.getAttributeLocalName(i);
+				this.values[i] = reader.getAttributeValue(i);
+			}
+		}
+
+		/**
+		 * set attributes as primitive values of fields of the object
+		 */
+		void bind(Object object, ClassBinding binding)
+				throws XmlParseException {
+			for (int i = 0; i < this.names.length; i++) {
+				FieldBinding field = binding.getField(this.names[i]);
+				if (field != null) {
+					field.setText(object, this.values[i].trim());
+				}
+			}
+		}
+
+		void copyTo(Map<String, String> map) {
+			for (int i = 0; i < this.names.length; i++) {
+				map.put(this.names[i], this.values[i]);
+			}
+		}
+	}
+}
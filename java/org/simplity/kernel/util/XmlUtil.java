@@ -50,6 +50,7 @@ import org.simplity.kernel.Tracer;
 import org.simplity.kernel.data.Fields;
 import org.simplity.kernel.data.FieldsInterface;
 import org.simplity.kernel.file.FileManager;
+import org.simplity.kernel.util.ClassBinding.FieldBinding;
 import org.simplity.kernel.value.Value;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
@@ -160,8 +161,7 @@ public class XmlUtil {
 	 */
 	public static void xmlToObject(InputStream stream, Object object)
 			throws XmlParseException {
-		Element rootElement = getDocument(stream).getDocumentElement();
-		elementToObject(rootElement, object);
+		XmlStreamBinder.bindObject(stream, object);
 	}
 
 	/**
@@ -177,27 +177,11 @@ public class XmlUtil {
 	 */
 	public static boolean xmlToObject(String fileName, Object object)
 			throws XmlParseException {
-		InputStream stream = null;
 		try {
-			stream = FileManager.getResourceStream(fileName);
-			if (stream == null) {
-				Tracer.trace("Resource " + fileName + " not found.");
-				return false;
-			}
-			Element rootElement = getDocument(stream).getDocumentElement();
-			elementToObject(rootElement, object);
-			return true;
+			return streamToObject(fileName, object);
 		} catch (Exception e) {
 			Tracer.trace(e, "Resource " + fileName + " failed to load.");
 			return false;
-		} finally {
-			if (stream != null) {
-				try {
-					stream.close();
-				} catch (Exception e) {
-					//
-				}
-			}
 		}
 	}
 
@@ -216,37 +200,7 @@ public class XmlUtil {
 	public static void xmlToCollection(InputStream stream,
 			Map<String, Object> objects, String packageName)
 					throws XmlParseException {
-		Node node = getDocument(stream).getDocumentElement().getFirstChild();
-		while (node != null) {
-			if (node.getNodeName().equals(COMPONENTS) == false) {
-				node = node.getNextSibling();
-				continue;
-			}
-			/*
-			 * we got the element we need
-			 */
-			Node firstNode = node.getFirstChild();
-			if (firstNode == null) {
-				break;
-			}
-			if (packageName == null) {
-				/*
-				 * list of name and className
-				 */
-				loadEntries(firstNode, objects);
-			} else {
-				/*
-				 * list of components
-				 */
-				loadObjects(firstNode, objects, packageName);
-			}
-			return;
-		}
-
-		/*
-		 * we did not get the component element at all
-		 */
-		Tracer.trace("XML has no components in it.");
+		XmlStreamBinder.bindCollection(stream, objects, packageName);
 	}
 
 	/**
@@ -264,19 +218,54 @@ public class XmlUtil {
 	 */
 	public static boolean xmlToCollection(String fileName,
 			Map<String, Object> objects, String packageName) {
+		try {
+			return streamToCollection(fileName, objects, packageName);
+		} catch (Exception e) {
+			Tracer.trace(e, "Resource " + fileName + " failed to load.");
+			return false;
+		}
+	}
+
+	/**
+	 * bind a resource to object without building a DOM
+	 */
+	private static boolean streamToObject(String fileName, Object object)
+			throws Exception {
 		InputStream stream = null;
 		try {
-			stream = FileManager.getResourceStream(fileName);
+			stream = XmlSnapshot.getResourceStream(fileName);
+			if (stream == null) {
+				Tracer.trace("Resource " + fileName + " not found.");
+				return false;
+			}
+			XmlStreamBinder.bindObject(stream, object);
+			return true;
+		} finally {
+			if (stream != null) {
+				try {
+					stream.close();
+				} catch (Exception e) {
+					//
+				}
+			}
+		}
+	}
+
+	/**
+	 * load a resource into collection without building a DOM
+	 */
+	private static boolean streamToCollection(String fileName,
+			Map<String, Object> objects, String packageName) throws Exception {
+		InputStream stream = null;
+		try {
+			stream = XmlSnapshot.getResourceStream(fileName);
 			if (stream == null) {
 				Tracer.trace("Unable to open file " + fileName
 						+ " failed to load.");
 				return false;
 			}
-			xmlToCollection(stream, objects, packageName);
+			XmlStreamBinder.bindCollection(stream, objects, packageName);
 			return true;
-		} catch (Exception e) {
-			Tracer.trace(e, "Resource " + fileName + " failed to load.");
-			return false;
 		} finally {
 			if (stream != null) {
 				try {
@@ -415,12 +404,12 @@ public class XmlUtil {
 	 */
 	public static void elementToObject(Element element, Object object)
 			throws XmlParseException {
-		Map<String, Field> fields = ReflectUtil.getAllFields(object);
+		ClassBinding binding = ClassBinding.getBinding(object.getClass());
 
 		/*
 		 * attributes of the element are mapped to value/primitive fields
 		 */
-		setAttributes(object, fields, element);
+		setAttributes(object, binding, element);
 
 		/*
 		 * child elements could be either primitive or a class
@@ -428,7 +417,7 @@ public class XmlUtil {
 		Node child = element.getFirstChild();
 		while (child != null) {
 			if (child.getNodeType() == Node.ELEMENT_NODE) {
-				Field field = fields.get(child.getNodeName());
+				FieldBinding field = binding.getField(child.getNodeName());
 				if (field != null) {
 					Element childElement = (Element) child;
 					String value = getElementValue(childElement);
@@ -436,12 +425,12 @@ public class XmlUtil {
 						/*
 						 * element had a primitive value
 						 */
-						ReflectUtil.setPrimitive(object, field, value);
+						field.setText(object, value);
 					} else {
 						/*
 						 * element represents another object
 						 */
-						setObject(object, field, childElement);
+						setObject(object, field.field, childElement);
 					}
 				} else {
 					Tracer.trace("xml element "
@@ -462,7 +451,7 @@ public class XmlUtil {
 	 *            to be added to the map
 	 * @throws XmlParseException
 	 */
-	private static void fillMap(Map<String, Object> map, List<?> objects,
+	static void fillMap(Map<String, Object> map, List<?> objects,
 			String keyFieldName) throws XmlParseException {
 		if (objects.size() == 0) {
 			return;
@@ -840,24 +829,23 @@ public class XmlUtil {
 	 *
 	 * @param object
 	 *            to which fields are assigned
-	 * @param fields
-	 *            collection of all fields for this class
+	 * @param binding
+	 *            binding of the class of the object
 	 * @param element
 	 *            that has the attributes
 	 * @throws XmlParseException
 	 * @throws DOMException
 	 */
-	private static void setAttributes(Object object, Map<String, Field> fields,
+	private static void setAttributes(Object object, ClassBinding binding,
 			Element element) throws DOMException, XmlParseException {
 		NamedNodeMap attributes = element.getAttributes();
 		int nbr = attributes.getLength();
 		for (int i = 0; i < nbr; i++) {
 			Node attribute = attributes.item(i);
 			String fieldName = attribute.getNodeName();
-			Field field = fields.get(fieldName);
+			FieldBinding field = binding.getField(fieldName);
 			if (field != null) {
-				ReflectUtil.setPrimitive(object, field, attribute
-						.getNodeValue().trim());
+				field.setText(object, attribute.getNodeValue().trim());
 			}
 		}
 
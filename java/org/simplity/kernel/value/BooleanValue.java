@@ -37,13 +37,14 @@ public class BooleanValue extends Value {
 	 *
 	 */
 	private static final long serialVersionUID = 1L;
-	private boolean value;
+	private final boolean value;
 
 	protected BooleanValue(boolean value) {
 		this.value = value;
 	}
 
 	protected BooleanValue() {
+		this.value = false;
 		this.valueIsNull = true;
 	}
 
@@ -43,13 +43,14 @@ public class DateValue extends Value {
 	 *
 	 */
 	private static final long serialVersionUID = 1L;
-	private long value;
+	private final long value;
 
 	protected DateValue(long value) {
 		this.value = value;
 	}
 
 	protected DateValue() {
+		this.value = 0;
 		this.valueIsNull = true;
 	}
 
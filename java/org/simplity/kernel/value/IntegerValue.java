@@ -38,13 +38,14 @@ public class IntegerValue extends Value {
 	 *
 	 */
 	private static final long serialVersionUID = 1L;
-	private long value;
+	private final long value;
 
 	protected IntegerValue(long value) {
 		this.value = value;
 	}
 
 	protected IntegerValue() {
+		this.value = 0;
 		this.valueIsNull = true;
 	}
 
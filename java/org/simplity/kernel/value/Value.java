@@ -166,6 +166,32 @@ public abstract class Value implements Serializable {
 	private static final char NINE = '9';
 	private static final char MINUS = '-';
 	private static final char DOT = '.';
+
+	/*
+	 * immutable instances for integers that are used often, like counters and
+	 * small quantities
+	 */
+	private static final int SMALL_INTEGER_MIN = -128;
+	private static final int SMALL_INTEGER_MAX = 1023;
+	private static final IntegerValue[] SMALL_INTEGERS = new IntegerValue[SMALL_INTEGER_MAX
+			- SMALL_INTEGER_MIN + 1];
+
+	static {
+		for (int i = 0; i < SMALL_INTEGERS.length; i++) {
+			SMALL_INTEGERS[i] = new IntegerValue(i + SMALL_INTEGER_MIN);
+		}
+		SMALL_INTEGERS[-SMALL_INTEGER_MIN] = VALUE_ZERO;
+	}
+
+	/*
+	 * a list of rows typically has a few distinct dates. We keep the last date
+	 * value created for a slot, and reuse it if the same date is asked for.
+	 * Racing threads may replace each other's entries, which is harmless
+	 */
+	private static final int DATE_CACHE_SIZE = 1024;
+	private static final int DATE_HASH_SHIFT = 64 - 10;
+	private static final long DATE_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+	private static final DateValue[] DATE_CACHE = new DateValue[DATE_CACHE_SIZE];
 	/**
 	 * text value. cached for non-text values.
 	 */
@@ -210,8 +236,9 @@ public abstract class Value implements Serializable {
 	 * @return returns an instance of Value for integralValue
 	 */
 	public static IntegerValue newIntegerValue(long integralValue) {
-		if (integralValue == 0) {
-			return VALUE_ZERO;
+		if (integralValue >= SMALL_INTEGER_MIN
+				&& integralValue <= SMALL_INTEGER_MAX) {
+			return SMALL_INTEGERS[(int) integralValue - SMALL_INTEGER_MIN];
 		}
 		return new IntegerValue(integralValue);
 	}
@@ -243,7 +270,18 @@ public abstract class Value implements Serializable {
 	 * @return returns an instance of Value for dateValue
 	 */
 	public static DateValue newDateValue(long milliseconds) {
-		return new DateValue(milliseconds);
+		/*
+		 * dates without time are multiples of 1024 ms apart, and hence we use
+		 * the high bits of a multiplicative hash
+		 */
+		int idx = (int) ((milliseconds * DATE_HASH_MULTIPLIER) >>> DATE_HASH_SHIFT);
+		DateValue value = DATE_CACHE[idx];
+		if (value != null && value.getDate() == milliseconds) {
+			return value;
+		}
+		value = new DateValue(milliseconds);
+		DATE_CACHE[idx] = value;
+		return value;
 	}
 
 	/**
@@ -252,7 +290,7 @@ public abstract class Value implements Serializable {
 	 * @return returns an instance of Value for date
 	 */
 	public static DateValue newDateValue(Date date) {
-		return new DateValue(date.getTime());
+		return newDateValue(date.getTime());
 	}
 
 	/**
@@ -559,6 +597,53 @@ public abstract class Value implements Serializable {
 		return value.isUnknown();
 	}
 
+	/**
+	 * @param value
+	 * @return long value of an integral or decimal value. 0 for other values,
+	 *         including null
+	 */
+	public static long getLongValue(Value value) {
+		if (value instanceof IntegerValue) {
+			IntegerValue val = (IntegerValue) value;
+			return val.isUnknown() ? 0 : val.getLong();
+		}
+		if (value instanceof DecimalValue) {
+			DecimalValue val = (DecimalValue) value;
+			return val.isUnknown() ? 0 : val.getLong();
+		}
+		return 0;
+	}
+
+	/**
+	 * @param value
+	 * @return double value of a decimal or integral value. 0 for other values,
+	 *         including null
+	 */
+	public static double getDoubleValue(Value value) {
+		if (value instanceof DecimalValue) {
+			DecimalValue val = (DecimalValue) value;
+			return val.isUnknown() ? 0 : val.getDouble();
+		}
+		if (value instanceof IntegerValue) {
+			IntegerValue val = (IntegerValue) value;
+			return val.isUnknown() ? 0 : val.getDouble();
+		}
+		return 0;
+	}
+
+	/**
+	 * @param value
+	 * @return boolean value of a boolean value. false for other values,
+	 *         including null
+	 */
+	public static boolean getBooleanValue(Value value) {
+		if (value instanceof BooleanValue) {
+			BooleanValue val = (BooleanValue) value;
+			return val.isUnknown() ? false : val.getBoolean();
+		}
+		return false;
+	}
+
 	/**
 	 * parse a constant as per our convention. true/false for boolean
 	 * /yyyy-mm-dd/ for date, or any valid number. else text
@@ -120,6 +120,26 @@ public abstract class AbstractService implements ServiceInterface {
 		return false;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.simplity.service.ServiceInterface#getCacheKeyFields()
+	 */
+	@Override
+	public String[] getCacheKeyFields() {
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.simplity.service.ServiceInterface#canStreamResponse()
+	 */
+	@Override
+	public boolean canStreamResponse() {
+		return false;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.simplity.kernel.Tracer;
+
+/**
+ * Cache manager at the service tier. Used by ServiceAgent for all its clients,
+ * like HttpAgent, JavaAgent and test runs. Responses are cached as per
+ * canBeCachedByFields and cacheExpirySeconds of the service.
+ *
+ * Cache is bounded by the number of responses. Refer to ResponseCache.
+ *
+ * @author simplity.org
+ *
+ */
+public class DefaultCacheManager implements ServiceCacheManager {
+	/**
+	 * default maximum number of responses cached
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	/*
+	 * every response has a size of 1
+	 */
+	private final ResponseCache<String> responses;
+
+	private final AtomicLong nbrHits = new AtomicLong();
+	private final AtomicLong nbrMisses = new AtomicLong();
+
+	/**
+	 * cache with default size
+	 */
+	public DefaultCacheManager() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries
+	 *            maximum number of responses to be cached
+	 */
+	public DefaultCacheManager(int maxEntries) {
+		this.responses = new ResponseCache<String>(maxEntries);
+	}
+
+	@Override
+	public ServiceData respond(ServiceData inputData) {
+		String serviceName = inputData.getServiceName();
+		String[] fields = this.responses.getFields(serviceName);
+		if (fields == null) {
+			/*
+			 * no response is cached for this service so far
+			 */
+			return null;
+		}
+		String key = ResponseCache.getKey(inputData, fields);
+		String payLoad = key == null ? null : this.responses.get(key);
+		if (payLoad == null) {
+			this.nbrMisses.incrementAndGet();
+			return null;
+		}
+		this.nbrHits.incrementAndGet();
+		Tracer.trace("Responding from cache");
+		ServiceData outData = new ServiceData(inputData.getUserId(),
+				serviceName);
+		outData.setPayLoad(payLoad);
+		return outData;
+	}
+
+	@Override
+	public void cache(ServiceData inData, ServiceData outData) {
+		String text = outData.getCacheForInput();
+		String payLoad = outData.getPayLoad();
+		if (text == null || payLoad == null) {
+			return;
+		}
+		String[] fields = this.responses.setFields(inData.getServiceName(),
+				text);
+		String key = ResponseCache.getKey(inData, fields);
+		if (key == null) {
+			return;
+		}
+		this.responses.put(key, payLoad, 1, outData.getCacheExpirySeconds());
+	}
+
+	@Override
+	public void invalidate(String serviceName) {
+		this.responses.invalidate(serviceName);
+	}
+
+	/**
+	 * @return number of requests that were responded from cache
+	 */
+	public long getNbrHits() {
+		return this.nbrHits.get();
+	}
+
+	/**
+	 * @return number of requests for a cached service that were not found in
+	 *         cache
+	 */
+	public long getNbrMisses() {
+		return this.nbrMisses.get();
+	}
+
+	/**
+	 * @return number of responses removed to make room for new ones
+	 */
+	public long getNbrEvictions() {
+		return this.responses.getNbrEvictions();
+	}
+
+	/**
+	 * @return number of responses discarded after they expired
+	 */
+	public long getNbrExpired() {
+		return this.responses.getNbrExpired();
+	}
+
+	/**
+	 * @return number of responses in cache
+	 */
+	public int size() {
+		return this.responses.getNbrEntries();
+	}
+}
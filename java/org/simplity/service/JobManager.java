@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.simplity.kernel.Messages;
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.value.Value;
+
+/**
+ * Runs services that are marked to be executed in background. A request for
+ * such a service is queued, and the client gets a job token at once. Client
+ * polls with the token for the response. Responses that are not collected are
+ * discarded after some time.
+ *
+ * @author simplity.org
+ *
+ */
+public class JobManager {
+	/**
+	 * default number of threads that execute background jobs
+	 */
+	public static final int DEFAULT_NBR_THREADS = 4;
+	/**
+	 * default number of jobs that can wait for a thread
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 100;
+	/**
+	 * default number of seconds for which response of a job is kept
+	 */
+	public static final int DEFAULT_EXPIRY_SECONDS = 600;
+
+	/**
+	 * job is waiting for a thread
+	 */
+	public static final String STATUS_QUEUED = "queued";
+	/**
+	 * job is being executed
+	 */
+	public static final String STATUS_RUNNING = "running";
+	/**
+	 * job is complete, and its response is available
+	 */
+	public static final String STATUS_DONE = "done";
+
+	private static final Map<String, Job> jobs = new ConcurrentHashMap<String, Job>();
+	private static final AtomicLong nbrSubmitted = new AtomicLong();
+	private static final AtomicLong nbrRejected = new AtomicLong();
+	private static final AtomicLong nbrExpired = new AtomicLong();
+	private static ThreadPoolExecutor executor;
+	private static long expiryMillis = DEFAULT_EXPIRY_SECONDS * 1000L;
+	private static volatile long nextSweepAt;
+
+	/**
+	 * set up the executor for background jobs. 0 for any parameter means its
+	 * default value.
+	 *
+	 * @param nbrThreads
+	 *            threads that execute jobs. negative means that services are
+	 *            never run in the background
+	 * @param queueSize
+	 *            jobs that can wait for a thread. Job is rejected if the queue
+	 *            is full
+	 * @param expirySeconds
+	 *            seconds for which the response of a job is kept for the
+	 *            client to collect it
+	 */
+	public static synchronized void setUp(int nbrThreads, int queueSize,
+			int expirySeconds) {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		if (nbrThreads < 0) {
+			Tracer.trace("Services will not be executed in background.");
+			return;
+		}
+		int n = nbrThreads == 0 ? DEFAULT_NBR_THREADS : nbrThreads;
+		int q = queueSize <= 0 ? DEFAULT_QUEUE_SIZE : queueSize;
+		expiryMillis = (expirySeconds <= 0 ? DEFAULT_EXPIRY_SECONDS
+				: expirySeconds) * 1000L;
+		executor = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(q), new JobThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+		Tracer.trace("Background jobs are executed with " + n
+				+ " threads and a queue of " + q);
+	}
+
+	/**
+	 * @return true if services can be executed in the background
+	 */
+	public static boolean isEnabled() {
+		return executor != null;
+	}
+
+	/**
+	 * queue a job
+	 *
+	 * @param userId
+	 *            user who submitted this job. Only this user can collect its
+	 *            response
+	 * @param serviceName
+	 * @param task
+	 *            that executes the service and returns its response
+	 * @return job token, or null if the job is rejected because the queue is
+	 *         full
+	 */
+	public static String submit(Value userId, String serviceName,
+			Callable<ServiceData> task) {
+		sweep();
+		ThreadPoolExecutor ex = executor;
+		if (ex == null) {
+			return null;
+		}
+		String token = UUID.randomUUID().toString();
+		Job job = new Job(userId, serviceName, task);
+		jobs.put(token, job);
+		try {
+			ex.execute(job);
+		} catch (RejectedExecutionException e) {
+			jobs.remove(token);
+			nbrRejected.incrementAndGet();
+			Tracer.trace("Background queue is full. Job for " + serviceName
+					+ " is rejected.");
+			return null;
+		}
+		nbrSubmitted.incrementAndGet();
+		Tracer.trace(serviceName + " queued as background job " + token);
+		return token;
+	}
+
+	/**
+	 * get the status of a job. Once its response is returned, the job is
+	 * forgotten.
+	 *
+	 * @param token
+	 *            returned by submit()
+	 * @param userId
+	 *            user who is asking for it
+	 * @return response of the job if it is done. A response with status and
+	 *         token in its payLoad if it is not done yet. null if there is no
+	 *         such job for this user.
+	 */
+	public static ServiceData getStatus(String token, Value userId) {
+		sweep();
+		if (token == null) {
+			return null;
+		}
+		Job job = jobs.get(token);
+		if (job == null || sameUser(job.userId, userId) == false) {
+			return null;
+		}
+		ServiceData response = job.response;
+		if (response == null) {
+			response = new ServiceData(userId, job.serviceName);
+			response.setPayLoad(getStatusJson(token,
+					job.started ? STATUS_RUNNING : STATUS_QUEUED));
+			return response;
+		}
+		jobs.remove(token);
+		/*
+		 * response is collected with a job token, and not with the input of
+		 * its service. It must not be cached against the request for the job
+		 */
+		response.setCacheForInput(null);
+		return response;
+	}
+
+	/**
+	 * @param token
+	 * @param status
+	 * @return json that has the job token and its status
+	 */
+	public static String getStatusJson(String token, String status) {
+		return "{\"" + ServiceProtocol.JOB_TOKEN + "\":\"" + token + "\",\""
+				+ ServiceProtocol.JOB_STATUS + "\":\"" + status + "\"}";
+	}
+
+	/**
+	 * @return number of jobs accepted so far
+	 */
+	public static long getNbrSubmitted() {
+		return nbrSubmitted.get();
+	}
+
+	/**
+	 * @return number of jobs rejected because the queue was full
+	 */
+	public static long getNbrRejected() {
+		return nbrRejected.get();
+	}
+
+	/**
+	 * @return number of responses discarded because they were not collected
+	 *         in time
+	 */
+	public static long getNbrExpired() {
+		return nbrExpired.get();
+	}
+
+	/**
+	 * @return number of jobs that are waiting or running, or whose responses
+	 *         are yet to be collected
+	 */
+	public static int getNbrJobs() {
+		return jobs.size();
+	}
+
+	private static boolean sameUser(Value owner, Value userId) {
+		if (owner == null) {
+			return userId == null;
+		}
+		return owner.equals(userId);
+	}
+
+	/**
+	 * remove responses that have expired. We do this at most once a second
+	 */
+	private static void sweep() {
+		long now = System.currentTimeMillis();
+		if (now < nextSweepAt) {
+			return;
+		}
+		nextSweepAt = now + 1000;
+		Iterator<Job> iter = jobs.values().iterator();
+		while (iter.hasNext()) {
+			Job job = iter.next();
+			if (job.expiresAt != 0 && job.expiresAt < now) {
+				iter.remove();
+				nbrExpired.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * a service request that is executed in background
+	 */
+	private static class Job implements Runnable {
+		final Value userId;
+		final String serviceName;
+		final Callable<ServiceData> task;
+		volatile boolean started;
+		volatile ServiceData response;
+		/*
+		 * set once the response is ready
+		 */
+		volatile long expiresAt;
+
+		Job(Value userId, String serviceName, Callable<ServiceData> task) {
+			this.userId = userId;
+			this.serviceName = serviceName;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			this.started = true;
+			ServiceData result = null;
+			/*
+			 * an Error is also caught, so that the job gets its response and
+			 * expires like any other job
+			 */
+			Throwable failure = null;
+			try {
+				result = this.task.call();
+			} catch (Throwable e) {
+				failure = e;
+				Tracer.trace(e, "Background job for " + this.serviceName
+						+ " failed");
+			}
+			if (result == null) {
+				result = new ServiceData(this.userId, this.serviceName);
+				if (failure != null) {
+					result.addMessage(Messages.getMessage(
+							Messages.INTERNAL_ERROR, failure.getMessage()));
+				}
+			}
+			this.expiresAt = System.currentTimeMillis() + expiryMillis;
+			this.response = result;
+		}
+	}
+
+	/**
+	 * background threads are daemons, so that they do not hold the server
+	 */
+	private static class JobThreadFactory implements ThreadFactory {
+		private final AtomicInteger nbrThreads = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r,
+					"simplity-job-" + this.nbrThreads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.util.JsonUtil;
+
+/**
+ * responses cached by service name and values of input fields. Used by cache
+ * managers at service and http tiers.
+ *
+ * Cache is bounded by the total size of its entries, where size is decided by
+ * the cache manager, like 1 per response or its number of bytes. It is split
+ * into segments, each of which is an LRU map with its own lock, so that
+ * concurrent requests rarely wait for each other.
+ *
+ * @author simplity.org
+ *
+ * @param <T>
+ *            cached response
+ */
+public class ResponseCache<T> {
+	private static final int NBR_SEGMENTS = 16;
+	private static final char KEY_SEPARATOR = '\0';
+
+	private final Segment<T>[] segments;
+
+	/**
+	 * input fields on which a service response depends, as received with its
+	 * first cacheable response. Indexed by service name.
+	 */
+	private final Map<String, String[]> cacheFields = new ConcurrentHashMap<String, String[]>();
+
+	private final AtomicLong nbrEvictions = new AtomicLong();
+	private final AtomicLong nbrExpired = new AtomicLong();
+
+	/**
+	 * @param maxSize
+	 *            maximum total size of responses to be cached
+	 */
+	@SuppressWarnings("unchecked")
+	public ResponseCache(long maxSize) {
+		long perSegment = maxSize / NBR_SEGMENTS;
+		if (perSegment < 1) {
+			perSegment = 1;
+		}
+		this.segments = (Segment<T>[]) new Segment<?>[NBR_SEGMENTS];
+		for (int i = 0; i < NBR_SEGMENTS; i++) {
+			this.segments[i] = new Segment<T>(perSegment, this.nbrEvictions);
+		}
+	}
+
+	/**
+	 * @param serviceName
+	 * @return input fields on which the response of this service depends.
+	 *         null if no response of this service is cached so far
+	 */
+	public String[] getFields(String serviceName) {
+		return this.cacheFields.get(serviceName);
+	}
+
+	/**
+	 * @param serviceName
+	 * @param text
+	 *            comma separated input fields on which the response of this
+	 *            service depends, as in canBeCachedByFields
+	 * @return input fields of the service. Fields that are already known for
+	 *         the service are retained.
+	 */
+	public String[] setFields(String serviceName, String text) {
+		String[] fields = this.cacheFields.get(serviceName);
+		if (fields == null) {
+			fields = text.length() == 0 ? new String[0] : text.split(",");
+			for (int i = 0; i < fields.length; i++) {
+				fields[i] = fields[i].trim();
+			}
+			this.cacheFields.put(serviceName, fields);
+		}
+		return fields;
+	}
+
+	/**
+	 * @param key
+	 * @return cached response, or null if it is not cached or has expired
+	 */
+	public T get(String key) {
+		Segment<T> segment = this.getSegment(key);
+		Entry<T> entry = segment.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expiresAt != 0
+				&& entry.expiresAt < System.currentTimeMillis()) {
+			segment.remove(key);
+			this.nbrExpired.incrementAndGet();
+			return null;
+		}
+		return entry.response;
+	}
+
+	/**
+	 * @param key
+	 * @param response
+	 * @param size
+	 *            size of this response, in the unit in which maxSize is
+	 *            specified
+	 * @param expirySeconds
+	 *            0 or negative if the response does not expire
+	 */
+	public void put(String key, T response, long size, int expirySeconds) {
+		long expiresAt = expirySeconds <= 0 ? 0
+				: System.currentTimeMillis() + expirySeconds * 1000L;
+		this.getSegment(key).put(key,
+				new Entry<T>(response, size, expiresAt));
+	}
+
+	/**
+	 * remove all responses of a service
+	 *
+	 * @param serviceName
+	 */
+	public void invalidate(String serviceName) {
+		this.cacheFields.remove(serviceName);
+		String prefix = serviceName + KEY_SEPARATOR;
+		for (Segment<T> segment : this.segments) {
+			segment.removeAll(prefix);
+		}
+	}
+
+	/**
+	 * @return number of responses removed to make room for new ones
+	 */
+	public long getNbrEvictions() {
+		return this.nbrEvictions.get();
+	}
+
+	/**
+	 * @return number of responses discarded after they expired
+	 */
+	public long getNbrExpired() {
+		return this.nbrExpired.get();
+	}
+
+	/**
+	 * @return number of responses in cache
+	 */
+	public int getNbrEntries() {
+		int n = 0;
+		for (Segment<T> segment : this.segments) {
+			n += segment.getNbrEntries();
+		}
+		return n;
+	}
+
+	/**
+	 * @return total size of responses in cache
+	 */
+	public long getSize() {
+		long n = 0;
+		for (Segment<T> segment : this.segments) {
+			n += segment.getSize();
+		}
+		return n;
+	}
+
+	private Segment<T> getSegment(String key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return this.segments[h & (NBR_SEGMENTS - 1)];
+	}
+
+	/**
+	 * key is service name and separator, followed by userId and values of
+	 * fields, if any.
+	 * Field values are picked up from the top level of payLoad, without
+	 * parsing the rest of it.
+	 *
+	 * @param inData
+	 * @param fields
+	 *            input fields on which the response depends
+	 * @return key, or null if the payLoad is not a valid json
+	 */
+	public static String getKey(ServiceData inData, String[] fields) {
+		StringBuilder sbf = new StringBuilder(inData.getServiceName())
+				.append(KEY_SEPARATOR);
+		if (fields.length == 0) {
+			return sbf.toString();
+		}
+		Object[] values = new Object[fields.length];
+		try {
+			String payLoad = inData.getPayLoad();
+			if (payLoad != null && payLoad.length() > 0) {
+				JsonUtil.pickValues(payLoad, fields, values);
+			}
+		} catch (Exception e) {
+			Tracer.trace("Input is not a valid json. Cache is not used.");
+			return null;
+		}
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) {
+				sbf.append(KEY_SEPARATOR);
+			}
+			if (fields[i].equals(ServiceProtocol.USER_ID)) {
+				sbf.append(inData.getUserId());
+			} else if (values[i] != null) {
+				sbf.append(values[i]);
+			}
+		}
+		return sbf.toString();
+	}
+
+	/**
+	 * a cached response
+	 */
+	private static class Entry<T> {
+		final T response;
+		final long size;
+		/*
+		 * 0 if it does not expire
+		 */
+		final long expiresAt;
+
+		Entry(T response, long size, long expiresAt) {
+			this.response = response;
+			this.size = size;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * LRU map for a part of the cache, bounded by size
+	 */
+	private static class Segment<T> {
+		private final Map<String, Entry<T>> map = new LinkedHashMap<String, Entry<T>>(
+				16, 0.75f, true);
+		private final long maxSize;
+		private final AtomicLong evictions;
+		private long size;
+
+		Segment(long maxSize, AtomicLong evictions) {
+			this.maxSize = maxSize;
+			this.evictions = evictions;
+		}
+
+		synchronized Entry<T> get(String key) {
+			return this.map.get(key);
+		}
+
+		synchronized void put(String key, Entry<T> entry) {
+			if (entry.size > this.maxSize) {
+				Tracer.trace("Response is too large to be cached.");
+				return;
+			}
+			Entry<T> old = this.map.put(key, entry);
+			if (old != null) {
+				this.size -= old.size;
+			}
+			this.size += entry.size;
+			/*
+			 * remove least recently used ones to make room
+			 */
+			Iterator<Entry<T>> iter = this.map.values().iterator();
+			while (this.size > this.maxSize && iter.hasNext()) {
+				Entry<T> eldest = iter.next();
+				iter.remove();
+				this.size -= eldest.size;
+				this.evictions.incrementAndGet();
+			}
+		}
+
+		synchronized void remove(String key) {
+			Entry<T> old = this.map.remove(key);
+			if (old != null) {
+				this.size -= old.size;
+			}
+		}
+
+		synchronized void removeAll(String prefix) {
+			Iterator<Map.Entry<String, Entry<T>>> iter = this.map.entrySet()
+					.iterator();
+			while (iter.hasNext()) {
+				Map.Entry<String, Entry<T>> entry = iter.next();
+				if (entry.getKey().startsWith(prefix)) {
+					this.size -= entry.getValue().size;
+					iter.remove();
+				}
+			}
+		}
+
+		synchronized int getNbrEntries() {
+			return this.map.size();
+		}
+
+		synchronized long getSize() {
+			return this.size;
+		}
+	}
+}
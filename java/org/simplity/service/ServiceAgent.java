@@ -23,11 +23,19 @@
 package org.simplity.service;
 
 import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.simplity.kernel.ApplicationError;
 import org.simplity.kernel.Messages;
+import org.simplity.kernel.FormattedMessage;
 import org.simplity.kernel.Tracer;
 import org.simplity.kernel.comp.ComponentManager;
+import org.simplity.kernel.util.JsonUtil;
 import org.simplity.kernel.value.Value;
 import org.simplity.kernel.value.ValueType;
 
@@ -43,6 +51,11 @@ import org.simplity.kernel.value.ValueType;
  * the userId.
  */
 public class ServiceAgent {
+	/**
+	 * default milliseconds a request waits for an identical request that is
+	 * being executed
+	 */
+	public static final int DEFAULT_COALESCE_WAIT_MILLIS = 30000;
 
 	/**
 	 * singleton instance that is instantiated with right parameters
@@ -58,12 +71,17 @@ public class ServiceAgent {
 	 * @param cacher
 	 * @param guard
 	 * @param listener
+	 * @param coalesceWaitMillis
+	 *            milliseconds a request for a cacheable service waits for an
+	 *            identical request that is being executed, instead of
+	 *            executing the service again. 0 means default, and negative
+	 *            means every request is executed on its own
 	 */
 	public static void setUp(boolean userIdIsNumber, String login,
 			String logout, ServiceCacheManager cacher, AccessController guard,
-			ExceptionListener listener) {
+			ExceptionListener listener, int coalesceWaitMillis) {
 		instance = new ServiceAgent(userIdIsNumber, login, logout, cacher,
-				guard, listener);
+				guard, listener, coalesceWaitMillis);
 	}
 
 	/**
@@ -107,18 +125,34 @@ public class ServiceAgent {
 	 */
 	private final AccessController securityManager;
 
+	/**
+	 * milliseconds to wait for an identical request in progress. negative if
+	 * requests are not to be coalesced
+	 */
+	private final int coalesceWaitMillis;
+
+	/**
+	 * requests for cacheable services that are being executed, indexed by
+	 * their cache key
+	 */
+	private final ConcurrentMap<String, InFlight> inFlights = new ConcurrentHashMap<String, InFlight>();
+	private final AtomicLong nbrCoalesced = new AtomicLong();
+	private final AtomicLong nbrCoalesceTimeouts = new AtomicLong();
+
 	/***
 	 * We create an immutable instance fully equipped with all plug-ins
 	 */
 	private ServiceAgent(boolean userIdIsNumber, String login, String logout,
 			ServiceCacheManager cacher, AccessController guard,
-			ExceptionListener listener) {
+			ExceptionListener listener, int coalesceWaitMillis) {
 		this.numericUserId = userIdIsNumber;
 		this.loginService = login;
 		this.logoutService = logout;
 		this.cacheManager = cacher;
 		this.exceptionListener = listener;
 		this.securityManager = guard;
+		this.coalesceWaitMillis = coalesceWaitMillis == 0
+				? DEFAULT_COALESCE_WAIT_MILLIS : coalesceWaitMillis;
 	}
 
 	/**
@@ -214,8 +248,7 @@ public class ServiceAgent {
 
 		String serviceName = inputData.getServiceName();
 		Value userId = inputData.getUserId();
-		ServiceInterface service = ComponentManager
-				.getServiceOrNull(serviceName);
+		ServiceInterface service = null;
 		ServiceData response = null;
 		Date startTime = new Date();
 
@@ -223,9 +256,17 @@ public class ServiceAgent {
 		 * do block is convenient to put breaks and avoid over-dose of else-if
 		 */
 		do {
+			/*
+			 * is the client polling for a background job?
+			 */
+			if (ServiceProtocol.SERVICE_GET_JOB.equals(serviceName)) {
+				response = getJob(inputData);
+				break;
+			}
 			/*
 			 * do we have this service?
 			 */
+			service = ComponentManager.getServiceOrNull(serviceName);
 			if (service == null) {
 				Tracer.trace(
 						"Service " + serviceName + " is missing in action !!");
@@ -259,28 +300,25 @@ public class ServiceAgent {
 				}
 			}
 			/*
-			 * OK. here we go and call the actual service
+			 * long running ones are queued, and the client polls for response
 			 */
-			try {
-				Tracer.trace("Invoking service " + serviceName);
-				response = service.respond(inputData);
-				boolean hasErrors = response != null && response.hasErrors();
-				if (hasErrors) {
-					Tracer.trace(serviceName + " returned with errors.");
-				} else {
-					Tracer.trace(serviceName + " responded with all OK signal");
-				}
-				if (this.cacheManager != null && hasErrors == false) {
-					this.cacheManager.cache(inputData, response);
-				}
-			} catch (Exception e) {
-				if (this.exceptionListener != null) {
-					this.exceptionListener.listen(inputData, e);
-				}
-				Tracer.trace(e, "Exception thrown by service " + serviceName);
-				response = new ServiceData();
-				response.addMessage(Messages.getMessage(Messages.INTERNAL_ERROR,
-						e.getMessage()));
+			if (service.toBeRunInBackground() && JobManager.isEnabled()) {
+				response = this.submitJob(service, inputData);
+				break;
+			}
+			/*
+			 * identical requests for a cacheable service share one execution
+			 */
+			String[] keyFields = null;
+			if (this.coalesceWaitMillis > 0
+					&& (inputData.getResponseStream() == null
+							|| service.canStreamResponse() == false)) {
+				keyFields = service.getCacheKeyFields();
+			}
+			if (keyFields == null) {
+				response = this.serve(service, inputData);
+			} else {
+				response = this.coalesce(service, inputData, keyFields);
 			}
 		} while (false);
 
@@ -295,6 +333,209 @@ public class ServiceAgent {
 		return response;
 	}
 
+	/**
+	 * OK. here we go and call the actual service
+	 */
+	private ServiceData serve(ServiceInterface service, ServiceData inputData) {
+		String serviceName = inputData.getServiceName();
+		ServiceData response = null;
+		try {
+			Tracer.trace("Invoking service " + serviceName);
+			response = service.respond(inputData);
+			boolean hasErrors = response != null && response.hasErrors();
+			if (hasErrors) {
+				Tracer.trace(serviceName + " returned with errors.");
+			} else {
+				Tracer.trace(serviceName + " responded with all OK signal");
+			}
+			if (this.cacheManager != null && hasErrors == false
+					&& response.isPayLoadStreamed() == false) {
+				this.cacheManager.cache(inputData, response);
+			}
+		} catch (Exception e) {
+			if (this.exceptionListener != null) {
+				this.exceptionListener.listen(inputData, e);
+			}
+			Tracer.trace(e, "Exception thrown by service " + serviceName);
+			response = new ServiceData();
+			response.addMessage(Messages.getMessage(Messages.INTERNAL_ERROR,
+					e.getMessage()));
+		}
+		return response;
+	}
+
+	/**
+	 * queue the service to be executed in background
+	 *
+	 * @return response with the job token in its payLoad
+	 */
+	private ServiceData submitJob(final ServiceInterface service,
+			final ServiceData inputData) {
+		String serviceName = inputData.getServiceName();
+		/*
+		 * response can not be streamed back from another thread
+		 */
+		inputData.setResponseStream(null);
+		final ServiceAgent agent = this;
+		Callable<ServiceData> task = new Callable<ServiceData>() {
+
+			@Override
+			public ServiceData call() throws Exception {
+				Tracer.startAccumulation();
+				long startedAt = System.currentTimeMillis();
+				ServiceData result = null;
+				try {
+					result = agent.serve(service, inputData);
+				} finally {
+					String trace = Tracer.stopAccumulation();
+					if (result != null) {
+						result.setExecutionTime(
+								(int) (System.currentTimeMillis() - startedAt));
+						result.setTrace(trace);
+					}
+				}
+				return result;
+			}
+		};
+		String token = JobManager.submit(inputData.getUserId(), serviceName,
+				task);
+		ServiceData response = new ServiceData(inputData.getUserId(),
+				serviceName);
+		if (token == null) {
+			response.addMessage(Messages.getMessage(Messages.SERVER_BUSY));
+		} else {
+			response.setPayLoad(
+					JobManager.getStatusJson(token, JobManager.STATUS_QUEUED));
+		}
+		return response;
+	}
+
+	/**
+	 * response of a background job, or its status if it is not done yet
+	 */
+	private static ServiceData getJob(ServiceData inputData) {
+		Object[] values = new Object[1];
+		String payLoad = inputData.getPayLoad();
+		if (payLoad != null && payLoad.length() > 0) {
+			try {
+				JsonUtil.pickValues(payLoad,
+						new String[] { ServiceProtocol.JOB_TOKEN }, values);
+			} catch (Exception e) {
+				Tracer.trace("Invalid payLoad while asking for a job : "
+						+ e.getMessage());
+			}
+		}
+		String token = values[0] == null ? null : values[0].toString();
+		ServiceData response = JobManager.getStatus(token,
+				inputData.getUserId());
+		if (response == null) {
+			Tracer.trace("No job found for token " + token);
+			response = new ServiceData(inputData.getUserId(),
+					inputData.getServiceName());
+			response.addMessage(Messages.getMessage(Messages.NO_JOB));
+		}
+		return response;
+	}
+
+	/**
+	 * serve a cacheable service. If an identical request is already being
+	 * executed, we wait for its response rather than executing the service
+	 * again. Only a successful response is shared. Waiting ones execute the
+	 * service on their own if the one in progress fails or takes too long.
+	 */
+	private ServiceData coalesce(ServiceInterface service,
+			ServiceData inputData, String[] keyFields) {
+		String key = ResponseCache.getKey(inputData, keyFields);
+		if (key == null) {
+			return this.serve(service, inputData);
+		}
+		InFlight flight = new InFlight();
+		InFlight existing = this.inFlights.putIfAbsent(key, flight);
+		if (existing == null) {
+			/*
+			 * we are the first one. execute and share
+			 */
+			ServiceData response = null;
+			try {
+				response = this.serve(service, inputData);
+			} finally {
+				if (response != null && response.hasErrors() == false
+						&& response.isPayLoadStreamed() == false) {
+					flight.response = response;
+				}
+				this.inFlights.remove(key, flight);
+				flight.done.countDown();
+			}
+			return response;
+		}
+
+		Tracer.trace("An identical request for " + inputData.getServiceName()
+				+ " is in progress. We wait for its response.");
+		boolean done = false;
+		try {
+			done = existing.done.await(this.coalesceWaitMillis,
+					TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		ServiceData shared = existing.response;
+		if (shared == null) {
+			if (done == false) {
+				this.nbrCoalesceTimeouts.incrementAndGet();
+				Tracer.trace("Identical request did not complete in "
+						+ this.coalesceWaitMillis
+						+ "ms. We execute the service ourselves.");
+			}
+			return this.serve(service, inputData);
+		}
+		this.nbrCoalesced.incrementAndGet();
+		return copyResponse(shared, inputData);
+	}
+
+	/**
+	 * response meant for another request, copied for this one
+	 */
+	private static ServiceData copyResponse(ServiceData shared,
+			ServiceData inputData) {
+		ServiceData response = new ServiceData(inputData.getUserId(),
+				inputData.getServiceName());
+		response.setPayLoad(shared.getPayLoad());
+		for (String fieldName : shared.getFieldNames()) {
+			response.put(fieldName, shared.get(fieldName));
+		}
+		for (FormattedMessage msg : shared.getMessages()) {
+			response.addMessage(msg);
+		}
+		return response;
+	}
+
+	/**
+	 * @return number of service executions saved by sharing the response of
+	 *         an identical request that was in progress
+	 */
+	public long getNbrCoalesced() {
+		return this.nbrCoalesced.get();
+	}
+
+	/**
+	 * @return number of times a request gave up waiting for an identical
+	 *         request, and executed the service on its own
+	 */
+	public long getNbrCoalesceTimeouts() {
+		return this.nbrCoalesceTimeouts.get();
+	}
+
+	/**
+	 * a request that is being executed
+	 */
+	private static class InFlight {
+		final CountDownLatch done = new CountDownLatch(1);
+		/*
+		 * successful response, set before done is counted down
+		 */
+		volatile ServiceData response;
+	}
+
 	/**
 	 * invalidate any cached response for this service
 	 *
@@ -60,6 +60,17 @@ public class ServiceContext extends CommonData {
 	private List<FormattedMessage> messages = new ArrayList<FormattedMessage>();
 	private int nbrErrors = 0;
 
+	/*
+	 * set by the service if its response can be streamed to the client
+	 */
+	private boolean responseStreamable;
+
+	/*
+	 * set by an action that has deferred extraction of rows to the time the
+	 * response is streamed
+	 */
+	private boolean responseToBeStreamed;
+
 	/**
 	 * @param serviceName
 	 * @param userId
@@ -172,6 +183,40 @@ public class ServiceContext extends CommonData {
 		return this.nbrErrors > 0;
 	}
 
+	/**
+	 * @param streamable
+	 *            true if the response of this service is written directly to
+	 *            the client stream while the data base connection is still open
+	 */
+	public void setResponseStreamable(boolean streamable) {
+		this.responseStreamable = streamable;
+	}
+
+	/**
+	 * @return true if an action may defer extraction of a large number of rows
+	 *         to the time the response is written, and stream them directly to
+	 *         the client
+	 */
+	public boolean isResponseStreamable() {
+		return this.responseStreamable;
+	}
+
+	/**
+	 * an action has deferred extraction of rows to the time response is
+	 * streamed
+	 */
+	public void setResponseToBeStreamed() {
+		this.responseToBeStreamed = true;
+	}
+
+	/**
+	 * @return true if response is to be streamed, as some rows are yet to be
+	 *         extracted
+	 */
+	public boolean isResponseToBeStreamed() {
+		return this.responseToBeStreamed;
+	}
+
 	/**
 	 * get all messages
 	 *
@@ -202,9 +247,8 @@ public class ServiceContext extends CommonData {
 	 */
 	public void copyFrom(FieldsInterface dataRow) {
 		for (Entry<String, Value> entry : dataRow.getAllFields()) {
-			this.allFields.put(entry.getKey(), entry.getValue());
+			this.setFieldValue(entry.getKey(), entry.getValue());
 		}
-
 	}
 
 	/**
@@ -220,7 +264,7 @@ public class ServiceContext extends CommonData {
 	 */
 	public String getSummaryInfo() {
 		StringBuilder sbf = new StringBuilder("Context has ");
-		sbf.append(this.allFields.size()).append(" fields and ")
+		sbf.append(this.getNbrFields()).append(" fields and ")
 		.append(this.allSheets.size()).append(" sheets and ")
 				.append(this.messages.size()).append(" messages.");
 		return sbf.toString();
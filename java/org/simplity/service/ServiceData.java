@@ -21,6 +21,7 @@
  */
 package org.simplity.service;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -90,6 +91,25 @@ public class ServiceData {
 	 */
 	private String cacheForInput;
 
+	/**
+	 * number of seconds for which a cached response is valid. 0 means it is
+	 * valid till the cache for the service is invalidated
+	 */
+	private int cacheExpirySeconds;
+
+	/**
+	 * set by a client agent on the same JVM, like HttpAgent, if the service
+	 * may write its response directly to this stream instead of setting it as
+	 * payload. Not relevant across JVMs
+	 */
+	private OutputStream responseStream;
+
+	/**
+	 * set by service if it has written its response to the response stream.
+	 * payLoad is null in this case.
+	 */
+	private boolean payLoadStreamed;
+
 	/**
 	 * default constructor, but you are better off using the one with userId and
 	 * serviceName
@@ -129,6 +149,57 @@ public class ServiceData {
 		return this.cacheForInput;
 	}
 
+	/**
+	 * @param responseStream
+	 *            stream to which the service may write its response. Caller
+	 *            owns the stream, and is responsible to close it
+	 */
+	public void setResponseStream(OutputStream responseStream) {
+		this.responseStream = responseStream;
+	}
+
+	/**
+	 * @return stream to which the response may be written, or null if the
+	 *         response is to be set as payload
+	 */
+	public OutputStream getResponseStream() {
+		return this.responseStream;
+	}
+
+	/**
+	 * @param payLoadStreamed
+	 *            true if the response is written to the response stream
+	 */
+	public void setPayLoadStreamed(boolean payLoadStreamed) {
+		this.payLoadStreamed = payLoadStreamed;
+	}
+
+	/**
+	 * @return true if the response is already written to the response stream,
+	 *         in which case there is no payLoad. Such a response can not be
+	 *         cached
+	 */
+	public boolean isPayLoadStreamed() {
+		return this.payLoadStreamed;
+	}
+
+	/**
+	 * @param cacheExpirySeconds
+	 *            number of seconds for which the response may be cached. 0
+	 *            means it is valid till the cache is invalidated
+	 */
+	public void setCacheExpirySeconds(int cacheExpirySeconds) {
+		this.cacheExpirySeconds = cacheExpirySeconds;
+	}
+
+	/**
+	 * @return number of seconds for which the response may be cached. 0 means
+	 *         it is valid till the cache is invalidated
+	 */
+	public int getCacheExpirySeconds() {
+		return this.cacheExpirySeconds;
+	}
+
 	/**
 	 * @return the trace
 	 */
@@ -61,6 +61,25 @@ public interface ServiceInterface extends Component {
 	 */
 	public boolean okToCache();
 
+	/**
+	 * input fields on which the response of this service depends. Identical
+	 * requests for such a service may share one execution.
+	 *
+	 * @return null if the response can not be cached. empty array if the
+	 *         response does not depend on input at all.
+	 */
+	public String[] getCacheKeyFields();
+
+	/**
+	 * can rows of the response be streamed to the client while they are read?
+	 * Such a response is not cached, and hence identical requests can not
+	 * share its execution.
+	 *
+	 * @return true if the response is streamed when a response stream is
+	 *         available
+	 */
+	public boolean canStreamResponse();
+
 	/**
 	 * @return data base access required by this service
 	 */
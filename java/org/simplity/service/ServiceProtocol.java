@@ -297,6 +297,23 @@ public abstract class ServiceProtocol {
 	 * special file name that indicates logs instead of a file content
 	 */
 	public static final String FILE_NAME_FOR_LOGS = "_logs";
+
+	/**
+	 * service name with which client polls for the response of a service that
+	 * was executed in background. Job token is sent in the payLoad
+	 */
+	public static final String SERVICE_GET_JOB = "_getJob";
+
+	/**
+	 * field name of the token that is returned for a service that is executed
+	 * in background
+	 */
+	public static final String JOB_TOKEN = "_jobToken";
+
+	/**
+	 * field name of the status of a background job
+	 */
+	public static final String JOB_STATUS = "_jobStatus";
 	/**
 	 * whenever an attachment field is updated, its existing value in the data
 	 * base can be set to a field with the name+prefix. Service will process
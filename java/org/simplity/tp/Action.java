@@ -79,7 +79,7 @@ public abstract class Action {
 
 		if (this.executeOnCondition != null) {
 			try {
-				if (!this.executeOnCondition.evaluate(ctx).toBoolean()) {
+				if (!this.executeOnCondition.evaluateCondition(ctx)) {
 					return null;
 				}
 			} catch (Exception e) {
@@ -138,7 +138,9 @@ public abstract class Action {
 		if (this.actionName == null) {
 			this.actionName = ACTION_NAME_PREFIX + this.serviceIdx;
 		}
-
+		if (this.executeOnCondition != null) {
+			this.executeOnCondition.compile();
+		}
 	}
 
 	/**
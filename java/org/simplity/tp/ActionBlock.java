@@ -57,6 +57,11 @@ public class ActionBlock implements DbClientInterface {
 	private final Action[] actions;
 	private final Map<String, Integer> indexedActions;
 	private final ServiceContext ctx;
+	/*
+	 * index of the last action that requires db. -1 if the connection is to be
+	 * kept till all actions are done
+	 */
+	private int lastDbActionIdx = -1;
 
 	/**
 	 *
@@ -71,6 +76,17 @@ public class ActionBlock implements DbClientInterface {
 		this.ctx = ctx;
 	}
 
+	/**
+	 * let the driver return its connection once this action is done. Relevant
+	 * only if the driver had borrowed its connection lazily
+	 *
+	 * @param idx
+	 *            index of the last action that requires db access
+	 */
+	void releaseConnectionAfter(int idx) {
+		this.lastDbActionIdx = idx;
+	}
+
 	@Override
 	public boolean workWithDriver(DbDriver driver) {
 		this.act(driver);
@@ -103,6 +119,13 @@ public class ActionBlock implements DbClientInterface {
 			Tracer.trace("Action " + action.actionName
 					+ " finished with result=" + result + " in "
 					+ (new Date().getTime() - startedAt) + " ms");
+			if (driver != null && this.lastDbActionIdx >= 0
+					&& currentIdx >= this.lastDbActionIdx) {
+				/*
+				 * driver borrows it again in case we jump back
+				 */
+				driver.releaseConnection();
+			}
 
 			if (result == null) {
 				currentIdx++;
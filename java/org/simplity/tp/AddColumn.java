@@ -24,10 +24,9 @@ package org.simplity.tp;
 
 import org.simplity.kernel.ApplicationError;
 import org.simplity.kernel.Tracer;
-import org.simplity.kernel.data.AlreadyIteratingException;
 import org.simplity.kernel.data.DataSheet;
-import org.simplity.kernel.data.DataSheetIterator;
 import org.simplity.kernel.db.DbDriver;
+import org.simplity.kernel.expr.ColumnValues;
 import org.simplity.kernel.expr.Expression;
 import org.simplity.kernel.expr.InvalidOperationException;
 import org.simplity.kernel.util.TextUtil;
@@ -66,9 +65,9 @@ public class AddColumn extends Action {
 
 	/**
 	 * if the column value is to be calculated as an expression that involves
-	 * other columns, then provide the expression. NOTE : watch out for
-	 * performance if you end up adding column after column to a sheet with
-	 * large number of rows
+	 * other columns, then provide the expression. Columns are referred to as
+	 * sheetName.columnName. Expression is evaluated on whole columns, rather
+	 * than row by row.
 	 */
 	Expression columnValueExpression;
 
@@ -80,7 +79,7 @@ public class AddColumn extends Action {
 		}
 		if (this.columnValue != null) {
 			Value value = null;
-			String fieldName = TextUtil.getFieldName(this.columnName);
+			String fieldName = TextUtil.getFieldName(this.columnValue);
 			if (fieldName != null) {
 				/*
 				 * it is a field name
@@ -102,27 +101,27 @@ public class AddColumn extends Action {
 			sheet.addColumn(this.columnName, value);
 			return Value.VALUE_TRUE;
 		}
+		int nbrRows = sheet.length();
+		if (nbrRows == 0 || this.columnValueExpression == null) {
+			sheet.addColumn(this.columnName, this.columnValueType, null);
+			return Value.VALUE_TRUE;
+		}
 		try {
-			int nbrRows = sheet.length();
-			if (nbrRows == 0 || this.columnValue == null) {
-				sheet.addColumn(this.columnName, this.columnValueType, null);
-				return Value.VALUE_TRUE;
-			}
-
-			Value[] values = new Value[nbrRows];
-			DataSheetIterator iterator = ctx.startIteration(this.sheetName);
-			int i = 0;
-			while (iterator.moveToNextRow()) {
-				values[i++] = this.columnValueExpression.evaluate(ctx);
-			}
-			sheet.addColumn(this.columnName, values[0].getValueType(), values);
+			ColumnValues values = this.columnValueExpression.evaluateColumn(
+					sheet, this.sheetName, ctx);
+			values.addToSheet(sheet, this.columnName);
 			return Value.VALUE_TRUE;
 		} catch (InvalidOperationException e) {
 			throw new ApplicationError(e,
 					"Error while adding a column to a grid." + e.getMessage());
-		} catch (AlreadyIteratingException e) {
-			throw new ApplicationError(e,
-					"Error while adding a column to a grid." + e.getMessage());
+		}
+	}
+
+	@Override
+	public void getReady(int idx) {
+		super.getReady(idx);
+		if (this.columnValueExpression != null) {
+			this.columnValueExpression.compile();
 		}
 	}
 }
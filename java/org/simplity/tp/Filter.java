@@ -68,6 +68,14 @@ public class Filter extends DbAction {
 	 */
 	boolean cascadeFilterForChildren;
 
+	/**
+	 * meant for large outputs. If the service response can be streamed,
+	 * rows are not extracted into the output sheet, but are written to the
+	 * client as they are read from the data base, while the response is
+	 * written. Such rows are not available to subsequent actions.
+	 */
+	boolean streamOutput;
+
 	/**
 	 * default constructor
 	 */
@@ -97,6 +105,17 @@ public class Filter extends DbAction {
 			outRecord = ComponentManager.getRecord(this.outputRecordName);
 		}
 
+		if (this.streamOutput && this.inputSheetName == null
+				&& ctx.isResponseStreamable()) {
+			Tracer.trace("Rows for sheet " + this.outputSheetName
+					+ " will be streamed while writing the response.");
+			RowStream.put(ctx, this.outputSheetName,
+					new RowStream(outRecord, record));
+			/*
+			 * we do not know the number of rows yet
+			 */
+			return 1;
+		}
 		DataSheet outSheet = null;
 
 		if (this.inputSheetName == null) {
@@ -156,6 +175,18 @@ public class Filter extends DbAction {
 				count += rec.validate(ctx);
 			}
 		}
+		if (this.streamOutput) {
+			if (this.outputSheetName == null) {
+				ctx.addError(
+						"streamOutput is set to true, but outputSheetName is not specified.");
+				count++;
+			}
+			if (this.childRecords != null || this.cascadeFilterForChildren) {
+				ctx.addError(
+						"Rows that are streamed can not be used to filter child records. Remove childRecords and cascadeFilterForChildren, or set streamOutput to false.");
+				count++;
+			}
+		}
 		return count;
 	}
 }
@@ -36,6 +36,7 @@ import org.simplity.json.JSONWriter;
 import org.simplity.kernel.ApplicationError;
 import org.simplity.kernel.Tracer;
 import org.simplity.kernel.comp.ValidationContext;
+import org.simplity.kernel.data.FieldRef;
 import org.simplity.kernel.db.DbAccessType;
 import org.simplity.kernel.db.DbDriver;
 import org.simplity.kernel.util.JsonUtil;
@@ -122,6 +123,11 @@ public class HttpClient extends Action {
 	 */
 	private String[] urlParts;
 
+	/**
+	 * field names in urlParts, parsed for repeated use
+	 */
+	private FieldRef[] urlFieldRefs;
+
 	/**
 	 * if user and password are known at design time, we cache an instance of
 	 * authentication
@@ -151,7 +157,8 @@ public class HttpClient extends Action {
 		if (this.urlParts == null) {
 			txt = this.urlString;
 		} else {
-			txt = TextUtil.substituteFields(this.urlParts, ctx);
+			txt = TextUtil.substituteFields(this.urlParts,
+					this.urlFieldRefs, ctx);
 		}
 		String responseText;
 		if (txt.equals(".")) {
@@ -334,6 +341,9 @@ public class HttpClient extends Action {
 	public void getReady(int idx) {
 		super.getReady(idx);
 		this.urlParts = TextUtil.parseToParts(this.urlString);
+		if (this.urlParts != null) {
+			this.urlFieldRefs = TextUtil.getFieldRefs(this.urlParts);
+		}
 		if (this.proxyUserName != null
 				&& this.proxyUserName.charAt(0) == DOLLAR) {
 			this.proxyUserField = this.proxyUserName.substring(1);
@@ -21,8 +21,15 @@
  */
 package org.simplity.tp;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.simplity.json.JSONObject;
+import org.simplity.json.JSONTokener;
 import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.FormattedMessage;
 import org.simplity.kernel.Messages;
 import org.simplity.kernel.Tracer;
 import org.simplity.kernel.comp.ValidationContext;
@@ -57,6 +64,12 @@ public class InputData {
 	 */
 	String[] attachmentColumns;
 
+	/**
+	 * input records whose rows can be read directly from the request text,
+	 * indexed by sheet name. Set in getReady()
+	 */
+	private Map<String, InputRecord> textRecords;
+
 	/**
 	 * extract and validate data from input service data into service context
 	 *
@@ -66,6 +79,80 @@ public class InputData {
 	 *            into which data is to be extracted to
 	 */
 	public void extractFromJson(JSONObject json, ServiceContext ctx) {
+		this.extract(json, null, null, ctx);
+	}
+
+	/**
+	 * extract and validate data from request text into service context. Rows
+	 * of simple sheets are read directly from the text into data sheets, and
+	 * only the remaining attributes are parsed into a json object. This
+	 * avoids building a JSONArray/JSONObject for every row of a large input.
+	 *
+	 * @param jsonText
+	 *            request text, that must be a json object
+	 * @param ctx
+	 *            into which data is to be extracted to
+	 */
+	public void extractFromJson(String jsonText, ServiceContext ctx) {
+		if (this.textRecords == null) {
+			this.extract(new JSONObject(jsonText), null, null, ctx);
+			return;
+		}
+		JSONTokener tokener = new JSONTokener(jsonText);
+		if (tokener.nextClean() != '{') {
+			throw tokener.syntaxError("A JSONObject text must begin with '{'");
+		}
+		JSONObject json = new JSONObject();
+		Map<String, DataSheet> sheets = new HashMap<String, DataSheet>();
+		Map<String, List<FormattedMessage>> sheetErrors = new HashMap<String, List<FormattedMessage>>();
+		if (tokener.nextClean() != '}') {
+			tokener.back();
+			while (true) {
+				String key = tokener.nextValue().toString();
+				if (tokener.nextClean() != ':') {
+					throw tokener.syntaxError("Expected a ':' after a key");
+				}
+				/*
+				 * JSONObject rejects duplicate keys. So do we.
+				 */
+				if (sheets.containsKey(key) || json.has(key)) {
+					throw tokener.syntaxError("Duplicate key \"" + key + "\"");
+				}
+				InputRecord inRec = this.textRecords.get(key);
+				char c = tokener.nextClean();
+				tokener.back();
+				if (inRec != null && c == '[') {
+					List<FormattedMessage> errors = new ArrayList<FormattedMessage>();
+					sheets.put(key, inRec.readSheet(tokener, errors));
+					sheetErrors.put(key, errors);
+				} else {
+					json.putOnce(key, tokener.nextValue());
+				}
+				c = tokener.nextClean();
+				if (c == '}') {
+					break;
+				}
+				if (c != ',') {
+					throw tokener.syntaxError("Expected a ',' or '}'");
+				}
+			}
+		}
+		this.extract(json, sheets, sheetErrors, ctx);
+	}
+
+	/**
+	 * @param json
+	 *            input
+	 * @param sheets
+	 *            sheets that are already read from request text. null if
+	 *            input is fully parsed into json
+	 * @param sheetErrors
+	 *            errors while reading sheets, indexed by sheet name
+	 * @param ctx
+	 */
+	private void extract(JSONObject json, Map<String, DataSheet> sheets,
+			Map<String, List<FormattedMessage>> sheetErrors,
+			ServiceContext ctx) {
 		int n = 0;
 		if (this.inputFields != null) {
 			for (InputField field : this.inputFields) {
@@ -77,7 +164,12 @@ public class InputData {
 		}
 		if (this.inputRecords != null) {
 			for (InputRecord inRec : this.inputRecords) {
-				inRec.extractInput(json, ctx);
+				if (sheets != null && sheets.containsKey(inRec.sheetName)) {
+					inRec.extractInput(sheets.get(inRec.sheetName),
+							sheetErrors.get(inRec.sheetName), ctx);
+				} else {
+					inRec.extractInput(json, ctx);
+				}
 			}
 
 		}
@@ -199,6 +291,33 @@ public class InputData {
 			for (InputRecord inRec : this.inputRecords) {
 				inRec.getReady();
 			}
+			this.setTextRecords();
+		}
+	}
+
+	/**
+	 * identify records whose rows can be read directly from request text. A
+	 * sheet that is shared with another record, or is a parent of another
+	 * record, has to be parsed into json.
+	 */
+	private void setTextRecords() {
+		Map<String, InputRecord> recs = new HashMap<String, InputRecord>();
+		for (InputRecord inRec : this.inputRecords) {
+			if (inRec.canReadSheetFromText()) {
+				recs.put(inRec.sheetName, inRec);
+			}
+		}
+		for (InputRecord inRec : this.inputRecords) {
+			if (inRec.parentSheetName != null) {
+				recs.remove(inRec.parentSheetName);
+			}
+			InputRecord rec = recs.get(inRec.sheetName);
+			if (rec != null && rec != inRec) {
+				recs.remove(inRec.sheetName);
+			}
+		}
+		if (recs.size() > 0) {
+			this.textRecords = recs;
 		}
 	}
 
@@ -23,10 +23,13 @@
 package org.simplity.tp;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.simplity.json.JSONArray;
 import org.simplity.json.JSONObject;
+import org.simplity.json.JSONTokener;
 import org.simplity.kernel.FormattedMessage;
 import org.simplity.kernel.Tracer;
 import org.simplity.kernel.comp.ComponentManager;
@@ -115,6 +118,12 @@ public class InputRecord {
 	private Field[] fields = null;
 	private boolean hasInterFieldValidations = false;
 
+	/**
+	 * index of each field in fields. Used while reading rows directly from
+	 * json text
+	 */
+	private Map<String, Integer> fieldIndexes;
+
 	/**
 	 * if this is a data structure/object structure
 	 */
@@ -211,6 +220,125 @@ public class InputRecord {
 		} else {
 			sheet = this.getSheetFromParent(json, ctx, errors);
 		}
+		this.sheetToContext(sheet, errors, ctx);
+	}
+
+	/**
+	 * can rows for this record be read directly from json text?
+	 *
+	 * @return true if this is a simple sheet of a known record, and its rows
+	 *         can be read with readSheet()
+	 */
+	boolean canReadSheetFromText() {
+		return this.fields != null && this.isComplexStructure == false
+				&& this.sheetName != null && this.parentSheetName == null
+				&& this.extractIntoFields == false;
+	}
+
+	/**
+	 * read rows for this sheet directly from json text, without creating
+	 * JSONArray/JSONObject for it
+	 *
+	 * @param tokener
+	 *            positioned at the '[' that starts the array of rows
+	 * @param errors
+	 *            to which parse errors are added
+	 * @return sheet with the rows, or null if there are no rows
+	 */
+	DataSheet readSheet(JSONTokener tokener, List<FormattedMessage> errors) {
+		if (tokener.nextClean() != '[') {
+			throw tokener.syntaxError("A JSONArray text must start with '['");
+		}
+		if (tokener.nextClean() == ']') {
+			return null;
+		}
+		tokener.back();
+		boolean allFieldsAreOptional = this.purpose == DataPurpose.SUBSET;
+		DataSheet ds = new MultiRowsSheet(this.fields);
+		int nbrFields = this.fields.length;
+		int rowNbr = 0;
+		while (true) {
+			rowNbr++;
+			char c = tokener.nextClean();
+			tokener.back();
+			if (c == '{') {
+				Object[] vals = this.readRow(tokener, nbrFields);
+				Value[] row = new Value[nbrFields];
+				for (int i = 0; i < nbrFields; i++) {
+					row[i] = this.fields[i].parseObject(vals[i], errors,
+							allFieldsAreOptional, null);
+				}
+				ds.addRow(row);
+			} else {
+				tokener.nextValue();
+				Tracer.trace("Row " + rowNbr + " is not an object. Not extracted");
+			}
+			c = tokener.nextClean();
+			if (c == ']') {
+				return ds;
+			}
+			if (c != ',') {
+				throw tokener.syntaxError("Expected a ',' or ']'");
+			}
+		}
+	}
+
+	/**
+	 * read an object as a row of values for our fields. Attributes that are
+	 * not our fields are skipped. A field that appears twice in the object is
+	 * rejected, as JSONObject would.
+	 */
+	private Object[] readRow(JSONTokener tokener, int nbrFields) {
+		Object[] vals = new Object[nbrFields];
+		tokener.next();
+		if (tokener.nextClean() == '}') {
+			return vals;
+		}
+		tokener.back();
+		while (true) {
+			String key = tokener.nextValue().toString();
+			if (tokener.nextClean() != ':') {
+				throw tokener.syntaxError("Expected a ':' after a key");
+			}
+			Object val = tokener.nextValue();
+			Integer idx = this.fieldIndexes.get(key);
+			if (idx != null) {
+				if (vals[idx.intValue()] != null) {
+					throw tokener.syntaxError("Duplicate key \"" + key
+							+ "\"");
+				}
+				vals[idx.intValue()] = val;
+			}
+			char c = tokener.nextClean();
+			if (c == '}') {
+				return vals;
+			}
+			if (c != ',') {
+				throw tokener.syntaxError("Expected a ',' or '}'");
+			}
+		}
+	}
+
+	/**
+	 * sheet is read from json text with readSheet(). validate and put it into
+	 * the context
+	 *
+	 * @param sheet
+	 *            as returned by readSheet()
+	 * @param errors
+	 *            errors while reading the sheet
+	 * @param ctx
+	 */
+	void extractInput(DataSheet sheet, List<FormattedMessage> errors,
+			ServiceContext ctx) {
+		this.sheetToContext(sheet, errors, ctx);
+	}
+
+	/**
+	 * validate the sheet that is extracted, and put it into the context
+	 */
+	private void sheetToContext(DataSheet sheet, List<FormattedMessage> errors,
+			ServiceContext ctx) {
 		/*
 		 * got trouble?
 		 */
@@ -575,6 +703,10 @@ public class InputRecord {
 		this.fields = record.getFieldsToBeExtracted(this.fieldNames,
 				this.purpose, this.saveActionExpected);
 		this.hasInterFieldValidations = record.hasInterFieldValidations();
+		this.fieldIndexes = new HashMap<String, Integer>();
+		for (int i = 0; i < this.fields.length; i++) {
+			this.fieldIndexes.put(this.fields[i].getName(), new Integer(i));
+		}
 	}
 
 	/**
@@ -22,16 +22,28 @@
  */
 package org.simplity.tp;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.Tracer;
 import org.simplity.kernel.data.AlreadyIteratingException;
+import org.simplity.kernel.data.ColumnarSheet;
 import org.simplity.kernel.data.DataSheet;
 import org.simplity.kernel.data.DataSheetIterator;
+import org.simplity.kernel.data.MultiRowsSheet;
+import org.simplity.kernel.data.SpillSheet;
 import org.simplity.kernel.db.DbAccessType;
 import org.simplity.kernel.db.DbDriver;
 import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
 import org.simplity.service.ServiceContext;
 
 /**
@@ -42,6 +54,12 @@ import org.simplity.service.ServiceContext;
  *
  */
 public class Loop extends Action {
+	/**
+	 * chunks per thread when rowsPerChunk is not specified
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static ForkJoinPool pool;
 
 	/**
 	 * returns either a name of action to go to, or "_stop", "_error"
@@ -53,6 +71,20 @@ public class Loop extends Action {
 	 */
 	Action[] actions;
 
+	/**
+	 * process rows in parallel. Each chunk of rows is processed with its own
+	 * copy of service context. Rows are written back into the sheet, and
+	 * changes to fields, sheets and messages are merged in the order of rows.
+	 * Actions can not access the data base in this mode.
+	 */
+	boolean executeInParallel;
+
+	/**
+	 * number of rows processed together in parallel mode. Defaults to a value
+	 * that gives each thread a few chunks
+	 */
+	int rowsPerChunk;
+
 	/**
 	 * calculated based on sub-actions of this block
 	 */
@@ -81,6 +113,11 @@ public class Loop extends Action {
 							+ this.dataSheetName
 							+ " but that data sheet is already iterating as part of an enclosing loop action.");
 		}
+		if (this.executeInParallel) {
+			iterator.cancelIteration();
+			this.actInParallel(ctx, sheet);
+			return null;
+		}
 		ActionBlock actionBlock = new ActionBlock(this.actions,
 				this.indexedActions, ctx);
 		while (iterator.moveToNextRow()) {
@@ -89,6 +126,67 @@ public class Loop extends Action {
 		return null;
 	}
 
+	/**
+	 * split rows into chunks and process them on a fork-join pool
+	 */
+	private void actInParallel(ServiceContext ctx, DataSheet sheet) {
+		for (Action action : this.actions) {
+			if (action instanceof SubService) {
+				Parallel.checkSubService((SubService) action, this.actionName);
+			}
+		}
+		ForkJoinPool fjp = getPool();
+		int nbrRows = sheet.length();
+		int chunkSize = this.rowsPerChunk;
+		if (chunkSize <= 0) {
+			int nbrChunks = fjp.getParallelism() * CHUNKS_PER_THREAD;
+			chunkSize = (nbrRows + nbrChunks - 1) / nbrChunks;
+		}
+		Parallel.Snapshot original = new Parallel.Snapshot(ctx);
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		for (int from = 0; from < nbrRows; from += chunkSize) {
+			int to = Math.min(from + chunkSize, nbrRows);
+			ServiceContext view = new ServiceContext(ctx.getServiceName(),
+					ctx.getUserId());
+			view.copyAllFrom(ctx);
+			chunks.add(new Chunk(this, view, sheet, from, to));
+		}
+		Tracer.trace("Loop " + this.actionName + " processes " + nbrRows
+				+ " rows in " + chunks.size() + " chunks.");
+		List<Future<Object>> futures = fjp.invokeAll(chunks);
+		for (Future<Object> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ApplicationError("Loop action " + this.actionName
+						+ " is interrupted.");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new ApplicationError(e, "Loop action " + this.actionName
+						+ " failed.");
+			}
+		}
+		/*
+		 * write back in the order of rows
+		 */
+		for (Chunk chunk : chunks) {
+			Tracer.trace(chunk.trace);
+			chunk.writeBack();
+			original.mergeInto(ctx, chunk.ctx);
+		}
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool();
+		}
+		return pool;
+	}
+
 	@Override
 	public DbAccessType getDataAccessType() {
 		return this.dbAccess;
@@ -106,6 +204,12 @@ public class Loop extends Action {
 			this.indexedActions.put(action.getName(), new Integer(i));
 			i++;
 			DbAccessType access = action.getDataAccessType();
+			if (this.executeInParallel && access != null
+					&& access != DbAccessType.NONE) {
+				throw new ApplicationError("Action " + action.getName()
+						+ " requires data base access, and hence it can not be part of loop action "
+						+ this.actionName + " that is to be executed in parallel");
+			}
 			switch (access) {
 			case READ_WRITE:
 				this.dbAccess = access;
@@ -121,4 +225,120 @@ public class Loop extends Action {
 			}
 		}
 	}
+
+	/**
+	 * rows of the sheet processed with a copy of service context
+	 */
+	private static class Chunk implements Callable<Object> {
+		final Loop loop;
+		final ServiceContext ctx;
+		final DataSheet sheet;
+		final int fromIdx;
+		final int toIdx;
+		/*
+		 * copy of the rows that we work on
+		 */
+		MultiRowsSheet rows;
+		String trace;
+
+		Chunk(Loop loop, ServiceContext ctx, DataSheet sheet, int fromIdx,
+				int toIdx) {
+			this.loop = loop;
+			this.ctx = ctx;
+			this.sheet = sheet;
+			this.fromIdx = fromIdx;
+			this.toIdx = toIdx;
+		}
+
+		@Override
+		public Object call() throws Exception {
+			String[] names = this.sheet.getColumnNames();
+			ValueType[] types = this.sheet.getValueTypes();
+			this.rows = new MultiRowsSheet(names, types);
+			for (int i = this.fromIdx; i < this.toIdx; i++) {
+				this.rows.addRow(this.sheet.getRow(i).clone());
+			}
+			String sheetName = this.loop.dataSheetName;
+			this.ctx.putDataSheet(sheetName, this.rows);
+			boolean wasOn = Tracer.acucumulationIsOn();
+			String outer = Tracer.startAccumulation();
+			try {
+				DataSheetIterator iterator = this.ctx.startIteration(sheetName);
+				ActionBlock actionBlock = new ActionBlock(this.loop.actions,
+						this.loop.indexedActions, this.ctx);
+				while (iterator.moveToNextRow()) {
+					actionBlock.workWithDriver(null);
+				}
+			} finally {
+				this.trace = Tracer.stopAccumulation();
+				if (wasOn) {
+					Tracer.startAccumulation(outer);
+				}
+				/*
+				 * sheet is written back, and not replaced
+				 */
+				this.ctx.putDataSheet(sheetName, this.sheet);
+			}
+			return null;
+		}
+
+		/**
+		 * copy processed rows into the sheet
+		 */
+		void writeBack() {
+			int[] targets = this.getTargetColumns();
+			int n = targets.length;
+			for (int i = this.fromIdx; i < this.toIdx; i++) {
+				Value[] row = this.rows.getRow(i - this.fromIdx);
+				if (this.sheet instanceof ColumnarSheet) {
+					/*
+					 * its getRow() returns a copy
+					 */
+					ColumnarSheet cs = (ColumnarSheet) this.sheet;
+					for (int j = 0; j < n; j++) {
+						cs.setValue(targets[j], i, row[j]);
+					}
+				} else if (this.sheet instanceof SpillSheet) {
+					SpillSheet ss = (SpillSheet) this.sheet;
+					Value[] values = ss.getRow(i);
+					for (int j = 0; j < n; j++) {
+						values[targets[j]] = row[j];
+					}
+					ss.setRow(i, values);
+				} else {
+					Value[] values = this.sheet.getRow(i);
+					for (int j = 0; j < n; j++) {
+						values[targets[j]] = row[j];
+					}
+				}
+			}
+		}
+
+		/**
+		 * columns that are added by actions to our rows are added to the
+		 * sheet as well
+		 *
+		 * @return index of each of our columns in the sheet
+		 */
+		private int[] getTargetColumns() {
+			String[] names = this.rows.getColumnNames();
+			ValueType[] types = this.rows.getValueTypes();
+			List<String> sheetNames = Arrays.asList(this.sheet
+					.getColumnNames());
+			int[] targets = new int[names.length];
+			for (int j = 0; j < names.length; j++) {
+				int idx = sheetNames.indexOf(names[j]);
+				if (idx == -1) {
+					Tracer.trace("Column " + names[j]
+							+ " is added to sheet " + this.loop.dataSheetName
+							+ " by actions of loop " + this.loop.actionName);
+					this.sheet.addColumn(names[j], types[j], null);
+					sheetNames = Arrays.asList(this.sheet.getColumnNames());
+					idx = sheetNames.indexOf(names[j]);
+				}
+				targets[j] = idx;
+			}
+			return targets;
+		}
+	}
 }
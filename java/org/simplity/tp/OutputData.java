@@ -21,6 +21,11 @@
  */
 package org.simplity.tp;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -33,6 +38,7 @@ import org.simplity.kernel.MessageType;
 import org.simplity.kernel.Tracer;
 import org.simplity.kernel.comp.ValidationContext;
 import org.simplity.kernel.data.DataSheet;
+import org.simplity.kernel.db.DbDriver;
 import org.simplity.kernel.dm.Field;
 import org.simplity.kernel.util.JsonUtil;
 import org.simplity.service.ServiceContext;
@@ -90,10 +96,43 @@ public class OutputData {
 	 * @param outData
 	 */
 	public void setResponse(ServiceContext ctx, ServiceData outData) {
+		this.storeAttachments(ctx);
+		this.setSessionFields(ctx, outData);
+		JSONWriter writer = new JSONWriter();
+		this.writeResponse(writer, ctx, null);
+		outData.setPayLoad(writer.toString());
+	}
 
-		/*
-		 * extract attachments if required
-		 */
+	/**
+	 * write response directly to the client stream. Rows that are deferred
+	 * for streaming are extracted and written as they are read. Session fields
+	 * are to be set separately with setSessionFields()
+	 *
+	 * @param ctx
+	 * @param stream
+	 *            to which response is to be written. Not closed by us.
+	 * @param driver
+	 *            to be used for extracting rows that are deferred for
+	 *            streaming
+	 */
+	void streamResponse(ServiceContext ctx, OutputStream stream,
+			DbDriver driver) {
+		this.storeAttachments(ctx);
+		try {
+			Writer out = new BufferedWriter(
+					new OutputStreamWriter(stream, "UTF-8"));
+			this.writeResponse(new JSONWriter(out), ctx, driver);
+			out.flush();
+		} catch (IOException e) {
+			throw new ApplicationError(e,
+					"Error while streaming response to client");
+		}
+	}
+
+	/**
+	 * extract attachments if required
+	 */
+	private void storeAttachments(ServiceContext ctx) {
 		if (this.attachmentFields != null) {
 			InputData.storeFieldAttaches(this.attachmentFields, ctx, false);
 		}
@@ -101,9 +140,15 @@ public class OutputData {
 		if (this.attachmentColumns != null) {
 			InputData.storeColumnAttaches(this.attachmentColumns, ctx, false);
 		}
-		/**
-		 * session data if any
-		 */
+	}
+
+	/**
+	 * session data if any
+	 *
+	 * @param ctx
+	 * @param outData
+	 */
+	void setSessionFields(ServiceContext ctx, ServiceData outData) {
 		if (this.sessionFields != null) {
 			for (String f : this.sessionFields) {
 				Object val = ctx.getValue(f);
@@ -116,13 +161,15 @@ public class OutputData {
 				outData.put(f, val);
 			}
 		}
+	}
 
-		/*
-		 * response
-		 */
-		JSONWriter writer = new JSONWriter();
+	/**
+	 * write the response object
+	 */
+	private void writeResponse(JSONWriter writer, ServiceContext ctx,
+			DbDriver driver) {
 		writer.object();
-		this.dataToJson(writer, ctx);
+		this.dataToJson(writer, ctx, driver);
 		/*
 		 * we also push non-error messages
 		 */
@@ -135,7 +182,6 @@ public class OutputData {
 		writer.endArray();
 
 		writer.endObject();
-		outData.setPayLoad(writer.toString());
 	}
 
 	/**
@@ -148,6 +194,21 @@ public class OutputData {
 	 * @param ctx
 	 */
 	public void dataToJson(JSONWriter writer, ServiceContext ctx) {
+		this.dataToJson(writer, ctx, null);
+	}
+
+	/**
+	 * write data to the json writer based on this spec, and data available in
+	 * the context
+	 *
+	 * @param writer
+	 *            should be ready to receive key-value pairs.
+	 * @param ctx
+	 * @param driver
+	 *            non-null if the response is being streamed, and rows that are
+	 *            deferred for streaming are to be extracted now
+	 */
+	void dataToJson(JSONWriter writer, ServiceContext ctx, DbDriver driver) {
 		if (this.fieldNames != null) {
 			JsonUtil.addAttributes(writer, this.fieldNames, ctx);
 		}
@@ -155,7 +216,14 @@ public class OutputData {
 		if (this.dataSheets != null) {
 			for (String sheetName : this.dataSheets) {
 				DataSheet sheet = ctx.getDataSheet(sheetName);
-				if (sheet == null) {
+				RowStream rows = null;
+				if (sheet == null && driver != null) {
+					rows = RowStream.get(ctx, sheetName);
+				}
+				if (rows != null) {
+					writer.key(sheetName);
+					rows.toJson(writer, ctx, driver);
+				} else if (sheet == null) {
 					Tracer.trace("Service context has no sheet with name "
 							+ sheetName + " for output.");
 				} else {
@@ -166,7 +234,7 @@ public class OutputData {
 		}
 		if (this.outputRecords != null) {
 			for (OutputRecord rec : this.outputRecords) {
-				rec.toJson(writer, ctx);
+				rec.toJson(writer, ctx, driver);
 			}
 		}
 	}
@@ -33,6 +33,7 @@ import org.simplity.kernel.comp.ComponentManager;
 import org.simplity.kernel.comp.ValidationContext;
 import org.simplity.kernel.data.DataSheet;
 import org.simplity.kernel.data.HierarchicalSheet;
+import org.simplity.kernel.db.DbDriver;
 import org.simplity.kernel.dm.Field;
 import org.simplity.kernel.dm.Record;
 import org.simplity.kernel.util.JsonUtil;
@@ -143,6 +144,17 @@ public class OutputRecord {
 	 * @param ctx
 	 */
 	public void toJson(JSONWriter writer, ServiceContext ctx) {
+		this.toJson(writer, ctx, null);
+	}
+
+	/**
+	 * @param writer
+	 * @param ctx
+	 * @param driver
+	 *            non-null if the response is being streamed, and rows that are
+	 *            deferred for streaming are to be extracted now
+	 */
+	void toJson(JSONWriter writer, ServiceContext ctx, DbDriver driver) {
 		if (this.isComplexStruct) {
 			Object obj = ctx.getObject(this.sheetName);
 			writer.key(this.sheetName);
@@ -166,7 +178,7 @@ public class OutputRecord {
 					+ this.parentSheetName);
 			return;
 		}
-		this.sheetToJson(writer, ctx);
+		this.sheetToJson(writer, ctx, driver);
 	}
 
 	private void fieldsToJson(JSONWriter writer, Field[] fieldsToOutput,
@@ -183,11 +195,20 @@ public class OutputRecord {
 		}
 	}
 
-	private void sheetToJson(JSONWriter writer, ServiceContext ctx) {
+	private void sheetToJson(JSONWriter writer, ServiceContext ctx,
+			DbDriver driver) {
 		/*
 		 * try and output sheet
 		 */
 		DataSheet sheet = ctx.getDataSheet(this.sheetName);
+		if (sheet == null && driver != null && this.childRecords == null) {
+			RowStream rows = RowStream.get(ctx, this.sheetName);
+			if (rows != null) {
+				writer.key(this.sheetName);
+				rows.toJson(writer, ctx, driver);
+				return;
+			}
+		}
 		if (sheet == null) {
 			if (this.fields != null) {
 				if (this.myParenData.okToOutputFieldsFromRecord(this.fields)) {
@@ -206,7 +227,7 @@ public class OutputRecord {
 			 */
 			if (this.childRecords != null) {
 				for (OutputRecord child : this.childRecords) {
-					child.sheetToJson(writer, ctx);
+					child.sheetToJson(writer, ctx, driver);
 				}
 			}
 			return;
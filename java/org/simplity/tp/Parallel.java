@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.tp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.simplity.kernel.ApplicationError;
+import org.simplity.kernel.FormattedMessage;
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.comp.ComponentManager;
+import org.simplity.kernel.comp.ValidationContext;
+import org.simplity.kernel.data.DataSheet;
+import org.simplity.kernel.db.DbAccessType;
+import org.simplity.kernel.db.DbDriver;
+import org.simplity.kernel.value.Value;
+import org.simplity.service.ServiceContext;
+import org.simplity.service.ServiceInterface;
+
+/**
+ * Execute a set of actions at the same time. Each action works on its own copy
+ * of service context, and their changes are merged back into the service
+ * context once all of them are done.
+ *
+ * Changes are merged in the order in which actions are listed, irrespective of
+ * the order in which they complete. If a field, sheet or object is set or
+ * removed by more than one action, change made by the action that is listed
+ * later wins. Messages are added in the same order. Note that sheets are
+ * shared, and not copied. Hence addColumn, copyRows and loop, that change a
+ * sheet in place, can not be part of a parallel action. Logic actions and
+ * sub-services should also put a new sheet rather than modify an existing one.
+ *
+ * Actions can not access the data base, as a db driver can not be shared
+ * across threads.
+ *
+ * When all threads are busy, an action is run in the thread of the service
+ * before the remaining ones are submitted. timeoutSeconds does not apply to
+ * such an action, as it is not interrupted.
+ *
+ * @author simplity.org
+ *
+ */
+public class Parallel extends Action {
+	/**
+	 * default number of threads that run parallel actions
+	 */
+	public static final int DEFAULT_NBR_THREADS = 16;
+	/**
+	 * default number of seconds to wait for all actions to complete
+	 */
+	public static final int DEFAULT_TIMEOUT_SECONDS = 60;
+
+	private static ThreadPoolExecutor executor;
+
+	/**
+	 * set up the threads that run parallel actions.
+	 *
+	 * @param nbrThreads
+	 *            0 means default. If all threads are busy, the action is run
+	 *            in the thread that asked for it
+	 */
+	public static synchronized void setUp(int nbrThreads) {
+		if (executor != null) {
+			executor.shutdown();
+		}
+		executor = newExecutor(
+				nbrThreads <= 0 ? DEFAULT_NBR_THREADS : nbrThreads);
+	}
+
+	/**
+	 * @return executor for running actions in parallel
+	 */
+	static synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			executor = newExecutor(DEFAULT_NBR_THREADS);
+		}
+		return executor;
+	}
+
+	private static ThreadPoolExecutor newExecutor(int nbrThreads) {
+		ThreadPoolExecutor ex = new ThreadPoolExecutor(nbrThreads, nbrThreads,
+				60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+				new ActionThreadFactory(),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		ex.allowCoreThreadTimeOut(true);
+		return ex;
+	}
+
+	/**
+	 * actions to be executed in parallel
+	 */
+	Action[] actions;
+
+	/**
+	 * number of seconds to wait for all actions to complete. Service fails if
+	 * they do not complete by then. An action that is run in the thread of
+	 * the service is not bound by this
+	 */
+	int timeoutSeconds;
+
+	@Override
+	protected Value doAct(ServiceContext ctx, DbDriver driver) {
+		for (Action action : this.actions) {
+			if (action instanceof SubService) {
+				checkSubService((SubService) action, this.actionName);
+				this.checkSubServiceActions((SubService) action);
+			}
+		}
+		int nbr = this.actions.length;
+		Branch[] branches = new Branch[nbr];
+		List<Future<Value>> futures = new ArrayList<Future<Value>>(nbr);
+		ThreadPoolExecutor ex = getExecutor();
+		for (int i = 0; i < nbr; i++) {
+			ServiceContext view = new ServiceContext(ctx.getServiceName(),
+					ctx.getUserId());
+			view.copyAllFrom(ctx);
+			view.setResponseStreamable(ctx.isResponseStreamable());
+			branches[i] = new Branch(this.actions[i], view);
+		}
+		/*
+		 * copy of what each action starts with, to find out what it changed
+		 */
+		Snapshot original = new Snapshot(ctx);
+		for (Branch branch : branches) {
+			futures.add(ex.submit(branch));
+		}
+
+		Value[] results = new Value[nbr];
+		long waitTill = System.currentTimeMillis() + this.timeoutSeconds
+				* 1000L;
+		for (int i = 0; i < nbr; i++) {
+			try {
+				results[i] = futures.get(i).get(
+						waitTill - System.currentTimeMillis(),
+						TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				cancelAll(futures);
+				throw new ApplicationError("Parallel action " + this.actionName
+						+ " did not complete in " + this.timeoutSeconds
+						+ " seconds.");
+			} catch (InterruptedException e) {
+				cancelAll(futures);
+				Thread.currentThread().interrupt();
+				throw new ApplicationError("Parallel action " + this.actionName
+						+ " is interrupted.");
+			} catch (ExecutionException e) {
+				cancelAll(futures);
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new ApplicationError(e, "Action "
+						+ branches[i].action.actionName + " in parallel action "
+						+ this.actionName + " failed.");
+			}
+		}
+
+		/*
+		 * join point. merge in the order of actions
+		 */
+		Value returnValue = null;
+		Map<String, String> changedBy = new HashMap<String, String>();
+		for (int i = 0; i < nbr; i++) {
+			Branch branch = branches[i];
+			Tracer.trace(branch.trace);
+			String name = branch.action.actionName;
+			for (String dataName : original.mergeInto(ctx, branch.ctx)) {
+				this.noteChange(dataName, name, changedBy);
+			}
+			Value result = results[i];
+			if (result == null) {
+				continue;
+			}
+			if (result.equals(ActionBlock.STOP_VALUE)) {
+				returnValue = result;
+			} else {
+				ctx.setValue(branch.action.actionName
+						+ ActionBlock.RESULT_SUFFIX, result);
+			}
+		}
+		return returnValue;
+	}
+
+	private void noteChange(String dataName, String name,
+			Map<String, String> changedBy) {
+		String earlier = changedBy.put(dataName, name);
+		if (earlier != null) {
+			Tracer.trace(dataName + " is changed by actions " + earlier
+					+ " and " + name + " of parallel action "
+					+ this.actionName + ". Change by " + name + " is retained.");
+		}
+	}
+
+	private static void cancelAll(List<Future<Value>> futures) {
+		for (Future<Value> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * sub-service can not be run in parallel if it accesses data base
+	 *
+	 * @param action
+	 * @param parentName
+	 *            name of the action that runs it in parallel
+	 */
+	static void checkSubService(SubService action, String parentName) {
+		DbAccessType access = ComponentManager.getService(action.serviceName)
+				.getDataAccessType();
+		if (access != null && access != DbAccessType.NONE) {
+			throw new ApplicationError("Sub-service " + action.serviceName
+					+ " requires data base access, and hence it can not be run in parallel by action "
+					+ parentName);
+		}
+	}
+
+	/**
+	 * actions of a sub-service share data sheets with the other actions of
+	 * this parallel action, and hence they can not change a sheet in place
+	 * either
+	 *
+	 * @param action
+	 */
+	private void checkSubServiceActions(SubService action) {
+		ServiceInterface service = ComponentManager
+				.getService(action.serviceName);
+		if (service instanceof Service == false
+				|| ((Service) service).actions == null) {
+			return;
+		}
+		for (Action child : ((Service) service).actions) {
+			Action changer = getSheetChanger(child);
+			if (changer != null) {
+				throw new ApplicationError("Action " + changer.actionName
+						+ " of sub-service " + action.serviceName
+						+ " changes a data sheet in place, and hence the sub-service can not be run in parallel by action "
+						+ this.actionName);
+			}
+		}
+	}
+
+	@Override
+	public void getReady(int idx) {
+		super.getReady(idx);
+		if (this.actions == null || this.actions.length == 0) {
+			throw new ApplicationError("Parallel Action " + this.actionName
+					+ " has no actions.");
+		}
+		if (this.timeoutSeconds <= 0) {
+			this.timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+		}
+		int i = 0;
+		for (Action action : this.actions) {
+			action.getReady(i);
+			i++;
+			if (action instanceof JumpTo) {
+				throw new ApplicationError("Parallel Action " + this.actionName
+						+ " has a jumpTo action " + action.actionName
+						+ ". Actions in a parallel action can not navigate.");
+			}
+			DbAccessType access = action.getDataAccessType();
+			if (access != null && access != DbAccessType.NONE) {
+				throw new ApplicationError("Action " + action.actionName
+						+ " requires data base access, and hence it can not be part of parallel action "
+						+ this.actionName);
+			}
+			Action changer = getSheetChanger(action);
+			if (changer != null) {
+				throw new ApplicationError("Action " + changer.actionName
+						+ " changes a data sheet in place, and hence it can not be part of parallel action "
+						+ this.actionName
+						+ ". Sheets are shared by all its actions.");
+			}
+		}
+	}
+
+	/**
+	 * find an action that changes a data sheet in place. A loop is one such
+	 * action, and actions nested in a parallel action are checked as well.
+	 *
+	 * @param action
+	 * @return the action itself, or an action nested in it, that changes a
+	 *         sheet in place. null if there is no such action
+	 */
+	static Action getSheetChanger(Action action) {
+		if (action instanceof AddColumn || action instanceof CopyRows
+				|| action instanceof Loop) {
+			return action;
+		}
+		if (action instanceof Parallel == false
+				|| ((Parallel) action).actions == null) {
+			return null;
+		}
+		for (Action child : ((Parallel) action).actions) {
+			Action changer = getSheetChanger(child);
+			if (changer != null) {
+				return changer;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int validate(ValidationContext ctx, Service service) {
+		int count = super.validate(ctx, service);
+		if (this.actions == null || this.actions.length == 0) {
+			ctx.addError("Parallel action " + this.actionName
+					+ " has no actions.");
+			return count + 1;
+		}
+		for (Action action : this.actions) {
+			count += action.validate(ctx, service);
+		}
+		return count;
+	}
+
+	/**
+	 * an action with its copy of service context
+	 */
+	private static class Branch implements Callable<Value> {
+		final Action action;
+		final ServiceContext ctx;
+		/*
+		 * trace accumulated while this action was executed
+		 */
+		String trace;
+
+		Branch(Action action, ServiceContext ctx) {
+			this.action = action;
+			this.ctx = ctx;
+		}
+
+		@Override
+		public Value call() throws Exception {
+			/*
+			 * we may be run in the thread that submitted us, in which case we
+			 * should not lose its trace
+			 */
+			boolean wasOn = Tracer.acucumulationIsOn();
+			String outer = Tracer.startAccumulation();
+			try {
+				return this.action.act(this.ctx, null);
+			} finally {
+				this.trace = Tracer.stopAccumulation();
+				if (wasOn) {
+					Tracer.startAccumulation(outer);
+				}
+			}
+		}
+	}
+
+	/**
+	 * what an action starts with
+	 */
+	static class Snapshot {
+		final Map<String, Value> fields = new HashMap<String, Value>();
+		final Map<String, DataSheet> sheets = new HashMap<String, DataSheet>();
+		final Map<String, Object> objects = new HashMap<String, Object>();
+
+		/**
+		 * @param ctx
+		 *            context from which copies are made
+		 */
+		Snapshot(ServiceContext ctx) {
+			for (Map.Entry<String, Value> entry : ctx.getAllFields()) {
+				this.fields.put(entry.getKey(), entry.getValue());
+			}
+			for (Map.Entry<String, DataSheet> entry : ctx.getAllSheets()) {
+				this.sheets.put(entry.getKey(), entry.getValue());
+			}
+			for (Map.Entry<String, Object> entry : ctx.getAllObjects()) {
+				this.objects.put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		/**
+		 * merge changes made in a copy into the service context
+		 *
+		 * @param ctx
+		 *            service context
+		 * @param view
+		 *            copy that started with this snapshot
+		 * @return names of data that are changed, like "field a"
+		 */
+		List<String> mergeInto(ServiceContext ctx, ServiceContext view) {
+			List<String> changes = new ArrayList<String>();
+			Set<String> names = new HashSet<String>(this.fields.keySet());
+			for (Map.Entry<String, Value> entry : view.getAllFields()) {
+				String fieldName = entry.getKey();
+				names.remove(fieldName);
+				if (entry.getValue() != this.fields.get(fieldName)) {
+					changes.add("field " + fieldName);
+					ctx.setValue(fieldName, entry.getValue());
+				}
+			}
+			for (String fieldName : names) {
+				changes.add("field " + fieldName);
+				ctx.removeValue(fieldName);
+			}
+
+			names = new HashSet<String>(this.sheets.keySet());
+			for (Map.Entry<String, DataSheet> entry : view.getAllSheets()) {
+				String sheetName = entry.getKey();
+				names.remove(sheetName);
+				if (entry.getValue() != this.sheets.get(sheetName)) {
+					changes.add("sheet " + sheetName);
+					ctx.putDataSheet(sheetName, entry.getValue());
+				}
+			}
+			for (String sheetName : names) {
+				changes.add("sheet " + sheetName);
+				ctx.removeDataSheet(sheetName);
+			}
+
+			names = new HashSet<String>(this.objects.keySet());
+			for (Map.Entry<String, Object> entry : view.getAllObjects()) {
+				String objectName = entry.getKey();
+				names.remove(objectName);
+				if (entry.getValue() != this.objects.get(objectName)) {
+					changes.add("object " + objectName);
+					ctx.setObject(objectName, entry.getValue());
+				}
+			}
+			for (String objectName : names) {
+				changes.add("object " + objectName);
+				ctx.removeObject(objectName);
+			}
+
+			ctx.addMessages(new ArrayList<FormattedMessage>(view
+					.getMessages()));
+			if (view.isResponseToBeStreamed()) {
+				ctx.setResponseToBeStreamed();
+			}
+			return changes;
+		}
+	}
+
+	/**
+	 * threads for parallel actions are daemons
+	 */
+	private static class ActionThreadFactory implements ThreadFactory {
+		private final AtomicInteger nbrThreads = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r,
+					"simplity-parallel-" + this.nbrThreads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.tp;
+
+import org.simplity.json.JSONWriter;
+import org.simplity.kernel.db.DbDriver;
+import org.simplity.kernel.db.RowIterator;
+import org.simplity.kernel.dm.Record;
+import org.simplity.kernel.value.Value;
+import org.simplity.service.ServiceContext;
+
+/**
+ * rows of a filter that are not extracted into a data sheet, but are streamed
+ * to the client as the response is written. Filter action puts this in the
+ * context in place of the output sheet, and OutputData writes the rows as
+ * they are read from the data base.
+ *
+ * @author simplity.org
+ *
+ */
+class RowStream {
+	/*
+	 * objects in context are saved with this prefix to the sheet name
+	 */
+	private static final String PREFIX = "_rowStream_";
+
+	/**
+	 * record from which rows are filtered
+	 */
+	private final Record record;
+	/**
+	 * record that has the fields for filter criterion
+	 */
+	private final Record filterRecord;
+
+	/**
+	 * @param record
+	 *            from which rows are filtered
+	 * @param filterRecord
+	 *            that has the fields for filter criterion
+	 */
+	RowStream(Record record, Record filterRecord) {
+		this.record = record;
+		this.filterRecord = filterRecord;
+	}
+
+	/**
+	 * save a row stream in place of a sheet
+	 *
+	 * @param ctx
+	 * @param sheetName
+	 * @param stream
+	 */
+	static void put(ServiceContext ctx, String sheetName, RowStream stream) {
+		ctx.setObject(PREFIX + sheetName, stream);
+		ctx.setResponseToBeStreamed();
+	}
+
+	/**
+	 * get the row stream saved in place of a sheet
+	 *
+	 * @param ctx
+	 * @param sheetName
+	 * @return row stream, or null if there is no row stream for this sheet
+	 */
+	static RowStream get(ServiceContext ctx, String sheetName) {
+		Object obj = ctx.getObject(PREFIX + sheetName);
+		if (obj instanceof RowStream) {
+			return (RowStream) obj;
+		}
+		return null;
+	}
+
+	/**
+	 * filter rows and write them as an array of objects. Filter criterion are
+	 * taken from the context as of now. null is written if there are no rows,
+	 * like it is for an empty sheet.
+	 *
+	 * @param writer
+	 * @param ctx
+	 * @param driver
+	 * @return number of rows written
+	 */
+	int toJson(final JSONWriter writer, ServiceContext ctx, DbDriver driver) {
+		final String[] names = this.record.createSheet(false, false)
+				.getColumnNames();
+		int nbrRows = this.record.filterRows(this.filterRecord, ctx, driver,
+				new RowIterator() {
+					private boolean started;
+
+					@Override
+					public boolean workWithARow(Value[] row) {
+						if (this.started == false) {
+							writer.array();
+							this.started = true;
+						}
+						writer.object();
+						for (int i = 0; i < names.length; i++) {
+							Value value = row[i];
+							if (value != null) {
+								writer.key(names[i]).value(value.toObject());
+							}
+						}
+						writer.endObject();
+						return true;
+					}
+				});
+		if (nbrRows == 0) {
+			writer.value(null);
+		} else {
+			writer.endArray();
+		}
+		return nbrRows;
+	}
+}
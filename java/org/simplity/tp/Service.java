@@ -22,6 +22,7 @@
  */
 package org.simplity.tp;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -42,6 +43,7 @@ import org.simplity.kernel.comp.ValidationContext;
 import org.simplity.kernel.data.DataPurpose;
 import org.simplity.kernel.data.DataSheet;
 import org.simplity.kernel.db.DbAccessType;
+import org.simplity.kernel.db.DbClientInterface;
 import org.simplity.kernel.db.DbDriver;
 import org.simplity.kernel.dm.Record;
 import org.simplity.kernel.dt.DataType;
@@ -153,7 +155,8 @@ public class Service implements ServiceInterface {
 	Action[] actions;
 
 	/**
-	 * should this be executed in the background ALWAYS?.
+	 * should this be executed in the background ALWAYS?. If so, client gets a
+	 * job token at once, and polls for the response with that token.
 	 */
 	boolean executeInBackground;
 	/**
@@ -166,6 +169,12 @@ public class Service implements ServiceInterface {
 	 * it so long as the input values for these fields are same.
 	 */
 	String canBeCachedByFields;
+	/**
+	 * number of seconds for which a cached response of this service is valid.
+	 * 0 (default) means it is valid till the cache is invalidated. Relevant
+	 * only if canBeCachedByFields is set
+	 */
+	int cacheExpirySeconds;
 	/**
 	 * action names indexed to respond to navigation requests
 	 */
@@ -184,6 +193,23 @@ public class Service implements ServiceInterface {
 	private boolean justInputEveryThing;
 	private boolean justOutputEveryThing;
 
+	/*
+	 * canBeCachedByFields split into field names
+	 */
+	private String[] cacheKeyFields;
+
+	/*
+	 * index of the last action that may require db access
+	 */
+	private int lastDbActionIdx = -1;
+
+	/*
+	 * rows of response can be streamed while they are read. Response can be
+	 * streamed only if we have nothing to commit after writing it, and there
+	 * is a filter action that streams its rows
+	 */
+	private boolean responseCanBeStreamed;
+
 	/*
 	 * instance of className to be used as body of this service
 	 */
@@ -209,6 +235,19 @@ public class Service implements ServiceInterface {
 		return true;
 	}
 
+	@Override
+	public String[] getCacheKeyFields() {
+		return this.cacheKeyFields;
+	}
+
+	@Override
+	public boolean canStreamResponse() {
+		if (this.serviceInstance != null) {
+			return this.serviceInstance.canStreamResponse();
+		}
+		return this.responseCanBeStreamed;
+	}
+
 	@Override
 	public String getQualifiedName() {
 		if (this.moduleName == null) {
@@ -224,7 +263,26 @@ public class Service implements ServiceInterface {
 		}
 
 		ServiceContext ctx = new ServiceContext(this.name, inData.getUserId());
+		try {
+			return this.respond(ctx, inData);
+		} finally {
+			/*
+			 * spilled rows are released even if an action throws an error
+			 */
+			ctx.releaseSpillSheets();
+		}
+	}
+
+	/**
+	 * execute this service with the given context
+	 */
+	private ServiceData respond(ServiceContext ctx, ServiceData inData) {
 		this.extractInput(ctx, inData.getPayLoad());
+		OutputStream responseStream = inData.getResponseStream();
+		boolean streamable = responseStream != null
+				&& this.responseCanBeStreamed;
+		ctx.setResponseStreamable(streamable);
+		boolean streamed = false;
 
 		/*
 		 * let us proceed if all OK
@@ -257,7 +315,16 @@ public class Service implements ServiceInterface {
 					 * return driver, but expects us to supply a client instance
 					 * with whom it works.
 					 */
-					DbDriver.workWithDriver(worker, access, this.schemaName);
+					if (streamable) {
+						StreamingWorker sw = new StreamingWorker(worker, ctx,
+								responseStream);
+						DbDriver.workWithDriver(sw, access, this.schemaName);
+						streamed = sw.streamed;
+					} else {
+						worker.releaseConnectionAfter(this.lastDbActionIdx);
+						DbDriver.workWithDriver(worker, access,
+								this.schemaName);
+					}
 				}
 			} catch (ApplicationError e) {
 				throw e;
@@ -279,7 +346,16 @@ public class Service implements ServiceInterface {
 		 * create output pay load, but only if service succeeded. Dirty job of
 		 * telling the bad news is left to the Client Agent :-)
 		 */
-		if (nbrErrors == 0) {
+		if (nbrErrors == 0 && streamed) {
+			/*
+			 * response is already with the client. And it can not be cached
+			 */
+			this.outputData.setSessionFields(ctx, response);
+			response.setPayLoadStreamed(true);
+			if (this.inputData != null) {
+				this.inputData.cleanup(ctx);
+			}
+		} else if (nbrErrors == 0) {
 			if (this.justOutputEveryThing) {
 				this.setPayload(ctx, response, inData);
 			} else {
@@ -290,6 +366,7 @@ public class Service implements ServiceInterface {
 			}
 			if (this.canBeCachedByFields != null) {
 				response.setCacheForInput(this.canBeCachedByFields);
+				response.setCacheExpirySeconds(this.cacheExpirySeconds);
 			}
 		}
 		return response;
@@ -311,9 +388,8 @@ public class Service implements ServiceInterface {
 		if (jsonText.isEmpty()) {
 			jsonText = "{}";
 		}
-		JSONObject json = new JSONObject(jsonText);
 		if (this.justInputEveryThing) {
-			JsonUtil.extractAll(json, ctx);
+			JsonUtil.extractAll(new JSONObject(jsonText), ctx);
 			return;
 		}
 
@@ -322,7 +398,7 @@ public class Service implements ServiceInterface {
 		}
 
 		try {
-			this.inputData.extractFromJson(json, ctx);
+			this.inputData.extractFromJson(jsonText, ctx);
 		} catch (Exception e) {
 			ctx.addMessage(Messages.INVALID_DATA,
 					"Invalid input data format. " + e.getMessage());
@@ -406,6 +482,14 @@ public class Service implements ServiceInterface {
 			return;
 		}
 		this.gotReady = true;
+		if (this.canBeCachedByFields != null) {
+			String text = this.canBeCachedByFields.trim();
+			this.cacheKeyFields = text.length() == 0 ? new String[0]
+					: text.split(",");
+			for (int i = 0; i < this.cacheKeyFields.length; i++) {
+				this.cacheKeyFields[i] = this.cacheKeyFields[i].trim();
+			}
+		}
 		if (this.className != null) {
 			try {
 				this.serviceInstance = (ServiceInterface) Class
@@ -430,6 +514,12 @@ public class Service implements ServiceInterface {
 							+ " as its action nbr " + (i + 1));
 				}
 				this.indexedActions.put(action.getName(), new Integer(i));
+				DbAccessType access = action.getDataAccessType();
+				if ((access != null && access != DbAccessType.NONE)
+						|| action instanceof SubService
+						|| action instanceof ComplexLogic) {
+					this.lastDbActionIdx = i;
+				}
 				i++;
 			}
 		}
@@ -506,9 +596,35 @@ public class Service implements ServiceInterface {
 		}
 		if (this.outputData != null) {
 			this.outputData.getReady();
+			this.responseCanBeStreamed = this.responseTextFieldName == null
+					&& this.justOutputEveryThing == false
+					&& this.dbAccessType == DbAccessType.READ_ONLY
+					&& hasStreamingFilter(this.actions);
 		}
 	}
 
+	/**
+	 * is there a filter action that streams its rows to the response?
+	 */
+	private static boolean hasStreamingFilter(Action[] actions) {
+		if (actions == null) {
+			return false;
+		}
+		for (Action action : actions) {
+			if (action instanceof Filter) {
+				Filter filter = (Filter) action;
+				if (filter.streamOutput && filter.inputSheetName == null) {
+					return true;
+				}
+			} else if (action instanceof Loop) {
+				if (hasStreamingFilter(((Loop) action).actions)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * @param serviceName
 	 * @param record
@@ -1052,4 +1168,37 @@ public class Service implements ServiceInterface {
 		service.actions = act;
 		return service;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * works with the driver to execute actions, and then streams the response
+	 * to the client before the connection is released, so that rows deferred
+	 * by actions are written as they are read.
+	 */
+	private class StreamingWorker implements DbClientInterface {
+		private final ActionBlock worker;
+		private final ServiceContext ctx;
+		private final OutputStream stream;
+		/*
+		 * set to true once the response is written
+		 */
+		boolean streamed;
+
+		StreamingWorker(ActionBlock worker, ServiceContext ctx,
+				OutputStream stream) {
+			this.worker = worker;
+			this.ctx = ctx;
+			this.stream = stream;
+		}
+
+		@Override
+		public boolean workWithDriver(DbDriver driver) {
+			boolean allOk = this.worker.workWithDriver(driver);
+			if (allOk && this.ctx.isResponseToBeStreamed()) {
+				Service.this.outputData.streamResponse(this.ctx, this.stream,
+						driver);
+				this.streamed = true;
+			}
+			return allOk;
+		}
+	}
+}
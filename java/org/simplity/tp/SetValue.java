@@ -24,6 +24,7 @@ package org.simplity.tp;
 
 import org.simplity.kernel.ApplicationError;
 import org.simplity.kernel.Tracer;
+import org.simplity.kernel.data.FieldRef;
 import org.simplity.kernel.db.DbAccessType;
 import org.simplity.kernel.db.DbDriver;
 import org.simplity.kernel.expr.Expression;
@@ -63,7 +64,12 @@ public class SetValue extends Action {
 	/*
 	 * if fieldValue is a field, then we keep that parsed name
 	 */
-	private String parsedField;
+	private FieldRef parsedField;
+
+	/*
+	 * parsed fieldName
+	 */
+	private FieldRef fieldRef;
 
 	@Override
 	protected Value doAct(ServiceContext ctx, DbDriver driver) {
@@ -71,7 +77,7 @@ public class SetValue extends Action {
 		if (this.parsedValue != null) {
 			value = this.parsedValue;
 		} else if (this.parsedField != null) {
-			value = ctx.getValue(this.parsedField);
+			value = this.parsedField.getValue(ctx);
 		} else if (this.expression != null) {
 			try {
 				value = this.expression.evaluate(ctx);
@@ -83,7 +89,7 @@ public class SetValue extends Action {
 		} else {
 			Tracer.trace("Field " + this.fieldName + " is removed from context");
 		}
-		ctx.setValue(this.fieldName, value);
+		this.fieldRef.setValue(ctx, value);
 		return value;
 	}
 
@@ -100,6 +106,10 @@ public class SetValue extends Action {
 	@Override
 	public void getReady(int idx) {
 		super.getReady(idx);
+		this.fieldRef = new FieldRef(this.fieldName);
+		if (this.expression != null) {
+			this.expression.compile();
+		}
 		if (this.fieldValue != null) {
 			if (this.expression != null) {
 				throw new ApplicationError(
@@ -107,8 +117,10 @@ public class SetValue extends Action {
 								+ this.actionName
 								+ "' has confused me by specifying both expression and fieldValue. Only one of this should be specified ");
 			}
-			this.parsedField = TextUtil.getFieldName(this.fieldValue);
-			if (this.parsedField == null) {
+			String parsedName = TextUtil.getFieldName(this.fieldValue);
+			if (parsedName != null) {
+				this.parsedField = new FieldRef(parsedName);
+			} else {
 				this.parsedValue = Value.parseValue(this.fieldValue);
 				if (this.parsedValue == null) {
 					throw new ApplicationError("SetValue action "
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 simplity.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.simplity.tp;
+
+import org.simplity.kernel.Tracer;
+import org.simplity.kernel.data.ColumnarSheet;
+import org.simplity.kernel.data.DataSheet;
+import org.simplity.kernel.data.MultiRowsSheet;
+import org.simplity.kernel.data.SpillSheet;
+import org.simplity.kernel.value.IntegerValue;
+import org.simplity.kernel.value.Value;
+import org.simplity.kernel.value.ValueType;
+import org.simplity.service.ServiceContext;
+
+/**
+ * internal class to test loop action that processes rows in parallel during
+ * development. To be re-factored into a Maven structure and put into test
+ * folder
+ *
+ * @author simplity.org
+ *
+ */
+class TestParallelLoop {
+	private static final String SHEET = "rows";
+	private static final String[] NAMES = { "a" };
+	private static final ValueType[] TYPES = { ValueType.INTEGER };
+	private static final int NBR_ROWS = 1000;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int nbrIssues = 0;
+		nbrIssues += test(new MultiRowsSheet(NAMES, TYPES));
+		nbrIssues += test(new ColumnarSheet(NAMES, TYPES));
+		SpillSheet spill = new SpillSheet(NAMES, TYPES, 1024);
+		nbrIssues += test(spill);
+		spill.release();
+		if (nbrIssues == 0) {
+			Tracer.trace("Congratulations!!!");
+		} else {
+			Tracer.trace("Oooops! You have to fix " + nbrIssues
+					+ " issues.");
+		}
+	}
+
+	/**
+	 * a column that is added by the actions of the loop is kept in the sheet,
+	 * with the value set for each row
+	 */
+	private static int test(DataSheet sheet) {
+		for (int i = 0; i < NBR_ROWS; i++) {
+			Value[] row = { Value.newIntegerValue(i) };
+			sheet.addRow(row);
+		}
+		ServiceContext ctx = new ServiceContext("test.parallelLoop",
+				Value.newIntegerValue(1));
+		ctx.putDataSheet(SHEET, sheet);
+
+		Logic logic = new Logic();
+		logic.className = Doubler.class.getName();
+		logic.getReady(0);
+		Loop loop = new Loop();
+		loop.dataSheetName = SHEET;
+		loop.actions = new Action[] { logic };
+		loop.executeInParallel = true;
+		loop.rowsPerChunk = 100;
+		loop.getReady(0);
+		loop.act(ctx, null);
+
+		String name = sheet.getClass().getSimpleName();
+		int idx = sheet.getColIdx("b");
+		if (idx == -1) {
+			Tracer.trace("Column added by the loop is lost from " + name);
+			return 1;
+		}
+		int nbrIssues = 0;
+		for (int i = 0; i < NBR_ROWS; i++) {
+			Value value = sheet.getRow(i)[idx];
+			if (value == null || value.toText().equals("" + (2 * i)) == false) {
+				Tracer.trace("Row " + i + " of " + name + " has " + value
+						+ " for the added column");
+				nbrIssues++;
+			}
+		}
+		return nbrIssues;
+	}
+
+	/**
+	 * adds column b, if required, and sets it to twice of a
+	 */
+	static class Doubler implements LogicInterface {
+
+		@Override
+		public Value execute(ServiceContext ctx) {
+			DataSheet sheet = ctx.getDataSheet(SHEET);
+			if (sheet.getColIdx("b") == -1) {
+				sheet.addColumn("b", ValueType.INTEGER, null);
+			}
+			long a = ((IntegerValue) ctx.getValue(SHEET + ".a")).getLong();
+			ctx.setValue(SHEET + ".b", Value.newIntegerValue(2 * a));
+			return null;
+		}
+	}
+}